@@ -0,0 +1,42 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 批量任务配置
+ *
+ * 离线任务一次提交大量请求，在独立的批量执行通道(agent.lanes.batch)中按限定的并发数和速率执行，
+ * 每条请求的结果完成后立即追加到输出文件，重新提交时跳过已有结果的请求
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.batch")
+public class BatchProperties {
+
+    /**
+     * 批量任务目录，输入和输出文件只能位于该目录下
+     */
+    private Path directory = Path.of("batches");
+
+    /**
+     * 单个任务同时执行的请求数(提交时未指定时使用)
+     */
+    private int concurrency = 4;
+
+    /**
+     * 单个任务每秒启动的请求数(提交时未指定时使用)，0 表示不限制
+     */
+    private double ratePerSecond = 2.0;
+
+    /**
+     * 单条请求的超时时间，超时后取消该请求并记录为 ERROR
+     */
+    private Duration itemTimeout = Duration.ofMinutes(10);
+}
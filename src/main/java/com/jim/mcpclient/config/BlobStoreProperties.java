@@ -0,0 +1,49 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 大工具结果转存配置
+ *
+ * 超过阈值的工具结果写入本地文件，返回给模型的只有引用和预览，
+ * 模型需要完整内容时通过 read_tool_result 工具分页读取
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.blob-store")
+public class BlobStoreProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 转存目录，启动时清空(引用只保存在内存中，重启后无法再读取)
+     */
+    private Path directory = Path.of("blobs");
+
+    /**
+     * 超过该字符数的工具结果转存
+     */
+    private int threshold = 16000;
+
+    /**
+     * 返回给模型的预览 token 预算
+     */
+    private int previewTokens = 800;
+
+    /**
+     * read_tool_result 每页最多返回的字符数
+     */
+    private int pageChars = 8000;
+
+    /**
+     * 转存内容的最长保留时间；编排结束后会话记忆和编排日志中都不再出现的内容会提前删除
+     */
+    private Duration ttl = Duration.ofMinutes(30);
+}
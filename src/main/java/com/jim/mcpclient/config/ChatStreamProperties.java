@@ -0,0 +1,31 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * HTTP 流式聊天(SSE)配置
+ *
+ * 每个连接的待发送消息放在有界缓存中，按客户端读取的速度写出，编排线程不会因为慢客户端阻塞；
+ * 缓存写满时关闭连接，客户端用相同 messageId 重新请求即可挂载回原来的编排并收到重放
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.chat-stream")
+public class ChatStreamProperties {
+
+    /**
+     * 每个连接最多缓存的待发送消息数
+     */
+    private int bufferSize = 256;
+
+    /**
+     * 没有消息时发送保活注释的间隔，避免网关或代理关闭空闲连接，0 表示不发送
+     */
+    private Duration keepAlive = Duration.ofSeconds(15);
+}
@@ -0,0 +1,39 @@
+package com.jim.mcpclient.config;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
+
+/**
+ * 按配置协商 permessage-deflate
+ *
+ * 关闭 permessage-deflate，或者连接启用了 {@link StompCompression} 时，从协商结果中去掉该扩展
+ *
+ * @author James Smith
+ */
+public class CompressionHandshakeHandler extends DefaultHandshakeHandler {
+
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private final WebSocketCompressionProperties properties;
+    private final StompCompression stompCompression;
+
+    public CompressionHandshakeHandler(WebSocketCompressionProperties properties, StompCompression stompCompression) {
+        this.properties = properties;
+        this.stompCompression = stompCompression;
+    }
+
+    @Override
+    protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request, List<WebSocketExtension> requestedExtensions,
+                                                                 List<WebSocketExtension> supportedExtensions) {
+        List<WebSocketExtension> extensions = super.filterRequestedExtensions(request, requestedExtensions, supportedExtensions);
+        if (properties.isPermessageDeflate() && !stompCompression.requested(request)) {
+            return extensions;
+        }
+        return extensions.stream()
+                .filter(extension -> !PERMESSAGE_DEFLATE.equalsIgnoreCase(extension.getName()))
+                .toList();
+    }
+}
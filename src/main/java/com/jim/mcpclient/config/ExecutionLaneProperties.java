@@ -0,0 +1,77 @@
+package com.jim.mcpclient.config;
+
+import com.jim.mcpclient.test.ExecutionLane;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 执行通道配置
+ *
+ * 简单对话、多阶段编排和离线批量任务分别在独立的通道中执行：各自的线程数、排队上限、过载策略，
+ * 以及可占用的模型调用名额比例(agent.model-scheduling.max-concurrency 的比例)。
+ * 比例之和可以大于 1，空闲时通道可以多占，但不会超过自己的比例
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.lanes")
+public class ExecutionLaneProperties {
+
+    private Lane interactive = new Lane(8, 16, 0.5, Overload.SHED_OLDEST, false);
+
+    private Lane orchestration = new Lane(16, 64, 0.75, Overload.REJECT, false);
+
+    private Lane batch = new Lane(4, 8, 0.25, Overload.REJECT, false);
+
+    public Lane get(ExecutionLane lane) {
+        return switch (lane) {
+            case INTERACTIVE -> interactive;
+            case ORCHESTRATION -> orchestration;
+            case BATCH -> batch;
+        };
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Lane {
+
+        /**
+         * 同时执行的请求数
+         */
+        private int maxConcurrency;
+
+        /**
+         * 等待执行的请求数上限，0 表示不排队
+         */
+        private int queueCapacity;
+
+        /**
+         * 可占用的模型调用名额比例
+         */
+        private double modelShare;
+
+        /**
+         * 排队已满时的处理方式
+         */
+        private Overload overload;
+
+        /**
+         * 使用虚拟线程执行(并发数仍受 maxConcurrency 限制)
+         */
+        private boolean virtualThreads;
+    }
+
+    public enum Overload {
+
+        /** 拒绝新请求 */
+        REJECT,
+
+        /** 丢弃排队最久的请求，接受新请求 */
+        SHED_OLDEST
+    }
+}
@@ -0,0 +1,52 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 快速通道配置
+ *
+ * 问候、简单问题等消息不进入多阶段编排，直接用一次流式调用回答。
+ * 先用本地规则判断，规则无法确定时(可选)用一次轻量模型调用分类，仍无法确定的消息进入编排
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.fast-path")
+public class FastPathProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 超过该长度(去掉空白和标点后的字符数)的消息直接进入编排
+     */
+    private int maxLength = 40;
+
+    /**
+     * 不超过该长度且不包含复杂关键词的消息直接回答
+     */
+    private int shortLength = 6;
+
+    /**
+     * 以这些词开头的短消息视为问候，直接回答
+     */
+    private List<String> greetings = new ArrayList<>(List.of(
+            "你好", "您好", "嗨", "在吗", "谢谢", "多谢", "再见", "早上好", "晚上好", "hi", "hello", "thanks"));
+
+    /**
+     * 包含这些词的消息进入编排
+     */
+    private List<String> complexKeywords = new ArrayList<>(List.of(
+            "查询", "统计", "汇总", "分析", "对比", "导出", "报表", "明细", "计算",
+            "新增", "添加", "修改", "删除", "记账", "并且", "然后", "分别"));
+
+    /**
+     * 规则无法确定时是否调用模型分类，关闭时进入编排
+     */
+    private boolean modelClassification = true;
+}
@@ -0,0 +1,154 @@
+package com.jim.mcpclient.config;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 增量 JSON 数组解析器
+ *
+ * 用于解析模型流式输出的结构化结果：每当最外层数组中的某个对象闭合，就立即反序列化并返回该元素，
+ * 不需要等待整个 JSON 生成完毕。例如：
+ * <pre>
+ * {"taskInstructions": [ {...}, {...}, ... ]}
+ * </pre>
+ * 中的每个 {...} 在其右括号出现时就会被解析出来。
+ *
+ * 容错说明:
+ * - 忽略第一个 '{' 或 '[' 之前的任何文本(例如 ```json 代码块标记)
+ * - 正确处理字符串中的括号和转义字符
+ * - 单个元素解析失败只记录日志并跳过,不影响后续元素
+ *
+ * 非线程安全,每个流使用一个实例。
+ *
+ * @author James Smith
+ */
+@Slf4j
+public class IncrementalJsonArrayParser<T> {
+
+    private final Class<T> elementType;
+
+    /**
+     * 已接收的全部文本
+     */
+    private final StringBuilder buffer = new StringBuilder();
+
+    /**
+     * 当前嵌套的容器栈,元素为 '{' 或 '['
+     */
+    private final StringBuilder containers = new StringBuilder();
+
+    /**
+     * 下一个待扫描字符的位置
+     */
+    private int position;
+
+    private boolean inString;
+    private boolean escaped;
+
+    /**
+     * 最外层数组在容器栈中的下标, -1 表示尚未遇到数组
+     */
+    private int outermostArrayDepth = -1;
+
+    /**
+     * 当前正在读取的数组元素的起始位置, -1 表示不在元素中
+     */
+    private int elementStart = -1;
+
+    public IncrementalJsonArrayParser(Class<T> elementType) {
+        this.elementType = elementType;
+    }
+
+    /**
+     * 将一个 Flux 文本流转换为元素流,元素在其 JSON 对象闭合时立即发出
+     */
+    public static <T> Flux<T> parse(Flux<String> chunks, Class<T> elementType) {
+        return Flux.defer(() -> {
+            IncrementalJsonArrayParser<T> parser = new IncrementalJsonArrayParser<>(elementType);
+            return chunks.concatMapIterable(parser::feed);
+        });
+    }
+
+    /**
+     * 追加一段文本,返回本次新闭合的元素(可能为空列表)
+     */
+    public List<T> feed(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return List.of();
+        }
+        buffer.append(chunk);
+
+        List<T> completed = new ArrayList<>();
+        for (; position < buffer.length(); position++) {
+            char c = buffer.charAt(position);
+
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '"' -> {
+                    // 只处理 JSON 结构内的字符串,忽略前导文本中的引号
+                    if (!containers.isEmpty()) {
+                        inString = true;
+                    }
+                }
+                case '{' -> {
+                    if (outermostArrayDepth >= 0 && containers.length() - 1 == outermostArrayDepth
+                            && containers.charAt(outermostArrayDepth) == '[') {
+                        elementStart = position;
+                    }
+                    containers.append('{');
+                }
+                case '[' -> {
+                    if (outermostArrayDepth < 0) {
+                        outermostArrayDepth = containers.length();
+                    }
+                    containers.append('[');
+                }
+                case '}', ']' -> {
+                    if (containers.isEmpty()) {
+                        continue;
+                    }
+                    containers.setLength(containers.length() - 1);
+                    if (c == '}' && elementStart >= 0 && containers.length() - 1 == outermostArrayDepth) {
+                        T element = readElement(buffer.substring(elementStart, position + 1));
+                        if (element != null) {
+                            completed.add(element);
+                        }
+                        elementStart = -1;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * 已接收的全部原始文本,用于在增量解析无结果时做整体兜底解析
+     */
+    public String text() {
+        return buffer.toString();
+    }
+
+    private T readElement(String json) {
+        try {
+            return JsonUtils.getObjectMapper().readValue(json, elementType);
+        } catch (Exception e) {
+            log.warn("Skip malformed {} element: {}", elementType.getSimpleName(), json, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.jim.mcpclient.config;
+
+import io.modelcontextprotocol.common.McpTransportContext;
+import org.springframework.ai.mcp.customizer.McpSyncClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/**
+ * MCP 客户端配置
+ *
+ * 同步客户端每次发起请求时在调用线程上读取 {@link UserTokenHolder}，作为 TransportContext 中的 userToken
+ * 交给 {@link TokenAwareMcpHttpClientRequestCustomizer}；HTTP 请求的构建可能不在调用线程上，不能直接读取 ThreadLocal
+ *
+ * @author James Smith
+ */
+@Configuration
+public class McpClientConfiguration {
+
+    @Bean
+    public McpSyncClientCustomizer userTokenTransportContextCustomizer() {
+        return (name, spec) -> spec.transportContextProvider(() -> {
+            String token = UserTokenHolder.getToken();
+            return token == null ? McpTransportContext.EMPTY : McpTransportContext.create(Map.of("userToken", token));
+        });
+    }
+}
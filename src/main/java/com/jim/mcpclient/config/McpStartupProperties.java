@@ -0,0 +1,36 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * MCP 连接启动配置
+ *
+ * spring.ai.mcp.client.initialized 关闭后，自动配置创建客户端时不再逐个同步握手，启动不会被 MCP server 阻塞；
+ * 应用就绪(/ws 已可连接)后在后台并行完成各连接的握手。未开启后台初始化时，连接在第一次使用时握手
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.mcp-startup")
+public class McpStartupProperties {
+
+    /**
+     * 应用就绪后是否在后台并行初始化所有 MCP 连接
+     */
+    private boolean background = true;
+
+    /**
+     * 连接初始化完成后是否预先加载工具注册表，避免第一个请求等待 listTools；初始化失败的连接在使用时重新加载
+     */
+    private boolean loadTools = true;
+
+    /**
+     * 加载工具失败的连接，两次重新加载之间的最小间隔
+     */
+    private Duration toolRetryInterval = Duration.ofSeconds(30);
+}
@@ -0,0 +1,104 @@
+package com.jim.mcpclient.config;
+
+import com.jim.mcpclient.test.ToolStage;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 各编排阶段的模型配置
+ *
+ * 格式化、验证、简单对话等阶段不需要旗舰模型，可以为它们指定更快的模型和参数。
+ * 每个阶段可以配置多个候选配置，开启路由后按观察到的延迟和错误率在候选之间选择；
+ * 未配置的阶段使用 spring.ai.google.genai.chat.options 中的默认模型和参数
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.models")
+public class ModelRoutingProperties {
+
+    /**
+     * 模型配置，按名称引用
+     */
+    private Map<String, Profile> profiles = new LinkedHashMap<>();
+
+    /**
+     * 各阶段的候选模型配置名称，第一个为首选
+     */
+    private Map<ToolStage, List<String>> stages = new EnumMap<>(ToolStage.class);
+
+    private Router router = new Router();
+
+    /**
+     * 模型配置，未设置的参数使用默认值
+     */
+    @Data
+    public static class Profile {
+
+        /**
+         * 模型名称
+         */
+        private String model;
+
+        private Double temperature;
+
+        /**
+         * 最大输出 token 数
+         */
+        private Integer maxTokens;
+
+        /**
+         * 思考预算(token)，0 为关闭思考
+         */
+        private Integer thinkingBudget;
+    }
+
+    /**
+     * 延迟/错误率感知的路由
+     */
+    @Data
+    public static class Router {
+
+        /**
+         * 关闭时始终使用每个阶段的首选配置
+         */
+        private boolean enabled = false;
+
+        /**
+         * 每个阶段每个配置保留最近的调用次数
+         */
+        private int window = 100;
+
+        /**
+         * 样本少于该数量的配置优先被选中，先收集足够的样本
+         */
+        private int minSamples = 5;
+
+        /**
+         * 比较的延迟分位数，流式调用为首个片段的延迟
+         */
+        private double percentile = 0.9;
+
+        /**
+         * 错误率超过该值的配置不参与选择(所有候选都超过时仍选择得分最低的)
+         */
+        private double maxErrorRate = 0.5;
+
+        /**
+         * 错误率惩罚系数：得分 = 延迟分位数 × (1 + 系数 × 错误率)
+         */
+        private double errorPenalty = 4.0;
+
+        /**
+         * 随机选择候选的比例，保持各候选的统计数据不过时
+         */
+        private double explore = 0.05;
+    }
+}
@@ -0,0 +1,64 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模型调用的公平调度配置
+ *
+ * 同时进行的模型调用不超过 maxConcurrency，超出的调用按用户排队，按加权差额轮转(DRR)放行：
+ * 每轮每个用户获得 quantum × 权重 的额度，调用按估算的提示词 token 数扣减额度，
+ * 多指令的编排不会占满模型容量，其他用户的首个 token 等待时间有上限
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.model-scheduling")
+public class ModelSchedulingProperties {
+
+    /**
+     * 关闭时模型调用不排队
+     */
+    private boolean enabled = true;
+
+    /**
+     * 同时进行的模型调用数上限(包括流式调用)
+     */
+    private int maxConcurrency = 8;
+
+    /**
+     * 权重为 1 的用户每轮获得的额度(估算的提示词 token 数)
+     */
+    private int quantum = 4000;
+
+    /**
+     * 不属于任何租户的用户的权重
+     */
+    private int defaultWeight = 1;
+
+    /**
+     * 租户配置，按名称引用
+     */
+    private Map<String, Tenant> tenants = new LinkedHashMap<>();
+
+    @Data
+    public static class Tenant {
+
+        /**
+         * 该租户每个用户的权重
+         */
+        private int weight = 1;
+
+        /**
+         * 属于该租户的 userId，支持 * 通配符(如 vip-*)
+         */
+        private List<String> users = new ArrayList<>();
+    }
+}
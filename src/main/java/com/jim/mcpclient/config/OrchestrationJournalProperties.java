@@ -0,0 +1,39 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 编排日志配置
+ *
+ * 每个编排的分析结果、任务指令和每条指令的执行结果追加写入本地文件，
+ * 相同 messageId 的请求重新提交时跳过已完成的指令
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.journal")
+public class OrchestrationJournalProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 日志目录，每个编排一个文件
+     */
+    private Path directory = Path.of("journal");
+
+    /**
+     * 未完成编排的日志保留时长，启动时和每隔 sweepInterval 清理过期文件；正常完成的编排立即删除日志
+     */
+    private Duration retention = Duration.ofHours(24);
+
+    /**
+     * 清理过期日志的间隔，0 表示只在启动时清理
+     */
+    private Duration sweepInterval = Duration.ofHours(1);
+}
@@ -0,0 +1,33 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 提示词上下文缓存配置
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.prompt-cache")
+public class PromptCacheProperties {
+
+    /**
+     * 是否为模板静态部分创建 Gemini cachedContent
+     */
+    private boolean enabled = false;
+
+    /**
+     * 缓存绑定的模型，为空时使用 ChatModel 的默认模型，调用时必须使用同一模型
+     */
+    private String model;
+
+    /**
+     * 缓存有效期
+     */
+    private Duration ttl = Duration.ofHours(1);
+}
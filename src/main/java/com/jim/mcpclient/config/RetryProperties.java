@@ -0,0 +1,61 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 编排重试配置
+ *
+ * 传输失败(429、5xx、超时等)原样重新调用并指数退避；语义失败(结果为空、执行未完成、验证未通过)
+ * 带上失败原因和已完成的工具调用结果重新执行。两类重试都消耗同一个编排的重试预算
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.retry")
+public class RetryProperties {
+
+    /**
+     * 每条任务指令的语义重试次数
+     */
+    private int semanticRetries = 1;
+
+    /**
+     * 单次模型调用的最大尝试次数(包括第一次)
+     */
+    private int transportAttempts = 3;
+
+    /**
+     * 第一次传输重试前的等待时间
+     */
+    private Duration initialBackoff = Duration.ofMillis(500);
+
+    /**
+     * 退避等待时间上限
+     */
+    private Duration maxBackoff = Duration.ofSeconds(10);
+
+    /**
+     * 每次重试等待时间的倍数
+     */
+    private double backoffMultiplier = 2.0;
+
+    /**
+     * 随机抖动比例，0.5 表示实际等待时间在计算值的 50%~100% 之间
+     */
+    private double jitter = 0.5;
+
+    /**
+     * 每个编排最多重试的总次数，用完后不再重试
+     */
+    private int budget = 8;
+
+    /**
+     * 语义重试时每个已完成工具调用结果最多带上的字符数
+     */
+    private int toolResultChars = 2000;
+}
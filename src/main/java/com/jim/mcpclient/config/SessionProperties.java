@@ -0,0 +1,61 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * STOMP 会话的心跳、空闲回收以及离开用户的会话记忆释放
+ *
+ * 移动网络下断开的连接常常不会收到关闭帧(半开连接)，订阅和发送缓冲会一直保留。
+ * 心跳让两端都能发现断开的连接；没有协商心跳的客户端在 idleTimeout 内没有任何入站帧时被关闭。
+ * 用户的最后一个会话关闭 memoryRetention 之后，释放(或转存到磁盘)该用户的会话记忆
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.session")
+public class SessionProperties {
+
+    public enum MemoryEviction {
+        NONE,     // 不释放
+        EVICT,    // 直接清除
+        OFFLOAD   // 写入磁盘，用户重新订阅时恢复
+    }
+
+    /**
+     * 心跳间隔(服务端发送间隔，同时也是期望客户端发送的间隔)，0 为关闭心跳
+     */
+    private Duration heartbeat = Duration.ofSeconds(10);
+
+    /**
+     * 会话没有任何入站帧(包括心跳)超过该时长时关闭，0 为不回收
+     */
+    private Duration idleTimeout = Duration.ofMinutes(2);
+
+    /**
+     * 检查空闲会话和离开用户的间隔
+     */
+    private Duration reapInterval = Duration.ofSeconds(30);
+
+    /**
+     * 用户的会话全部关闭后保留会话记忆的时长
+     */
+    private Duration memoryRetention = Duration.ofMinutes(30);
+
+    private MemoryEviction memoryEviction = MemoryEviction.OFFLOAD;
+
+    /**
+     * 转存会话记忆的目录，每个用户一个文件
+     */
+    private Path offloadDirectory = Path.of("sessions");
+
+    /**
+     * 转存文件的保留时长，启动时清理过期文件
+     */
+    private Duration offloadRetention = Duration.ofDays(1);
+}
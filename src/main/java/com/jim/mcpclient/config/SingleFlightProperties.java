@@ -0,0 +1,31 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 重复请求合并配置
+ *
+ * 同一用户的重复请求(相同 messageId，或在时间窗口内发送相同内容)不再启动新的编排，
+ * 而是挂到正在执行的编排上，共享同一份响应
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.single-flight")
+public class SingleFlightProperties {
+
+    /**
+     * 相同内容的请求在该时间内视为重复；已完成的编排也会保留该时长，供重试的请求直接重放，0 表示只按 messageId 合并
+     */
+    private Duration duplicateWindow = Duration.ofSeconds(10);
+
+    /**
+     * 每个编排缓存的最近消息数，后加入的请求先收到缓存的消息
+     */
+    private int replayBufferSize = 512;
+}
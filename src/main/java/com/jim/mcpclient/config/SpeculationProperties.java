@@ -0,0 +1,37 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 推测执行配置
+ *
+ * 开启后，任务指令的验证与下一条指令的执行并行进行；验证未通过时丢弃下一条指令的执行结果及其会话记忆，
+ * 先重试当前指令再重新执行下一条。
+ * 注意：下一条指令的工具调用在验证返回前已经执行，只适用于工具调用没有副作用或可以重复执行的场景
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.speculation")
+public class SpeculationProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * 每个编排最多回滚的次数，达到后该编排不再推测执行
+     */
+    private int maxRollbacks = 1;
+
+    /**
+     * 最近验证的通过率低于该值时暂停推测执行
+     */
+    private double minPassRate = 0.8;
+
+    /**
+     * 统计通过率的最近验证次数
+     */
+    private int window = 50;
+}
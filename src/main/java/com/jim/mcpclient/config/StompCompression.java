@@ -0,0 +1,168 @@
+package com.jim.mcpclient.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * STOMP 消息体压缩
+ *
+ * 握手时带 ?compression=deflate 的连接启用压缩：发往该连接的 MESSAGE 帧中不小于阈值的消息体
+ * 按配置的级别压缩为 raw deflate 数据(浏览器可用 DecompressionStream("deflate-raw") 解压)，
+ * 以二进制帧发送并带有 content-encoding: deflate 头；小于阈值的消息体(例如 CHUNK 片段)原样发送。
+ *
+ * 指标：
+ * - agent.websocket.compression.bytes{type=raw|compressed}：压缩前后的字节数
+ * - agent.websocket.compression.skipped：低于阈值未压缩的消息数
+ * - agent.websocket.compression.cpu：压缩消耗的线程 CPU 时间
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class StompCompression implements ChannelInterceptor, HandshakeInterceptor {
+
+    /**
+     * 握手地址上启用压缩的参数
+     */
+    public static final String PARAMETER = "compression";
+    public static final String DEFLATE = "deflate";
+
+    public static final String CONTENT_ENCODING_HEADER = "content-encoding";
+
+    private static final String SESSION_ATTRIBUTE = StompCompression.class.getName();
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    @Autowired
+    private WebSocketCompressionProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 启用了压缩的 STOMP 会话
+     */
+    private final Set<String> sessions = ConcurrentHashMap.newKeySet();
+
+    private Counter rawBytes;
+    private Counter compressedBytes;
+    private Counter skipped;
+    private Timer cpu;
+
+    @PostConstruct
+    public void init() {
+        rawBytes = meterRegistry.counter("agent.websocket.compression.bytes", "type", "raw");
+        compressedBytes = meterRegistry.counter("agent.websocket.compression.bytes", "type", "compressed");
+        skipped = meterRegistry.counter("agent.websocket.compression.skipped");
+        cpu = meterRegistry.timer("agent.websocket.compression.cpu");
+    }
+
+    /**
+     * 握手请求是否要求 STOMP 消息体压缩
+     */
+    public boolean requested(ServerHttpRequest request) {
+        return properties.isEnabled() && DEFLATE.equalsIgnoreCase(
+                UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst(PARAMETER));
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler,
+                                   Map<String, Object> attributes) {
+        if (requested(request)) {
+            attributes.put(SESSION_ATTRIBUTE, Boolean.TRUE);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler,
+                               Exception exception) {
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(event.getMessage().getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId != null && attributes != null && attributes.containsKey(SESSION_ATTRIBUTE)) {
+            sessions.add(sessionId);
+            log.debug("STOMP compression enabled for session {}", sessionId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!(message.getPayload() instanceof byte[] payload)
+                || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || !sessions.contains(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()))) {
+            return message;
+        }
+        if (payload.length < properties.getThreshold()) {
+            skipped.increment();
+            return message;
+        }
+
+        long start = THREADS.getCurrentThreadCpuTime();
+        byte[] compressed = deflate(payload, properties.getLevel());
+        cpu.record(THREADS.getCurrentThreadCpuTime() - start, TimeUnit.NANOSECONDS);
+        rawBytes.increment(payload.length);
+        compressedBytes.increment(compressed.length);
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setNativeHeader(CONTENT_ENCODING_HEADER, DEFLATE);
+        // application/octet-stream 的消息体以二进制帧发送
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        return MessageBuilder.createMessage(compressed, accessor.getMessageHeaders());
+    }
+
+    /**
+     * raw deflate 压缩(无 zlib 头)
+     */
+    public static byte[] deflate(byte[] data, int level) {
+        Deflater deflater = new Deflater(Math.clamp(level, Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION), true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
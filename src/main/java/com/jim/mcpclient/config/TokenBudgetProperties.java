@@ -0,0 +1,45 @@
+package com.jim.mcpclient.config;
+
+import com.jim.mcpclient.test.ToolStage;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 工具结果和执行结果的 token 预算
+ *
+ * 工具结果和工作模型的输出会原样进入格式化、验证、重试的提示词，一次大查询就可能占满上下文。
+ * 超出预算的结果在进入提示词之前被裁剪：JSON 数组和多行文本保留首尾的行，其他文本保留首尾的片段。
+ * token 数为本地估算值(见 {@link TokenEstimator})
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.token-budget")
+public class TokenBudgetProperties {
+
+    /**
+     * 关闭时不裁剪任何结果
+     */
+    private boolean enabled = true;
+
+    /**
+     * 单次工具调用返回给模型的结果预算
+     */
+    private int toolResult = 4000;
+
+    /**
+     * 各阶段提示词中执行结果的预算：FORMAT 为工作模型的输出，VALIDATION 为格式化后的结果，
+     * WORKER 为语义重试时附带的已完成工具调用结果。未配置的阶段不裁剪
+     */
+    private Map<ToolStage, Integer> stages = new EnumMap<>(ToolStage.class);
+
+    /**
+     * 裁剪时预算分配给开头部分的比例，其余留给结尾部分
+     */
+    private double headRatio = 0.7;
+}
@@ -0,0 +1,97 @@
+package com.jim.mcpclient.config;
+
+import java.util.Set;
+
+/**
+ * 本地 token 数估算
+ *
+ * 不调用模型的 countTokens 接口，按字符粗略估算：中日韩文字每个字符约 1 个 token，
+ * 其他字符(英文、数字、标点、JSON 结构)约 4 个字符 1 个 token。只用于预算判断，不要求精确
+ *
+ * @author James Smith
+ */
+public final class TokenEstimator {
+
+    /**
+     * 每个 token 的计量单位：中日韩字符 4 个单位，其他字符 1 个单位
+     */
+    private static final int UNITS_PER_TOKEN = 4;
+
+    private static final Set<Character.UnicodeBlock> CJK_BLOCKS = Set.of(
+            Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS,
+            Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A,
+            Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS,
+            Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION,
+            Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS,
+            Character.UnicodeBlock.HIRAGANA,
+            Character.UnicodeBlock.KATAKANA,
+            Character.UnicodeBlock.HANGUL_SYLLABLES);
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        long units = 0;
+        for (int i = 0; i < text.length(); i++) {
+            units += units(text.charAt(i));
+        }
+        return (int) ((units + UNITS_PER_TOKEN - 1) / UNITS_PER_TOKEN);
+    }
+
+    /**
+     * 不超过 tokens 的最长前缀长度
+     */
+    public static int prefixLength(CharSequence text, int tokens) {
+        long budget = (long) Math.max(0, tokens) * UNITS_PER_TOKEN;
+        int length = 0;
+        while (length < text.length()) {
+            budget -= units(text.charAt(length));
+            if (budget < 0) {
+                break;
+            }
+            length++;
+        }
+        // 不在代理对中间截断
+        if (length > 0 && length < text.length() && Character.isHighSurrogate(text.charAt(length - 1))) {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * 不超过 tokens 的最长后缀长度
+     */
+    public static int suffixLength(CharSequence text, int tokens) {
+        long budget = (long) Math.max(0, tokens) * UNITS_PER_TOKEN;
+        int length = 0;
+        while (length < text.length()) {
+            budget -= units(text.charAt(text.length() - 1 - length));
+            if (budget < 0) {
+                break;
+            }
+            length++;
+        }
+        if (length > 0 && length < text.length() && Character.isLowSurrogate(text.charAt(text.length() - length))) {
+            length--;
+        }
+        return length;
+    }
+
+    private static int units(char c) {
+        if (c < 0x2E80) {
+            return 1;
+        }
+        // 代理对按低位代理计一次，避免扩展区汉字被计为两个字符
+        if (Character.isHighSurrogate(c)) {
+            return 0;
+        }
+        if (Character.isLowSurrogate(c)) {
+            return UNITS_PER_TOKEN;
+        }
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+        return block != null && CJK_BLOCKS.contains(block) ? UNITS_PER_TOKEN : 1;
+    }
+}
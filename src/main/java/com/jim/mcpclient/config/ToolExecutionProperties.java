@@ -0,0 +1,29 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 工具调用执行配置
+ *
+ * 模型在一次回复中请求多个工具调用时，这些调用彼此独立，可以并行执行；
+ * 同一编排中同时执行的工具调用数不超过 maxConcurrency(推测执行的指令与当前指令共用)
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.tool-execution")
+public class ToolExecutionProperties {
+
+    /**
+     * 是否并行执行同一次回复中的多个工具调用，关闭时按顺序逐个执行
+     */
+    private boolean parallel = true;
+
+    /**
+     * 每个编排同时执行的工具调用上限
+     */
+    private int maxConcurrency = 4;
+}
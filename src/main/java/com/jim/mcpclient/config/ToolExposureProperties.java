@@ -0,0 +1,69 @@
+package com.jim.mcpclient.config;
+
+import com.jim.mcpclient.test.ToolStage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 各编排阶段的工具暴露配置
+ *
+ * 每个工具的 schema 都会占用提示词 token，格式化、验证等纯文本阶段不需要任何工具，
+ * 任务执行阶段只需要与当前指令相关的少数工具。
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.tools")
+public class ToolExposureProperties {
+
+    /**
+     * 各阶段的工具暴露方式，未配置的阶段使用 {@link #defaultProfile}
+     */
+    private Map<ToolStage, StageProfile> stages = defaultStages();
+
+    /**
+     * 未配置阶段的默认方式
+     */
+    private StageProfile defaultProfile = new StageProfile(Mode.NONE, 0);
+
+    public StageProfile profile(ToolStage stage) {
+        return stages.getOrDefault(stage, defaultProfile);
+    }
+
+    private static Map<ToolStage, StageProfile> defaultStages() {
+        Map<ToolStage, StageProfile> stages = new EnumMap<>(ToolStage.class);
+        stages.put(ToolStage.ANALYSIS, new StageProfile(Mode.RANKED, 8));
+        stages.put(ToolStage.WORKER, new StageProfile(Mode.RANKED, 5));
+        stages.put(ToolStage.CHAT, new StageProfile(Mode.ALL, 0));
+        return stages;
+    }
+
+    /**
+     * 工具暴露方式
+     */
+    public enum Mode {
+        NONE,    // 不暴露任何工具
+        ALL,     // 暴露全部工具
+        RANKED   // 按与提示词的相关度暴露前 topK 个工具
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StageProfile {
+
+        private Mode mode = Mode.NONE;
+
+        /**
+         * RANKED 模式下最多暴露的工具数量
+         */
+        private int topK = 5;
+    }
+}
@@ -0,0 +1,31 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * MCP 工具进度推送配置
+ *
+ * 工具调用时携带 progressToken，MCP server 的进度通知按 token 找到发起调用的用户，以 PROGRESS 消息推送。
+ * 每个用户在一个间隔内最多推送一次，期间同一工具调用的多次进度只保留最新一条
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.tool-progress")
+public class ToolProgressProperties {
+
+    /**
+     * 是否在工具调用时请求进度通知并推送给用户
+     */
+    private boolean enabled = true;
+
+    /**
+     * 同一用户两次推送之间的最小间隔
+     */
+    private Duration interval = Duration.ofMillis(500);
+}
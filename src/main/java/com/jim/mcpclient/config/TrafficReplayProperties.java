@@ -0,0 +1,39 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * 模型与 MCP 交互的录制/回放配置
+ *
+ * 录制模式把每次模型调用(包括流式片段的时间)和 MCP 工具交互追加写入日志文件；
+ * 回放模式不访问网络，按录制内容和节奏返回结果，用于离线对比编排改动的性能。
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.traffic")
+public class TrafficReplayProperties {
+
+    public enum Mode {
+        OFF,     // 不录制也不回放
+        RECORD,  // 调用真实模型和 MCP，并录制
+        REPLAY   // 只使用录制内容
+    }
+
+    private Mode mode = Mode.OFF;
+
+    /**
+     * 录制日志文件(JSON Lines)
+     */
+    private Path file = Path.of("traffic/traffic.jsonl");
+
+    /**
+     * 回放时的延迟倍率：1 为录制时的原始节奏，0.5 为两倍速，0 为不等待
+     */
+    private double timeScale = 1.0;
+}
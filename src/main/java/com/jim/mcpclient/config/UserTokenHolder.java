@@ -2,6 +2,8 @@ package com.jim.mcpclient.config;
 
 import org.springframework.stereotype.Component;
 
+import java.util.function.Supplier;
+
 /**
  * 用户 Token 存储器 - 使用 ThreadLocal 存储当前请求的用户 token
  * 
@@ -15,7 +17,7 @@ import org.springframework.stereotype.Component;
  * 注意事项:
  * - 必须在同一线程内调用 (WebSocket 默认如此)
  * - 使用 try-finally 确保清理,避免内存泄漏
- * - 如果使用异步处理,需要使用 TransmittableThreadLocal
+ * - 如果使用异步处理,需要使用 TransmittableThreadLocal，或在执行线程上通过 callWithToken() 设置
  */
 @Component
 public class UserTokenHolder {
@@ -48,4 +50,29 @@ public class UserTokenHolder {
     public static void clear() {
         TOKEN_HOLDER.remove();
     }
+
+    /**
+     * 在当前线程上以指定 token 执行,结束后恢复原来的 token
+     *
+     * 工具调用可能在其他线程上执行(并行工具调用、可取消的 MCP 请求),需要把 token 带到执行线程上
+     *
+     * @param token  用户 token,为 null 时沿用当前线程的 token
+     * @param action 要执行的操作
+     */
+    public static <T> T callWithToken(String token, Supplier<T> action) {
+        String previous = TOKEN_HOLDER.get();
+        if (token == null) {
+            return action.get();
+        }
+        TOKEN_HOLDER.set(token);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                TOKEN_HOLDER.remove();
+            } else {
+                TOKEN_HOLDER.set(previous);
+            }
+        }
+    }
 }
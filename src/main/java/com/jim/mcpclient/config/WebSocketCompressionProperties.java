@@ -0,0 +1,43 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * /ws 端点的压缩配置
+ *
+ * 两种方式：
+ * - permessage-deflate：由 Tomcat 在 WebSocket 层压缩，客户端(浏览器)握手时自动协商，
+ *   但 Tomcat 固定使用默认压缩级别并压缩每一帧，包括很小的 CHUNK 帧
+ * - STOMP 消息体压缩：客户端在握手地址上带 ?compression=deflate 时启用，只压缩不小于 threshold 的消息体，
+ *   压缩级别可配置；压缩后的消息体为 raw deflate 数据，以二进制帧发送并带有 content-encoding: deflate 头。
+ *   启用后该连接不再协商 permessage-deflate，避免重复压缩
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.websocket.compression")
+public class WebSocketCompressionProperties {
+
+    /**
+     * 是否允许协商 permessage-deflate
+     */
+    private boolean permessageDeflate = true;
+
+    /**
+     * 是否允许客户端启用 STOMP 消息体压缩
+     */
+    private boolean enabled = true;
+
+    /**
+     * 消息体不小于该字节数时才压缩
+     */
+    private int threshold = 1024;
+
+    /**
+     * 压缩级别，1(最快)到 9(压缩率最高)
+     */
+    private int level = 6;
+}
@@ -1,15 +1,19 @@
 package com.jim.mcpclient.config;
 
+import com.jim.mcpclient.test.SessionRegistry;
+import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.SimpleBrokerRegistration;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
@@ -32,6 +36,16 @@ public class WebSocketConfigWithLogging implements WebSocketMessageBrokerConfigu
 
     @Autowired
     private RawWebSocketHandler rawWebSocketHandler;
+    @Autowired
+    private WebSocketCompressionProperties compressionProperties;
+    @Autowired
+    private StompCompression stompCompression;
+    @Autowired
+    private SessionProperties sessionProperties;
+    @Autowired
+    private SessionRegistry sessionRegistry;
+    @Resource(name = "webSocketTaskScheduler")
+    private TaskScheduler webSocketTaskScheduler;
 
     /**
      * 注册原始 WebSocket 处理器（用于调试）
@@ -46,16 +60,23 @@ public class WebSocketConfigWithLogging implements WebSocketMessageBrokerConfigu
 
     /**
      * 配置消息代理
+     * 开启心跳后，协商了心跳的客户端在约定时间内没有任何帧时由代理断开
      */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
+        SimpleBrokerRegistration broker = config.enableSimpleBroker("/topic", "/queue");
+        long heartbeat = sessionProperties.getHeartbeat().toMillis();
+        if (heartbeat > 0) {
+            broker.setHeartbeatValue(new long[]{heartbeat, heartbeat})
+                    .setTaskScheduler(webSocketTaskScheduler);
+        }
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
     }
 
     /**
      * 注册STOMP端点
+     * 压缩的协商见 {@link WebSocketCompressionProperties}
      */
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
@@ -63,6 +84,8 @@ public class WebSocketConfigWithLogging implements WebSocketMessageBrokerConfigu
 
         // 原生 WebSocket 端点
         registry.addEndpoint("/ws")
+                .setHandshakeHandler(new CompressionHandshakeHandler(compressionProperties, stompCompression))
+                .addInterceptors(stompCompression)
                 .setAllowedOriginPatterns("*");
 
         log.info("✅ STOMP 端点注册完成: /ws");
@@ -79,6 +102,8 @@ public class WebSocketConfigWithLogging implements WebSocketMessageBrokerConfigu
         registration.setMessageSizeLimit(128 * 1024);  // 128KB
         registration.setSendBufferSizeLimit(512 * 1024);  // 512KB
         registration.setSendTimeLimit(20 * 1000);  // 20秒
+        // 登记连接，回收空闲会话
+        registration.addDecoratorFactory(sessionRegistry);
 
         log.info("✅ WebSocket 传输配置完成");
     }
@@ -112,7 +137,7 @@ public class WebSocketConfigWithLogging implements WebSocketMessageBrokerConfigu
     }
 
     /**
-     * 配置客户端出站通道，添加拦截器用于调试
+     * 配置客户端出站通道，添加拦截器用于调试，最后压缩发往启用了压缩的连接的消息体
      */
     @Override
     public void configureClientOutboundChannel(ChannelRegistration registration) {
@@ -134,6 +159,6 @@ public class WebSocketConfigWithLogging implements WebSocketMessageBrokerConfigu
                 }
                 return message;
             }
-        });
+        }, stompCompression);
     }
 }
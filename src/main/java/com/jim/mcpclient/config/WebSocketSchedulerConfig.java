@@ -0,0 +1,25 @@
+package com.jim.mcpclient.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * STOMP 心跳和空闲会话回收使用的调度器
+ *
+ * 单独定义，避免 {@link WebSocketConfigWithLogging} 与使用调度器的组件之间循环依赖
+ *
+ * @author James Smith
+ */
+@Configuration
+public class WebSocketSchedulerConfig {
+
+    @Bean(name = "webSocketTaskScheduler")
+    public ThreadPoolTaskScheduler webSocketTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("ws-heartbeat-");
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
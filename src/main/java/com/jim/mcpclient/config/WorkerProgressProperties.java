@@ -0,0 +1,35 @@
+package com.jim.mcpclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 任务执行过程推送配置
+ *
+ * 工作模型的输出片段会先缓冲，按时间间隔或片段数量合并后再推送，避免逐 token 发送刷屏
+ *
+ * @author James Smith
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "agent.worker-progress")
+public class WorkerProgressProperties {
+
+    /**
+     * 是否向客户端推送任务执行过程
+     */
+    private boolean enabled = true;
+
+    /**
+     * 两次推送之间的最小间隔
+     */
+    private Duration flushInterval = Duration.ofMillis(250);
+
+    /**
+     * 单次推送最多合并的片段数量，达到后立即推送
+     */
+    private int maxBatchSize = 64;
+}
@@ -12,7 +12,7 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class ChatResponse {
     
     /**
@@ -26,7 +26,7 @@ public class ChatResponse {
     private String content;
     
     /**
-     * 消息类型：start, chunk, end, error
+     * 消息类型：start, chunk, end, error, worker, progress, cancelled
      */
     private MessageType type;
     
@@ -44,6 +44,36 @@ public class ChatResponse {
      * 时间戳
      */
     private Long timestamp;
+
+    /**
+     * 任务执行过程事件（仅 WORKER 消息有值）
+     */
+    private WorkerEvent event;
+
+    /**
+     * 工具名称（仅工具调用事件有值）
+     */
+    private String toolName;
+
+    /**
+     * 工具调用耗时，单位毫秒（仅 TOOL_END 事件有值）
+     */
+    private Long elapsedMillis;
+
+    /**
+     * 工具已完成的进度（仅 PROGRESS 消息有值，content 为进度说明）
+     */
+    private Double progress;
+
+    /**
+     * 工具进度的总量，MCP server 未提供时为空（仅 PROGRESS 消息有值）
+     */
+    private Double total;
+
+    /**
+     * 同一编排内的消息序号，从 0 开始递增；重复请求挂载到同一编排时会收到重放的消息，可按序号去重
+     */
+    private Long sequence;
     
     /**
      * 消息类型枚举
@@ -52,6 +82,19 @@ public class ChatResponse {
         START,   // 开始流式传输
         CHUNK,   // 内容片段
         END,     // 结束流式传输
-        ERROR    // 错误
+        ERROR,   // 错误
+        WORKER,  // 任务执行过程（不属于最终答案）
+        PROGRESS, // MCP 工具上报的执行进度
+        CANCELLED // 已取消（结束消息，不会再有 END）
+    }
+
+    /**
+     * 任务执行过程事件枚举
+     */
+    public enum WorkerEvent {
+        TOKEN,       // 工作模型输出的文本片段
+        TOOL_START,  // 开始调用工具
+        TOOL_END,    // 工具调用完成
+        TOOL_ERROR   // 工具调用失败
     }
 }
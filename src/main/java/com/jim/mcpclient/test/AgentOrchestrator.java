@@ -1,5 +1,6 @@
 package com.jim.mcpclient.test;
 
+import com.jim.mcpclient.config.IncrementalJsonArrayParser;
 import com.jim.mcpclient.config.UserTokenHolder;
 import com.jim.mcpclient.model.ChatRequest;
 import com.jim.mcpclient.model.ChatResponse;
@@ -7,13 +8,32 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.ai.google.genai.GoogleGenAiChatOptions;
+import org.springframework.ai.tool.ToolCallback;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
-
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * @author James Smith
@@ -27,243 +47,244 @@ public class AgentOrchestrator {
     @Resource
     private ChatClient userChatClient;
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private SingleFlight singleFlight;
+    @Autowired
+    private WorkerProgressPublisher workerProgressPublisher;
+    @Autowired
+    private ToolProgressRouter toolProgressRouter;
+    @Autowired
+    private ParallelToolCallingManager toolCallingManager;
+    @Autowired
+    private ToolSelector toolSelector;
+    @Autowired
+    private PromptCacheProvider promptCacheProvider;
+    @Autowired
+    private CancellationRegistry cancellationRegistry;
+    @Autowired
+    private OrchestrationJournal orchestrationJournal;
+    @Autowired
+    private ChatMemory chatMemory;
+    @Autowired
+    private RetryPolicy retryPolicy;
+    @Autowired
+    private ModelRouter modelRouter;
+    @Autowired
+    private Speculation speculation;
+    @Autowired
+    private FastPathClassifier fastPathClassifier;
+    @Autowired
+    private ResultShaper resultShaper;
+    @Autowired
+    private BlobStore blobStore;
+    @Autowired
+    private ExecutionLanes executionLanes;
 
+    /**
+     * 推测执行使用的会话(messageId + 后缀)，同一用户的多个编排互不影响
+     */
+    private static final String SPECULATION_CONVERSATION_SUFFIX = "#speculation";
+
+    /**
+     * 推测执行时后台验证使用的会话(messageId + 后缀)
+     */
+    private static final String VALIDATION_CONVERSATION_SUFFIX = "#validation";
+
+    /**
+     * 在指定通道中执行 {@link #processUserInput}，需要先通过 {@link SingleFlight#join} 登记。
+     * 通道过载时拒绝该编排；执行出错时推送 ERROR 给挂载在该编排上的全部请求
+     */
+    public void submit(ExecutionLane lane, String userId, ChatRequest request) {
+        String messageId = request.getMessageId();
+        executionLanes.submit(lane, () -> {
+            try {
+                processUserInput(userId, request, lane);
+            } catch (Exception e) {
+                log.error("Orchestration {} of user {} failed", messageId, userId, e);
+                sendMessage(userId, ChatResponse.builder()
+                        .messageId(messageId)
+                        .type(ChatResponse.MessageType.ERROR)
+                        .error(e.getMessage())
+                        .isFinal(true)
+                        .timestamp(System.currentTimeMillis())
+                        .build());
+            } finally {
+                UserTokenHolder.clear();
+            }
+        }, () -> singleFlight.reject(userId, messageId, ExecutionLanes.OVERLOADED));
+    }
+
+    /**
+     * 处理用户输入
+     *
+     * 编排登记到 {@link CancellationRegistry}，被取消时在阶段之间停止，
+     * 截断正在进行的流式调用，并发送 CANCELLED 结束消息。
+     * 所有消息经 {@link SingleFlight} 推送给挂载在该编排上的全部请求。
+     * 各阶段进度写入 {@link OrchestrationJournal}，相同 messageId 重新提交时从中断处继续。
+     * 编排期间转存到 {@link BlobStore} 的工具结果在最终回答流结束后释放，会话记忆或日志中仍引用的保留到 TTL
+     */
     public void processUserInput(String userId, ChatRequest request) {
+        processUserInput(userId, request, ExecutionLane.ORCHESTRATION);
+    }
 
-        String token = request.getToken();
+    /**
+     * 处理用户输入，编排中的模型调用按 lane 所属通道的名额排队
+     */
+    public void processUserInput(String userId, ChatRequest request, ExecutionLane lane) {
         String messageId = request.getMessageId() != null ? request.getMessageId() : UUID.randomUUID().toString();
+        Cancellation cancellation = cancellationRegistry.register(messageId, userId);
+        BlobStore.Scope blobs = blobStore.newScope();
+        try {
+            // 正常结束时 blobs 由最终回答流释放
+            orchestrate(userId, messageId, request, lane, cancellation, blobs);
+        } catch (RuntimeException e) {
+            releaseBlobs(userId, messageId, blobs);
+            cancellationRegistry.remove(cancellation);
+            if (!cancellation.isCancelled()) {
+                throw e;
+            }
+            log.info("Orchestration {} cancelled", messageId);
+            sendCancelledMessage(userId, messageId);
+        }
+    }
 
-        // 第一步: 使用 userChatClient 处理用户输入,允许使用工具
-        String userAnalysisResult = userChatClient.prompt()
-                .toolContext(Map.of("token", token))
-                .user(request.getMessage())
-                .system("""
-                        任务分析
-                        
-                        你的职责：
-                        分析用户输入,理解用户意图。你可以使用 MCP 工具来获取必要的上下文信息。
-                        
-                        分析要求：
-                        1. 理解用户的真实需求
-                        2. 如需要,可以使用 MCP 工具获取相关信息
-                        3. 输出详细的分析结果和建议的执行步骤
-                        """)
-                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, userId))
-                .call()
-                .content();
-
-        log.info("User analysis result: {}", userAnalysisResult);
+    private void orchestrate(String userId, String messageId, ChatRequest request, ExecutionLane lane,
+                             Cancellation cancellation, BlobStore.Scope blobs) {
+        Run run = new Run(userId, messageId, request.getToken(), lane, cancellation, retryPolicy.newBudget(), blobs,
+                toolCallingManager.newPermits());
 
-        // 第二步: 将分析结果转换为结构化的任务指令(不使用工具)
-        var orchestratorTask = userChatClient.prompt()
-                .user(String.format("""
-                        基于以下分析结果,生成可执行的任务指令列表。
-                        
-                        分析结果：
-                        %s
-                        
-                        任务拆分规则：
-                        1. 将需求拆分为一个或多个具体的任务指令
-                        2. 每个任务指令应该清晰、独立、可执行
-                        3. 任务指令之间按逻辑顺序排列
-                        4. 简单请求可以是一个任务指令,复杂请求应拆分为多个任务指令
-                        
-                        工具使用要求：
-                        - 在任务指令中明确提示优先使用 MCP 工具
-                        
-                        输出要求：
-                        - 每个任务指令必须清晰、具体、可执行
-                        - 每个验收标准必须明确、可量化验证
-                        - 确保指令之间逻辑连贯,无矛盾
-                        """, userAnalysisResult))
-                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, userId))
-                .call()
-                .entity(AIOrchestratorTask.class);
-
-        log.info("Orchestrator generated task: {}", orchestratorTask);
-
-        if (orchestratorTask == null || orchestratorTask.taskInstructions() == null || orchestratorTask.taskInstructions().isEmpty()) {
-            // 无法生成任务指令或任务指令为空，发送错误消息给用户
-            sendEndMessage(userId, messageId, "无法生成任务指令，请重试。");
+        run.checkpoint = orchestrationJournal.load(userId, messageId);
+        if (!run.checkpoint.isEmpty()) {
+            log.info("Resuming orchestration {} from journal: plan complete {}, {} instructions done",
+                    messageId, run.checkpoint.planComplete(), run.checkpoint.results().size());
+        }
+        // 简单消息走快速通道直接回答，恢复中的编排不再分类
+        if (run.checkpoint.isEmpty() && fastPathClassifier.classify(request.getMessage()) == FastPathClassifier.Route.DIRECT) {
+            answerDirectly(userId, messageId, request, lane, cancellation, blobs);
             return;
         }
 
-        // 获取任务指令列表
-        List<AIOrchestratorTask.TaskInstruction> taskInstructions = orchestratorTask.taskInstructions();
-
-        taskInstructions.forEach(instruction -> {
-            log.info("Processing instruction: {}", instruction);
-            String validation = instruction.validation();
-            String taskInstr = instruction.instruction();
-
-            // 最大重试次数
-            int maxRetries = 1;
-
-            for (int retryCount = 0; retryCount <= maxRetries; retryCount++) {
-                if (retryCount > 0) {
-                    log.info("Retrying instruction (attempt {}/{}): {}", retryCount + 1, maxRetries + 1, taskInstr);
-                }
-
-                // 使用 workClient 执行任务指令
-                AIWorkerResponse aiWorkerResponse = doTask(userId, taskInstr, token);
-
-                if (aiWorkerResponse == null) {
-                    log.error("Worker response is null for instruction: {} (attempt {}/{})", taskInstr, retryCount + 1, maxRetries + 1);
-                    if (retryCount == maxRetries) {
-                        log.error("Max retries reached for null response. Skipping instruction: {}", taskInstr);
-                        return;
-                    }
-
-                    // 发送错误消息给用户
-                    sendMessage(userId, messageId, "任务执行失败，正在重试...");
-
-                    continue;
-                }
-
-                if (!aiWorkerResponse.success()) {
-                    log.error("Task not completed for instruction: {} (attempt {}/{})", taskInstr, retryCount + 1, maxRetries + 1);
-                    if (retryCount == maxRetries) {
-                        log.error("Max retries reached for failed task. Skipping instruction: {}", taskInstr);
-                        return;
-                    }
-
-                    // 发送错误消息给用户
-                    sendMessage(userId, messageId, "任务执行未完成，正在重试...");
-
-                    continue;
-                }
+        // 会话记忆已丢失(例如节点重启)时，用日志中已完成指令的结果补回，最终整合才能看到这些结果
+        run.restoreMemory = !run.checkpoint.isEmpty() && chatMemory.get(userId).isEmpty();
 
-                // 执行成功，并且不需要验证，直接继续下一个任务指令
-                if (!instruction.needValidation()) {
-                    log.info("No validation needed for instruction: {}", taskInstr);
-
-                    // 发送任务结果给用户
-                    sendMessage(userId, messageId, aiWorkerResponse.result());
-                    return;
-                }
+        // 第一步: 使用 userChatClient 处理用户输入,允许使用工具
+        String userAnalysisResult = run.checkpoint.analysis();
+        if (userAnalysisResult == null) {
+            userAnalysisResult = withTransportRetry(ToolStage.ANALYSIS, run,
+                    () -> prompt(userChatClient, ToolStage.ANALYSIS, lane, userId, request.getMessage(),
+                            PromptTemplates.ANALYSIS.render(Map.of("message", request.getMessage())))
+                            .toolContext(toolContext(run.token, Map.of(Cancellation.CONTEXT_KEY, cancellation,
+                                    BlobStore.CONTEXT_KEY, run.blobs,
+                                    ToolProgressRouter.CONTEXT_KEY, toolProgressRouter.tracker(userId, messageId),
+                                    ParallelToolCallingManager.CONTEXT_KEY, run.toolPermits)))
+                            .call()
+                            .content());
+
+            log.info("User analysis result: {}", userAnalysisResult);
+            orchestrationJournal.analysis(userId, messageId, userAnalysisResult);
+        }
+        cancellation.throwIfCancelled();
 
-                // 根据 validation 验证任务结果是否符合要求
-                String result = aiWorkerResponse.result();
-                
-                ValidationResp validationResult = userChatClient.prompt()
-                        .user(String.format("""
-                                任务结果验证
-                                
-                                你的职责：
-                                严格验证任务执行结果是否符合验收标准。
-                                
-                                验收标准：
-                                %s
-                                
-                                任务执行结果：
-                                %s
-                                
-                                验证要求：
-                                1. 逐条对照验收标准检查结果
-                                2. 必须所有标准都满足才算通过
-                                3. 如不符合,明确指出哪些标准未满足
-                                
-                                输出说明：
-                                - 如果通过：返回 passed = true
-                                - 如果不通过：返回 passed = false,并在 reason 中详细说明未满足的标准和具体原因
-                                """, validation, result))
-                        .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, userId))
-                        .call()
-                        .entity(ValidationResp.class);
-                
-                log.info("Validation result: {}", validationResult);
-                
-                if (validationResult == null) {
-                    log.error("Validation result is null for instruction: {} (attempt {}/{})", taskInstr, retryCount + 1, maxRetries + 1);
-                    if (retryCount == maxRetries) {
-                        log.error("Max retries reached for null validation result. Skipping instruction: {}", taskInstr);
-
-                        // 发送验证失败消息给用户
-                        sendMessage(userId, messageId, "任务验证失败,未收到验证结果,已跳过该任务指令。");
-                        return;
-                    }
+        if (run.checkpoint.planComplete()) {
+            // 任务指令已全部生成，按日志中的指令继续，跳过已完成的指令
+            List<AIOrchestratorTask.TaskInstruction> instructions = run.checkpoint.instructions();
+            for (int index = 0; index < instructions.size(); index++) {
+                resumeInstruction(run, index, instructions.get(index));
+            }
+            settlePending(run);
+        } else if (!plan(run, userAnalysisResult)) {
+            releaseBlobs(userId, messageId, blobs);
+            return;
+        }
+        cancellation.throwIfCancelled();
 
-                    // 发送验证错误消息给用户
-                    sendMessage(userId, messageId, "任务验证失败,正在重试...");
+        synthesize(userId, messageId, request, lane, cancellation, blobs);
+    }
 
-                    continue;
-                }
+    /**
+     * 生成并执行任务指令，每条指令先写入日志再执行
+     *
+     * @return 没有生成任何任务指令时返回 false
+     */
+    private boolean plan(Run run, String userAnalysisResult) {
 
-                if (validationResult == null || !validationResult.passed()) {
-                    String failureReason = validationResult == null ? "No validation result" : validationResult.reason();
-                    log.error("Validation failed for instruction: {}. Reason: {} (attempt {}/{})", taskInstr, failureReason, retryCount + 1, maxRetries + 1);
+        // 第二步: 将分析结果转换为结构化的任务指令(不使用工具)
+        // 以流式方式生成任务指令,每条指令的 JSON 对象闭合后立即开始执行,无需等待整个计划生成完毕
+        IncrementalJsonArrayParser<AIOrchestratorTask.TaskInstruction> planParser =
+                new IncrementalJsonArrayParser<>(AIOrchestratorTask.TaskInstruction.class);
 
-                    if (retryCount == maxRetries) {
-                        log.error("Max retries reached for validation failure. Skipping instruction: {}", taskInstr);
+        Flux<String> planChunks = prompt(userChatClient, ToolStage.PLANNING, run.lane, run.userId, userAnalysisResult,
+                PromptTemplates.PLANNING.render(Map.of("analysis", userAnalysisResult)))
+                .stream()
+                .content()
+                .takeUntilOther(run.cancellation.whenCancelled());
+
+        int instructionCount = 0;
+        for (AIOrchestratorTask.TaskInstruction instruction : planChunks.concatMapIterable(planParser::feed).toIterable()) {
+            int index = instructionCount++;
+            log.info("Plan instruction #{} received while plan is still streaming", instructionCount);
+            orchestrationJournal.instruction(run.userId, run.messageId, index, instruction);
+            resumeInstruction(run, index, instruction);
+        }
+        run.cancellation.throwIfCancelled();
+
+        if (instructionCount == 0) {
+            // 增量解析没有得到任何指令时,尝试对完整输出做一次整体解析
+            AIOrchestratorTask orchestratorTask = convert(PromptTemplates.PLAN_CONVERTER, planParser.text());
+            log.info("Orchestrator generated task: {}", orchestratorTask);
+
+            if (orchestratorTask == null || orchestratorTask.taskInstructions() == null || orchestratorTask.taskInstructions().isEmpty()) {
+                // 无法生成任务指令或任务指令为空，发送错误消息给用户
+                cancellationRegistry.remove(run.cancellation);
+                orchestrationJournal.complete(run.userId, run.messageId);
+                sendEndMessage(run.userId, run.messageId, "无法生成任务指令，请重试。");
+                return false;
+            }
 
-                        // 发送验证失败消息给用户
-                        sendMessage(userId, messageId, String.format("任务验证失败，原因：%s，已跳过该任务指令。", failureReason));
-                        return;
-                    }
+            List<AIOrchestratorTask.TaskInstruction> instructions = orchestratorTask.taskInstructions();
+            for (int index = 0; index < instructions.size(); index++) {
+                orchestrationJournal.instruction(run.userId, run.messageId, index, instructions.get(index));
+                resumeInstruction(run, index, instructions.get(index));
+            }
+        }
+        settlePending(run);
+        run.cancellation.throwIfCancelled();
+        orchestrationJournal.planComplete(run.userId, run.messageId);
+        return true;
+    }
 
-                    // 根据验证失败的原因，调整任务指令，重新执行
-                    taskInstr = String.format("""
-                            任务重试执行
-                            
-                            原始任务指令：
-                            %s
-                            
-                            【重要】上次执行失败信息：
-                            失败原因：%s
-                            
-                            重试要求：
-                            1. 仔细分析上次失败的原因
-                            2. 调整执行策略，避免重复相同错误
-                            3. 确保本次执行结果能满足所有验收标准
-                            4. 优先使用 MCP 工具完成任务
-                            
-                            注意事项：
-                            - 这是最后一次重试机会
-                            - 必须严格满足验收标准
-                            - 如有疑问，采用保守稳妥的方案
-                            """, instruction.instruction(), failureReason);
-                    log.info("Adjusted instruction for retry: {}", taskInstr);
-
-                    // 发送重试消息给用户
-                    sendMessage(userId, messageId, "任务验证未通过，正在调整后重试...");
-                    continue;
-                }
+    /**
+     * 所有任务指令处理完毕，流式返回最终结果给用户
+     */
+    private void synthesize(String userId, String messageId, ChatRequest request, ExecutionLane lane,
+                            Cancellation cancellation, BlobStore.Scope blobs) {
+        streamAnswer(userId, messageId, cancellation, blobs, "任务已完成，以上是最终结果。",
+                prompt(userChatClient, ToolStage.SYNTHESIS, lane, userId, request.getMessage(),
+                        PromptTemplates.SYNTHESIS.render(Map.of("request", request.getMessage())))
+                        .toolContext(toolContext(request.getToken(), Map.of(Cancellation.CONTEXT_KEY, cancellation,
+                                ToolProgressRouter.CONTEXT_KEY, toolProgressRouter.tracker(userId, messageId)))));
+    }
 
-                log.info("Instruction completed and validated: {}", taskInstr);
-                // 任务指令执行并验证通过，继续下一个任务指令
-                sendMessage(userId, messageId, result);
-                return;
-            }
-        });
+    /**
+     * 快速通道：简单消息一次流式调用直接回答，不进入多阶段编排
+     */
+    private void answerDirectly(String userId, String messageId, ChatRequest request, ExecutionLane lane,
+                                Cancellation cancellation, BlobStore.Scope blobs) {
+        log.info("Answering message {} directly via fast path", messageId);
+        streamAnswer(userId, messageId, cancellation, blobs, null,
+                prompt(userChatClient, ToolStage.CHAT, lane, userId, request.getMessage(),
+                        PromptTemplates.DIRECT.render(Map.of("message", request.getMessage())))
+                        .toolContext(toolContext(request.getToken(), Map.of(Cancellation.CONTEXT_KEY, cancellation,
+                                ToolProgressRouter.CONTEXT_KEY, toolProgressRouter.tracker(userId, messageId)))));
+    }
 
-        // 所有任务指令处理完毕，返回最终结果给用户
-        userChatClient.prompt("""
-                        任务结果整合
-                        
-                        你的职责：
-                        将所有任务的执行结果整合为完整的最终答案。
-                        
-                        整合要求：
-                        1. 汇总所有任务的执行结果
-                        2. 确保答案完整、连贯、易于理解
-                        3. 突出重点信息和关键结论
-                        4. 按照逻辑顺序组织内容
-                        
-                        输出格式：
-                        - 使用清晰的结构化格式
-                        - 如有多个部分，使用标题分隔
-                        - 重要信息使用列表突出显示
-                        
-                        注意事项：
-                        - 直接返回给用户，语言要专业且友好
-                        - 避免遗漏任何重要的任务结果
-                        - 如有失败的任务，需要说明情况
-                        """)
-                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, userId))
-                .toolContext(Map.of("token", request.getToken()))
-                .stream()
+    /**
+     * 流式发送最终回答，结束后发送结束消息(endMessage 为空时只发送 END)，并释放编排转存内容的引用
+     */
+    private void streamAnswer(String userId, String messageId, Cancellation cancellation, BlobStore.Scope blobs,
+                              String endMessage, ChatClient.ChatClientRequestSpec spec) {
+        spec.stream()
                 .content()
+                .takeUntilOther(cancellation.whenCancelled())
                 .doOnNext(chunk -> {
                     // 发送每个内容块
                     sendMessage(userId, ChatResponse.builder()
@@ -274,8 +295,15 @@ public class AgentOrchestrator {
                             .timestamp(System.currentTimeMillis())
                             .build());
                 })
-                // 流式传输完成,发送结束消息
-                .doOnComplete(() -> sendEndMessage(userId, messageId, "任务已完成，以上是最终结果。"))
+                // 流式传输完成,发送结束消息;被取消时流在取消信号处截断,发送取消消息
+                .doOnComplete(() -> {
+                    if (cancellation.isCancelled()) {
+                        sendCancelledMessage(userId, messageId);
+                    } else {
+                        orchestrationJournal.complete(userId, messageId);
+                        sendEndMessage(userId, messageId, endMessage);
+                    }
+                })
                 .doOnError(error -> {
                     // 发送错误消息
                     sendMessage(userId, ChatResponse.builder()
@@ -287,12 +315,478 @@ public class AgentOrchestrator {
                             .build());
                 })
                 .doFinally(_ -> {
+                    // 最终回答已写入会话记忆，此时才能判断哪些转存内容仍被引用
+                    releaseBlobs(userId, messageId, blobs);
+                    cancellationRegistry.remove(cancellation);
                     // ⚠️ 重要: 清理 ThreadLocal,防止内存泄漏
                     UserTokenHolder.clear();
                 })
                 .subscribe();
+    }
+
+    /**
+     * 释放编排转存内容的引用；handle 仍出现在会话记忆(下一轮对话可读取)或未删除的编排日志(恢复时可读取)中的内容保留到 TTL
+     */
+    private void releaseBlobs(String userId, String messageId, BlobStore.Scope blobs) {
+        if (blobs.handles().isEmpty()) {
+            return;
+        }
+        List<String> retained = new ArrayList<>(orchestrationJournal.lines(userId, messageId));
+        chatMemory.get(userId).forEach(message -> retained.add(message.getText()));
+        blobs.close(retained);
+    }
+
+    /**
+     * 执行任务指令，日志中已完成的指令不再执行，只重发当时的结果消息
+     */
+    private void resumeInstruction(Run run, int index, AIOrchestratorTask.TaskInstruction instruction) {
+        OrchestrationJournal.Entry completed = run.checkpoint.result(index, instruction);
+        if (completed == null) {
+            executeInstruction(run, new InstructionRun(index, instruction));
+            return;
+        }
+
+        // 保持结果消息的顺序
+        settlePending(run);
+        log.info("Skip instruction #{} completed before resume: {}", index + 1, instruction.instruction());
+        if (run.restoreMemory && completed.workerResponse() != null && completed.workerResponse().result() != null) {
+            chatMemory.add(run.userId, new AssistantMessage(completed.workerResponse().result()));
+        }
+        if (completed.message() != null) {
+            sendMessage(run.userId, run.messageId, completed.message());
+        }
+    }
+
+    /**
+     * 执行单条任务指令,包含失败重试与结果验证
+     *
+     * 模型调用的传输失败按 {@link RetryPolicy} 退避后原样重新调用；结果为空、执行未完成或验证未通过时，
+     * 带上失败原因和已完成的工具调用结果重新执行。两类重试都消耗本次编排的重试预算。
+     *
+     * 开启推测执行时，上一条指令的验证尚未返回，本条指令的第一次执行与之并行：
+     * 验证通过则直接使用本次执行结果；验证未通过则丢弃本次执行结果，先重试上一条指令，再从头执行本条指令。
+     * 推测执行写入以当前会话记忆为起点的独立会话，验证通过后才把新增的消息并入用户会话；
+     * 回滚时丢弃该会话，同一用户的其他编排或 /app/chat 同时写入的记忆不受影响
+     */
+    private void executeInstruction(Run run, InstructionRun current) {
+        InstructionRun pending = run.pending;
+        if (pending == null) {
+            processInstruction(run, current, null);
+            return;
+        }
+
+        run.pending = null;
+        String conversationId = run.messageId + SPECULATION_CONVERSATION_SUFFIX;
+        List<Message> memorySnapshot = chatMemory.get(run.userId);
+        if (!memorySnapshot.isEmpty()) {
+            chatMemory.add(conversationId, memorySnapshot);
+        }
+        long start = System.currentTimeMillis();
+        AIWorkerResponse speculative;
+        List<Message> speculativeMemory;
+        try {
+            speculative = work(run, current, conversationId);
+            speculativeMemory = addedMessages(memorySnapshot, chatMemory.get(conversationId));
+        } finally {
+            chatMemory.clear(conversationId);
+        }
+        long workerMillis = System.currentTimeMillis() - start;
+
+        ValidationResp validationResult = awaitValidation(run, pending);
+        if (validationResult != null && validationResult.passed()) {
+            long validationMillis = pending.validationEnd - pending.validationStart;
+            speculation.committed(Duration.ofMillis(Math.min(workerMillis, validationMillis)));
+            if (!speculativeMemory.isEmpty()) {
+                chatMemory.add(run.userId, speculativeMemory);
+            }
+            processInstruction(run, current, speculative);
+            return;
+        }
+
+        log.info("Speculative execution of instruction #{} rolled back, validation of #{} did not pass",
+                current.index + 1, pending.index + 1);
+        speculation.rolledBack(Duration.ofMillis(workerMillis));
+        run.rollbacks++;
+
+        if (!handleValidation(run, pending, validationResult)) {
+            pending.retryCount++;
+            processInstruction(run, pending, null);
+        }
+        executeInstruction(run, new InstructionRun(current.index, current.instruction));
+    }
+
+    /**
+     * 会话中不属于 snapshot 的消息，即 snapshot 之后新增的消息(按对象判断，不受窗口裁剪旧消息的影响)
+     */
+    private static List<Message> addedMessages(List<Message> snapshot, List<Message> messages) {
+        Set<Message> existing = Collections.newSetFromMap(new IdentityHashMap<>());
+        existing.addAll(snapshot);
+        return messages.stream().filter(message -> !existing.contains(message)).toList();
+    }
+
+    /**
+     * 执行任务指令直到完成、放弃或交给推测执行等待验证
+     *
+     * @param workerResponse 已得到的第一次执行结果(推测执行)，没有时为 null
+     */
+    private void processInstruction(Run run, InstructionRun current, AIWorkerResponse workerResponse) {
+        log.info("Processing instruction: {}", current.instruction);
+
+        // 最大重试次数
+        int maxRetries = retryPolicy.semanticRetries();
+
+        for (; current.retryCount <= maxRetries; current.retryCount++) {
+            run.cancellation.throwIfCancelled();
+            if (current.retryCount > 0) {
+                log.info("Retrying instruction (attempt {}/{}): {}", current.retryCount + 1, maxRetries + 1, current.taskInstr);
+            }
+
+            // 使用 workClient 执行任务指令
+            AIWorkerResponse aiWorkerResponse = workerResponse != null ? workerResponse : work(run, current);
+            workerResponse = null;
+            run.cancellation.throwIfCancelled();
+
+            if (aiWorkerResponse == null) {
+                log.error("Worker response is null for instruction: {} (attempt {}/{})", current.taskInstr, current.retryCount + 1, maxRetries + 1);
+                if (!trySemanticRetry(current.retryCount, maxRetries, run.retryBudget)) {
+                    log.error("Max retries reached for null response. Skipping instruction: {}", current.taskInstr);
+                    finishInstruction(run, current, null, null, null);
+                    return;
+                }
+
+                // 发送错误消息给用户
+                sendMessage(run.userId, run.messageId, "任务执行失败，正在重试...");
+
+                current.taskInstr = retryInstruction(current, "未得到执行结果");
+                continue;
+            }
 
+            if (!aiWorkerResponse.success()) {
+                log.error("Task not completed for instruction: {} (attempt {}/{})", current.taskInstr, current.retryCount + 1, maxRetries + 1);
+                if (!trySemanticRetry(current.retryCount, maxRetries, run.retryBudget)) {
+                    log.error("Max retries reached for failed task. Skipping instruction: {}", current.taskInstr);
+                    finishInstruction(run, current, aiWorkerResponse, null, null);
+                    return;
+                }
+
+                // 发送错误消息给用户
+                sendMessage(run.userId, run.messageId, "任务执行未完成，正在重试...");
+
+                current.taskInstr = retryInstruction(current, aiWorkerResponse.result());
+                continue;
+            }
+
+            current.workerResponse = aiWorkerResponse;
+
+            // 执行成功，并且不需要验证，直接继续下一个任务指令
+            if (!current.instruction.needValidation()) {
+                log.info("No validation needed for instruction: {}", current.taskInstr);
+
+                // 发送任务结果给用户
+                finishInstruction(run, current, aiWorkerResponse, null, aiWorkerResponse.result());
+                return;
+            }
+
+            // 根据 validation 验证任务结果是否符合要求，可以推测执行时在后台验证，继续执行下一条指令
+            if (speculation.allowed(run.rollbacks)) {
+                startValidation(run, current);
+                return;
+            }
+
+            ValidationResp validationResult = validate(run, current, run.userId);
+            if (handleValidation(run, current, validationResult)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 处理验证结果：通过或重试次数用完时结束指令并返回 true，需要重试时调整任务指令并返回 false
+     */
+    private boolean handleValidation(Run run, InstructionRun current, ValidationResp validationResult) {
+        int maxRetries = retryPolicy.semanticRetries();
+        AIWorkerResponse aiWorkerResponse = current.workerResponse;
+
+        if (validationResult == null) {
+            log.error("Validation result is null for instruction: {} (attempt {}/{})", current.taskInstr, current.retryCount + 1, maxRetries + 1);
+            if (!trySemanticRetry(current.retryCount, maxRetries, run.retryBudget)) {
+                log.error("Max retries reached for null validation result. Skipping instruction: {}", current.taskInstr);
+
+                // 发送验证失败消息给用户
+                finishInstruction(run, current, aiWorkerResponse, null,
+                        "任务验证失败,未收到验证结果,已跳过该任务指令。");
+                return true;
+            }
+
+            // 发送验证错误消息给用户
+            sendMessage(run.userId, run.messageId, "任务验证失败,正在重试...");
+
+            current.taskInstr = retryInstruction(current, "未得到验证结果");
+            return false;
+        }
+
+        if (!validationResult.passed()) {
+            String failureReason = validationResult.reason();
+            log.error("Validation failed for instruction: {}. Reason: {} (attempt {}/{})", current.taskInstr, failureReason, current.retryCount + 1, maxRetries + 1);
+
+            if (!trySemanticRetry(current.retryCount, maxRetries, run.retryBudget)) {
+                log.error("Max retries reached for validation failure. Skipping instruction: {}", current.taskInstr);
+
+                // 发送验证失败消息给用户
+                finishInstruction(run, current, aiWorkerResponse, validationResult,
+                        String.format("任务验证失败，原因：%s，已跳过该任务指令。", failureReason));
+                return true;
+            }
+
+            // 根据验证失败的原因，调整任务指令，重新执行
+            current.taskInstr = retryInstruction(current, failureReason);
+            log.info("Adjusted instruction for retry: {}", current.taskInstr);
+
+            // 发送重试消息给用户
+            sendMessage(run.userId, run.messageId, "任务验证未通过，正在调整后重试...");
+            return false;
+        }
+
+        log.info("Instruction completed and validated: {}", current.taskInstr);
+        // 任务指令执行并验证通过，继续下一个任务指令
+        finishInstruction(run, current, aiWorkerResponse, validationResult, aiWorkerResponse.result());
+        return true;
+    }
+
+    /**
+     * 验证任务指令的执行结果
+     *
+     * @param conversationId 验证请求使用的会话
+     */
+    private ValidationResp validate(Run run, InstructionRun current, String conversationId) {
+        String validation = current.instruction.validation();
+        String result = resultShaper.shape(ToolStage.VALIDATION, current.workerResponse.result());
+        ValidationResp validationResult = convert(PromptTemplates.VALIDATION_CONVERTER,
+                withTransportRetry(ToolStage.VALIDATION, run,
+                        () -> prompt(userChatClient, ToolStage.VALIDATION, run.lane, run.userId, conversationId, validation,
+                                PromptTemplates.VALIDATION.render(Map.of("result", result, "validation", String.valueOf(validation))))
+                                .call()
+                                .content()));
+        run.cancellation.throwIfCancelled();
+
+        log.info("Validation result: {}", validationResult);
+        speculation.validated(validationResult != null && validationResult.passed());
+        return validationResult;
+    }
+
+    /**
+     * 在后台验证任务指令，验证通过时立即结束该指令并发送结果，未通过时由下一条指令的执行回滚处理
+     *
+     * 后台验证使用独立的会话，避免与下一条指令的执行同时修改用户会话记忆
+     */
+    private void startValidation(Run run, InstructionRun current) {
+        speculation.started();
+        String conversationId = run.messageId + VALIDATION_CONVERSATION_SUFFIX;
+        current.validationStart = System.currentTimeMillis();
+        current.validation = Mono.fromCallable(() -> validate(run, current, conversationId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(validationResult -> {
+                    current.validationEnd = System.currentTimeMillis();
+                    if (validationResult.passed()) {
+                        handleValidation(run, current, validationResult);
+                    }
+                })
+                .doFinally(_ -> chatMemory.clear(conversationId))
+                .takeUntilOther(run.cancellation.whenCancelled())
+                .toFuture();
+        run.pending = current;
+    }
 
+    /**
+     * 等待后台验证结果，验证请求本身失败时抛出原异常
+     */
+    private ValidationResp awaitValidation(Run run, InstructionRun pending) {
+        try {
+            ValidationResp validationResult = pending.validation.join();
+            run.cancellation.throwIfCancelled();
+            return validationResult;
+        } catch (CompletionException e) {
+            run.cancellation.throwIfCancelled();
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * 处理后台验证中的指令，直到没有等待验证的指令(验证未通过的重试可能再次进入后台验证)
+     */
+    private void settlePending(Run run) {
+        while (run.pending != null) {
+            InstructionRun pending = run.pending;
+            run.pending = null;
+            ValidationResp validationResult = awaitValidation(run, pending);
+            if (validationResult != null && validationResult.passed()) {
+                continue;
+            }
+            if (!handleValidation(run, pending, validationResult)) {
+                pending.retryCount++;
+                processInstruction(run, pending, null);
+            }
+        }
+    }
+
+    /**
+     * 执行一次任务指令，执行和格式化分别在传输失败时按重试策略重试；
+     * 执行成功后格式化失败只重试格式化，不重新执行(不重复调用工具)
+     */
+    private AIWorkerResponse work(Run run, InstructionRun current) {
+        return work(run, current, run.userId);
+    }
+
+    /**
+     * 执行一次任务指令，执行和格式化的会话记忆写入 conversationId
+     */
+    private AIWorkerResponse work(Run run, InstructionRun current, String conversationId) {
+        AtomicInteger attempts = new AtomicInteger();
+        String taskResult = withTransportRetry(ToolStage.WORKER, run, () -> {
+            // 执行中断时部分工具调用可能已经完成，重试时把已完成的结果交给模型，避免重复调用
+            String instruction = attempts.getAndIncrement() > 0 && !current.toolResults.isEmpty()
+                    ? retryInstruction(current, "上次执行因网络错误中断")
+                    : current.taskInstr;
+            return doTask(run, conversationId, instruction, current.toolResults);
+        });
+        if (taskResult == null) {
+            return null;
+        }
+        return withTransportRetry(ToolStage.FORMAT, run, () -> format(run, conversationId, taskResult));
+    }
+
+    /**
+     * 还有语义重试次数且编排的重试预算未用完时占用一次重试
+     */
+    private boolean trySemanticRetry(int retryCount, int maxRetries, RetryBudget retryBudget) {
+        if (retryCount >= maxRetries) {
+            return false;
+        }
+        if (!retryBudget.tryAcquire()) {
+            log.warn("Retry budget of orchestration exhausted");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 语义重试的任务指令：失败原因 + 原始指令 + 已完成的工具调用结果
+     */
+    private String retryInstruction(InstructionRun current, String reason) {
+        return PromptTemplates.RETRY.render(Map.of(
+                "reason", String.valueOf(reason),
+                "instruction", current.instruction.instruction(),
+                "toolResults", resultShaper.shape(ToolStage.WORKER,
+                        current.toolResults.summary(retryPolicy.toolResultChars())))).text();
+    }
+
+    /**
+     * 调用模型，传输失败时按重试策略退避后重新调用；退避等待期间编排被取消时立即停止
+     */
+    private <T> T withTransportRetry(ToolStage stage, Run run, Supplier<T> call) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                run.cancellation.throwIfCancelled();
+                Duration backoff = retryPolicy.isTransient(e) ? retryPolicy.transportBackoff(attempt) : null;
+                if (backoff == null || !run.retryBudget.tryAcquire()) {
+                    throw e;
+                }
+                log.warn("Transient failure in {} stage (attempt {}), retrying in {} ms: {}", stage, attempt, backoff.toMillis(), e.toString());
+                Mono.delay(backoff).takeUntilOther(run.cancellation.whenCancelled()).block();
+                run.cancellation.throwIfCancelled();
+            }
+        }
+    }
+
+    /**
+     * 任务指令执行结束(成功或已放弃)：先写入日志再发送结果消息
+     */
+    private void finishInstruction(Run run, InstructionRun current, AIWorkerResponse workerResponse,
+                                   ValidationResp validation, String message) {
+        orchestrationJournal.result(run.userId, run.messageId, current.index, current.instruction, workerResponse, validation, message);
+        if (message != null) {
+            sendMessage(run.userId, run.messageId, message);
+        }
+    }
+
+    /**
+     * 按编排阶段构建请求
+     *
+     * 模板静态部分作为系统提示词放在最前面，变量部分放在用户消息中；
+     * 不使用工具的阶段如果有可用的上下文缓存，则直接引用缓存，不再重复发送静态部分。
+     * 阶段配置了模型时使用 {@link ModelRouter} 选择的模型和参数；上下文缓存绑定创建时的模型，
+     * 配置中指定了其他模型时不使用缓存
+     *
+     * @param lane      调用所属的执行通道，模型调用按该通道的名额排队
+     * @param toolQuery 用于选择工具的文本
+     */
+    private ChatClient.ChatClientRequestSpec prompt(ChatClient chatClient, ToolStage stage, ExecutionLane lane,
+                                                    String userId, String toolQuery, PromptTemplate.RenderedPrompt prompt) {
+        return prompt(chatClient, stage, lane, userId, userId, toolQuery, prompt);
+    }
+
+    /**
+     * 按编排阶段构建请求，会话记忆使用 conversationId(推测执行的独立会话)，模型调用仍按 userId 排队
+     */
+    private ChatClient.ChatClientRequestSpec prompt(ChatClient chatClient, ToolStage stage, ExecutionLane lane, String userId,
+                                                    String conversationId, String toolQuery, PromptTemplate.RenderedPrompt prompt) {
+        List<ToolCallback> toolCallbacks = toolSelector.select(stage, toolQuery);
+        Optional<ModelRouter.Route> route = modelRouter.route(stage);
+        ChatClient.ChatClientRequestSpec spec = chatClient.prompt()
+                .user(prompt.user())
+                .toolCallbacks(toolCallbacks)
+                .advisors(a -> {
+                    a.param(ChatMemory.CONVERSATION_ID, conversationId);
+                    a.param(ModelScheduler.USER_KEY, userId);
+                    a.param(ModelScheduler.LANE_KEY, lane);
+                    route.ifPresent(r -> r.params(a));
+                });
+
+        GoogleGenAiChatOptions.Builder options = route.map(ModelRouter.Route::options)
+                .orElseGet(GoogleGenAiChatOptions::builder);
+        boolean defaultModel = route.map(r -> r.profile().getModel() == null).orElse(true);
+        Optional<String> cachedContent = toolCallbacks.isEmpty() && defaultModel
+                ? promptCacheProvider.cachedContent(prompt.template())
+                : Optional.empty();
+        if (cachedContent.isPresent()) {
+            return spec.options(options
+                    .cachedContentName(cachedContent.get())
+                    .useCachedContent(true)
+                    .build());
+        }
+        if (route.isPresent()) {
+            spec.options(options.build());
+        }
+        return spec.system(prompt.system());
+    }
+
+    /**
+     * 工具调用上下文，带上用户 token；token 可以省略(批量任务、SSE 请求)，为 null 时不放入
+     */
+    private static Map<String, Object> toolContext(String token, Map<String, Object> context) {
+        if (token == null) {
+            return context;
+        }
+        Map<String, Object> withToken = new HashMap<>(context);
+        withToken.put("token", token);
+        return withToken;
+    }
+
+    /**
+     * 将模型输出解析为结构化对象,解析失败返回 null
+     */
+    private <T> T convert(BeanOutputConverter<T> converter, String text) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            return converter.convert(text);
+        } catch (Exception e) {
+            log.error("Failed to convert model output: {}", text, e);
+            return null;
+        }
     }
 
     private void sendMessage(String userId, String messageId, String message) {
@@ -306,10 +800,22 @@ public class AgentOrchestrator {
                 .build());
     }
 
+    private void sendCancelledMessage(String userId, String messageId) {
+        sendMessage(userId, ChatResponse.builder()
+                .messageId(messageId)
+                .content("任务已取消。")
+                .type(ChatResponse.MessageType.CANCELLED)
+                .isFinal(true)
+                .timestamp(System.currentTimeMillis())
+                .build());
+    }
+
     private void sendEndMessage(String userId, String messageId, String message) {
         log.info("Sending end message to user {}: {}", userId, message);
 
-        sendMessage(userId, messageId, message);
+        if (message != null) {
+            sendMessage(userId, messageId, message);
+        }
 
         // 流式传输完成,发送结束消息
         sendMessage(userId, ChatResponse.builder()
@@ -320,49 +826,49 @@ public class AgentOrchestrator {
                 .build());
     }
 
-    private AIWorkerResponse doTask(String userId, String prompt, String token) {
+    /**
+     * 执行任务指令，返回工作模型的输出，没有输出时返回 null
+     */
+    private String doTask(Run run, String conversationId, String prompt, ToolResults toolResults) {
+        String userId = run.userId;
+        Cancellation cancellation = run.cancellation;
         // 第一步: 执行任务(允许使用 MCP 工具)
-        String taskResult = workClient.prompt()
-                .toolContext(Map.of("token", token))
-                .user(String.format("""
-                        任务执行
-                        %s
-                        执行要求：
-                        1. 严格按照上述指令执行任务
-                        2. 优先使用可用的 MCP 工具
-                        3. 确保执行结果准确、完整
-                        4. 如遇到问题,说明具体情况
-                        5. 直接返回执行结果,不需要 JSON 格式
-                        """, prompt))
-                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, userId))
-                .call()
-                .content();
-        
+        // 以流式方式调用工作模型,执行过程(输出片段与工具调用事件)节流推送给用户
+        StringBuilder taskResultBuilder = new StringBuilder();
+        Flux<String> workerTokens = prompt(workClient, ToolStage.WORKER, run.lane, userId, conversationId, prompt,
+                PromptTemplates.WORKER.render(Map.of("instruction", prompt)))
+                .toolContext(toolContext(run.token, Map.of(
+                        ToolCallListener.CONTEXT_KEY, workerProgressPublisher.toolCallListener(userId, run.messageId),
+                        ToolResults.CONTEXT_KEY, toolResults,
+                        Cancellation.CONTEXT_KEY, cancellation,
+                        BlobStore.CONTEXT_KEY, run.blobs,
+                        ToolProgressRouter.CONTEXT_KEY, toolProgressRouter.tracker(userId, run.messageId),
+                        ParallelToolCallingManager.CONTEXT_KEY, run.toolPermits)))
+                .stream()
+                .content()
+                .takeUntilOther(cancellation.whenCancelled())
+                .doOnNext(taskResultBuilder::append);
+
+        workerProgressPublisher.streamTokens(userId, run.messageId, workerTokens).blockLast();
+        cancellation.throwIfCancelled();
+        String taskResult = taskResultBuilder.isEmpty() ? null : taskResultBuilder.toString();
+
         log.info("Worker task result: {}", taskResult);
         if (taskResult == null) {
             log.error("Worker task result is null");
-            return null;
         }
+        return taskResult;
+    }
 
+    private AIWorkerResponse format(Run run, String conversationId, String taskResult) {
         // 第二步: 将结果转换为结构化格式(不使用工具,直接获取结构化对象)
-        AIWorkerResponse aiWorkerResponse = userChatClient.prompt()
-                .user(String.format("""
-                        结果格式化
-                        
-                        任务执行结果：
-                        %s
-                        
-                        你的职责：
-                        将上述任务执行结果转换为结构化格式。
-                        
-                        转换要求：
-                        1. 分析任务结果,判断是否成功完成
-                        2. 提取关键信息作为 result 字段内容
-                        3. success 为 true 表示成功,false 表示失败
-                        """, taskResult))
-                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, userId))
-                .call()
-                .entity(AIWorkerResponse.class);
+        // 超出 FORMAT 阶段预算的执行结果先裁剪，格式化结果随后进入验证提示词和会话记忆
+        String formatInput = resultShaper.shape(ToolStage.FORMAT, taskResult);
+        AIWorkerResponse aiWorkerResponse = convert(PromptTemplates.WORKER_RESPONSE_CONVERTER,
+                prompt(userChatClient, ToolStage.FORMAT, run.lane, run.userId, conversationId, formatInput,
+                        PromptTemplates.FORMAT.render(Map.of("result", formatInput)))
+                        .call()
+                        .content());
         
         log.info("Worker response: {}", aiWorkerResponse);
         return aiWorkerResponse;
@@ -373,6 +879,89 @@ public class AgentOrchestrator {
      * 发送消息到指定用户
      */
     private void sendMessage(String userId, ChatResponse response) {
-        messagingTemplate.convertAndSend("/queue/messages/" + userId, response);
+        singleFlight.send(userId, response);
+    }
+
+    /**
+     * 一次编排的执行状态
+     */
+    private static final class Run {
+
+        private final String userId;
+        private final String messageId;
+        private final String token;
+        private final ExecutionLane lane;
+        private final Cancellation cancellation;
+        private final RetryBudget retryBudget;
+
+        /**
+         * 编排期间转存的工具结果
+         */
+        private final BlobStore.Scope blobs;
+
+        /**
+         * 编排内同时执行的工具调用许可，推测执行的指令与当前指令共用
+         */
+        private final Semaphore toolPermits;
+
+        private OrchestrationJournal.Checkpoint checkpoint = OrchestrationJournal.Checkpoint.EMPTY;
+        private boolean restoreMemory;
+
+        /**
+         * 推测执行中正在后台验证的指令
+         */
+        private InstructionRun pending;
+
+        /**
+         * 推测执行回滚的次数
+         */
+        private int rollbacks;
+
+        private Run(String userId, String messageId, String token, ExecutionLane lane, Cancellation cancellation,
+                    RetryBudget retryBudget, BlobStore.Scope blobs, Semaphore toolPermits) {
+            this.userId = userId;
+            this.messageId = messageId;
+            this.token = token;
+            this.lane = lane;
+            this.cancellation = cancellation;
+            this.retryBudget = retryBudget;
+            this.blobs = blobs;
+            this.toolPermits = toolPermits;
+        }
+    }
+
+    /**
+     * 单条任务指令的执行状态
+     */
+    private static final class InstructionRun {
+
+        private final int index;
+        private final AIOrchestratorTask.TaskInstruction instruction;
+
+        /**
+         * 各次执行中成功的工具调用，重试时交给模型复用
+         */
+        private final ToolResults toolResults = new ToolResults();
+
+        private String taskInstr;
+        private int retryCount;
+
+        /**
+         * 最近一次成功的执行结果
+         */
+        private AIWorkerResponse workerResponse;
+
+        /**
+         * 后台验证(推测执行)
+         */
+        private CompletableFuture<ValidationResp> validation;
+        private long validationStart;
+        private volatile long validationEnd;
+
+        private InstructionRun(int index, AIOrchestratorTask.TaskInstruction instruction) {
+            this.index = index;
+            this.instruction = instruction;
+            this.taskInstr = instruction.instruction();
+        }
     }
 }
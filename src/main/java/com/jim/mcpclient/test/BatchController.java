@@ -0,0 +1,103 @@
+package com.jim.mcpclient.test;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 批量任务接口，由 {@link BatchRunner} 在后台执行，提交后立即返回任务进度(202)：
+ * - POST /api/batches：请求体为 {requests: [{id, userId, message, token}], concurrency, ratePerSecond}
+ * - POST /api/batches/file：请求体为 {input, output, concurrency, ratePerSecond}，执行批量任务目录下的 JSON Lines 文件；
+ *   用同一输入和输出文件重新提交时跳过已有结果的请求
+ * - POST /api/batches/{id}/resume：继续执行通过 POST /api/batches 提交的任务
+ * - GET /api/batches/{id}：任务进度
+ * - DELETE /api/batches/{id}：取消任务
+ *
+ * concurrency 和 ratePerSecond 可以省略，使用 agent.batch 中的配置
+ *
+ * @author James Smith
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/batches")
+public class BatchController {
+
+    @Autowired
+    private BatchRunner batchRunner;
+
+    public record Submission(List<BatchJob.Item> requests, Integer concurrency, Double ratePerSecond) {
+    }
+
+    public record FileSubmission(String input, String output, Integer concurrency, Double ratePerSecond) {
+    }
+
+    public record Options(Integer concurrency, Double ratePerSecond) {
+    }
+
+    @PostMapping
+    public ResponseEntity<BatchJob.Status> submit(@RequestBody Submission submission) {
+        if (submission.requests() == null || submission.requests().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "requests 不能为空");
+        }
+        return accepted(() -> {
+            try {
+                return batchRunner.submit(submission.requests(), submission.concurrency(), submission.ratePerSecond());
+            } catch (IOException e) {
+                log.error("Failed to write batch input", e);
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "写入批量任务失败");
+            }
+        });
+    }
+
+    @PostMapping("/file")
+    public ResponseEntity<BatchJob.Status> submitFile(@RequestBody FileSubmission submission) {
+        if (!StringUtils.hasText(submission.input())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "input 不能为空");
+        }
+        return accepted(() -> batchRunner.submitFile(submission.input(), submission.output(),
+                submission.concurrency(), submission.ratePerSecond()));
+    }
+
+    @PostMapping("/{id}/resume")
+    public ResponseEntity<BatchJob.Status> resume(@PathVariable String id, @RequestBody(required = false) Options options) {
+        Options resolved = options != null ? options : new Options(null, null);
+        return accepted(() -> batchRunner.resume(id, resolved.concurrency(), resolved.ratePerSecond())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "批量任务不存在: " + id)));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<BatchJob.Status> status(@PathVariable String id) {
+        return ResponseEntity.of(batchRunner.get(id).map(BatchJob::status));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancel(@PathVariable String id) {
+        return batchRunner.cancel(id)
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    private static ResponseEntity<BatchJob.Status> accepted(Supplier<BatchJob> submit) {
+        try {
+            return ResponseEntity.accepted().body(submit.get().status());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.model.ChatRequest;
+import com.jim.mcpclient.model.ChatResponse;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个批量任务的执行状态，由 {@link BatchRunner} 创建和更新
+ *
+ * @author James Smith
+ */
+public class BatchJob {
+
+    public enum State {
+        RUNNING,    // 执行中
+        COMPLETED,  // 输入文件中的请求已全部处理
+        CANCELLED,  // 已取消，未完成的请求可以重新提交
+        FAILED      // 读写文件失败
+    }
+
+    /**
+     * 输入文件中的一条请求(JSON Lines 的一行)
+     *
+     * @param id      请求 id，未指定时为行号；输出文件按 id 记录结果
+     * @param userId  会话 id，未指定时每条请求使用独立的临时会话，结束后清除会话记忆
+     * @param message 消息内容
+     * @param token   传递给 MCP server 的用户 token，可以为空
+     */
+    public record Item(String id, String userId, String message, String token) {
+    }
+
+    /**
+     * 输出文件中的一条结果
+     *
+     * @param id            请求 id
+     * @param status        END 或 ERROR
+     * @param content       回答内容(全部 CHUNK 拼接)
+     * @param error         错误信息
+     * @param elapsedMillis 从开始执行到结束的时间
+     */
+    public record Result(String id, ChatResponse.MessageType status, String content, String error, long elapsedMillis) {
+    }
+
+    /**
+     * 任务进度
+     *
+     * @param skipped      输出文件中已有结果、本次跳过的请求数
+     * @param deduplicated 与同一任务中其他请求的消息相同、直接使用其结果的请求数
+     */
+    public record Status(String id, State state, String input, String output, int total, int skipped, int succeeded,
+                         int failed, int deduplicated, long startedAt, Long finishedAt) {
+    }
+
+    private final String id;
+    private final Path input;
+    private final Path output;
+    private final int concurrency;
+    private final double ratePerSecond;
+    private final long startedAt = System.currentTimeMillis();
+
+    final AtomicInteger total = new AtomicInteger();
+    final AtomicInteger skipped = new AtomicInteger();
+    final AtomicInteger succeeded = new AtomicInteger();
+    final AtomicInteger failed = new AtomicInteger();
+    final AtomicInteger deduplicated = new AtomicInteger();
+
+    /**
+     * 执行中的请求，按请求 id 索引，取消任务时逐个取消
+     */
+    final Map<String, ChatRequest> running = new ConcurrentHashMap<>();
+
+    Thread thread;
+    volatile boolean cancelled;
+    private volatile State state = State.RUNNING;
+    private volatile Long finishedAt;
+
+    BatchJob(String id, Path input, Path output, int concurrency, double ratePerSecond) {
+        this.id = id;
+        this.input = input;
+        this.output = output;
+        this.concurrency = concurrency;
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Path getInput() {
+        return input;
+    }
+
+    public Path getOutput() {
+        return output;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    void finish(State state) {
+        this.finishedAt = System.currentTimeMillis();
+        this.state = state;
+    }
+
+    public Status status() {
+        return new Status(id, state, input.toString(), output.toString(), total.get(), skipped.get(), succeeded.get(),
+                failed.get(), deduplicated.get(), startedAt, finishedAt);
+    }
+}
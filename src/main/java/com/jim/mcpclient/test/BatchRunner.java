@@ -0,0 +1,384 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.BatchProperties;
+import com.jim.mcpclient.config.JsonUtils;
+import com.jim.mcpclient.model.ChatRequest;
+import com.jim.mcpclient.model.ChatResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 批量任务(离线提交大量请求)
+ *
+ * 输入为 JSON Lines 文件，每行一条 {@link BatchJob.Item}；每个任务由一个后台线程按顺序读取，
+ * 按任务的速率(每秒启动的请求数)和并发数启动编排，编排在 {@link ExecutionLane#BATCH} 通道中执行，
+ * 线程和模型调用名额与在线请求隔离。结果不经过 STOMP 推送，而是经 {@link SingleFlight#openStream} 收集，
+ * 每条请求结束后立即以 DSYNC 方式追加一行 {@link BatchJob.Result} 到输出文件。
+ *
+ * 恢复：重新提交同一输入和输出文件时跳过输出文件中已有结果的请求(最后一行不完整时忽略该行)；
+ * 文件任务的 id 由输入和输出文件确定，每条请求的 messageId 由任务 id 和请求 id 确定，
+ * 执行到一半的编排从 {@link OrchestrationJournal} 中断处继续。
+ * 被取消或因通道过载被拒绝的请求不写入结果，下次提交时重新执行。
+ *
+ * 未指定 userId 的请求使用独立的临时会话，结束后清除会话记忆；同一任务中消息和 token 都相同的此类请求只执行一次。
+ *
+ * 指标：
+ * - agent.batch.items：处理完的请求数(标签 outcome=end|error|cancelled|skipped)
+ * - agent.batch.running：执行中的任务数
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class BatchRunner {
+
+    static final String INPUT = "input.jsonl";
+    static final String OUTPUT = "output.jsonl";
+
+    @Autowired
+    private AgentOrchestrator agentOrchestrator;
+    @Autowired
+    private SingleFlight singleFlight;
+    @Autowired
+    private ChatMemory chatMemory;
+    @Autowired
+    private BatchProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, BatchJob> jobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("agent.batch.running", jobs,
+                map -> map.values().stream().filter(job -> job.getState() == BatchJob.State.RUNNING).count());
+    }
+
+    /**
+     * 提交一组请求：写入 directory/{任务 id}/input.jsonl 后执行，结果写入同目录的 output.jsonl
+     *
+     * @param concurrency   同时执行的请求数，为空时使用配置
+     * @param ratePerSecond 每秒启动的请求数，为空时使用配置
+     */
+    public BatchJob submit(List<BatchJob.Item> items, Integer concurrency, Double ratePerSecond) throws IOException {
+        String id = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        Path directory = properties.getDirectory().resolve(id);
+        Files.createDirectories(directory);
+        StringBuilder lines = new StringBuilder();
+        for (int index = 0; index < items.size(); index++) {
+            BatchJob.Item item = items.get(index);
+            // 未指定 id 的请求按序号编号，恢复时据此跳过已完成的请求
+            if (!StringUtils.hasText(item.id())) {
+                item = new BatchJob.Item(String.valueOf(index + 1), item.userId(), item.message(), item.token());
+            }
+            lines.append(JsonUtils.getObjectMapper().writeValueAsString(item)).append('\n');
+        }
+        Files.writeString(directory.resolve(INPUT), lines, StandardCharsets.UTF_8);
+        return start(id, directory.resolve(INPUT), directory.resolve(OUTPUT), concurrency, ratePerSecond);
+    }
+
+    /**
+     * 执行 directory 下的输入文件，output 为空时结果写入输入文件同目录的 {文件名}.output.jsonl；
+     * 同一输入和输出文件的任务 id 相同
+     *
+     * @throws IllegalArgumentException 路径不在 directory 下或输入文件不存在
+     * @throws IllegalStateException    已有执行中的任务写入同一输出文件
+     */
+    public BatchJob submitFile(String input, String output, Integer concurrency, Double ratePerSecond) {
+        Path inputFile = resolve(input);
+        if (!Files.isRegularFile(inputFile)) {
+            throw new IllegalArgumentException("输入文件不存在: " + input);
+        }
+        Path outputFile = StringUtils.hasText(output)
+                ? resolve(output)
+                : inputFile.resolveSibling(StringUtils.stripFilenameExtension(inputFile.getFileName().toString()) + ".output.jsonl");
+        // 任务 id 由输入和输出文件确定，重新提交时 messageId 和临时会话不变，执行到一半的编排可以从编排日志继续
+        Path directory = properties.getDirectory().toAbsolutePath().normalize();
+        String id = TrafficLog.digest(directory.relativize(inputFile) + "\n" + directory.relativize(outputFile)).substring(0, 12);
+        return start(id, inputFile, outputFile, concurrency, ratePerSecond);
+    }
+
+    /**
+     * 继续执行通过 {@link #submit} 提交的任务(例如节点重启后)，跳过已有结果的请求
+     */
+    public Optional<BatchJob> resume(String id, Integer concurrency, Double ratePerSecond) {
+        Path directory = resolve(id);
+        if (!Files.isRegularFile(directory.resolve(INPUT))) {
+            return Optional.empty();
+        }
+        return Optional.of(start(id, directory.resolve(INPUT), directory.resolve(OUTPUT), concurrency, ratePerSecond));
+    }
+
+    public Optional<BatchJob> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * 取消执行中的任务：不再启动新的请求，并取消执行中的请求
+     */
+    public boolean cancel(String id) {
+        BatchJob job = jobs.get(id);
+        if (job == null || job.getState() != BatchJob.State.RUNNING) {
+            return false;
+        }
+        job.cancelled = true;
+        job.thread.interrupt();
+        for (ChatRequest request : job.running.values()) {
+            singleFlight.cancel(request.getUserId(), request.getMessageId());
+        }
+        log.info("Batch job {} cancelled", id);
+        return true;
+    }
+
+    private synchronized BatchJob start(String id, Path input, Path output, Integer concurrency, Double ratePerSecond) {
+        for (BatchJob job : jobs.values()) {
+            if (job.getState() == BatchJob.State.RUNNING && job.getOutput().equals(output)) {
+                throw new IllegalStateException("批量任务 " + job.getId() + " 正在写入同一输出文件");
+            }
+        }
+        BatchJob job = new BatchJob(id, input, output,
+                Math.max(1, concurrency != null ? concurrency : properties.getConcurrency()),
+                ratePerSecond != null ? ratePerSecond : properties.getRatePerSecond());
+        job.thread = Thread.ofPlatform().name("batch-" + id).daemon().unstarted(() -> run(job));
+        jobs.put(id, job);
+        job.thread.start();
+        return job;
+    }
+
+    private void run(BatchJob job) {
+        log.info("Batch job {} started: {} -> {}, concurrency {}, {} requests/s",
+                job.getId(), job.getInput(), job.getOutput(), job.getConcurrency(), job.getRatePerSecond());
+        try {
+            Set<String> completed = prepareOutput(job.getOutput());
+            List<String> lines = Files.readAllLines(job.getInput(), StandardCharsets.UTF_8);
+            job.total.set((int) lines.stream().filter(line -> !line.isBlank()).count());
+
+            Semaphore permits = new Semaphore(job.getConcurrency());
+            long interval = job.getRatePerSecond() > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / job.getRatePerSecond()) : 0;
+            long nextStart = System.nanoTime();
+            // 临时会话中相同的消息只执行一次
+            Map<String, CompletableFuture<BatchJob.Result>> prompts = new HashMap<>();
+            List<CompletableFuture<Void>> pending = new ArrayList<>();
+            for (int lineNumber = 1; lineNumber <= lines.size() && !job.cancelled; lineNumber++) {
+                String line = lines.get(lineNumber - 1);
+                if (line.isBlank()) {
+                    continue;
+                }
+                BatchJob.Item item = readItem(line, lineNumber);
+                if (completed.contains(item.id())) {
+                    job.skipped.incrementAndGet();
+                    meterRegistry.counter("agent.batch.items", "outcome", "skipped").increment();
+                    continue;
+                }
+                if (!StringUtils.hasText(item.message())) {
+                    record(job, new BatchJob.Result(item.id(), ChatResponse.MessageType.ERROR, null, "消息为空或格式错误", 0));
+                    continue;
+                }
+                String promptKey = item.userId() == null ? item.message().strip() + "\n" + item.token() : null;
+                CompletableFuture<BatchJob.Result> same = promptKey == null ? null : prompts.get(promptKey);
+                if (same != null) {
+                    job.deduplicated.incrementAndGet();
+                    pending.add(same.thenAccept(result -> record(job, new BatchJob.Result(item.id(), result.status(),
+                            result.content(), result.error(), result.elapsedMillis()))));
+                    continue;
+                }
+
+                if (interval > 0) {
+                    long delay = nextStart - System.nanoTime();
+                    if (delay > 0) {
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                    }
+                    nextStart = Math.max(nextStart, System.nanoTime()) + interval;
+                }
+                permits.acquire();
+                if (job.cancelled) {
+                    break;
+                }
+                CompletableFuture<BatchJob.Result> result = execute(job, item).whenComplete((_, _) -> permits.release());
+                if (promptKey != null) {
+                    prompts.put(promptKey, result);
+                }
+                pending.add(result.thenAccept(r -> record(job, r)));
+            }
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+            job.finish(job.cancelled ? BatchJob.State.CANCELLED : BatchJob.State.COMPLETED);
+        } catch (InterruptedException e) {
+            job.finish(BatchJob.State.CANCELLED);
+        } catch (IOException | RuntimeException e) {
+            log.error("Batch job {} failed", job.getId(), e);
+            job.finish(BatchJob.State.FAILED);
+        }
+        BatchJob.Status status = job.status();
+        log.info("Batch job {} {}: {} succeeded, {} failed, {} skipped, {} deduplicated of {}", job.getId(),
+                status.state(), status.succeeded(), status.failed(), status.skipped(), status.deduplicated(), status.total());
+    }
+
+    /**
+     * 启动一条请求，结束(或超时被取消)时完成
+     */
+    private CompletableFuture<BatchJob.Result> execute(BatchJob job, BatchJob.Item item) {
+        String userId = item.userId() != null ? item.userId() : "batch-" + job.getId() + "-" + item.id();
+        ChatRequest request = new ChatRequest();
+        request.setUserId(userId);
+        // messageId 固定，重新提交时从编排日志中断处继续
+        request.setMessageId("batch-" + job.getId() + "-" + item.id());
+        request.setMessage(item.message());
+        request.setToken(item.token());
+
+        String sessionId = "batch-" + UUID.randomUUID();
+        Collector collector = new Collector(item.id());
+        job.running.put(item.id(), request);
+        singleFlight.openStream(sessionId, collector);
+        if (singleFlight.join(userId, request, sessionId)) {
+            agentOrchestrator.submit(ExecutionLane.BATCH, userId, request);
+        }
+        return collector.result
+                .orTimeout(properties.getItemTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(_ -> {
+                    log.warn("Batch request {} of job {} timed out", item.id(), job.getId());
+                    singleFlight.cancel(userId, request.getMessageId());
+                    return collector.finish(ChatResponse.MessageType.ERROR, "处理超时");
+                })
+                // 结束消息在 SingleFlight 的锁内送达，在其他线程上关闭消息流
+                .whenCompleteAsync((_, _) -> {
+                    job.running.remove(item.id());
+                    singleFlight.closeStream(sessionId);
+                    if (item.userId() == null) {
+                        chatMemory.clear(userId);
+                    }
+                });
+    }
+
+    private void record(BatchJob job, BatchJob.Result result) {
+        meterRegistry.counter("agent.batch.items", "outcome", result.status().name().toLowerCase(Locale.ROOT)).increment();
+        switch (result.status()) {
+            case END -> job.succeeded.incrementAndGet();
+            case CANCELLED -> {
+                return;
+            }
+            default -> {
+                job.failed.incrementAndGet();
+                if (ExecutionLanes.OVERLOADED.equals(result.error())) {
+                    return;
+                }
+            }
+        }
+        Path output = job.getOutput();
+        // 每个任务写自己的输出文件，按任务加锁，不同任务的写入互不等待
+        synchronized (job) {
+            try {
+                Files.createDirectories(output.toAbsolutePath().getParent());
+                Files.writeString(output, JsonUtils.getObjectMapper().writeValueAsString(result) + "\n", StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+            } catch (IOException e) {
+                log.error("Failed to write result of batch request {} to {}", result.id(), output, e);
+            }
+        }
+    }
+
+    /**
+     * 读取输出文件中已有结果的请求 id；最后一行不完整时补上换行，之后追加的结果从新的一行开始
+     */
+    private static Set<String> prepareOutput(Path output) throws IOException {
+        Set<String> ids = new HashSet<>();
+        if (!Files.exists(output)) {
+            return ids;
+        }
+        String text = Files.readString(output, StandardCharsets.UTF_8);
+        if (!text.isEmpty() && !text.endsWith("\n")) {
+            Files.writeString(output, "\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+        }
+        for (String line : text.split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                ids.add(JsonUtils.getObjectMapper().readValue(line, BatchJob.Result.class).id());
+            } catch (IOException e) {
+                log.warn("Skip malformed batch result: {}", line);
+            }
+        }
+        return ids;
+    }
+
+    private static BatchJob.Item readItem(String line, int lineNumber) {
+        BatchJob.Item item;
+        try {
+            item = JsonUtils.getObjectMapper().readValue(line, BatchJob.Item.class);
+        } catch (IOException e) {
+            log.warn("Malformed batch request at line {}: {}", lineNumber, line);
+            return new BatchJob.Item(String.valueOf(lineNumber), null, null, null);
+        }
+        if (StringUtils.hasText(item.id())) {
+            return item;
+        }
+        return new BatchJob.Item(String.valueOf(lineNumber), item.userId(), item.message(), item.token());
+    }
+
+    /**
+     * 解析 directory 下的相对路径，不允许指向 directory 之外
+     */
+    private Path resolve(String path) {
+        Path directory = properties.getDirectory().toAbsolutePath().normalize();
+        Path resolved = directory.resolve(path).normalize();
+        if (!StringUtils.hasText(path) || !resolved.startsWith(directory) || resolved.equals(directory)) {
+            throw new IllegalArgumentException("路径必须位于批量任务目录下: " + path);
+        }
+        return resolved;
+    }
+
+    /**
+     * 收集一条请求的消息，结束消息到达时完成
+     */
+    private static final class Collector implements Consumer<ChatResponse> {
+
+        private final String id;
+        private final long startedAt = System.nanoTime();
+        private final StringBuilder content = new StringBuilder();
+        private final CompletableFuture<BatchJob.Result> result = new CompletableFuture<>();
+
+        private Collector(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public synchronized void accept(ChatResponse response) {
+            if (response.getType() == ChatResponse.MessageType.CHUNK && response.getContent() != null) {
+                content.append(response.getContent());
+            }
+            if (response.isFinal()) {
+                result.complete(finish(response.getType(), response.getError()));
+            }
+        }
+
+        private synchronized BatchJob.Result finish(ChatResponse.MessageType status, String error) {
+            return new BatchJob.Result(id, status, content.isEmpty() ? null : content.toString(), error,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.BlobStoreProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.ai.tool.function.FunctionToolCallback;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 大工具结果的本地转存
+ *
+ * 超过阈值的工具结果写入本地文件，提示词、会话记忆和执行结果中只保留引用(handle)和预览，
+ * 完整内容不再以多份 String 的形式常驻堆内存。模型需要完整数据时调用 {@link #READ_TOOL_NAME} 工具
+ * 按字符偏移分页读取，读取时从文件流式解码，不会一次载入全部内容。
+ *
+ * 生命周期：编排通过 {@link Scope} 持有转存内容的引用，最终回答流结束时释放。handle 仍出现在会话记忆或
+ * 编排日志中的内容之后还会被读取(下一轮对话、从日志恢复)，释放时标记为保留，只受 TTL 限制；
+ * 其他内容引用计数归零时立即删除。没有 Scope 的调用(例如 /app/chat)只受 TTL 限制。
+ * 超过 TTL 的内容在后续写入时顺带清理。
+ *
+ * 指标：
+ * - agent.blob-store.spilled：转存次数
+ * - agent.blob-store.blobs / agent.blob-store.bytes：当前保存的内容数量和文件大小
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class BlobStore {
+
+    /**
+     * toolContext 中存放 {@link Scope} 的 key，不会被传递给 MCP server
+     */
+    public static final String CONTEXT_KEY = "blobScope";
+
+    public static final String READ_TOOL_NAME = "read_tool_result";
+
+    private static final String SUFFIX = ".blob";
+
+    /**
+     * 分页读取的结果
+     *
+     * @param nextOffset 下一页的偏移，已读完时为空
+     */
+    public record Page(String handle, String text, long offset, Long nextOffset, long length) {
+    }
+
+    /**
+     * read_tool_result 工具的参数
+     */
+    public record ReadRequest(@ToolParam(description = "工具结果中给出的 handle") String handle,
+                              @ToolParam(description = "起始字符偏移，首次读取为 0", required = false) Long offset) {
+    }
+
+    private static final class Blob {
+
+        private final Path file;
+        private final long length;
+        private final long size;
+        private final long expiresAt;
+        private int references;
+        private boolean kept;
+
+        private Blob(Path file, long length, long size, long expiresAt, int references) {
+            this.file = file;
+            this.length = length;
+            this.size = size;
+            this.expiresAt = expiresAt;
+            this.references = references;
+        }
+    }
+
+    @Autowired
+    private BlobStoreProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Blob> blobs = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong nextSweep = new AtomicLong();
+    private Counter spilled;
+    private ToolCallback readTool;
+
+    @PostConstruct
+    public void init() {
+        spilled = meterRegistry.counter("agent.blob-store.spilled");
+        meterRegistry.gauge("agent.blob-store.blobs", blobs, Map::size);
+        meterRegistry.gauge("agent.blob-store.bytes", bytes);
+        readTool = createReadTool();
+        if (!properties.isEnabled() || !Files.isDirectory(properties.getDirectory())) {
+            return;
+        }
+        // 上次运行留下的内容已没有引用
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(properties.getDirectory(), "*" + SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up blob store {}", properties.getDirectory(), e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 结果是否需要转存
+     */
+    public boolean shouldSpill(String content) {
+        return properties.isEnabled() && content != null && content.length() > properties.getThreshold();
+    }
+
+    public int previewTokens() {
+        return properties.getPreviewTokens();
+    }
+
+    /**
+     * 写入内容并返回 handle，写入失败时返回 null(调用方应改为直接裁剪)
+     *
+     * @param scope 持有引用的编排，为空时内容只受 TTL 限制
+     */
+    public String put(String content, Scope scope) {
+        sweep();
+        String handle = "blob-" + UUID.randomUUID();
+        Path file = properties.getDirectory().resolve(handle + SUFFIX);
+        try {
+            Files.createDirectories(properties.getDirectory());
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write(content);
+            }
+            long size = Files.size(file);
+            blobs.put(handle, new Blob(file, content.length(), size,
+                    System.currentTimeMillis() + properties.getTtl().toMillis(), scope == null ? 0 : 1));
+            bytes.addAndGet(size);
+        } catch (IOException e) {
+            log.warn("Failed to spill tool result to {}", file, e);
+            deleteQuietly(file);
+            return null;
+        }
+        if (scope != null) {
+            scope.handles.add(handle);
+        }
+        spilled.increment();
+        log.info("Spilled {} chars of tool result to {}", content.length(), handle);
+        return handle;
+    }
+
+    /**
+     * 增加引用，内容已删除时返回 false
+     */
+    public boolean retain(String handle) {
+        Blob blob = blobs.get(handle);
+        if (blob == null) {
+            return false;
+        }
+        synchronized (blob) {
+            if (blobs.get(handle) != blob) {
+                return false;
+            }
+            blob.references++;
+            return true;
+        }
+    }
+
+    /**
+     * 释放引用，引用计数归零时删除内容(标记为保留的内容等到 TTL)
+     */
+    public void release(String handle) {
+        Blob blob = blobs.get(handle);
+        if (blob == null) {
+            return;
+        }
+        synchronized (blob) {
+            if (--blob.references > 0 || blob.kept) {
+                return;
+            }
+        }
+        remove(handle, blob);
+    }
+
+    /**
+     * 保留内容到 TTL，不再因引用计数归零而删除
+     */
+    private void keep(String handle) {
+        Blob blob = blobs.get(handle);
+        if (blob != null) {
+            synchronized (blob) {
+                blob.kept = true;
+            }
+        }
+    }
+
+    /**
+     * 从 offset(字符)开始读取一页，内容不存在或已过期时返回空
+     */
+    public Optional<Page> read(String handle, long offset, int limit) {
+        Blob blob = handle == null ? null : blobs.get(handle);
+        if (blob == null || blob.expiresAt <= System.currentTimeMillis()) {
+            return Optional.empty();
+        }
+        long start = Math.clamp(offset, 0, blob.length);
+        int pageChars = Math.max(1, Math.min(limit, properties.getPageChars()));
+        char[] buffer = new char[(int) Math.min(pageChars, blob.length - start)];
+        int read = 0;
+        try (Reader reader = Files.newBufferedReader(blob.file, StandardCharsets.UTF_8)) {
+            long skipped = 0;
+            while (skipped < start) {
+                long n = reader.skip(start - skipped);
+                if (n <= 0) {
+                    break;
+                }
+                skipped += n;
+            }
+            while (read < buffer.length) {
+                int n = reader.read(buffer, read, buffer.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+        } catch (IOException e) {
+            // 读取期间被释放删除
+            log.warn("Failed to read {}", handle, e);
+            return Optional.empty();
+        }
+        long end = start + read;
+        return Optional.of(new Page(handle, new String(buffer, 0, read), start, end < blob.length ? end : null, blob.length));
+    }
+
+    /**
+     * 供模型分页读取转存内容的工具
+     */
+    public ToolCallback readTool() {
+        return readTool;
+    }
+
+    private ToolCallback createReadTool() {
+        return FunctionToolCallback.<ReadRequest, Object>builder(READ_TOOL_NAME, request -> {
+                    long offset = request.offset() == null ? 0 : request.offset();
+                    return read(request.handle(), offset, properties.getPageChars())
+                            .<Object>map(page -> page)
+                            .orElse(Map.of("error", "内容不存在或已过期，请重新调用原工具"));
+                })
+                .description("分页读取过大而被转存的工具结果。工具结果中出现 handle 时，需要完整数据才调用；"
+                        + "返回 text 为本页内容，nextOffset 不为空时用它作为 offset 读取下一页")
+                .inputType(ReadRequest.class)
+                .build();
+    }
+
+    public Scope newScope() {
+        return new Scope();
+    }
+
+    /**
+     * 清理超过 TTL 的内容，每分钟最多执行一次
+     */
+    void sweep() {
+        long now = System.currentTimeMillis();
+        long next = nextSweep.get();
+        if (now < next || !nextSweep.compareAndSet(next, now + 60_000)) {
+            return;
+        }
+        blobs.forEach((handle, blob) -> {
+            if (blob.expiresAt <= now) {
+                remove(handle, blob);
+            }
+        });
+    }
+
+    private void remove(String handle, Blob blob) {
+        if (blobs.remove(handle, blob)) {
+            bytes.addAndGet(-blob.size);
+            deleteQuietly(blob.file);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", file, e);
+        }
+    }
+
+    /**
+     * 一次编排持有的转存内容，编排结束时 {@link #close(Collection)} 释放全部引用
+     */
+    public class Scope implements AutoCloseable {
+
+        private final List<String> handles = new CopyOnWriteArrayList<>();
+
+        public List<String> handles() {
+            return List.copyOf(handles);
+        }
+
+        /**
+         * 释放全部引用，handle 出现在 retained 中(会话记忆、编排日志)的内容保留到 TTL；重复调用无效果
+         */
+        public void close(Collection<String> retained) {
+            for (String handle : handles) {
+                if (!handles.remove(handle)) {
+                    continue;
+                }
+                if (retained.stream().anyMatch(text -> text != null && text.contains(handle))) {
+                    keep(handle);
+                }
+                release(handle);
+            }
+        }
+
+        @Override
+        public void close() {
+            close(List.of());
+        }
+    }
+}
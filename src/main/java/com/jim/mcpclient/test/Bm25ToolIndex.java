@@ -0,0 +1,150 @@
+package com.jim.mcpclient.test;
+
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 基于 BM25 的工具相关度索引
+ *
+ * 以工具名称和描述为文档建立倒排统计，按任务指令对工具打分。
+ * 英文按单词切分(拆分驼峰和下划线)，中文按单字和相邻双字切分，不依赖分词库。
+ * 索引构建后不可变，可以被多个线程同时读取。
+ *
+ * @author James Smith
+ */
+public class Bm25ToolIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final List<ToolCallback> toolCallbacks;
+    private final List<Map<String, Integer>> termFrequencies;
+    private final int[] documentLengths;
+    private final Map<String, Double> inverseDocumentFrequencies;
+    private final double averageDocumentLength;
+
+    public Bm25ToolIndex(List<ToolCallback> toolCallbacks) {
+        this.toolCallbacks = List.copyOf(toolCallbacks);
+        this.termFrequencies = new ArrayList<>(toolCallbacks.size());
+        this.documentLengths = new int[toolCallbacks.size()];
+
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        long totalLength = 0;
+        for (int i = 0; i < this.toolCallbacks.size(); i++) {
+            List<String> terms = tokenize(document(this.toolCallbacks.get(i).getToolDefinition()));
+            Map<String, Integer> frequencies = new HashMap<>();
+            terms.forEach(term -> frequencies.merge(term, 1, Integer::sum));
+            frequencies.keySet().forEach(term -> documentFrequencies.merge(term, 1, Integer::sum));
+
+            termFrequencies.add(frequencies);
+            documentLengths[i] = terms.size();
+            totalLength += terms.size();
+        }
+
+        int n = this.toolCallbacks.size();
+        this.averageDocumentLength = n == 0 ? 0 : (double) totalLength / n;
+        this.inverseDocumentFrequencies = new HashMap<>();
+        documentFrequencies.forEach((term, df) ->
+                inverseDocumentFrequencies.put(term, Math.log(1 + (n - df + 0.5) / (df + 0.5))));
+    }
+
+    public List<ToolCallback> all() {
+        return toolCallbacks;
+    }
+
+    /**
+     * 返回与查询最相关的前 k 个工具(仅包含得分大于 0 的工具)
+     */
+    public List<ToolCallback> topK(String query, int k) {
+        if (query == null || query.isBlank() || k <= 0) {
+            return List.of();
+        }
+        List<String> queryTerms = tokenize(query).stream().distinct().toList();
+
+        List<ScoredTool> scored = new ArrayList<>();
+        for (int i = 0; i < toolCallbacks.size(); i++) {
+            double score = score(i, queryTerms);
+            if (score > 0) {
+                scored.add(new ScoredTool(toolCallbacks.get(i), score));
+            }
+        }
+        return scored.stream()
+                .sorted(Comparator.comparingDouble(ScoredTool::score).reversed())
+                .limit(k)
+                .map(ScoredTool::toolCallback)
+                .toList();
+    }
+
+    private double score(int document, List<String> queryTerms) {
+        Map<String, Integer> frequencies = termFrequencies.get(document);
+        double lengthNorm = averageDocumentLength == 0 ? 1 : documentLengths[document] / averageDocumentLength;
+        double score = 0;
+        for (String term : queryTerms) {
+            Integer tf = frequencies.get(term);
+            if (tf == null) {
+                continue;
+            }
+            score += inverseDocumentFrequencies.get(term) * tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengthNorm));
+        }
+        return score;
+    }
+
+    private static String document(ToolDefinition definition) {
+        // 名称出现两次,提高名称命中的权重
+        return definition.name() + " " + definition.name() + " " + definition.description();
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder word = new StringBuilder();
+        char previousCjk = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isCjk(c)) {
+                flushWord(word, terms);
+                terms.add(String.valueOf(c));
+                if (previousCjk != 0) {
+                    terms.add("" + previousCjk + c);
+                }
+                previousCjk = c;
+                continue;
+            }
+            previousCjk = 0;
+            if (Character.isLetterOrDigit(c)) {
+                // 驼峰边界: createTransaction -> create, transaction
+                if (Character.isUpperCase(c) && !word.isEmpty() && Character.isLowerCase(word.charAt(word.length() - 1))) {
+                    flushWord(word, terms);
+                }
+                word.append(c);
+            } else {
+                flushWord(word, terms);
+            }
+        }
+        flushWord(word, terms);
+        return terms;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> terms) {
+        if (!word.isEmpty()) {
+            terms.add(word.toString().toLowerCase(Locale.ROOT));
+            word.setLength(0);
+        }
+    }
+
+    private static boolean isCjk(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    private record ScoredTool(ToolCallback toolCallback, double score) {
+    }
+}
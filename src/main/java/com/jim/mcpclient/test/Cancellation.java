@@ -0,0 +1,81 @@
+package com.jim.mcpclient.test;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.function.Supplier;
+
+/**
+ * 单次编排的取消信号
+ *
+ * 取消是协作式的：编排在阶段之间检查 {@link #throwIfCancelled()}，流式调用通过
+ * {@link #whenCancelled()} 截断，工具调用通过 {@link #call(Supplier)} 在取消时中断等待中的 MCP 请求。
+ * 通过 toolContext 传递给工具回调时使用 {@link #CONTEXT_KEY}，不会发送给 MCP server。
+ *
+ * @author James Smith
+ */
+public class Cancellation {
+
+    public static final String CONTEXT_KEY = "cancellation";
+
+    private final String messageId;
+    private final String userId;
+    private final Sinks.One<Boolean> signal = Sinks.one();
+    private volatile boolean cancelled;
+
+    public Cancellation(String messageId, String userId) {
+        this.messageId = messageId;
+        this.userId = userId;
+    }
+
+    /**
+     * 发出取消信号，只有第一次调用返回 true
+     */
+    public synchronized boolean cancel() {
+        if (cancelled) {
+            return false;
+        }
+        cancelled = true;
+        signal.tryEmitValue(true);
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new OrchestrationCancelledException(messageId);
+        }
+    }
+
+    /**
+     * 取消时发出一个元素，用于 takeUntilOther 截断流
+     */
+    public Mono<Boolean> whenCancelled() {
+        return signal.asMono();
+    }
+
+    /**
+     * 在独立线程上执行阻塞调用，取消时中断该线程并立即返回
+     */
+    public <T> T call(Supplier<T> task) {
+        throwIfCancelled();
+        T result = Mono.fromSupplier(task)
+                .subscribeOn(Schedulers.boundedElastic())
+                .takeUntilOther(whenCancelled())
+                .block();
+        throwIfCancelled();
+        return result;
+    }
+
+    public String messageId() {
+        return messageId;
+    }
+
+    public String userId() {
+        return userId;
+    }
+}
@@ -0,0 +1,59 @@
+package com.jim.mcpclient.test;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进行中的编排，按 messageId 登记，用于取消编排
+ *
+ * 客户端取消和会话断开先经过 {@link SingleFlight}，编排不再有任何挂载请求时才在这里取消
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class CancellationRegistry {
+
+    private final Map<String, Cancellation> running = new ConcurrentHashMap<>();
+
+    public Cancellation register(String messageId, String userId) {
+        Cancellation cancellation = new Cancellation(messageId, userId);
+        Cancellation previous = running.put(messageId, cancellation);
+        if (previous != null) {
+            // 同一 messageId 重复提交，视为重新提问，取消之前的编排
+            previous.cancel();
+        }
+        return cancellation;
+    }
+
+    /**
+     * 编排结束(完成、失败或取消)后移除
+     */
+    public void remove(Cancellation cancellation) {
+        running.remove(cancellation.messageId(), cancellation);
+    }
+
+    /**
+     * 用户是否有进行中的编排
+     */
+    public boolean isRunning(String userId) {
+        return running.values().stream().anyMatch(cancellation -> Objects.equals(cancellation.userId(), userId));
+    }
+
+    /**
+     * 取消指定用户的编排，messageId 不属于该用户时忽略
+     */
+    public boolean cancel(String messageId, String userId) {
+        Cancellation cancellation = messageId == null ? null : running.get(messageId);
+        if (cancellation == null || !Objects.equals(cancellation.userId(), userId)) {
+            log.info("No running orchestration {} for user {}", messageId, userId);
+            return false;
+        }
+        log.info("Cancel orchestration {} requested by user {}", messageId, userId);
+        return cancellation.cancel();
+    }
+}
@@ -1,18 +1,29 @@
 package com.jim.mcpclient.test;
 
-import io.modelcontextprotocol.client.McpSyncClient;
+import com.jim.mcpclient.config.PromptCacheProperties;
+import com.jim.mcpclient.config.ToolExecutionProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.google.genai.GoogleGenAiChatModel;
-import org.springframework.ai.mcp.SyncMcpToolCallbackProvider;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
-import java.util.List;
-
 /**
+ * 工具不再作为默认工具注册，而是由 {@link ToolSelector} 按编排阶段在每次调用时指定
+ *
+ * 模型经过 {@link TrafficReplay} 包装，开启录制/回放时在这一层拦截；
+ * 各阶段使用的模型配置由 {@link ModelRouter} 在每次调用时指定，{@link ModelRoutingAdvisor} 统计调用延迟和错误；
+ * 模型调用经 {@link ModelSchedulingAdvisor} 在用户之间公平排队
+ *
  * @author James Smith
  */
 @Configuration
@@ -22,10 +33,11 @@ public class ChatClientConfig {
      * 跟用户交互的模型
      */
     @Bean(name = "userChatClient")
-    public ChatClient userChatClient(List<McpSyncClient> mcpSyncClients, GoogleGenAiChatModel chatModel, ChatMemory chatMemory) {
-        return ChatClient.builder(chatModel)
-                .defaultToolCallbacks(SyncMcpToolCallbackProvider.syncToolCallbacks(mcpSyncClients))
-                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build())
+    public ChatClient userChatClient(ChatModel chatModel, ChatMemory chatMemory, TrafficReplay trafficReplay,
+                                     ModelRouter modelRouter, ModelScheduler modelScheduler) {
+        return ChatClient.builder(trafficReplay.wrap(chatModel))
+                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build(),
+                        new ModelSchedulingAdvisor(modelScheduler), new ModelRoutingAdvisor(modelRouter))
                 .build();
     }
 
@@ -35,10 +47,49 @@ public class ChatClientConfig {
      */
     @Bean(name = "workClient")
     @Primary
-    public ChatClient workClient(List<McpSyncClient> mcpSyncClients, GoogleGenAiChatModel chatModel, ChatMemory chatMemory) {
-        return ChatClient.builder(chatModel)
-                .defaultToolCallbacks(SyncMcpToolCallbackProvider.syncToolCallbacks(mcpSyncClients))
-                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build())
+    public ChatClient workClient(ChatModel chatModel, ChatMemory chatMemory, TrafficReplay trafficReplay,
+                                     ModelRouter modelRouter, ModelScheduler modelScheduler) {
+        return ChatClient.builder(trafficReplay.wrap(chatModel))
+                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build(),
+                        new ModelSchedulingAdvisor(modelScheduler), new ModelRoutingAdvisor(modelRouter))
+                .build();
+    }
+
+    /**
+     * 快速通道分类使用的模型，不带会话记忆
+     */
+    @Bean(name = "classifierClient")
+    public ChatClient classifierClient(ChatModel chatModel, TrafficReplay trafficReplay, ModelRouter modelRouter) {
+        return ChatClient.builder(trafficReplay.wrap(chatModel))
+                .defaultAdvisors(new ModelRoutingAdvisor(modelRouter))
+                .build();
+    }
+
+    /**
+     * 提示词上下文缓存，未启用时不使用缓存
+     */
+    @Bean
+    public PromptCacheProvider promptCacheProvider(PromptCacheProperties properties, GoogleGenAiChatModel chatModel) {
+        if (!properties.isEnabled()) {
+            return PromptCacheProvider.NONE;
+        }
+        String model = properties.getModel() != null ? properties.getModel() : chatModel.getDefaultOptions().getModel();
+        return new GeminiPromptCacheProvider(chatModel.getCachedContentService(), model, properties.getTtl());
+    }
+
+    /**
+     * 工具调用管理器，同一次回复中的多个工具调用并行执行，替换自动配置的默认实现
+     */
+    @Bean
+    public ParallelToolCallingManager toolCallingManager(ToolCallbackResolver toolCallbackResolver,
+                                                         ToolExecutionExceptionProcessor toolExecutionExceptionProcessor,
+                                                         ObjectProvider<ObservationRegistry> observationRegistry,
+                                                         ToolExecutionProperties properties, MeterRegistry meterRegistry) {
+        ToolCallingManager delegate = ToolCallingManager.builder()
+                .observationRegistry(observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP))
+                .toolCallbackResolver(toolCallbackResolver)
+                .toolExecutionExceptionProcessor(toolExecutionExceptionProcessor)
                 .build();
+        return new ParallelToolCallingManager(delegate, properties, meterRegistry);
     }
 }
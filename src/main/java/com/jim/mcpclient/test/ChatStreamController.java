@@ -0,0 +1,177 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.ChatStreamProperties;
+import com.jim.mcpclient.model.ChatRequest;
+import com.jim.mcpclient.model.ChatResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * HTTP 流式聊天(Server-Sent Events)
+ *
+ * 与 STOMP 的 /app/chat/stream 使用同一套编排和 {@link SingleFlight} 合并规则，推送相同的 {@link ChatResponse} 消息，
+ * 不需要 WebSocket 和消息代理，适合服务间调用和 API 网关接入：
+ * - POST /api/chat/stream：请求体为 {@link ChatRequest}，响应为 text/event-stream，
+ *   每条消息一个事件(event 为消息类型，id 为 sequence)，收到 isFinal 的消息后结束
+ * - POST /api/chat/cancel：请求体为 {userId, messageId}，取消进行中的请求
+ *
+ * 每个连接作为一个会话登记到 {@link SingleFlight}，消息写入有界缓存，按客户端读取的速度写出；
+ * 缓存写满时关闭连接。连接断开(包括缓存写满)按会话断开处理，窗口期内用相同 messageId 重新请求可以继续接收。
+ * 连接同时登记到 {@link SessionRegistry}，用户的连接全部关闭后与 STOMP 用户一样释放会话记忆。
+ * 连接的最长时长为 spring.mvc.async.request-timeout，需要长于编排的执行时间(容器默认只有 30s)，保活注释不会延长它。
+ *
+ * 指标：
+ * - agent.chat-stream.open：当前连接数
+ * - agent.chat-stream.overflows：因缓存写满被关闭的连接数
+ *
+ * @author James Smith
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/chat")
+public class ChatStreamController {
+
+    @Autowired
+    private AgentOrchestrator agentOrchestrator;
+    @Autowired
+    private SingleFlight singleFlight;
+    @Autowired
+    private SessionRegistry sessionRegistry;
+    @Autowired
+    private ChatStreamProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final AtomicInteger open = new AtomicInteger();
+    private Counter overflows;
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("agent.chat-stream.open", open);
+        overflows = meterRegistry.counter("agent.chat-stream.overflows");
+    }
+
+    @PostMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ChatResponse>> stream(@RequestBody ChatRequest request) {
+        if (!StringUtils.hasText(request.getUserId()) || !StringUtils.hasText(request.getMessage())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "userId 和 message 不能为空");
+        }
+        if (request.getMessageId() == null) {
+            request.setMessageId(UUID.randomUUID().toString());
+        }
+        Stream stream = new Stream("sse-" + UUID.randomUUID(), request.getUserId());
+
+        Flux<ServerSentEvent<ChatResponse>> events = stream.sink.asFlux().map(ChatStreamController::event);
+        if (properties.getKeepAlive().isPositive()) {
+            Flux<ServerSentEvent<ChatResponse>> keepAlive = Flux.interval(properties.getKeepAlive())
+                    .map(_ -> ServerSentEvent.<ChatResponse>builder().comment("keep-alive").build())
+                    .onBackpressureDrop();
+            events = Flux.merge(events, keepAlive);
+        }
+        return events
+                .takeUntil(event -> event.data() != null && event.data().isFinal())
+                .doOnSubscribe(_ -> start(request, stream))
+                .doFinally(_ -> stream.close());
+    }
+
+    @PostMapping("/cancel")
+    public ResponseEntity<Void> cancel(@RequestBody ChatRequest request) {
+        return singleFlight.cancel(request.getUserId(), request.getMessageId())
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 登记连接并发送开始消息；重复请求挂到正在执行的编排上，否则在编排通道中执行
+     */
+    private void start(ChatRequest request, Stream stream) {
+        String userId = request.getUserId();
+        String messageId = request.getMessageId();
+        open.incrementAndGet();
+        sessionRegistry.streamOpened(userId);
+        singleFlight.openStream(stream.sessionId, stream);
+        stream.accept(ChatResponse.builder()
+                .messageId(messageId)
+                .type(ChatResponse.MessageType.START)
+                .isFinal(false)
+                .timestamp(System.currentTimeMillis())
+                .build());
+        if (singleFlight.join(userId, request, stream.sessionId)) {
+            log.info("Starting orchestration {} of user {} for SSE stream {}", messageId, userId, stream.sessionId);
+            agentOrchestrator.submit(ExecutionLane.ORCHESTRATION, userId, request);
+        }
+    }
+
+    private static ServerSentEvent<ChatResponse> event(ChatResponse response) {
+        return ServerSentEvent.builder(response)
+                .id(response.getSequence() == null ? null : String.valueOf(response.getSequence()))
+                .event(response.getType() == null ? null : response.getType().name())
+                .build();
+    }
+
+    /**
+     * 一个 SSE 连接：{@link SingleFlight} 推送的消息写入有界缓存，由响应按客户端的读取速度取出
+     */
+    private class Stream implements Consumer<ChatResponse> {
+
+        private final String sessionId;
+        private final String userId;
+        private final Sinks.Many<ChatResponse> sink = Sinks.many().unicast()
+                .onBackpressureBuffer(Queues.<ChatResponse>get(properties.getBufferSize()).get());
+        private boolean closed;
+
+        Stream(String sessionId, String userId) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+        }
+
+        /**
+         * 由编排线程调用，只写入缓存，不等待客户端
+         */
+        @Override
+        public synchronized void accept(ChatResponse response) {
+            if (closed) {
+                return;
+            }
+            Sinks.EmitResult result = sink.tryEmitNext(response);
+            if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+                log.warn("SSE stream {} fell behind by {} messages, closing it", sessionId, properties.getBufferSize());
+                overflows.increment();
+                closed = true;
+                sink.tryEmitError(new IllegalStateException("SSE stream " + sessionId + " overflowed"));
+                // 调用方持有编排的锁，在其他线程上按断开处理
+                CompletableFuture.runAsync(() -> singleFlight.closeStream(sessionId));
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+            }
+            singleFlight.closeStream(sessionId);
+            sessionRegistry.streamClosed(userId);
+            open.decrementAndGet();
+        }
+    }
+}
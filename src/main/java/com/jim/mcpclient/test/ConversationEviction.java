@@ -0,0 +1,153 @@
+package com.jim.mcpclient.test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.jim.mcpclient.config.JsonUtils;
+import com.jim.mcpclient.config.SessionProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 释放离开用户的会话记忆
+ *
+ * 由 {@link SessionRegistry} 在用户的会话全部关闭并超过保留时长后调用。
+ * OFFLOAD 模式把会话记忆中的文本消息写入磁盘后再清除，用户重新订阅时恢复；EVICT 模式直接清除。
+ *
+ * 指标：
+ * - agent.memory.conversations / agent.memory.messages：内存中保留的会话数和消息数
+ * - agent.memory.evicted{mode}：释放的会话数
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class ConversationEviction {
+
+    /**
+     * 转存的消息，只保留类型和文本(会话记忆中只有用户和模型的文本消息)
+     */
+    record StoredMessage(MessageType type, String text) {
+    }
+
+    @Autowired
+    private SessionProperties properties;
+    @Autowired
+    private ChatMemory chatMemory;
+    @Autowired
+    private ChatMemoryRepository chatMemoryRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("agent.memory.conversations", chatMemoryRepository,
+                repository -> repository.findConversationIds().size());
+        meterRegistry.gauge("agent.memory.messages", chatMemoryRepository,
+                repository -> repository.findConversationIds().stream()
+                        .mapToInt(id -> repository.findByConversationId(id).size())
+                        .sum());
+        cleanUp();
+    }
+
+    /**
+     * 释放用户的会话记忆
+     */
+    public void evict(String userId) {
+        SessionProperties.MemoryEviction mode = properties.getMemoryEviction();
+        List<Message> messages = chatMemory.get(userId);
+        if (mode == SessionProperties.MemoryEviction.NONE || messages.isEmpty()) {
+            return;
+        }
+        if (mode == SessionProperties.MemoryEviction.OFFLOAD && !offload(userId, messages)) {
+            return;
+        }
+        chatMemory.clear(userId);
+        meterRegistry.counter("agent.memory.evicted", "mode", mode.name().toLowerCase()).increment();
+        log.info("Released {} memory messages of user {} ({})", messages.size(), userId, mode);
+    }
+
+    /**
+     * 恢复转存的会话记忆，内存中已有会话记忆时丢弃转存内容
+     */
+    public void restore(String userId) {
+        Path file = file(userId);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            if (chatMemory.get(userId).isEmpty()) {
+                List<StoredMessage> stored = JsonUtils.getObjectMapper().readValue(
+                        Files.readString(file, StandardCharsets.UTF_8), new TypeReference<List<StoredMessage>>() {
+                        });
+                chatMemory.add(userId, stored.stream().map(ConversationEviction::toMessage).toList());
+                log.info("Restored {} memory messages of user {}", stored.size(), userId);
+            }
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to restore offloaded memory {}", file, e);
+        }
+    }
+
+    private boolean offload(String userId, List<Message> messages) {
+        Path file = file(userId);
+        try {
+            Files.createDirectories(properties.getOffloadDirectory());
+            List<StoredMessage> stored = messages.stream()
+                    .map(message -> new StoredMessage(message.getMessageType(), message.getText()))
+                    .toList();
+            Files.writeString(file, JsonUtils.getObjectMapper().writeValueAsString(stored), StandardCharsets.UTF_8);
+            return true;
+        } catch (IOException e) {
+            // 转存失败时保留在内存中，下次检查时重试
+            log.warn("Failed to offload memory of user {} to {}", userId, file, e);
+            return false;
+        }
+    }
+
+    private void cleanUp() {
+        if (!Files.isDirectory(properties.getOffloadDirectory())) {
+            return;
+        }
+        FileTime expiredBefore = FileTime.from(Instant.now().minus(properties.getOffloadRetention()));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(properties.getOffloadDirectory(), "*.json")) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).compareTo(expiredBefore) < 0) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up offloaded memory {}", properties.getOffloadDirectory(), e);
+        }
+    }
+
+    private Path file(String userId) {
+        // userId 由客户端提供，使用摘要作为文件名
+        return properties.getOffloadDirectory().resolve(TrafficLog.digest(userId) + ".json");
+    }
+
+    private static Message toMessage(StoredMessage message) {
+        return switch (message.type()) {
+            case ASSISTANT -> new AssistantMessage(message.text());
+            case SYSTEM -> new SystemMessage(message.text());
+            default -> new UserMessage(message.text());
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.jim.mcpclient.test;
+
+import com.google.genai.errors.ApiException;
+import com.google.genai.errors.GenAiIOException;
+import com.jim.mcpclient.config.RetryProperties;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 默认重试策略：按异常链判断传输失败，指数退避并加随机抖动
+ *
+ * @author James Smith
+ */
+@Component
+public class DefaultRetryPolicy implements RetryPolicy {
+
+    @Autowired
+    private RetryProperties properties;
+
+    @Override
+    public boolean isTransient(Throwable error) {
+        // 异常链可能被 Reactor 或 Spring AI 多次包装，逐层检查(限制深度防止循环引用)
+        for (int depth = 0; error != null && depth < 16; error = error.getCause(), depth++) {
+            switch (error) {
+                case OrchestrationCancelledException _, NonTransientAiException _ -> {
+                    return false;
+                }
+                case TransientAiException _, GenAiIOException _, IOException _, TimeoutException _, ResourceAccessException _ -> {
+                    return true;
+                }
+                case ApiException e -> {
+                    return isTransientStatus(e.code());
+                }
+                case RestClientResponseException e -> {
+                    return isTransientStatus(e.getStatusCode().value());
+                }
+                default -> {
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Duration transportBackoff(int attempt) {
+        if (attempt >= properties.getTransportAttempts()) {
+            return null;
+        }
+        double backoff = properties.getInitialBackoff().toMillis() * Math.pow(properties.getBackoffMultiplier(), attempt - 1);
+        double capped = Math.min(backoff, properties.getMaxBackoff().toMillis());
+        double jitter = Math.clamp(properties.getJitter(), 0.0, 1.0);
+        return Duration.ofMillis((long) (capped * (1 - jitter * ThreadLocalRandom.current().nextDouble())));
+    }
+
+    @Override
+    public int semanticRetries() {
+        return properties.getSemanticRetries();
+    }
+
+    @Override
+    public int toolResultChars() {
+        return properties.getToolResultChars();
+    }
+
+    @Override
+    public RetryBudget newBudget() {
+        return new RetryBudget(properties.getBudget());
+    }
+
+    private static boolean isTransientStatus(int status) {
+        return status == 408 || status == 429 || status >= 500;
+    }
+}
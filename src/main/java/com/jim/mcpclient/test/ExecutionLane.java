@@ -0,0 +1,18 @@
+package com.jim.mcpclient.test;
+
+/**
+ * 请求类别，每个类别在独立的执行通道中运行，线程、排队和模型调用名额互不占用
+ *
+ * @author James Smith
+ */
+public enum ExecutionLane {
+
+    /** 简单对话(/app/chat) */
+    INTERACTIVE,
+
+    /** 多阶段编排(/app/chat/stream、/api/chat/stream) */
+    ORCHESTRATION,
+
+    /** 离线批量任务(/api/batches) */
+    BATCH
+}
@@ -0,0 +1,120 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.ExecutionLaneProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按请求类别隔离的执行通道(bulkhead)
+ *
+ * 每个 {@link ExecutionLane} 有独立的线程池和有界队列，大量编排排队时不会占用简单对话的线程；
+ * 模型调用名额的隔离由 {@link ModelScheduler} 按通道比例控制。
+ * 队列已满时按通道的过载策略拒绝新请求或丢弃排队最久的请求，被拒绝的请求执行调用方提供的回调(通常回复 ERROR)。
+ *
+ * 指标(标签 lane)：
+ * - agent.lanes.active / agent.lanes.queued：执行中和排队中的请求数
+ * - agent.lanes.wait：请求从提交到开始执行的等待时间
+ * - agent.lanes.rejected：因过载被拒绝的请求数(标签 reason=full|shed)
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class ExecutionLanes {
+
+    /**
+     * 请求因过载被拒绝时回复给用户的错误信息
+     */
+    public static final String OVERLOADED = "服务繁忙，请稍后重试";
+
+    @Autowired
+    private ExecutionLaneProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<ExecutionLane, ThreadPoolExecutor> executors = new EnumMap<>(ExecutionLane.class);
+
+    @PostConstruct
+    public void init() {
+        for (ExecutionLane lane : ExecutionLane.values()) {
+            ExecutionLaneProperties.Lane config = properties.get(lane);
+            String name = lane.name().toLowerCase(Locale.ROOT);
+            int threads = Math.max(1, config.getMaxConcurrency());
+            BlockingQueue<Runnable> queue = config.getQueueCapacity() > 0
+                    ? new ArrayBlockingQueue<>(config.getQueueCapacity())
+                    : new SynchronousQueue<>();
+            ThreadFactory threadFactory = config.isVirtualThreads()
+                    ? Thread.ofVirtual().name("lane-" + name + "-", 0).factory()
+                    : Thread.ofPlatform().name("lane-" + name + "-", 0).daemon().factory();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue,
+                    threadFactory, overloadHandler(lane, config.getOverload()));
+            executor.allowCoreThreadTimeOut(true);
+            executors.put(lane, executor);
+
+            Tags tags = Tags.of("lane", name);
+            meterRegistry.gauge("agent.lanes.active", tags, executor, ThreadPoolExecutor::getActiveCount);
+            meterRegistry.gauge("agent.lanes.queued", tags, queue, BlockingQueue::size);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    /**
+     * 在通道中执行请求，过载被拒绝时在调用线程上执行 onRejected
+     */
+    public void submit(ExecutionLane lane, Runnable task, Runnable onRejected) {
+        Timer wait = meterRegistry.timer("agent.lanes.wait", "lane", lane.name().toLowerCase(Locale.ROOT));
+        executors.get(lane).execute(new LaneTask(task, onRejected, wait));
+    }
+
+    private RejectedExecutionHandler overloadHandler(ExecutionLane lane, ExecutionLaneProperties.Overload overload) {
+        String name = lane.name().toLowerCase(Locale.ROOT);
+        return (runnable, executor) -> {
+            if (overload == ExecutionLaneProperties.Overload.SHED_OLDEST && !executor.isShutdown()
+                    && executor.getQueue().poll() instanceof LaneTask oldest) {
+                log.warn("Lane {} is overloaded, shedding its oldest queued request", name);
+                meterRegistry.counter("agent.lanes.rejected", "lane", name, "reason", "shed").increment();
+                oldest.onRejected.run();
+                if (executor.getQueue().offer(runnable)) {
+                    return;
+                }
+            }
+            log.warn("Lane {} is overloaded, rejecting request", name);
+            meterRegistry.counter("agent.lanes.rejected", "lane", name, "reason", "full").increment();
+            ((LaneTask) runnable).onRejected.run();
+        };
+    }
+
+    private record LaneTask(Runnable task, Runnable onRejected, Timer waitTimer, long submittedAt) implements Runnable {
+
+        LaneTask(Runnable task, Runnable onRejected, Timer wait) {
+            this(task, onRejected, wait, System.nanoTime());
+        }
+
+        @Override
+        public void run() {
+            waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.FastPathProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 快速通道分类
+ *
+ * 判断消息是直接回答还是进入多阶段编排，依次使用：
+ * 1. 长度超过上限或包含复杂关键词 → 编排
+ * 2. 问候或很短的消息 → 直接回答
+ * 3. 模型分类(可选，使用 CLASSIFY 阶段的模型配置，不写入会话记忆)
+ * 4. 仍无法确定 → 编排
+ *
+ * 每次判断计入指标 agent.fast-path.decisions(标签 route、reason)，模型分类耗时计入 agent.fast-path.classification
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class FastPathClassifier {
+
+    public enum Route {
+        DIRECT,      // 直接回答
+        ORCHESTRATE  // 进入多阶段编排
+    }
+
+    @Autowired
+    private FastPathProperties properties;
+    @Autowired
+    private ModelRouter modelRouter;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Resource
+    private ChatClient classifierClient;
+
+    public Route classify(String message) {
+        if (!properties.isEnabled() || message == null || message.isBlank()) {
+            return Route.ORCHESTRATE;
+        }
+
+        String text = normalize(message);
+        if (text.length() > properties.getMaxLength()) {
+            return decide(Route.ORCHESTRATE, "length");
+        }
+        if (properties.getComplexKeywords().stream().anyMatch(text::contains)) {
+            return decide(Route.ORCHESTRATE, "keyword");
+        }
+        if (properties.getGreetings().stream().anyMatch(greeting -> text.startsWith(greeting) && text.length() <= greeting.length() + 4)) {
+            return decide(Route.DIRECT, "greeting");
+        }
+        if (text.length() <= properties.getShortLength()) {
+            return decide(Route.DIRECT, "short");
+        }
+        if (!properties.isModelClassification()) {
+            return decide(Route.ORCHESTRATE, "default");
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            Route route = classifyWithModel(message);
+            return decide(route, "model");
+        } catch (RuntimeException e) {
+            log.warn("Fast path classification failed, falling back to orchestration: {}", e.toString());
+            return decide(Route.ORCHESTRATE, "model_error");
+        } finally {
+            sample.stop(meterRegistry.timer("agent.fast-path.classification"));
+        }
+    }
+
+    private Route classifyWithModel(String message) {
+        PromptTemplate.RenderedPrompt prompt = PromptTemplates.CLASSIFY.render(Map.of("message", message));
+        Optional<ModelRouter.Route> route = modelRouter.route(ToolStage.CLASSIFY);
+        ChatClient.ChatClientRequestSpec spec = classifierClient.prompt()
+                .system(prompt.system())
+                .user(prompt.user());
+        route.ifPresent(r -> spec.options(r.options().build()).advisors(r::params));
+
+        String answer = spec.call().content();
+        log.debug("Fast path classification of '{}': {}", message, answer);
+        return answer != null && answer.strip().toUpperCase(Locale.ROOT).startsWith("SIMPLE") ? Route.DIRECT : Route.ORCHESTRATE;
+    }
+
+    private Route decide(Route route, String reason) {
+        meterRegistry.counter("agent.fast-path.decisions",
+                "route", route.name().toLowerCase(Locale.ROOT),
+                "reason", reason).increment();
+        return route;
+    }
+
+    /**
+     * 去掉空白、标点和符号并转为小写
+     */
+    private static String normalize(String message) {
+        return message.replaceAll("[\\p{P}\\p{S}\\s]+", "").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,37 @@
+package com.jim.mcpclient.test;
+
+import org.springframework.ai.google.genai.cache.CachedContentRequest;
+import org.springframework.ai.google.genai.cache.GoogleGenAiCachedContentService;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * 基于 Gemini cachedContent 的提示词缓存
+ *
+ * 注意：Gemini 对可缓存内容有最小 token 数要求，静态部分过短时创建会失败，此时自动退回到不使用缓存
+ *
+ * @author James Smith
+ */
+public class GeminiPromptCacheProvider extends VersionedPromptCacheProvider {
+
+    private final GoogleGenAiCachedContentService cachedContentService;
+    private final String model;
+
+    public GeminiPromptCacheProvider(GoogleGenAiCachedContentService cachedContentService, String model, Duration ttl) {
+        super(ttl, Clock.systemUTC());
+        this.cachedContentService = cachedContentService;
+        this.model = model;
+    }
+
+    @Override
+    protected String createCache(PromptTemplate template, Duration ttl) {
+        return cachedContentService.create(CachedContentRequest.builder()
+                        .model(model)
+                        .displayName(template.version())
+                        .systemInstruction(template.staticText())
+                        .ttl(ttl)
+                        .build())
+                .getName();
+    }
+}
@@ -0,0 +1,110 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.McpStartupProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.modelcontextprotocol.client.McpSyncClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MCP 连接后台初始化
+ *
+ * 应用就绪后为每个 MCP 连接启动一个后台线程执行握手，各连接互不等待；握手完成前到达的请求
+ * 在第一次使用连接时等待同一次握手。全部连接完成握手后预先加载 {@link McpToolRegistry}。
+ * 某个连接握手失败只记录日志，工具注册表中该连接暂时没有工具，之后使用时会重新握手并加载。
+ *
+ * 启动耗时：
+ * - application.ready.time(Spring Boot 提供)：应用就绪、/ws 可连接的耗时
+ * - agent.mcp.ready.time：从 JVM 启动到所有 MCP 连接初始化完成的耗时
+ * - agent.mcp.initialization{connection,outcome}：各连接的握手耗时
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class McpClientWarmUp {
+
+    @Autowired(required = false)
+    private List<McpSyncClient> mcpSyncClients = List.of();
+    @Autowired
+    private McpToolRegistry mcpToolRegistry;
+    @Autowired
+    private McpStartupProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 从 JVM 启动到所有 MCP 连接初始化完成的毫秒数，完成前为 NaN
+     */
+    private volatile double mcpReadyMillis = Double.NaN;
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        TimeGauge.builder("agent.mcp.ready.time", this, TimeUnit.MILLISECONDS, warmUp -> warmUp.mcpReadyMillis)
+                .description("Time from JVM start until all MCP connections are initialized")
+                .register(meterRegistry);
+        log.info("Application ready in {} ms, {} MCP connections {}", event.getTimeTaken().toMillis(), mcpSyncClients.size(),
+                properties.isBackground() ? "initializing in background" : "will initialize on first use");
+        if (!properties.isBackground()) {
+            return;
+        }
+        if (mcpSyncClients.isEmpty()) {
+            mcpReadyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            return;
+        }
+
+        // 使用平台线程：预加载工具时在 McpToolRegistry 的 synchronized 块内阻塞等待 listTools，虚拟线程会钉住载体线程
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofPlatform().name("mcp-init-", 0).daemon().factory());
+        List<CompletableFuture<Boolean>> initializations = mcpSyncClients.stream()
+                .map(client -> CompletableFuture.supplyAsync(() -> initialize(client), executor))
+                .toList();
+        executor.shutdown();
+        // 最后一个完成握手的线程负责汇总和预加载工具
+        CompletableFuture.allOf(initializations.toArray(CompletableFuture[]::new)).thenRun(() -> {
+            mcpReadyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            boolean allInitialized = initializations.stream().allMatch(CompletableFuture::join);
+            log.info("MCP connections {} {} ms after JVM start", allInitialized ? "initialized" : "partially initialized",
+                    (long) mcpReadyMillis);
+            if (properties.isLoadTools()) {
+                try {
+                    mcpToolRegistry.snapshot();
+                } catch (RuntimeException e) {
+                    log.warn("Failed to preload tool registry, tools will be loaded on first use", e);
+                }
+            }
+        });
+    }
+
+    private boolean initialize(McpSyncClient client) {
+        String connectionName = McpToolRegistry.connectionName(client);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean success = false;
+        try {
+            if (!client.isInitialized()) {
+                client.initialize();
+            }
+            success = true;
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Failed to initialize MCP connection {}, will retry on first use", connectionName, e);
+            return false;
+        } finally {
+            long nanos = sample.stop(meterRegistry.timer("agent.mcp.initialization",
+                    "connection", connectionName, "outcome", success ? "success" : "error"));
+            log.info("MCP connection {} {} in {} ms", connectionName, success ? "initialized" : "failed",
+                    TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+}
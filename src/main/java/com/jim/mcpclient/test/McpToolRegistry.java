@@ -0,0 +1,231 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.McpStartupProperties;
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.spec.McpSchema;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.mcp.McpConnectionInfo;
+import org.springframework.ai.mcp.McpToolFilter;
+import org.springframework.ai.mcp.SyncMcpToolCallback;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 本地 MCP 工具注册表
+ *
+ * 启动后首次使用时对每个 MCP 连接执行一次 listTools，之后只在收到 tool-list-changed 通知时
+ * 增量替换对应连接的工具。每次变更都生成一个新的不可变快照(写时复制)并递增版本号，
+ * 读取方直接拿当前快照，无需加锁，也不会在每次请求时重新 listTools。
+ *
+ * 各连接单独加载，某个连接加载失败(例如 MCP server 不可达)时该连接暂时没有工具，其他连接照常使用；
+ * 之后使用注册表时在后台线程上重新加载失败的连接(间隔 agent.mcp-startup.tool-retry-interval)，
+ * 成功后替换该连接的工具，读取方不会等待重试。
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class McpToolRegistry {
+
+    @Autowired(required = false)
+    private List<McpSyncClient> mcpSyncClients = List.of();
+    @Autowired
+    private ObjectProvider<McpToolFilter> toolFilter;
+    @Autowired
+    private TrafficReplay trafficReplay;
+    @Autowired
+    private ResultShaper resultShaper;
+    @Autowired
+    private BlobStore blobStore;
+    @Autowired
+    private McpStartupProperties startupProperties;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(Snapshot.EMPTY);
+
+    /**
+     * 加载工具失败的连接及最近一次失败的时间；重试进行中为 {@link #RETRYING}
+     */
+    private final Map<String, Long> failedConnections = new ConcurrentHashMap<>();
+
+    private static final long RETRYING = Long.MAX_VALUE;
+
+    /**
+     * 返回当前工具快照，首次调用时加载所有连接的工具
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = current.get();
+        if (snapshot.version() == 0) {
+            synchronized (this) {
+                snapshot = current.get();
+                if (snapshot.version() == 0) {
+                    Map<String, List<ToolCallback>> toolsByConnection = new LinkedHashMap<>();
+                    if (trafficReplay.isReplay()) {
+                        // 回放模式使用录制的工具，不访问 MCP server
+                        trafficReplay.replayTools().forEach((connectionName, toolCallbacks) ->
+                                toolsByConnection.put(connectionName, ObservableToolCallback.wrap(toolCallbacks, resultShaper, blobStore)));
+                    } else {
+                        for (McpSyncClient client : mcpSyncClients) {
+                            toolsByConnection.put(connectionName(client), load(client));
+                        }
+                    }
+                    snapshot = Snapshot.of(1, toolsByConnection);
+                    current.set(snapshot);
+                    log.info("Tool registry loaded, version {}: {} tools", snapshot.version(), snapshot.toolCallbacks().size());
+                }
+            }
+        }
+        if (!failedConnections.isEmpty()) {
+            retryFailedConnections();
+        }
+        return snapshot;
+    }
+
+    /**
+     * 用通知中的最新工具列表替换指定连接的工具，其他连接的工具保持不变
+     */
+    public synchronized void refreshTools(String connectionName, List<McpSchema.Tool> tools) {
+        if (trafficReplay.isReplay()) {
+            log.info("Ignore tool list change from {} in replay mode", connectionName);
+            return;
+        }
+        McpSyncClient client = mcpSyncClients.stream()
+                .filter(c -> connectionName.equals(connectionName(c)))
+                .findFirst()
+                .orElse(null);
+        if (client == null) {
+            log.warn("Ignore tool list change from unknown connection: {}", connectionName);
+            return;
+        }
+
+        snapshot();
+        replace(connectionName, client, tools);
+    }
+
+    /**
+     * 加载一个连接的工具，失败时记录该连接并返回空列表
+     */
+    private List<ToolCallback> load(McpSyncClient client) {
+        String connectionName = connectionName(client);
+        try {
+            List<ToolCallback> toolCallbacks = toolCallbacks(client, listTools(client));
+            failedConnections.remove(connectionName);
+            return toolCallbacks;
+        } catch (RuntimeException e) {
+            failedConnections.put(connectionName, System.currentTimeMillis());
+            log.warn("Failed to load tools of MCP connection {}, it has no tools until a retry succeeds: {}", connectionName, e.toString());
+            return List.of();
+        }
+    }
+
+    /**
+     * 为距上次失败超过重试间隔的连接启动后台重试，每个连接同时只有一次重试
+     */
+    private void retryFailedConnections() {
+        long now = System.currentTimeMillis();
+        long interval = startupProperties.getToolRetryInterval().toMillis();
+        for (McpSyncClient client : mcpSyncClients) {
+            String connectionName = connectionName(client);
+            Long failedAt = failedConnections.get(connectionName);
+            if (failedAt != null && failedAt != RETRYING && now - failedAt >= interval
+                    && failedConnections.replace(connectionName, failedAt, RETRYING)) {
+                Thread.ofVirtual().name("mcp-tools-" + connectionName).start(() -> retry(client, connectionName));
+            }
+        }
+    }
+
+    /**
+     * 在注册表锁之外重新 listTools，成功后替换该连接的工具
+     */
+    private void retry(McpSyncClient client, String connectionName) {
+        List<McpSchema.Tool> tools;
+        try {
+            tools = listTools(client);
+        } catch (RuntimeException e) {
+            failedConnections.put(connectionName, System.currentTimeMillis());
+            log.warn("Retry of loading tools of MCP connection {} failed: {}", connectionName, e.toString());
+            return;
+        }
+        replace(connectionName, client, tools);
+    }
+
+    /**
+     * 替换一个连接的工具并发布新版本的快照
+     */
+    private synchronized void replace(String connectionName, McpSyncClient client, List<McpSchema.Tool> tools) {
+        Snapshot previous = current.get();
+        Map<String, List<ToolCallback>> toolsByConnection = new LinkedHashMap<>(previous.toolsByConnection());
+        toolsByConnection.put(connectionName, toolCallbacks(client, tools));
+        failedConnections.remove(connectionName);
+
+        Snapshot next = Snapshot.of(previous.version() + 1, toolsByConnection);
+        current.set(next);
+        log.info("Tool registry updated to version {} by connection {}: {} tools", next.version(), connectionName, next.toolCallbacks().size());
+    }
+
+    private List<ToolCallback> toolCallbacks(McpSyncClient client, List<McpSchema.Tool> tools) {
+        McpConnectionInfo connectionInfo = McpConnectionInfo.builder()
+                .clientCapabilities(client.getClientCapabilities())
+                .clientInfo(client.getClientInfo())
+                .initializeResult(client.getCurrentInitializationResult())
+                .build();
+        McpToolFilter filter = toolFilter.getIfAvailable(() -> (info, tool) -> true);
+
+        List<ToolCallback> toolCallbacks = tools.stream()
+                .filter(tool -> filter.test(connectionInfo, tool))
+                .<ToolCallback>map(tool -> new ObservableToolCallback(trafficReplay.wrap(SyncMcpToolCallback.builder()
+                        .mcpClient(client)
+                        .tool(tool)
+                        .build()), resultShaper, blobStore))
+                .toList();
+        trafficReplay.recordTools(connectionName(client), toolCallbacks);
+        return toolCallbacks;
+    }
+
+    private static List<McpSchema.Tool> listTools(McpSyncClient client) {
+        List<McpSchema.Tool> tools = new ArrayList<>();
+        McpSchema.ListToolsResult result = client.listTools();
+        tools.addAll(result.tools());
+        while (result.nextCursor() != null) {
+            result = client.listTools(result.nextCursor());
+            tools.addAll(result.tools());
+        }
+        return tools;
+    }
+
+    /**
+     * 自动配置创建的客户端名称格式为 "{spring.ai.mcp.client.name} - {连接名}"
+     */
+    static String connectionName(McpSyncClient client) {
+        String name = client.getClientInfo().name();
+        int separator = name.lastIndexOf(" - ");
+        return separator < 0 ? name : name.substring(separator + 3);
+    }
+
+    /**
+     * 不可变的工具快照
+     *
+     * @param version           版本号，每次工具变更递增
+     * @param toolsByConnection 按连接名分组的工具
+     * @param toolCallbacks     全部工具
+     * @param index             基于全部工具的相关度索引
+     */
+    public record Snapshot(long version, Map<String, List<ToolCallback>> toolsByConnection,
+                           List<ToolCallback> toolCallbacks, Bm25ToolIndex index) {
+
+        static final Snapshot EMPTY = of(0, Map.of());
+
+        static Snapshot of(long version, Map<String, List<ToolCallback>> toolsByConnection) {
+            List<ToolCallback> all = toolsByConnection.values().stream().flatMap(List::stream).toList();
+            return new Snapshot(version, Map.copyOf(toolsByConnection), all, new Bm25ToolIndex(all));
+        }
+    }
+}
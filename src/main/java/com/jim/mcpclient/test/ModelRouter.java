@@ -0,0 +1,172 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.ModelRoutingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.google.genai.GoogleGenAiChatOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 按编排阶段选择模型配置
+ *
+ * 每个阶段的候选配置来自 agent.models.stages。路由关闭或只有一个候选时始终使用首选配置；
+ * 开启路由时根据 {@link ModelRoutingAdvisor} 记录的最近调用(按阶段和配置分别统计)，
+ * 选择延迟分位数和错误率综合得分最低的候选
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class ModelRouter {
+
+    /**
+     * advisor 上下文中存放阶段和配置名称的 key
+     */
+    public static final String STAGE_KEY = "modelRouter.stage";
+    public static final String PROFILE_KEY = "modelRouter.profile";
+
+    /**
+     * 选中的配置
+     */
+    public record Route(ToolStage stage, String name, ModelRoutingProperties.Profile profile) {
+
+        /**
+         * 配置中设置的参数，未设置的参数由模型使用默认值
+         */
+        public GoogleGenAiChatOptions.Builder options() {
+            return GoogleGenAiChatOptions.builder()
+                    .model(profile.getModel())
+                    .temperature(profile.getTemperature())
+                    .maxOutputTokens(profile.getMaxTokens())
+                    .thinkingBudget(profile.getThinkingBudget());
+        }
+
+        /**
+         * 把阶段和配置名称放入 advisor 上下文，供 {@link ModelRoutingAdvisor} 统计
+         */
+        public void params(ChatClient.AdvisorSpec advisorSpec) {
+            advisorSpec.param(STAGE_KEY, stage).param(PROFILE_KEY, name);
+        }
+    }
+
+    @Autowired
+    private ModelRoutingProperties properties;
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * 选择阶段使用的模型配置，阶段没有配置时返回空
+     */
+    public Optional<Route> route(ToolStage stage) {
+        List<String> candidates = properties.getStages().getOrDefault(stage, List.of()).stream()
+                .filter(properties.getProfiles()::containsKey)
+                .toList();
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+        String name = candidates.size() == 1 || !properties.getRouter().isEnabled()
+                ? candidates.getFirst()
+                : select(stage, candidates);
+        return Optional.of(new Route(stage, name, properties.getProfiles().get(name)));
+    }
+
+    /**
+     * 记录一次调用，latencyMillis 对同步调用为总耗时，对流式调用为首个片段的延迟
+     */
+    public void record(ToolStage stage, String profile, long latencyMillis, boolean success) {
+        stats.computeIfAbsent(stage + "/" + profile, _ -> new Stats(properties.getRouter().getWindow()))
+                .add(latencyMillis, success);
+    }
+
+    private String select(ToolStage stage, List<String> candidates) {
+        ModelRoutingProperties.Router router = properties.getRouter();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < router.getExplore()) {
+            return candidates.get(random.nextInt(candidates.size()));
+        }
+
+        String best = null;
+        double bestScore = Double.MAX_VALUE;
+        boolean bestHealthy = false;
+        for (String candidate : candidates) {
+            Stats candidateStats = stats.get(stage + "/" + candidate);
+            if (candidateStats == null || candidateStats.samples() < router.getMinSamples()) {
+                return candidate;
+            }
+            double errorRate = candidateStats.errorRate();
+            boolean healthy = errorRate <= router.getMaxErrorRate();
+            double score = candidateStats.latency(router.getPercentile()) * (1 + router.getErrorPenalty() * errorRate);
+            if (best == null || healthy && !bestHealthy || healthy == bestHealthy && score < bestScore) {
+                best = candidate;
+                bestScore = score;
+                bestHealthy = healthy;
+            }
+        }
+        log.debug("Routed {} stage to model profile {} (score {})", stage, best, bestScore);
+        return best;
+    }
+
+    /**
+     * 最近 window 次调用的环形缓冲
+     */
+    static class Stats {
+
+        private final long[] latencies;
+        private final boolean[] successes;
+        private int next;
+        private int size;
+
+        Stats(int window) {
+            this.latencies = new long[Math.max(1, window)];
+            this.successes = new boolean[latencies.length];
+        }
+
+        synchronized void add(long latencyMillis, boolean success) {
+            latencies[next] = latencyMillis;
+            successes[next] = success;
+            next = (next + 1) % latencies.length;
+            size = Math.min(size + 1, latencies.length);
+        }
+
+        synchronized int samples() {
+            return size;
+        }
+
+        synchronized double errorRate() {
+            int errors = 0;
+            for (int i = 0; i < size; i++) {
+                if (!successes[i]) {
+                    errors++;
+                }
+            }
+            return size == 0 ? 0 : (double) errors / size;
+        }
+
+        /**
+         * 成功调用的延迟分位数(nearest-rank)，没有成功调用时返回 Double.MAX_VALUE
+         */
+        synchronized double latency(double percentile) {
+            long[] sorted = new long[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (successes[i]) {
+                    sorted[count++] = latencies[i];
+                }
+            }
+            if (count == 0) {
+                return Double.MAX_VALUE;
+            }
+            Arrays.sort(sorted, 0, count);
+            int rank = (int) Math.ceil(Math.clamp(percentile, 0.0, 1.0) * count);
+            return sorted[Math.max(0, rank - 1)];
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.jim.mcpclient.test;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 统计模型调用的延迟和错误，供 {@link ModelRouter} 选择模型配置
+ *
+ * 只统计上下文中带有 {@link ModelRouter#STAGE_KEY} 和 {@link ModelRouter#PROFILE_KEY} 的请求：
+ * 同步调用记录总耗时，流式调用记录首个片段的延迟，流在首个片段之前出错或为空时记为失败
+ *
+ * @author James Smith
+ */
+public class ModelRoutingAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final ModelRouter modelRouter;
+
+    public ModelRoutingAdvisor(ModelRouter modelRouter) {
+        this.modelRouter = modelRouter;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        if (!(request.context().get(ModelRouter.STAGE_KEY) instanceof ToolStage stage)
+                || !(request.context().get(ModelRouter.PROFILE_KEY) instanceof String profile)) {
+            return chain.nextCall(request);
+        }
+
+        long start = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            ChatClientResponse response = chain.nextCall(request);
+            success = true;
+            return response;
+        } finally {
+            modelRouter.record(stage, profile, System.currentTimeMillis() - start, success);
+        }
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        if (!(request.context().get(ModelRouter.STAGE_KEY) instanceof ToolStage stage)
+                || !(request.context().get(ModelRouter.PROFILE_KEY) instanceof String profile)) {
+            return chain.nextStream(request);
+        }
+
+        return Flux.defer(() -> {
+            long start = System.currentTimeMillis();
+            AtomicBoolean recorded = new AtomicBoolean();
+            return chain.nextStream(request)
+                    .doOnNext(_ -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            modelRouter.record(stage, profile, System.currentTimeMillis() - start, true);
+                        }
+                    })
+                    .doOnError(_ -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            modelRouter.record(stage, profile, System.currentTimeMillis() - start, false);
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            modelRouter.record(stage, profile, System.currentTimeMillis() - start, false);
+                        }
+                    });
+        });
+    }
+
+    @Override
+    public String getName() {
+        return "modelRoutingAdvisor";
+    }
+
+    /**
+     * 紧挨着模型调用，统计的耗时不包括会话记忆等其他 advisor 的处理
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 100;
+    }
+}
@@ -0,0 +1,290 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.ExecutionLaneProperties;
+import com.jim.mcpclient.config.ModelSchedulingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.PatternMatchUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型调用的加权公平调度
+ *
+ * 同时进行的模型调用不超过 maxConcurrency，超出的调用进入各自用户的队列；
+ * 有空闲容量时按差额轮转(DRR)在有排队调用的用户之间放行：轮到某个用户时额度增加 quantum × 权重，
+ * 队首调用的成本(估算的提示词 token 数)不超过额度时放行并扣减，否则轮到下一个用户；
+ * 队列清空的用户额度归零。权重按用户所属租户配置(见 {@link ModelSchedulingProperties})。
+ * 每个 {@link ExecutionLane} 进行中的调用不超过 maxConcurrency × 通道的 modelShare，同一用户在不同通道的调用分别排队。
+ *
+ * 调用方通过 {@link #enqueue} 取得 {@link Ticket}，等待放行后调用模型，结束后(包括放弃等待)调用 {@link Ticket#release()}。
+ *
+ * 指标：
+ * - agent.model-scheduling.wait：调用从排队到放行的等待时间，按租户(tenant)区分，未配置租户的用户为 default
+ * - agent.model-scheduling.queued / agent.model-scheduling.active：排队中和进行中的调用数
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class ModelScheduler {
+
+    /**
+     * 请求上下文中用于排队的用户 id
+     */
+    public static final String USER_KEY = "schedulingUser";
+
+    /**
+     * 请求上下文中调用所属的 {@link ExecutionLane}，没有时不受通道比例限制
+     */
+    public static final String LANE_KEY = "schedulingLane";
+
+    /**
+     * 未配置租户的用户
+     */
+    static final String DEFAULT_TENANT = "default";
+
+    @Autowired
+    private ModelSchedulingProperties properties;
+    @Autowired
+    private ExecutionLaneProperties laneProperties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 有排队调用的用户，按轮转顺序排列，队首为当前轮到的用户
+     */
+    private final Deque<UserQueue> rotation = new ArrayDeque<>();
+    private final Map<String, UserQueue> queues = new HashMap<>();
+    private int queued;
+    private int active;
+    private final Map<ExecutionLane, Integer> activeByLane = new EnumMap<>(ExecutionLane.class);
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("agent.model-scheduling.queued", this, scheduler -> scheduler.queued);
+        meterRegistry.gauge("agent.model-scheduling.active", this, scheduler -> scheduler.active);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 登记一次模型调用，有空闲容量且没有其他排队调用时立即放行
+     *
+     * @param lane 调用所属的通道，可以为 null
+     * @param cost 调用成本(估算的提示词 token 数)
+     */
+    public Ticket enqueue(String userId, ExecutionLane lane, int cost) {
+        Ticket ticket;
+        List<Ticket> grants;
+        synchronized (this) {
+            UserQueue queue = queues.computeIfAbsent(lane + "\n" + userId, _ -> newQueue(userId, lane));
+            ticket = new Ticket(queue, Math.max(1, cost));
+            if (queue.pending.isEmpty()) {
+                rotation.addLast(queue);
+            }
+            queue.pending.addLast(ticket);
+            queued++;
+            grants = dispatch();
+        }
+        grant(grants);
+        return ticket;
+    }
+
+    private void release(Ticket ticket) {
+        List<Ticket> grants;
+        synchronized (this) {
+            if (ticket.released) {
+                return;
+            }
+            ticket.released = true;
+            if (ticket.dispatched) {
+                active--;
+                if (ticket.queue.lane != null) {
+                    activeByLane.merge(ticket.queue.lane, -1, Integer::sum);
+                }
+            } else {
+                UserQueue queue = ticket.queue;
+                queue.pending.remove(ticket);
+                queued--;
+                if (queue.pending.isEmpty()) {
+                    leave(queue);
+                }
+                ticket.granted.cancel(false);
+            }
+            grants = dispatch();
+        }
+        grant(grants);
+    }
+
+    /**
+     * 按轮转顺序选出可以放行的调用
+     */
+    private List<Ticket> dispatch() {
+        List<Ticket> grants = new ArrayList<>();
+        int limit = Math.max(1, properties.getMaxConcurrency());
+        // 连续跳过的用户数，轮转中的用户都因通道名额用完被跳过时停止
+        int skipped = 0;
+        while (active < limit && skipped < rotation.size()) {
+            UserQueue queue = rotation.peekFirst();
+            if (queue.lane != null && activeByLane.getOrDefault(queue.lane, 0) >= laneLimit(queue.lane, limit)) {
+                rotation.pollFirst();
+                rotation.addLast(queue);
+                skipped++;
+                continue;
+            }
+            skipped = 0;
+            if (!queue.inTurn) {
+                queue.deficit += (long) properties.getQuantum() * queue.weight;
+                queue.inTurn = true;
+            }
+            Ticket ticket = queue.pending.peekFirst();
+            if (ticket.cost > queue.deficit) {
+                // 额度不足，等下一轮
+                rotation.pollFirst();
+                rotation.addLast(queue);
+                queue.inTurn = false;
+                continue;
+            }
+            queue.pending.pollFirst();
+            queue.deficit -= ticket.cost;
+            queued--;
+            active++;
+            if (queue.lane != null) {
+                activeByLane.merge(queue.lane, 1, Integer::sum);
+            }
+            ticket.dispatched = true;
+            if (queue.pending.isEmpty()) {
+                leave(queue);
+            }
+            grants.add(ticket);
+        }
+        return grants;
+    }
+
+    /**
+     * 在锁外放行；future 的回调在放行的线程(释放容量的调用方)上执行，等待方不能在回调中执行耗时操作，
+     * 流式调用由 {@link ModelSchedulingAdvisor} 换到自己的线程上继续
+     */
+    private void grant(List<Ticket> grants) {
+        for (Ticket ticket : grants) {
+            long waited = System.nanoTime() - ticket.enqueuedAt;
+            ticket.queue.wait.record(waited, TimeUnit.NANOSECONDS);
+            if (waited > TimeUnit.SECONDS.toNanos(1)) {
+                log.debug("Model call of user {} waited {} ms for capacity", ticket.queue.userId, TimeUnit.NANOSECONDS.toMillis(waited));
+            }
+            ticket.granted.complete(null);
+        }
+    }
+
+    private int laneLimit(ExecutionLane lane, int limit) {
+        return Math.max(1, (int) Math.ceil(limit * laneProperties.get(lane).getModelShare()));
+    }
+
+    private void leave(UserQueue queue) {
+        rotation.remove(queue);
+        queue.deficit = 0;
+        queue.inTurn = false;
+        queues.remove(queue.lane + "\n" + queue.userId);
+    }
+
+    private UserQueue newQueue(String userId, ExecutionLane lane) {
+        String tenant = DEFAULT_TENANT;
+        int weight = properties.getDefaultWeight();
+        for (Map.Entry<String, ModelSchedulingProperties.Tenant> entry : properties.getTenants().entrySet()) {
+            if (entry.getValue().getUsers().stream().anyMatch(pattern -> PatternMatchUtils.simpleMatch(pattern, userId))) {
+                tenant = entry.getKey();
+                weight = entry.getValue().getWeight();
+                break;
+            }
+        }
+        Timer wait = Timer.builder("agent.model-scheduling.wait")
+                .description("Time a model call waited for capacity")
+                .tag("tenant", tenant)
+                .register(meterRegistry);
+        return new UserQueue(userId, lane, Math.max(1, weight), wait);
+    }
+
+    /**
+     * 一个用户在一个通道中的排队调用
+     */
+    private static final class UserQueue {
+
+        private final String userId;
+        private final ExecutionLane lane;
+        private final int weight;
+        private final Timer wait;
+        private final Deque<Ticket> pending = new ArrayDeque<>();
+        private long deficit;
+        private boolean inTurn;
+
+        private UserQueue(String userId, ExecutionLane lane, int weight, Timer wait) {
+            this.userId = userId;
+            this.lane = lane;
+            this.weight = weight;
+            this.wait = wait;
+        }
+    }
+
+    /**
+     * 一次模型调用的排队凭证
+     */
+    public final class Ticket {
+
+        private final UserQueue queue;
+        private final int cost;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<Void> granted = new CompletableFuture<>();
+        private boolean dispatched;
+        private boolean released;
+
+        private Ticket(UserQueue queue, int cost) {
+            this.queue = queue;
+            this.cost = cost;
+        }
+
+        /**
+         * 放行时完成
+         */
+        public CompletableFuture<Void> granted() {
+            return granted;
+        }
+
+        /**
+         * 阻塞等待放行，线程被中断时放弃等待
+         */
+        public void await() {
+            try {
+                granted.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                release();
+                throw new IllegalStateException("Interrupted while waiting for model capacity", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        /**
+         * 调用结束时释放容量，未放行时从队列中移除；可以重复调用
+         */
+        public void release() {
+            ModelScheduler.this.release(this);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.TokenEstimator;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 模型调用经过 {@link ModelScheduler} 排队，放行后才调用模型
+ *
+ * 按上下文中的 {@link ModelScheduler#USER_KEY} 区分用户，没有时使用会话 id；两者都没有的调用(如快速通道分类)不排队。
+ * 上下文中的 {@link ModelScheduler#LANE_KEY} 为调用所属的执行通道。
+ * 同步调用在当前线程等待；流式调用在订阅时排队，排队后放行的流在 boundedElastic 线程上继续，
+ * 不占用放行它的线程(另一个调用 release 的线程)，流结束或被取消时释放容量
+ *
+ * @author James Smith
+ */
+public class ModelSchedulingAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final ModelScheduler modelScheduler;
+
+    public ModelSchedulingAdvisor(ModelScheduler modelScheduler) {
+        this.modelScheduler = modelScheduler;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        String userId = userId(request);
+        if (userId == null) {
+            return chain.nextCall(request);
+        }
+        ModelScheduler.Ticket ticket = modelScheduler.enqueue(userId, lane(request), cost(request));
+        try {
+            ticket.await();
+            return chain.nextCall(request);
+        } finally {
+            ticket.release();
+        }
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        String userId = userId(request);
+        if (userId == null) {
+            return chain.nextStream(request);
+        }
+        return Flux.defer(() -> {
+            ModelScheduler.Ticket ticket = modelScheduler.enqueue(userId, lane(request), cost(request));
+            if (ticket.granted().isDone()) {
+                return chain.nextStream(request).doFinally(_ -> ticket.release());
+            }
+            // 排队后放行发生在其他调用 release() 的线程上，模型在订阅线程上同步流式输出，需要换到自己的线程
+            return Mono.fromFuture(ticket.granted(), true)
+                    .publishOn(Schedulers.boundedElastic())
+                    .thenMany(Flux.defer(() -> chain.nextStream(request)))
+                    .doFinally(_ -> ticket.release());
+        });
+    }
+
+    private String userId(ChatClientRequest request) {
+        if (!modelScheduler.isEnabled()) {
+            return null;
+        }
+        if (request.context().get(ModelScheduler.USER_KEY) instanceof String userId) {
+            return userId;
+        }
+        return request.context().get(ChatMemory.CONVERSATION_ID) instanceof String conversationId ? conversationId : null;
+    }
+
+    private static ExecutionLane lane(ChatClientRequest request) {
+        return request.context().get(ModelScheduler.LANE_KEY) instanceof ExecutionLane lane ? lane : null;
+    }
+
+    private static int cost(ChatClientRequest request) {
+        return TokenEstimator.estimate(request.prompt().getContents());
+    }
+
+    @Override
+    public String getName() {
+        return "modelSchedulingAdvisor";
+    }
+
+    /**
+     * 在会话记忆之后(成本包括历史消息)、{@link ModelRoutingAdvisor} 之前(排队时间不计入模型延迟)
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 200;
+    }
+}
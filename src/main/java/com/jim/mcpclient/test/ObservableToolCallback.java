@@ -0,0 +1,124 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.UserTokenHolder;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 可观测的工具回调
+ *
+ * 包装 MCP 工具回调，在调用前后通知 toolContext 中的 {@link ToolCallListener}；
+ * toolContext 中有 {@link Cancellation} 时，编排取消会中断等待中的 MCP 请求；
+ * 有 {@link ToolResults} 时记录成功的调用结果，供语义重试复用；
+ * 有 {@link ToolProgressRouter.Tracker} 时为本次调用登记 progressToken 并放入 MCP meta，server 的进度通知据此推送给用户。
+ * 监听器、取消信号和结果记录会从 toolContext 中移除后再交给被包装的回调，避免被当作 MCP meta 发送给 server。
+ * toolContext 中的用户 token 在实际执行 MCP 请求的线程上设置到 {@link UserTokenHolder}。
+ * 返回给模型的结果经过 {@link ResultShaper} 裁剪，大查询结果不会占满后续提示词；
+ * 超过转存阈值的结果写入 {@link BlobStore}，返回给模型的是引用和预览，引用由 toolContext 中的 {@link BlobStore.Scope} 持有。
+ *
+ * 工具定义(包含 JSON schema)在创建时计算一次并缓存，MCP 工具回调每次获取定义都会重新序列化 schema。
+ *
+ * @author James Smith
+ */
+public class ObservableToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final ToolDefinition toolDefinition;
+    private final ResultShaper resultShaper;
+    private final BlobStore blobStore;
+
+    public ObservableToolCallback(ToolCallback delegate, ResultShaper resultShaper, BlobStore blobStore) {
+        this.delegate = delegate;
+        this.toolDefinition = delegate.getToolDefinition();
+        this.resultShaper = resultShaper;
+        this.blobStore = blobStore;
+    }
+
+    public static List<ToolCallback> wrap(List<ToolCallback> toolCallbacks, ResultShaper resultShaper, BlobStore blobStore) {
+        return toolCallbacks.stream()
+                .<ToolCallback>map(toolCallback -> new ObservableToolCallback(toolCallback, resultShaper, blobStore))
+                .toList();
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return toolDefinition;
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return shape(delegate.call(toolInput), null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        if (toolContext == null) {
+            return shape(delegate.call(toolInput, toolContext), null);
+        }
+
+        Map<String, Object> context = new HashMap<>(toolContext.getContext());
+        ToolCallListener listener = context.remove(ToolCallListener.CONTEXT_KEY) instanceof ToolCallListener l ? l : null;
+        Cancellation cancellation = context.remove(Cancellation.CONTEXT_KEY) instanceof Cancellation c ? c : null;
+        ToolResults toolResults = context.remove(ToolResults.CONTEXT_KEY) instanceof ToolResults r ? r : null;
+        BlobStore.Scope blobScope = context.remove(BlobStore.CONTEXT_KEY) instanceof BlobStore.Scope s ? s : null;
+        ToolProgressRouter.Tracker progress = context.remove(ToolProgressRouter.CONTEXT_KEY) instanceof ToolProgressRouter.Tracker t ? t : null;
+        context.remove(ParallelToolCallingManager.CONTEXT_KEY);
+        String token = context.get("token") instanceof String value ? value : null;
+
+        String toolName = toolDefinition.name();
+        String progressToken = progress == null ? null : progress.open(toolName);
+        if (progressToken != null) {
+            context.put(ToolProgressRouter.META_KEY, progressToken);
+        }
+        ToolContext delegateContext = new ToolContext(context);
+        long start = System.currentTimeMillis();
+        if (listener != null) {
+            listener.onToolStart(toolName);
+        }
+        boolean success = false;
+        try {
+            Supplier<String> call = () -> UserTokenHolder.callWithToken(token, () -> delegate.call(toolInput, delegateContext));
+            String result = shape(cancellation == null ? call.get() : cancellation.call(call), blobScope);
+            success = true;
+            if (toolResults != null) {
+                toolResults.add(toolName, toolInput, result);
+            }
+            return result;
+        } finally {
+            if (progress != null) {
+                progress.close(progressToken);
+            }
+            if (listener != null) {
+                listener.onToolEnd(toolName, System.currentTimeMillis() - start, success);
+            }
+        }
+    }
+
+    /**
+     * 超过转存阈值的结果写入 {@link BlobStore}，返回引用和预览；其他结果按工具结果预算裁剪
+     */
+    private String shape(String result, BlobStore.Scope blobScope) {
+        String toolName = toolDefinition.name();
+        if (blobStore.shouldSpill(result)) {
+            String handle = blobStore.put(result, blobScope);
+            if (handle != null) {
+                return "[结果过大，完整内容(共 " + result.length() + " 字符)已转存为 handle=" + handle
+                        + "，需要完整数据时调用 " + BlobStore.READ_TOOL_NAME + " 分页读取。以下为预览]\n"
+                        + resultShaper.shapeToolResult(toolName, result, blobStore.previewTokens());
+            }
+        }
+        return resultShaper.shapeToolResult(toolName, result);
+    }
+}
@@ -0,0 +1,15 @@
+package com.jim.mcpclient.test;
+
+/**
+ * 编排已被客户端取消
+ *
+ * @author James Smith
+ */
+public class OrchestrationCancelledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public OrchestrationCancelledException(String messageId) {
+        super("Orchestration " + messageId + " cancelled");
+    }
+}
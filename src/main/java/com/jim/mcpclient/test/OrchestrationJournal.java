@@ -0,0 +1,256 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.JsonUtils;
+import com.jim.mcpclient.config.OrchestrationJournalProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 编排日志(追加写入)
+ *
+ * 每个编排(userId + messageId)对应一个 JSON Lines 文件，依次记录分析结果、流式解析出的每条任务指令、
+ * 计划完成标记以及每条指令的最终结果。节点重启或连接断开后，相同 messageId 的请求读取日志得到
+ * {@link Checkpoint}，跳过已完成的阶段和指令，从第一条未完成的指令继续。
+ *
+ * 每条记录以 DSYNC 方式写入，按日志文件加锁；最后一行不完整(写入时进程退出)时忽略该行，
+ * 并在读取时补上换行，恢复后的编排从新的一行开始追加。
+ * 正常完成的编排立即删除日志，被取消或失败的编排留下的日志超过保留时长后由定时清理删除。
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class OrchestrationJournal {
+
+    public enum Type {
+        ANALYSIS,       // 分析结果
+        INSTRUCTION,    // 任务指令
+        PLAN_COMPLETE,  // 任务指令已全部生成
+        RESULT          // 任务指令执行完毕(成功或已放弃)
+    }
+
+    /**
+     * 日志记录
+     *
+     * @param type           记录类型
+     * @param index          指令序号(INSTRUCTION/RESULT)
+     * @param analysis       分析结果(ANALYSIS)
+     * @param instruction    任务指令(INSTRUCTION/RESULT)
+     * @param workerResponse 执行结果(RESULT，可能为空)
+     * @param validation     验证结果(RESULT，可能为空)
+     * @param message        已发送给用户的结果消息(RESULT，可能为空)
+     */
+    public record Entry(Type type, Integer index, String analysis, AIOrchestratorTask.TaskInstruction instruction,
+                        AIWorkerResponse workerResponse, ValidationResp validation, String message) {
+    }
+
+    /**
+     * 从日志恢复的编排进度
+     */
+    public record Checkpoint(String analysis, List<AIOrchestratorTask.TaskInstruction> instructions,
+                             boolean planComplete, Map<Integer, Entry> results) {
+
+        static final Checkpoint EMPTY = new Checkpoint(null, List.of(), false, Map.of());
+
+        public boolean isEmpty() {
+            return analysis == null;
+        }
+
+        /**
+         * 指定序号的指令已完成时返回其结果，指令内容不一致(重新生成了计划)时视为未完成
+         */
+        public Entry result(int index, AIOrchestratorTask.TaskInstruction instruction) {
+            Entry entry = results.get(index);
+            return entry != null && Objects.equals(entry.instruction(), instruction) ? entry : null;
+        }
+    }
+
+    @Autowired
+    private OrchestrationJournalProperties properties;
+    @Resource(name = "webSocketTaskScheduler")
+    private TaskScheduler taskScheduler;
+
+    /**
+     * 每个日志文件一把锁，不同编排的 DSYNC 写入互不等待
+     */
+    private final Map<Path, Object> locks = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        cleanUp();
+        if (properties.isEnabled() && properties.getSweepInterval().isPositive()) {
+            taskScheduler.scheduleWithFixedDelay(this::cleanUp, properties.getSweepInterval());
+        }
+    }
+
+    /**
+     * 删除超过保留时长未更新的日志(被取消或失败的编排留下的日志)
+     */
+    public void cleanUp() {
+        if (!properties.isEnabled() || !Files.isDirectory(properties.getDirectory())) {
+            return;
+        }
+        FileTime expiredBefore = FileTime.from(Instant.now().minus(properties.getRetention()));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(properties.getDirectory(), "*.jsonl")) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).compareTo(expiredBefore) < 0) {
+                    Files.deleteIfExists(file);
+                    locks.remove(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up orchestration journal {}", properties.getDirectory(), e);
+        }
+    }
+
+    /**
+     * 读取编排进度，没有日志时返回空进度
+     */
+    public Checkpoint load(String userId, String messageId) {
+        Path file = file(userId, messageId);
+        if (!properties.isEnabled() || !Files.exists(file)) {
+            return Checkpoint.EMPTY;
+        }
+
+        String analysis = null;
+        // 计划未完成时重新生成的指令按序号覆盖之前的记录
+        Map<Integer, AIOrchestratorTask.TaskInstruction> instructions = new TreeMap<>();
+        boolean planComplete = false;
+        Map<Integer, Entry> results = new HashMap<>();
+        try {
+            for (String line : readLines(file)) {
+                Entry entry = readEntry(line);
+                if (entry == null) {
+                    continue;
+                }
+                switch (entry.type()) {
+                    case ANALYSIS -> analysis = entry.analysis();
+                    case INSTRUCTION -> instructions.put(entry.index(), entry.instruction());
+                    case PLAN_COMPLETE -> planComplete = true;
+                    case RESULT -> results.put(entry.index(), entry);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read orchestration journal {}", file, e);
+            return Checkpoint.EMPTY;
+        }
+        return new Checkpoint(analysis, List.copyOf(instructions.values()), planComplete, Map.copyOf(results));
+    }
+
+    /**
+     * 日志原文(按行)，没有日志时返回空列表
+     */
+    public List<String> lines(String userId, String messageId) {
+        Path file = file(userId, messageId);
+        if (!properties.isEnabled() || !Files.exists(file)) {
+            return List.of();
+        }
+        try {
+            return readLines(file);
+        } catch (IOException e) {
+            log.warn("Failed to read orchestration journal {}", file, e);
+            return List.of();
+        }
+    }
+
+    public void analysis(String userId, String messageId, String analysis) {
+        append(userId, messageId, new Entry(Type.ANALYSIS, null, analysis, null, null, null, null));
+    }
+
+    public void instruction(String userId, String messageId, int index, AIOrchestratorTask.TaskInstruction instruction) {
+        append(userId, messageId, new Entry(Type.INSTRUCTION, index, null, instruction, null, null, null));
+    }
+
+    public void planComplete(String userId, String messageId) {
+        append(userId, messageId, new Entry(Type.PLAN_COMPLETE, null, null, null, null, null, null));
+    }
+
+    public void result(String userId, String messageId, int index, AIOrchestratorTask.TaskInstruction instruction,
+                       AIWorkerResponse workerResponse, ValidationResp validation, String message) {
+        append(userId, messageId, new Entry(Type.RESULT, index, null, instruction, workerResponse, validation, message));
+    }
+
+    /**
+     * 编排正常结束，删除日志
+     */
+    public void complete(String userId, String messageId) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Path file = file(userId, messageId);
+        try {
+            Files.deleteIfExists(file);
+            locks.remove(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete orchestration journal of {}", messageId, e);
+        }
+    }
+
+    private void append(String userId, String messageId, Entry entry) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Path file = file(userId, messageId);
+        // 同一编排的推测执行可能在后台线程上同时写入
+        synchronized (locks.computeIfAbsent(file, _ -> new Object())) {
+            try {
+                Files.createDirectories(file.getParent());
+                Files.writeString(file, JsonUtils.getObjectMapper().writeValueAsString(entry) + "\n", StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+            } catch (IOException e) {
+                // 日志只用于恢复，写入失败不影响本次编排
+                log.warn("Failed to append {} to orchestration journal of {}", entry.type(), messageId, e);
+            }
+        }
+    }
+
+    /**
+     * 读取日志的所有行；最后一行没有换行(写入时进程退出)时补上换行，之后追加的记录不会接在残缺的行后面
+     */
+    private List<String> readLines(Path file) throws IOException {
+        synchronized (locks.computeIfAbsent(file, _ -> new Object())) {
+            // 残缺的行可能截断多字节字符，按替换字符解码，不因此放弃整个日志
+            String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            if (!text.isEmpty() && !text.endsWith("\n")) {
+                Files.writeString(file, "\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+            }
+            return text.lines().toList();
+        }
+    }
+
+    private static Entry readEntry(String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            return JsonUtils.getObjectMapper().readValue(line, Entry.class);
+        } catch (IOException e) {
+            log.warn("Skip malformed orchestration journal entry: {}", line);
+            return null;
+        }
+    }
+
+    private Path file(String userId, String messageId) {
+        // messageId 由客户端生成，使用摘要作为文件名
+        return properties.getDirectory().resolve(TrafficLog.digest(userId + "\n" + messageId) + ".jsonl");
+    }
+}
@@ -0,0 +1,151 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.ToolExecutionProperties;
+import com.jim.mcpclient.config.UserTokenHolder;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 并行执行同一次回复中多个工具调用的 {@link ToolCallingManager}
+ *
+ * 模型一次请求多个工具调用时，把每个调用拆成只含该调用的回复交给默认实现执行，各调用在独立线程上并行，
+ * 完成后按原始顺序合并为一条工具响应消息；只有一个调用或关闭并行时直接交给默认实现。
+ * 异常处理、观测等行为与默认实现一致。
+ *
+ * 同一编排的并发上限由 toolContext 中的 {@link Semaphore}(见 {@link #newPermits()})控制，
+ * 推测执行的指令与当前指令共用；没有时每次回复单独限流。
+ * 调用线程上的用户 token({@link UserTokenHolder})会带到执行线程上。
+ *
+ * 指标：agent.tool-execution.batch：每次回复请求的工具调用数
+ *
+ * @author James Smith
+ */
+@Slf4j
+public class ParallelToolCallingManager implements ToolCallingManager {
+
+    /**
+     * toolContext 中存放编排并发许可的 key，不会被传递给 MCP server
+     */
+    public static final String CONTEXT_KEY = "toolPermits";
+
+    private final ToolCallingManager delegate;
+    private final ToolExecutionProperties properties;
+    private final DistributionSummary batchSize;
+
+    public ParallelToolCallingManager(ToolCallingManager delegate, ToolExecutionProperties properties,
+                                      MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.batchSize = DistributionSummary.builder("agent.tool-execution.batch")
+                .description("Tool calls requested in one model response")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 创建一个编排的并发许可
+     */
+    public Semaphore newPermits() {
+        return new Semaphore(Math.max(1, properties.getMaxConcurrency()));
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return delegate.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(output -> output != null && output.hasToolCalls())
+                .findFirst()
+                .orElse(null);
+        if (assistantMessage == null) {
+            return delegate.executeToolCalls(prompt, chatResponse);
+        }
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+        batchSize.record(toolCalls.size());
+        if (!properties.isParallel() || toolCalls.size() == 1) {
+            return delegate.executeToolCalls(prompt, chatResponse);
+        }
+
+        log.info("Executing {} tool calls in parallel: {}", toolCalls.size(),
+                toolCalls.stream().map(AssistantMessage.ToolCall::name).toList());
+        Semaphore permits = permits(prompt);
+        String token = UserTokenHolder.getToken();
+        List<ToolExecutionResult> results = Flux.fromIterable(toolCalls)
+                .flatMapSequential(toolCall -> Mono.fromSupplier(() -> UserTokenHolder.callWithToken(token,
+                                        () -> execute(prompt, chatResponse, assistantMessage, toolCall, permits)))
+                                .subscribeOn(Schedulers.boundedElastic()),
+                        toolCalls.size())
+                .collectList()
+                .block();
+        return merge(prompt, assistantMessage, results);
+    }
+
+    private ToolExecutionResult execute(Prompt prompt, ChatResponse chatResponse, AssistantMessage assistantMessage,
+                                        AssistantMessage.ToolCall toolCall, Semaphore permits) {
+        AssistantMessage single = AssistantMessage.builder()
+                .content(assistantMessage.getText())
+                .properties(assistantMessage.getMetadata())
+                .toolCalls(List.of(toolCall))
+                .build();
+        permits.acquireUninterruptibly();
+        try {
+            return delegate.executeToolCalls(prompt, new ChatResponse(List.of(new Generation(single)), chatResponse.getMetadata()));
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 按原始顺序合并各调用的工具响应，对话历史与默认实现一致：提示词消息 + 模型回复 + 工具响应
+     */
+    private static ToolExecutionResult merge(Prompt prompt, AssistantMessage assistantMessage,
+                                             List<ToolExecutionResult> results) {
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>();
+        boolean returnDirect = true;
+        for (ToolExecutionResult result : results) {
+            List<Message> history = result.conversationHistory();
+            if (history.getLast() instanceof ToolResponseMessage response) {
+                responses.addAll(response.getResponses());
+            }
+            returnDirect &= result.returnDirect();
+        }
+        List<Message> conversationHistory = new ArrayList<>(prompt.copy().getInstructions());
+        conversationHistory.add(assistantMessage);
+        conversationHistory.add(ToolResponseMessage.builder().responses(responses).metadata(Map.of()).build());
+        return ToolExecutionResult.builder()
+                .conversationHistory(conversationHistory)
+                .returnDirect(returnDirect)
+                .build();
+    }
+
+    private Semaphore permits(Prompt prompt) {
+        if (prompt.getOptions() instanceof ToolCallingChatOptions options
+                && options.getToolContext() != null
+                && options.getToolContext().get(CONTEXT_KEY) instanceof Semaphore permits) {
+            return permits;
+        }
+        return newPermits();
+    }
+}
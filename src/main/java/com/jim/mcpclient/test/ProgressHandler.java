@@ -1,16 +1,37 @@
 package com.jim.mcpclient.test;
 
+import io.modelcontextprotocol.client.McpClient;
 import io.modelcontextprotocol.spec.McpSchema;
-import org.springaicommunity.mcp.annotation.McpProgress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.mcp.customizer.McpSyncClientCustomizer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+/**
+ * MCP 工具进度通知处理
+ *
+ * 与 {@link ToolListChangedHandler} 相同，自动配置为 spring.ai.mcp.client.streamable-http.connections
+ * 下的每个连接创建客户端时都会调用本定制器，每个连接都注册了进度通知处理，新增连接无需修改代码。
+ * {@link ToolProgressRouter} 延迟获取，创建客户端时不提前初始化推送相关的 bean
+ *
+ * @author James Smith
+ */
+@Slf4j
 @Component
-public class ProgressHandler {
+public class ProgressHandler implements McpSyncClientCustomizer {
 
-    @McpProgress(clients = "my-mcp-server")
-    public void handleProgressNotification(McpSchema.ProgressNotification notification) {
-        double percentage = notification.progress() * 100;
-        System.out.println(String.format("Progress: %.2f%% - %s",
-                percentage, notification.message()));
+    @Autowired
+    private ObjectProvider<ToolProgressRouter> toolProgressRouter;
+
+    @Override
+    public void customize(String connectionName, McpClient.SyncSpec spec) {
+        spec.progressConsumer(notification -> handleProgressNotification(connectionName, notification));
+    }
+
+    private void handleProgressNotification(String connectionName, McpSchema.ProgressNotification notification) {
+        log.debug("Progress {} of {}: {}/{} {}", notification.progressToken(), connectionName,
+                notification.progress(), notification.total(), notification.message());
+        toolProgressRouter.getObject().onProgress(notification);
     }
 }
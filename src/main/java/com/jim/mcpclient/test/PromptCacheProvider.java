@@ -0,0 +1,23 @@
+package com.jim.mcpclient.test;
+
+import java.util.Optional;
+
+/**
+ * 提示词上下文缓存提供者
+ *
+ * 为模板的静态部分提供模型服务端的缓存句柄(例如 Gemini cachedContent)，按模板版本区分
+ *
+ * @author James Smith
+ */
+public interface PromptCacheProvider {
+
+    /**
+     * 不使用缓存
+     */
+    PromptCacheProvider NONE = template -> Optional.empty();
+
+    /**
+     * 返回模板静态部分对应的缓存句柄，没有可用缓存时返回空
+     */
+    Optional<String> cachedContent(PromptTemplate template);
+}
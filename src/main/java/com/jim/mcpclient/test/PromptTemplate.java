@@ -0,0 +1,131 @@
+package com.jim.mcpclient.test;
+
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的提示词模板
+ *
+ * 模板源文本中使用 {{变量名|标签}} 或 {{变量名}} 声明变量，编译时(仅一次)拆分为两部分：
+ * - 静态部分：去掉变量后的全部说明文字，作为系统提示词，内容固定，可命中模型服务端的前缀/上下文缓存
+ * - 变量部分：渲染时按声明顺序追加在用户消息中，带标签的变量输出为 "标签：\n值"，不带标签的直接输出值
+ *
+ * 变量出现在句子中间时，静态部分中会替换为「标签」，提示模型到用户消息中查找对应内容。
+ *
+ * @author James Smith
+ */
+public final class PromptTemplate {
+
+    private static final Pattern VARIABLE = Pattern.compile("\\{\\{\\s*(\\w+)\\s*(?:\\|\\s*([^}]+?)\\s*)?}}");
+
+    private final String name;
+    private final String staticText;
+    private final Map<String, String> variables;
+    private final String version;
+
+    private PromptTemplate(String name, String staticText, Map<String, String> variables) {
+        this.name = name;
+        this.staticText = staticText;
+        this.variables = variables;
+        this.version = name + "@" + sha256(staticText).substring(0, 12);
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param name   模板名称
+     * @param source 模板源文本
+     */
+    public static PromptTemplate compile(String name, String source) {
+        Map<String, String> variables = new LinkedHashMap<>();
+        List<String> lines = new ArrayList<>();
+        for (String line : source.strip().split("\n", -1)) {
+            Matcher matcher = VARIABLE.matcher(line);
+            StringBuilder staticLine = new StringBuilder();
+            boolean hasVariable = false;
+            while (matcher.find()) {
+                hasVariable = true;
+                String label = matcher.group(2);
+                variables.put(matcher.group(1), label == null ? "" : label);
+                matcher.appendReplacement(staticLine, label == null ? "" : Matcher.quoteReplacement("「" + label + "」"));
+            }
+            matcher.appendTail(staticLine);
+
+            // 只包含变量的行在静态部分中整行去掉,并合并连续空行
+            boolean blank = staticLine.toString().isBlank();
+            if (hasVariable && blank || blank && !lines.isEmpty() && lines.getLast().isEmpty()) {
+                continue;
+            }
+            lines.add(blank ? "" : staticLine.toString().stripTrailing());
+        }
+        return new PromptTemplate(name, String.join("\n", lines).strip(), Collections.unmodifiableMap(variables));
+    }
+
+    /**
+     * 渲染模板，静态部分不受变量影响
+     */
+    public RenderedPrompt render(Map<String, ?> values) {
+        List<String> sections = new ArrayList<>();
+        variables.forEach((variable, label) -> {
+            Assert.isTrue(values.containsKey(variable), () -> "Missing prompt variable '" + variable + "' for template " + name);
+            String value = String.valueOf(values.get(variable));
+            sections.add(label.isEmpty() ? value : label + "：\n" + value);
+        });
+        return new RenderedPrompt(this, staticText, String.join("\n\n", sections));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * 模板版本，由名称和静态部分的摘要组成，静态内容变化时版本随之变化
+     */
+    public String version() {
+        return version;
+    }
+
+    public String staticText() {
+        return staticText;
+    }
+
+    public List<String> variables() {
+        return List.copyOf(variables.keySet());
+    }
+
+    private static String sha256(String text) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 渲染结果
+     *
+     * @param template 来源模板
+     * @param system   静态部分(系统提示词)
+     * @param user     变量部分(用户消息)
+     */
+    public record RenderedPrompt(PromptTemplate template, String system, String user) {
+
+        /**
+         * 静态部分和变量部分合并后的完整文本，用于嵌入其他模板
+         */
+        public String text() {
+            return user.isEmpty() ? system : system + "\n\n" + user;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.jim.mcpclient.test;
+
+import org.springframework.ai.converter.BeanOutputConverter;
+
+/**
+ * 编排各阶段使用的提示词模板，类加载时编译一次
+ *
+ * 结构化输出的格式说明同样是固定内容，直接编译进模板的静态部分
+ *
+ * @author James Smith
+ */
+public final class PromptTemplates {
+
+    public static final BeanOutputConverter<AIOrchestratorTask> PLAN_CONVERTER = new BeanOutputConverter<>(AIOrchestratorTask.class);
+    public static final BeanOutputConverter<AIWorkerResponse> WORKER_RESPONSE_CONVERTER = new BeanOutputConverter<>(AIWorkerResponse.class);
+    public static final BeanOutputConverter<ValidationResp> VALIDATION_CONVERTER = new BeanOutputConverter<>(ValidationResp.class);
+
+    /**
+     * 任务分析
+     */
+    public static final PromptTemplate ANALYSIS = PromptTemplate.compile("analysis", """
+            任务分析
+            
+            你的职责：
+            分析用户输入,理解用户意图。你可以使用 MCP 工具来获取必要的上下文信息。
+            
+            分析要求：
+            1. 理解用户的真实需求
+            2. 如需要,可以使用 MCP 工具获取相关信息
+            3. 输出详细的分析结果和建议的执行步骤
+            
+            {{message}}
+            """);
+
+    /**
+     * 任务拆解
+     */
+    public static final PromptTemplate PLANNING = PromptTemplate.compile("planning", """
+            基于{{analysis|分析结果}},生成可执行的任务指令列表。
+            
+            任务拆分规则：
+            1. 将需求拆分为一个或多个具体的任务指令
+            2. 每个任务指令应该清晰、独立、可执行
+            3. 任务指令之间按逻辑顺序排列
+            4. 简单请求可以是一个任务指令,复杂请求应拆分为多个任务指令
+            
+            工具使用要求：
+            - 在任务指令中明确提示优先使用 MCP 工具
+            
+            输出要求：
+            - 每个任务指令必须清晰、具体、可执行
+            - 每个验收标准必须明确、可量化验证
+            - 确保指令之间逻辑连贯,无矛盾
+            
+            """ + PLAN_CONVERTER.getFormat());
+
+    /**
+     * 任务执行
+     */
+    public static final PromptTemplate WORKER = PromptTemplate.compile("worker", """
+            任务执行
+            
+            执行要求：
+            1. 严格按照{{instruction|任务指令}}执行任务
+            2. 优先使用可用的 MCP 工具
+            3. 确保执行结果准确、完整
+            4. 如遇到问题,说明具体情况
+            5. 直接返回执行结果,不需要 JSON 格式
+            """);
+
+    /**
+     * 执行结果格式化
+     */
+    public static final PromptTemplate FORMAT = PromptTemplate.compile("format", """
+            结果格式化
+            
+            你的职责：
+            将{{result|任务执行结果}}转换为结构化格式。
+            
+            转换要求：
+            1. 分析任务结果,判断是否成功完成
+            2. 提取关键信息作为 result 字段内容
+            3. success 为 true 表示成功,false 表示失败
+            
+            """ + WORKER_RESPONSE_CONVERTER.getFormat());
+
+    /**
+     * 执行结果验证
+     */
+    public static final PromptTemplate VALIDATION = PromptTemplate.compile("validation", """
+            任务结果验证
+            
+            你的职责：
+            严格验证{{result|任务执行结果}}是否符合{{validation|验收标准}}。
+            
+            验证要求：
+            1. 逐条对照验收标准检查结果
+            2. 必须所有标准都满足才算通过
+            3. 如不符合,明确指出哪些标准未满足
+            
+            输出说明：
+            - 如果通过：返回 passed = true
+            - 如果不通过：返回 passed = false,并在 reason 中详细说明未满足的标准和具体原因
+            
+            """ + VALIDATION_CONVERTER.getFormat());
+
+    /**
+     * 验证未通过后的重试指令，渲染结果作为 {@link #WORKER} 的任务指令
+     */
+    public static final PromptTemplate RETRY = PromptTemplate.compile("retry", """
+            任务重试执行
+            
+            【重要】上次执行未成功,请根据{{reason|失败原因}}重新执行{{instruction|原始任务指令}}。
+            {{toolResults|上次执行已完成的工具调用结果}}
+            
+            重试要求：
+            1. 仔细分析上次失败的原因
+            2. 调整执行策略，避免重复相同错误
+            3. 确保本次执行结果能满足所有验收标准
+            4. 优先使用 MCP 工具完成任务
+            5. 已完成的工具调用结果可以直接使用，不要用相同参数重复调用
+            
+            注意事项：
+            - 必须严格满足验收标准
+            - 如有疑问，采用保守稳妥的方案
+            """);
+
+    /**
+     * 结果整合
+     */
+    public static final PromptTemplate SYNTHESIS = PromptTemplate.compile("synthesis", """
+            任务结果整合
+            
+            你的职责：
+            将所有任务的执行结果整合为完整的最终答案，回应{{request|用户原始请求}}。
+            
+            整合要求：
+            1. 汇总所有任务的执行结果
+            2. 确保答案完整、连贯、易于理解
+            3. 突出重点信息和关键结论
+            4. 按照逻辑顺序组织内容
+            
+            输出格式：
+            - 使用清晰的结构化格式
+            - 如有多个部分，使用标题分隔
+            - 重要信息使用列表突出显示
+            
+            注意事项：
+            - 直接返回给用户，语言要专业且友好
+            - 避免遗漏任何重要的任务结果
+            - 如有失败的任务，需要说明情况
+            """);
+
+    /**
+     * 快速分类：判断消息能否直接回答
+     */
+    public static final PromptTemplate CLASSIFY = PromptTemplate.compile("classify", """
+            消息分类
+            
+            判断{{message|用户消息}}能否一次直接回答。
+            
+            - SIMPLE: 问候、闲聊、单个概念或事实性问题，最多只需要一次工具调用
+            - COMPLEX: 需要查询并处理多项数据、多个步骤或修改数据的请求
+            
+            只输出 SIMPLE 或 COMPLEX，不要输出其他内容
+            """);
+
+    /**
+     * 简单消息直接回答
+     */
+    public static final PromptTemplate DIRECT = PromptTemplate.compile("direct", """
+            直接回答
+            
+            你的职责：
+            直接回答{{message|用户消息}}，需要时可以使用 MCP 工具获取信息。
+            
+            注意事项：
+            - 回答简洁、准确、友好
+            - 不确定的信息如实说明
+            """);
+
+    private PromptTemplates() {
+    }
+}
@@ -0,0 +1,133 @@
+package com.jim.mcpclient.test;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 录制/回放模型调用
+ *
+ * 录制时透传给真实模型，并把响应内容和每个流式片段相对请求开始的时间写入 {@link TrafficLog}；
+ * 回放时不调用真实模型，按录制的节奏(乘以 timeScale)返回同样的片段。
+ *
+ * 请求摘要基于全部消息(包括会话记忆)，宽松摘要只包含系统提示词和最后一条用户消息。
+ * 注意模型内部执行的工具调用已包含在录制的耗时里，回放时不会再调用工具。
+ *
+ * @author James Smith
+ */
+public class RecordReplayChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final TrafficLog trafficLog;
+    private final boolean replay;
+    private final double timeScale;
+
+    public RecordReplayChatModel(ChatModel delegate, TrafficLog trafficLog, boolean replay, double timeScale) {
+        this.delegate = delegate;
+        this.trafficLog = trafficLog;
+        this.replay = replay;
+        this.timeScale = timeScale;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        if (replay) {
+            TrafficLog.Entry entry = recorded(prompt);
+            sleep(scaled(entry.chunks().isEmpty() ? 0 : entry.chunks().getLast().at()));
+            return response(entry.text());
+        }
+
+        long start = System.currentTimeMillis();
+        ChatResponse response = delegate.call(prompt);
+        trafficLog.append(new TrafficLog.Entry(TrafficLog.Kind.CHAT, key(prompt), fallbackKey(prompt),
+                List.of(new TrafficLog.Chunk(System.currentTimeMillis() - start, text(response)))));
+        return response;
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        if (replay) {
+            return Mono.fromCallable(() -> recorded(prompt))
+                    .flatMapMany(entry -> {
+                        long[] previous = {0};
+                        return Flux.fromIterable(entry.chunks())
+                                .concatMap(chunk -> {
+                                    Duration delay = scaled(chunk.at() - previous[0]);
+                                    previous[0] = chunk.at();
+                                    return Mono.delay(delay).thenReturn(response(chunk.text()));
+                                });
+                    });
+        }
+
+        return Flux.defer(() -> {
+            long start = System.currentTimeMillis();
+            List<TrafficLog.Chunk> chunks = new ArrayList<>();
+            return delegate.stream(prompt)
+                    .doOnNext(response -> chunks.add(new TrafficLog.Chunk(System.currentTimeMillis() - start, text(response))))
+                    .doOnComplete(() -> trafficLog.append(new TrafficLog.Entry(TrafficLog.Kind.CHAT, key(prompt), fallbackKey(prompt), chunks)));
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+
+    private TrafficLog.Entry recorded(Prompt prompt) {
+        return trafficLog.next(TrafficLog.Kind.CHAT, key(prompt), fallbackKey(prompt))
+                .orElseThrow(() -> new IllegalStateException("No recorded model response for prompt " + key(prompt)));
+    }
+
+    private static String key(Prompt prompt) {
+        return TrafficLog.digest(prompt.getInstructions().stream()
+                .map(message -> message.getMessageType() + ":" + message.getText())
+                .collect(Collectors.joining("\n")));
+    }
+
+    private static String fallbackKey(Prompt prompt) {
+        List<Message> instructions = prompt.getInstructions();
+        String user = "";
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            if (instructions.get(i).getMessageType() == MessageType.USER) {
+                user = instructions.get(i).getText();
+                break;
+            }
+        }
+        return TrafficLog.digest(prompt.getSystemMessage().getText() + "\n" + user);
+    }
+
+    private static String text(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput().getText() == null) {
+            return "";
+        }
+        return response.getResult().getOutput().getText();
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private Duration scaled(long millis) {
+        return Duration.ofMillis((long) (Math.max(0, millis) * timeScale));
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.jim.mcpclient.test;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 录制/回放 MCP 工具调用
+ *
+ * 录制时透传给 MCP 工具回调并记录结果和耗时；回放时 delegate 为 null，
+ * 只根据录制的工具定义和结果响应，不访问 MCP server。
+ *
+ * @author James Smith
+ */
+public class RecordReplayToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final ToolDefinition toolDefinition;
+    private final TrafficLog trafficLog;
+    private final double timeScale;
+
+    /**
+     * 录制
+     */
+    public RecordReplayToolCallback(ToolCallback delegate, TrafficLog trafficLog) {
+        this(delegate, delegate.getToolDefinition(), trafficLog, 1.0);
+    }
+
+    /**
+     * 回放
+     */
+    public RecordReplayToolCallback(ToolDefinition toolDefinition, TrafficLog trafficLog, double timeScale) {
+        this(null, toolDefinition, trafficLog, timeScale);
+    }
+
+    private RecordReplayToolCallback(ToolCallback delegate, ToolDefinition toolDefinition, TrafficLog trafficLog, double timeScale) {
+        this.delegate = delegate;
+        this.toolDefinition = toolDefinition;
+        this.trafficLog = trafficLog;
+        this.timeScale = timeScale;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return toolDefinition;
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        String key = TrafficLog.digest(toolDefinition.name() + "\n" + toolInput);
+        String fallbackKey = TrafficLog.digest(toolDefinition.name());
+
+        if (delegate == null) {
+            TrafficLog.Entry entry = trafficLog.next(TrafficLog.Kind.TOOL_CALL, key, fallbackKey)
+                    .orElseThrow(() -> new IllegalStateException("No recorded result for tool " + toolDefinition.name()));
+            sleep(Duration.ofMillis((long) (entry.chunks().getLast().at() * timeScale)));
+            return entry.text();
+        }
+
+        long start = System.currentTimeMillis();
+        String result = delegate.call(toolInput, toolContext);
+        trafficLog.append(new TrafficLog.Entry(TrafficLog.Kind.TOOL_CALL, key, fallbackKey,
+                List.of(new TrafficLog.Chunk(System.currentTimeMillis() - start, result))));
+        return result;
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
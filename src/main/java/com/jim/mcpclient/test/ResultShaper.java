@@ -0,0 +1,309 @@
+package com.jim.mcpclient.test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jim.mcpclient.config.JsonUtils;
+import com.jim.mcpclient.config.TokenBudgetProperties;
+import com.jim.mcpclient.config.TokenEstimator;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把超出 token 预算的结果裁剪到预算以内，再放入提示词
+ *
+ * 裁剪方式按结果的形态选择：
+ * - MCP 工具结果(content 列表)：分别裁剪其中的文本内容
+ * - JSON 数组，或包含数组字段的 JSON 对象：保留开头和结尾的行，中间插入省略说明
+ * - 多行文本(表格、日志)：保留开头和结尾的行
+ * - 其他文本：保留开头和结尾的片段
+ * 裁剪后的结果会注明省略了多少内容，模型据此知道结果不完整。
+ *
+ * 指标：
+ * - agent.token-budget.trimmed{stage,strategy}：裁剪次数
+ * - agent.token-budget.saved{stage}：裁剪掉的 token 数(估算值)
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class ResultShaper {
+
+    /**
+     * 工具结果的指标标签，与编排阶段区分
+     */
+    private static final String TOOL_STAGE = "tool";
+
+    /**
+     * 为省略说明预留的 token 数
+     */
+    private static final int MARKER_TOKENS = 24;
+
+    public enum Strategy {
+        /** 未超出预算 */
+        NONE,
+        /** 保留 JSON 数组首尾的行 */
+        ROWS,
+        /** 保留首尾的文本行 */
+        LINES,
+        /** 保留首尾的文本片段 */
+        TRUNCATE
+    }
+
+    public record Shaped(String text, Strategy strategy, int originalTokens, int tokens) {
+
+        public boolean trimmed() {
+            return strategy != Strategy.NONE;
+        }
+    }
+
+    @Autowired
+    private TokenBudgetProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 按阶段预算裁剪放入提示词的结果，阶段没有配置预算时原样返回
+     */
+    public String shape(ToolStage stage, String text) {
+        Integer budget = properties.getStages().get(stage);
+        if (budget == null) {
+            return text;
+        }
+        return record(stage.name().toLowerCase(), shape(text, budget)).text();
+    }
+
+    /**
+     * 按工具结果预算裁剪返回给模型的工具调用结果
+     */
+    public String shapeToolResult(String toolName, String text) {
+        return shapeToolResult(toolName, text, properties.getToolResult());
+    }
+
+    /**
+     * 按指定预算裁剪工具调用结果，用于转存结果的预览
+     */
+    public String shapeToolResult(String toolName, String text, int budget) {
+        Shaped shaped = record(TOOL_STAGE, shape(text, budget));
+        if (shaped.trimmed()) {
+            log.info("Trimmed result of tool {}", toolName);
+        }
+        return shaped.text();
+    }
+
+    /**
+     * 裁剪到 budget 个 token 以内，budget 不大于 0 或功能关闭时不裁剪
+     */
+    Shaped shape(String text, int budget) {
+        int originalTokens = TokenEstimator.estimate(text);
+        if (!properties.isEnabled() || budget <= 0 || originalTokens <= budget) {
+            return new Shaped(text, Strategy.NONE, originalTokens, originalTokens);
+        }
+
+        Shaped shaped = shapeJson(text, budget);
+        if (shaped == null) {
+            shaped = text.indexOf('\n') >= 0 && text.strip().lines().count() >= 3
+                    ? shapeLines(text, budget)
+                    : truncate(text, budget);
+        }
+        // 单行过长等情况下按行保留仍可能超出预算
+        if (shaped.tokens() > budget) {
+            shaped = truncate(shaped.text(), budget);
+        }
+        return new Shaped(shaped.text(), shaped.strategy(), originalTokens, shaped.tokens());
+    }
+
+    private Shaped record(String stage, Shaped shaped) {
+        if (shaped.trimmed()) {
+            meterRegistry.counter("agent.token-budget.trimmed", "stage", stage, "strategy", shaped.strategy().name().toLowerCase())
+                    .increment();
+            meterRegistry.summary("agent.token-budget.saved", "stage", stage)
+                    .record(shaped.originalTokens() - shaped.tokens());
+            log.info("Trimmed {} result from ~{} to ~{} tokens ({})",
+                    stage, shaped.originalTokens(), shaped.tokens(), shaped.strategy());
+        }
+        return shaped;
+    }
+
+    /**
+     * 按 JSON 结构裁剪，不是 JSON 或没有可裁剪的数组时返回 null
+     */
+    private Shaped shapeJson(String text, int budget) {
+        String stripped = text.strip();
+        if (!stripped.startsWith("[") && !stripped.startsWith("{")) {
+            return null;
+        }
+        JsonNode node;
+        try {
+            node = JsonUtils.getObjectMapper().readTree(stripped);
+        } catch (Exception e) {
+            return null;
+        }
+
+        if (isToolContent(node)) {
+            return shapeToolContent((ArrayNode) node, budget);
+        }
+        Strategy strategy = shapeNode(node, budget);
+        if (strategy == null) {
+            return null;
+        }
+        String shaped = node.toString();
+        return new Shaped(shaped, strategy, 0, TokenEstimator.estimate(shaped));
+    }
+
+    /**
+     * MCP 工具结果是 content 列表，文本内容通常是序列化后的查询结果，按文本内容的数量平分预算分别裁剪
+     */
+    private Shaped shapeToolContent(ArrayNode contents, int budget) {
+        int structure = TokenEstimator.estimate(contents.toString());
+        List<ObjectNode> texts = new ArrayList<>();
+        for (JsonNode content : contents) {
+            structure -= TokenEstimator.estimate(content.get("text").asText());
+            texts.add((ObjectNode) content);
+        }
+        int share = Math.max(1, (budget - structure) / texts.size());
+        Strategy strategy = null;
+        for (ObjectNode content : texts) {
+            Shaped shaped = shape(content.get("text").asText(), share);
+            if (shaped.trimmed()) {
+                content.put("text", shaped.text());
+                strategy = shaped.strategy();
+            }
+        }
+        if (strategy == null) {
+            return null;
+        }
+        String shaped = contents.toString();
+        return new Shaped(shaped, strategy, 0, TokenEstimator.estimate(shaped));
+    }
+
+    private static boolean isToolContent(JsonNode node) {
+        if (!node.isArray() || node.isEmpty()) {
+            return false;
+        }
+        for (JsonNode content : node) {
+            if (!"text".equals(content.path("type").asText()) || !content.path("text").isTextual()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 就地裁剪 JSON 节点：数组直接保留首尾的行，对象裁剪其中最大的数组字段
+     *
+     * @return 使用的裁剪方式，没有可裁剪的数组时返回 null
+     */
+    private Strategy shapeNode(JsonNode node, int budget) {
+        if (node instanceof ArrayNode array) {
+            return sampleRows(array, budget) ? Strategy.ROWS : null;
+        }
+        if (!(node instanceof ObjectNode object)) {
+            return null;
+        }
+
+        String largestField = null;
+        int largestTokens = 0;
+        for (Map.Entry<String, JsonNode> field : object.properties()) {
+            if (field.getValue().isContainerNode()) {
+                int tokens = TokenEstimator.estimate(field.getValue().toString());
+                if (tokens > largestTokens) {
+                    largestField = field.getKey();
+                    largestTokens = tokens;
+                }
+            }
+        }
+        if (largestField == null) {
+            return null;
+        }
+        int rest = TokenEstimator.estimate(object.toString()) - largestTokens;
+        return shapeNode(object.get(largestField), Math.max(1, budget - rest));
+    }
+
+    /**
+     * 保留数组首尾的行，中间替换为一条省略说明
+     *
+     * @return 是否省略了行
+     */
+    private boolean sampleRows(ArrayNode rows, int budget) {
+        int[] costs = new int[rows.size()];
+        for (int i = 0; i < costs.length; i++) {
+            costs[i] = TokenEstimator.estimate(rows.get(i).toString()) + 1;
+        }
+        int[] kept = keep(costs, budget - MARKER_TOKENS);
+        int omitted = costs.length - kept[0] - kept[1];
+        if (omitted <= 0) {
+            return false;
+        }
+
+        List<JsonNode> tail = new ArrayList<>();
+        for (int i = costs.length - kept[1]; i < costs.length; i++) {
+            tail.add(rows.get(i));
+        }
+        while (rows.size() > kept[0]) {
+            rows.remove(rows.size() - 1);
+        }
+        rows.add("...(省略 " + omitted + " 行，共 " + costs.length + " 行)...");
+        rows.addAll(tail);
+        return true;
+    }
+
+    private Shaped shapeLines(String text, int budget) {
+        List<String> lines = text.strip().lines().toList();
+        int[] costs = new int[lines.size()];
+        for (int i = 0; i < costs.length; i++) {
+            costs[i] = TokenEstimator.estimate(lines.get(i)) + 1;
+        }
+        int[] kept = keep(costs, budget - MARKER_TOKENS);
+        int omitted = costs.length - kept[0] - kept[1];
+        if (omitted <= 0) {
+            return truncate(text, budget);
+        }
+
+        List<String> shapedLines = new ArrayList<>(lines.subList(0, kept[0]));
+        shapedLines.add("...(省略 " + omitted + " 行，共 " + costs.length + " 行)...");
+        shapedLines.addAll(lines.subList(costs.length - kept[1], costs.length));
+        String shaped = String.join("\n", shapedLines);
+        return new Shaped(shaped, Strategy.LINES, 0, TokenEstimator.estimate(shaped));
+    }
+
+    private Shaped truncate(String text, int budget) {
+        int available = Math.max(0, budget - MARKER_TOKENS);
+        int head = TokenEstimator.prefixLength(text, (int) (available * headRatio()));
+        int tail = Math.min(text.length() - head, TokenEstimator.suffixLength(text, available - (int) (available * headRatio())));
+        int omitted = TokenEstimator.estimate(text.substring(head, text.length() - tail));
+        String shaped = text.substring(0, head)
+                + "\n...(已截断，省略约 " + omitted + " token)...\n"
+                + text.substring(text.length() - tail);
+        return new Shaped(shaped, Strategy.TRUNCATE, 0, TokenEstimator.estimate(shaped));
+    }
+
+    /**
+     * 在预算内保留开头和结尾的元素，开头部分按 headRatio 分配预算，结尾部分使用剩余的预算
+     *
+     * @return 保留的开头和结尾元素数量
+     */
+    private int[] keep(int[] costs, int budget) {
+        int headBudget = (int) (budget * headRatio());
+        int head = 0;
+        int used = 0;
+        while (head < costs.length && used + costs[head] <= headBudget) {
+            used += costs[head++];
+        }
+        int tail = 0;
+        while (tail < costs.length - head && used + costs[costs.length - 1 - tail] <= budget) {
+            used += costs[costs.length - 1 - tail++];
+        }
+        return new int[]{head, tail};
+    }
+
+    private double headRatio() {
+        return Math.clamp(properties.getHeadRatio(), 0.0, 1.0);
+    }
+}
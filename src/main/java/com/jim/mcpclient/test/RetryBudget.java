@@ -0,0 +1,30 @@
+package com.jim.mcpclient.test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一次编排的重试预算
+ *
+ * 传输重试和语义重试共用，避免模型服务持续异常时每条任务指令都重试到上限
+ *
+ * @author James Smith
+ */
+public class RetryBudget {
+
+    private final AtomicInteger remaining;
+
+    public RetryBudget(int budget) {
+        this.remaining = new AtomicInteger(Math.max(0, budget));
+    }
+
+    /**
+     * 占用一次重试，预算已用完时返回 false
+     */
+    public boolean tryAcquire() {
+        return remaining.getAndUpdate(r -> r > 0 ? r - 1 : 0) > 0;
+    }
+
+    public int remaining() {
+        return remaining.get();
+    }
+}
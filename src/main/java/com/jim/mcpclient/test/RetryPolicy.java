@@ -0,0 +1,42 @@
+package com.jim.mcpclient.test;
+
+import java.time.Duration;
+
+/**
+ * 编排重试策略
+ *
+ * 失败分为两类：
+ * - 传输失败：429、5xx、超时、连接中断等，原样重新调用，按 {@link #transportBackoff(int)} 等待
+ * - 语义失败：模型有响应但结果不可用(结果为空、执行未完成、验证未通过)，带上失败原因和已完成的工具调用结果重新执行
+ *
+ * 默认实现为 {@link DefaultRetryPolicy}，需要替换时声明一个 @Primary 的 RetryPolicy bean
+ *
+ * @author James Smith
+ */
+public interface RetryPolicy {
+
+    /**
+     * 是否为可重试的传输失败
+     */
+    boolean isTransient(Throwable error);
+
+    /**
+     * 第 attempt 次(从 1 开始)传输失败后重试前的等待时间，返回 null 表示不再重试
+     */
+    Duration transportBackoff(int attempt);
+
+    /**
+     * 每条任务指令的语义重试次数
+     */
+    int semanticRetries();
+
+    /**
+     * 语义重试时每个已完成工具调用结果最多带上的字符数
+     */
+    int toolResultChars();
+
+    /**
+     * 为一次编排创建重试预算
+     */
+    RetryBudget newBudget();
+}
@@ -0,0 +1,219 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.SessionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * STOMP 会话登记、空闲会话回收和离开用户的会话记忆释放
+ *
+ * 作为 WebSocket 处理器的装饰器登记每个连接，任何入站帧(包括心跳)都会刷新会话的活动时间；
+ * 会话订阅 /queue/messages/{userId} 时关联到用户。不经过 STOMP 的 SSE 连接由 {@link ChatStreamController}
+ * 通过 {@link #streamOpened}/{@link #streamClosed} 按用户登记，与 STOMP 会话一起判断用户是否在线。定时检查：
+ * - 超过 idleTimeout 没有入站帧的会话被关闭(关闭后 {@link SingleFlight} 照常处理断开)
+ * - 会话全部关闭超过 memoryRetention 且没有进行中编排的用户，由 {@link ConversationEviction} 释放会话记忆；
+ *   用户重新订阅时恢复转存的会话记忆
+ *
+ * 指标：
+ * - agent.sessions.live / agent.sessions.users：当前连接数和在线用户数
+ * - agent.sessions.reaped：因空闲被关闭的连接数
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class SessionRegistry implements WebSocketHandlerDecoratorFactory {
+
+    /**
+     * 用户消息队列的前缀，订阅地址的剩余部分为 userId
+     */
+    private static final String USER_QUEUE_PREFIX = "/queue/messages/";
+
+    @Autowired
+    private SessionProperties properties;
+    @Autowired
+    private ConversationEviction conversationEviction;
+    @Autowired
+    private CancellationRegistry cancellationRegistry;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Resource(name = "webSocketTaskScheduler")
+    private TaskScheduler taskScheduler;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 会话已全部关闭的用户及其最后一个会话关闭的时间
+     */
+    private final Map<String, Long> departedUsers = new ConcurrentHashMap<>();
+
+    /**
+     * 各用户打开的 SSE 连接数
+     */
+    private final Map<String, Integer> streams = new ConcurrentHashMap<>();
+
+    private Counter reaped;
+
+    private static final class Session {
+
+        private final WebSocketSession webSocketSession;
+        private volatile String userId;
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        private Session(WebSocketSession webSocketSession) {
+            this.webSocketSession = webSocketSession;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("agent.sessions.live", sessions, Map::size);
+        meterRegistry.gauge("agent.sessions.users", sessions, s -> s.values().stream()
+                .map(session -> session.userId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .count());
+        reaped = meterRegistry.counter("agent.sessions.reaped");
+        if (properties.getReapInterval().isPositive()) {
+            taskScheduler.scheduleWithFixedDelay(this::reap, properties.getReapInterval());
+        }
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                sessions.put(session.getId(), new Session(session));
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                touch(session.getId());
+                super.handleMessage(session, message);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                try {
+                    super.afterConnectionClosed(session, closeStatus);
+                } finally {
+                    closed(session.getId());
+                }
+            }
+        };
+    }
+
+    /**
+     * 订阅用户消息队列时把会话关联到用户，恢复该用户转存的会话记忆
+     */
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        String destination = SimpMessageHeaderAccessor.getDestination(event.getMessage().getHeaders());
+        Session session = sessions.get(String.valueOf(SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders())));
+        if (session == null || destination == null || !destination.startsWith(USER_QUEUE_PREFIX)) {
+            return;
+        }
+        String userId = destination.substring(USER_QUEUE_PREFIX.length());
+        session.userId = userId;
+        departedUsers.remove(userId);
+        conversationEviction.restore(userId);
+    }
+
+    /**
+     * SSE 连接打开时登记用户，恢复该用户转存的会话记忆
+     */
+    public void streamOpened(String userId) {
+        streams.merge(userId, 1, Integer::sum);
+        departedUsers.remove(userId);
+        conversationEviction.restore(userId);
+    }
+
+    /**
+     * SSE 连接关闭，用户没有其他连接时按离开处理
+     */
+    public void streamClosed(String userId) {
+        streams.computeIfPresent(userId, (_, count) -> count > 1 ? count - 1 : null);
+        departIfOffline(userId);
+    }
+
+    /**
+     * 关闭空闲会话，释放离开超过保留时长的用户的会话记忆
+     */
+    void reap() {
+        long now = System.currentTimeMillis();
+        long idleTimeout = properties.getIdleTimeout().toMillis();
+        if (idleTimeout > 0) {
+            for (Session session : sessions.values()) {
+                if (now - session.lastActivity > idleTimeout) {
+                    close(session);
+                }
+            }
+        }
+
+        long retention = properties.getMemoryRetention().toMillis();
+        departedUsers.forEach((userId, departedAt) -> {
+            // 仍有编排在执行的用户等下一次检查
+            if (now - departedAt > retention && !cancellationRegistry.isRunning(userId)
+                    && departedUsers.remove(userId, departedAt)) {
+                conversationEviction.evict(userId);
+            }
+        });
+    }
+
+    void touch(String sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session != null) {
+            session.lastActivity = System.currentTimeMillis();
+        }
+    }
+
+    private void closed(String sessionId) {
+        Session session = sessions.remove(sessionId);
+        if (session == null || session.userId == null) {
+            return;
+        }
+        departIfOffline(session.userId);
+    }
+
+    private void departIfOffline(String userId) {
+        boolean online = streams.containsKey(userId) || sessions.values().stream().anyMatch(s -> userId.equals(s.userId));
+        if (!online) {
+            departedUsers.put(userId, System.currentTimeMillis());
+        }
+    }
+
+    private void close(Session session) {
+        log.info("Closing idle WebSocket session {} of user {}", session.webSocketSession.getId(), session.userId);
+        reaped.increment();
+        try {
+            session.webSocketSession.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.warn("Failed to close idle WebSocket session {}", session.webSocketSession.getId(), e);
+        }
+        // 半开连接上的关闭可能不会触发回调
+        closed(session.webSocketSession.getId());
+    }
+}
@@ -0,0 +1,325 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.SingleFlightProperties;
+import com.jim.mcpclient.model.ChatRequest;
+import com.jim.mcpclient.model.ChatResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 重复请求合并(single-flight)
+ *
+ * 每个编排对应一个 {@link Flight}，编排产生的所有消息都经过 {@link #send}：写入有界重放缓存，
+ * 并按每个挂载请求自己的 messageId 分别推送。重复请求(相同 messageId，或在窗口期内发送相同内容)
+ * 不再启动编排，而是先收到缓存中的消息，再接收后续消息。消息带有递增的 sequence，
+ * 同一 messageId 重连后收到重放消息时，客户端可据此去重。
+ *
+ * 取消和会话断开只移除对应的挂载请求，所有挂载请求都离开后才真正取消编排；
+ * 会话断开时额外等待一个窗口期，让重连后重试的请求可以重新挂载到原来的编排上。
+ * 编排结束一个窗口期后释放其登记和重放缓存。
+ *
+ * 消息默认推送到用户的 STOMP 队列；会话通过 {@link #openStream} 登记了消息流(如 SSE 连接)时，
+ * 该会话挂载的请求只推送到自己的消息流，消息流关闭等同于会话断开。
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class SingleFlight {
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+    @Autowired
+    private CancellationRegistry cancellationRegistry;
+    @Autowired
+    private SingleFlightProperties properties;
+
+    /**
+     * 按 userId + 挂载请求的 messageId 索引
+     */
+    private final Map<String, Flight> flightsByMessage = new ConcurrentHashMap<>();
+
+    /**
+     * 按 userId + 请求内容索引
+     */
+    private final Map<String, Flight> flightsByContent = new ConcurrentHashMap<>();
+
+    /**
+     * 按会话 id 索引的消息流
+     */
+    private final Map<String, Consumer<ChatResponse>> streams = new ConcurrentHashMap<>();
+
+    /**
+     * 登记请求，返回 true 表示调用方需要执行编排，false 表示已挂到正在执行(或刚完成)的编排上
+     */
+    public synchronized boolean join(String userId, ChatRequest request, String sessionId) {
+        evictExpired();
+
+        String messageId = request.getMessageId();
+        Flight flight = flightsByMessage.get(messageKey(userId, messageId));
+        if (flight == null && !properties.getDuplicateWindow().isZero() && request.getMessage() != null) {
+            flight = flightsByContent.get(contentKey(userId, request.getMessage()));
+        }
+        if (flight != null && flight.attach(messageId, sessionId)) {
+            flightsByMessage.put(messageKey(userId, messageId), flight);
+            log.info("Request {} of user {} joined orchestration {}", messageId, userId, flight.leaderMessageId);
+            return false;
+        }
+
+        flight = new Flight(userId, messageId);
+        flight.members.computeIfAbsent(messageId, _ -> new HashSet<>()).add(sessionId);
+        flightsByMessage.put(messageKey(userId, messageId), flight);
+        if (request.getMessage() != null) {
+            flightsByContent.put(contentKey(userId, request.getMessage()), flight);
+        }
+        return true;
+    }
+
+    /**
+     * 发送编排消息，属于某个编排时推送给该编排的全部挂载请求
+     */
+    public void send(String userId, ChatResponse response) {
+        Flight flight = flightsByMessage.get(messageKey(userId, response.getMessageId()));
+        if (flight == null || !flight.leaderMessageId.equals(response.getMessageId())) {
+            deliver(userId, response);
+            return;
+        }
+        flight.publish(response);
+    }
+
+    /**
+     * 移除挂载请求并回复 CANCELLED，编排没有其他挂载请求时取消编排
+     */
+    public synchronized boolean cancel(String userId, String messageId) {
+        Flight flight = messageId == null ? null : flightsByMessage.get(messageKey(userId, messageId));
+        if (flight == null) {
+            return cancellationRegistry.cancel(messageId, userId);
+        }
+        Set<String> sessionIds = flight.detach(messageId);
+        if (sessionIds == null) {
+            return false;
+        }
+        deliver(userId, ChatResponse.builder()
+                .messageId(messageId)
+                .content("任务已取消。")
+                .type(ChatResponse.MessageType.CANCELLED)
+                .isFinal(true)
+                .timestamp(System.currentTimeMillis())
+                .build(), sessionIds);
+        if (flight.isAbandoned()) {
+            cancellationRegistry.cancel(flight.leaderMessageId, userId);
+        }
+        return true;
+    }
+
+    /**
+     * 拒绝尚未执行的编排(例如执行通道过载)：向挂载请求推送 ERROR 并移除登记，之后相同的请求会重新执行
+     */
+    public synchronized void reject(String userId, String messageId, String error) {
+        Flight flight = flightsByMessage.get(messageKey(userId, messageId));
+        send(userId, ChatResponse.builder()
+                .messageId(messageId)
+                .type(ChatResponse.MessageType.ERROR)
+                .error(error)
+                .isFinal(true)
+                .timestamp(System.currentTimeMillis())
+                .build());
+        if (flight != null) {
+            flightsByMessage.values().removeIf(other -> other == flight);
+            flightsByContent.values().removeIf(other -> other == flight);
+        }
+    }
+
+    /**
+     * 会话断开后等待一个窗口期，期间客户端重连并重试可以重新挂载，仍无挂载请求时才取消编排
+     */
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        disconnect(event.getSessionId());
+    }
+
+    /**
+     * 登记会话的消息流，之后该会话挂载的请求只推送到这个消息流；需要在 {@link #join} 之前登记
+     */
+    public void openStream(String sessionId, Consumer<ChatResponse> stream) {
+        streams.put(sessionId, stream);
+    }
+
+    /**
+     * 关闭会话的消息流，按会话断开处理
+     */
+    public void closeStream(String sessionId) {
+        // 先移除挂载再注销，避免期间的消息落到 STOMP 队列
+        if (streams.containsKey(sessionId)) {
+            disconnect(sessionId);
+            streams.remove(sessionId);
+        }
+    }
+
+    private synchronized void disconnect(String sessionId) {
+        for (Flight flight : Set.copyOf(flightsByMessage.values())) {
+            if (flight.disconnect(sessionId) && flight.isAbandoned()) {
+                CompletableFuture.delayedExecutor(properties.getDuplicateWindow().toMillis(), TimeUnit.MILLISECONDS)
+                        .execute(() -> cancelIfAbandoned(flight));
+            }
+        }
+    }
+
+    private synchronized void cancelIfAbandoned(Flight flight) {
+        if (flight.isAbandoned()) {
+            log.info("Cancel orchestration {} because all its sessions disconnected", flight.leaderMessageId);
+            cancellationRegistry.cancel(flight.leaderMessageId, flight.userId);
+        }
+    }
+
+    private synchronized void evict(Flight flight) {
+        flightsByMessage.values().removeIf(other -> other == flight);
+        flightsByContent.values().removeIf(other -> other == flight);
+    }
+
+    private void evictExpired() {
+        long expiredBefore = System.currentTimeMillis() - properties.getDuplicateWindow().toMillis();
+        flightsByMessage.values().removeIf(flight -> flight.isCompletedBefore(expiredBefore));
+        flightsByContent.values().removeIf(flight -> flight.isCompletedBefore(expiredBefore)
+                || flight.startedAt < expiredBefore);
+    }
+
+    private void deliver(String userId, ChatResponse response) {
+        messagingTemplate.convertAndSend("/queue/messages/" + userId, response);
+    }
+
+    /**
+     * 推送给挂载请求的会话：登记了消息流的会话推送到各自的消息流，其余会话共用用户的 STOMP 队列
+     */
+    private void deliver(String userId, ChatResponse response, Collection<String> sessionIds) {
+        boolean queue = sessionIds.isEmpty();
+        for (String sessionId : sessionIds) {
+            Consumer<ChatResponse> stream = sessionId == null ? null : streams.get(sessionId);
+            if (stream != null) {
+                stream.accept(response);
+            } else {
+                queue = true;
+            }
+        }
+        if (queue) {
+            deliver(userId, response);
+        }
+    }
+
+    private static String messageKey(String userId, String messageId) {
+        return userId + "\n" + messageId;
+    }
+
+    private static String contentKey(String userId, String message) {
+        return userId + "\n" + message.strip();
+    }
+
+    /**
+     * 一次编排及挂载在上面的请求
+     */
+    private class Flight {
+
+        private final String userId;
+        private final String leaderMessageId;
+        private final long startedAt = System.currentTimeMillis();
+
+        /**
+         * 挂载请求的 messageId 到其会话，同一 messageId 推送到 STOMP 队列时只推送一次
+         */
+        private final Map<String, Set<String>> members = new LinkedHashMap<>();
+        private final Deque<ChatResponse> buffer = new ArrayDeque<>();
+        private boolean overflowed;
+        private long nextSequence;
+        private volatile long completedAt;
+
+        Flight(String userId, String leaderMessageId) {
+            this.userId = userId;
+            this.leaderMessageId = leaderMessageId;
+        }
+
+        /**
+         * 挂载请求并重放缓存的消息；已完成但缓存不完整时无法重放，返回 false
+         */
+        synchronized boolean attach(String messageId, String sessionId) {
+            if (completedAt > 0 && overflowed) {
+                return false;
+            }
+            for (ChatResponse response : buffer) {
+                deliver(userId, copy(response, messageId), Collections.singleton(sessionId));
+            }
+            members.computeIfAbsent(messageId, _ -> new HashSet<>()).add(sessionId);
+            return true;
+        }
+
+        synchronized void publish(ChatResponse response) {
+            response.setSequence(nextSequence++);
+            buffer.addLast(response);
+            if (buffer.size() > properties.getReplayBufferSize()) {
+                buffer.removeFirst();
+                overflowed = true;
+            }
+            for (Map.Entry<String, Set<String>> member : List.copyOf(members.entrySet())) {
+                deliver(userId, copy(response, member.getKey()), member.getValue());
+            }
+            if (response.isFinal() && completedAt == 0) {
+                completedAt = System.currentTimeMillis();
+                // 窗口期后释放编排及其重放缓存，不依赖之后是否还有新请求
+                CompletableFuture.delayedExecutor(properties.getDuplicateWindow().toMillis(), TimeUnit.MILLISECONDS)
+                        .execute(() -> evict(this));
+            }
+        }
+
+        /**
+         * 移除挂载请求，返回其会话；未挂载时返回 null
+         */
+        synchronized Set<String> detach(String messageId) {
+            return members.remove(messageId);
+        }
+
+        /**
+         * 移除该会话的挂载，返回是否有变化
+         */
+        synchronized boolean disconnect(String sessionId) {
+            boolean changed = false;
+            for (Set<String> sessions : members.values()) {
+                changed |= sessions.remove(sessionId);
+            }
+            changed |= members.values().removeIf(Set::isEmpty);
+            return changed;
+        }
+
+        synchronized boolean isAbandoned() {
+            return completedAt == 0 && members.isEmpty();
+        }
+
+        boolean isCompletedBefore(long time) {
+            return completedAt > 0 && completedAt < time;
+        }
+
+        private ChatResponse copy(ChatResponse response, String messageId) {
+            if (Objects.equals(messageId, response.getMessageId())) {
+                return response;
+            }
+            return response.toBuilder().messageId(messageId).build();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.SpeculationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 推测执行的开关判断与指标
+ *
+ * 指标：
+ * - agent.speculation.started / committed / rollbacks：推测执行、验证通过、验证未通过回滚的次数
+ * - agent.speculation.saved：验证通过时节省的时间(验证与下一条指令执行重叠的部分)
+ * - agent.speculation.wasted：回滚时丢弃的下一条指令执行时间
+ *
+ * @author James Smith
+ */
+@Component
+public class Speculation {
+
+    @Autowired
+    private SpeculationProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter started;
+    private Counter committed;
+    private Counter rollbacks;
+    private Timer saved;
+    private Timer wasted;
+
+    private boolean[] outcomes;
+    private int next;
+    private int size;
+
+    @PostConstruct
+    public void init() {
+        started = meterRegistry.counter("agent.speculation.started");
+        committed = meterRegistry.counter("agent.speculation.committed");
+        rollbacks = meterRegistry.counter("agent.speculation.rollbacks");
+        saved = meterRegistry.timer("agent.speculation.saved");
+        wasted = meterRegistry.timer("agent.speculation.wasted");
+        outcomes = new boolean[Math.max(1, properties.getWindow())];
+    }
+
+    /**
+     * 当前编排是否可以推测执行
+     *
+     * @param rollbacks 当前编排已回滚的次数
+     */
+    public boolean allowed(int rollbacks) {
+        return properties.isEnabled()
+                && rollbacks < properties.getMaxRollbacks()
+                && passRate() >= properties.getMinPassRate();
+    }
+
+    /**
+     * 记录验证结果(包括未推测执行的验证)，用于计算通过率
+     */
+    public synchronized void validated(boolean passed) {
+        outcomes[next] = passed;
+        next = (next + 1) % outcomes.length;
+        size = Math.min(size + 1, outcomes.length);
+    }
+
+    /**
+     * 最近验证的通过率，没有样本时为 1
+     */
+    public synchronized double passRate() {
+        if (size == 0) {
+            return 1.0;
+        }
+        int passed = 0;
+        for (int i = 0; i < size; i++) {
+            if (outcomes[i]) {
+                passed++;
+            }
+        }
+        return (double) passed / size;
+    }
+
+    public void started() {
+        started.increment();
+    }
+
+    public void committed(Duration savedTime) {
+        committed.increment();
+        saved.record(savedTime);
+    }
+
+    public void rolledBack(Duration wastedTime) {
+        rollbacks.increment();
+        wasted.record(wastedTime);
+    }
+}
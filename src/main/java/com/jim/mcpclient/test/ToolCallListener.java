@@ -0,0 +1,20 @@
+package com.jim.mcpclient.test;
+
+/**
+ * 工具调用监听器
+ *
+ * 通过 toolContext 传递给 {@link ObservableToolCallback}，用于感知工具调用的开始与结束
+ *
+ * @author James Smith
+ */
+public interface ToolCallListener {
+
+    /**
+     * toolContext 中存放监听器的 key，不会被传递给 MCP server
+     */
+    String CONTEXT_KEY = "toolCallListener";
+
+    void onToolStart(String toolName);
+
+    void onToolEnd(String toolName, long elapsedMillis, boolean success);
+}
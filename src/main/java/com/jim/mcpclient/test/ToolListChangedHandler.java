@@ -1,24 +1,45 @@
 package com.jim.mcpclient.test;
 
+import io.modelcontextprotocol.client.McpClient;
 import io.modelcontextprotocol.spec.McpSchema;
-import org.springaicommunity.mcp.annotation.McpToolListChanged;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.mcp.customizer.McpSyncClientCustomizer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 
+/**
+ * 工具列表变更通知处理
+ *
+ * 自动配置为 spring.ai.mcp.client.streamable-http.connections 下的每个连接创建客户端时都会调用本定制器，
+ * 因此每个连接都注册了通知处理，新增连接无需修改代码。
+ * {@link McpToolRegistry} 依赖这些客户端，这里延迟获取，避免循环依赖
+ *
+ * @author James Smith
+ */
+@Slf4j
 @Component
-public class ToolListChangedHandler {
+public class ToolListChangedHandler implements McpSyncClientCustomizer {
 
-    @McpToolListChanged(clients = "tool-server")
-    public void handleToolListChanged(List<McpSchema.Tool> updatedTools) {
-        System.out.println("Tool list updated: " + updatedTools.size() + " tools available");
+    @Autowired
+    private ObjectProvider<McpToolRegistry> mcpToolRegistry;
+
+    @Override
+    public void customize(String connectionName, McpClient.SyncSpec spec) {
+        spec.toolsChangeConsumer(updatedTools -> handleToolListChanged(connectionName, updatedTools));
+    }
+
+    private void handleToolListChanged(String connectionName, List<McpSchema.Tool> updatedTools) {
+        log.info("Tool list updated for {}: {} tools available", connectionName, updatedTools.size());
 
         // Update local tool registry
-        //toolRegistry.updateTools(updatedTools);
+        mcpToolRegistry.getObject().refreshTools(connectionName, updatedTools);
 
         // Log new tools
         for (McpSchema.Tool tool : updatedTools) {
-            System.out.println("  - " + tool.name() + ": " + tool.description());
+            log.debug("  - {}: {}", tool.name(), tool.description());
         }
     }
 }
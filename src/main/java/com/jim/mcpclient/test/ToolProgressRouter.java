@@ -0,0 +1,215 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.ToolProgressProperties;
+import com.jim.mcpclient.model.ChatResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.modelcontextprotocol.spec.McpSchema;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * MCP 工具进度通知路由
+ *
+ * {@link ObservableToolCallback} 调用工具前通过 toolContext 中的 {@link Tracker} 登记一个 progressToken，
+ * 该 token 作为 MCP meta 随 tools/call 请求发送。MCP server 的进度通知由 {@link ProgressHandler} 转交到这里，
+ * 按 token 找到发起调用的用户和编排，以 PROGRESS 消息推送到 /queue/messages/{userId}。
+ *
+ * 每个用户在 interval 内最多推送一次，期间同一工具调用的多次进度合并为最新一条，频繁上报进度的工具不会刷屏；
+ * 工具调用结束后丢弃尚未推送的进度(随后会有 TOOL_END 事件)。
+ *
+ * 指标：agent.tool-progress.notifications{outcome=sent|coalesced|unmatched}
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class ToolProgressRouter {
+
+    /**
+     * toolContext 中存放 {@link Tracker} 的 key，不会被传递给 MCP server
+     */
+    public static final String CONTEXT_KEY = "toolProgress";
+
+    /**
+     * MCP 请求 meta 中的进度 token 字段
+     */
+    public static final String META_KEY = "progressToken";
+
+    @Autowired
+    private SingleFlight singleFlight;
+    @Autowired
+    private ToolProgressProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Resource(name = "webSocketTaskScheduler")
+    private TaskScheduler taskScheduler;
+
+    /**
+     * 进行中的工具调用，按 progressToken 索引
+     */
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+    /**
+     * 有进行中工具调用的用户的推送节流
+     */
+    private final Map<String, Throttle> throttles = new ConcurrentHashMap<>();
+
+    private record Target(String userId, String messageId, String toolName) {
+    }
+
+    /**
+     * 创建绑定到当前用户消息的进度登记器
+     */
+    public Tracker tracker(String userId, String messageId) {
+        return new Tracker(userId, messageId);
+    }
+
+    /**
+     * 处理 MCP server 的进度通知，找不到对应工具调用(已结束或不是本节点发起)的通知被忽略
+     */
+    public void onProgress(McpSchema.ProgressNotification notification) {
+        String token = notification.progressToken() == null ? null : String.valueOf(notification.progressToken());
+        Target target = token == null ? null : targets.get(token);
+        Throttle throttle = target == null ? null : throttles.get(target.userId());
+        if (throttle == null) {
+            log.debug("Ignore progress notification with unknown token {}", token);
+            count("unmatched");
+            return;
+        }
+        throttle.offer(token, ChatResponse.builder()
+                .messageId(target.messageId())
+                .type(ChatResponse.MessageType.PROGRESS)
+                .toolName(target.toolName())
+                .progress(notification.progress())
+                .total(notification.total())
+                .content(notification.message())
+                .isFinal(false)
+                .build());
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("agent.tool-progress.notifications", "outcome", outcome).increment();
+    }
+
+    /**
+     * 为一个用户消息的工具调用登记和注销 progressToken，通过 toolContext 传递给 {@link ObservableToolCallback}
+     */
+    public final class Tracker {
+
+        private final String userId;
+        private final String messageId;
+
+        private Tracker(String userId, String messageId) {
+            this.userId = userId;
+            this.messageId = messageId;
+        }
+
+        /**
+         * 登记一次工具调用，返回放入 MCP meta 的 progressToken；未启用时返回 null
+         */
+        public String open(String toolName) {
+            if (!properties.isEnabled()) {
+                return null;
+            }
+            String token = "progress-" + UUID.randomUUID();
+            targets.put(token, new Target(userId, messageId, toolName));
+            throttles.compute(userId, (key, throttle) -> {
+                Throttle opened = throttle == null ? new Throttle(userId) : throttle;
+                opened.open++;
+                return opened;
+            });
+            return token;
+        }
+
+        /**
+         * 工具调用结束，之后到达的进度通知被忽略
+         */
+        public void close(String token) {
+            if (token == null || targets.remove(token) == null) {
+                return;
+            }
+            throttles.computeIfPresent(userId, (key, throttle) -> throttle.close(token) ? null : throttle);
+        }
+    }
+
+    /**
+     * 单个用户的进度推送节流，按 progressToken 合并为最新进度
+     */
+    private final class Throttle {
+
+        private final String userId;
+        private final Map<String, ChatResponse> pending = new LinkedHashMap<>();
+
+        /**
+         * 进行中的工具调用数，只在 throttles.compute 中修改
+         */
+        private int open;
+        private long lastSent;
+        private ScheduledFuture<?> scheduled;
+
+        private Throttle(String userId) {
+            this.userId = userId;
+        }
+
+        synchronized void offer(String token, ChatResponse response) {
+            if (pending.put(token, response) != null) {
+                count("coalesced");
+            }
+            if (scheduled != null) {
+                return;
+            }
+            long due = lastSent + properties.getInterval().toMillis();
+            if (due <= System.currentTimeMillis()) {
+                flush();
+            } else {
+                scheduled = taskScheduler.schedule(this::scheduledFlush, Instant.ofEpochMilli(due));
+            }
+        }
+
+        /**
+         * 注销工具调用，返回 true 表示该用户已没有进行中的工具调用
+         */
+        synchronized boolean close(String token) {
+            pending.remove(token);
+            open--;
+            if (open > 0) {
+                return false;
+            }
+            if (scheduled != null) {
+                scheduled.cancel(false);
+                scheduled = null;
+            }
+            return true;
+        }
+
+        private synchronized void scheduledFlush() {
+            scheduled = null;
+            flush();
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            lastSent = System.currentTimeMillis();
+            List<ChatResponse> responses = new ArrayList<>(pending.values());
+            pending.clear();
+            for (ChatResponse response : responses) {
+                count("sent");
+                singleFlight.send(userId, response.toBuilder().timestamp(lastSent).build());
+            }
+        }
+    }
+}
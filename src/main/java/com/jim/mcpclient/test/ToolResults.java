@@ -0,0 +1,56 @@
+package com.jim.mcpclient.test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * 一条任务指令执行过程中成功完成的工具调用
+ *
+ * 通过 toolContext 传递给 {@link ObservableToolCallback}，语义重试时把这些结果交给模型，避免重复调用相同的工具
+ *
+ * @author James Smith
+ */
+public class ToolResults {
+
+    /**
+     * toolContext 中存放工具调用结果的 key，不会被传递给 MCP server
+     */
+    public static final String CONTEXT_KEY = "toolResults";
+
+    public record Result(String toolName, String input, String output) {
+    }
+
+    private final List<Result> results = new CopyOnWriteArrayList<>();
+
+    public void add(String toolName, String input, String output) {
+        results.add(new Result(toolName, input, output));
+    }
+
+    public boolean isEmpty() {
+        return results.isEmpty();
+    }
+
+    public List<Result> results() {
+        return List.copyOf(results);
+    }
+
+    /**
+     * 供提示词使用的摘要，每个结果最多保留 maxChars 个字符
+     */
+    public String summary(int maxChars) {
+        if (results.isEmpty()) {
+            return "无";
+        }
+        return results.stream()
+                .map(result -> "- " + result.toolName() + " " + result.input() + "\n  " + truncate(result.output(), maxChars))
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static String truncate(String text, int maxChars) {
+        if (text == null || text.length() <= maxChars) {
+            return text;
+        }
+        return text.substring(0, maxChars) + "...(已截断)";
+    }
+}
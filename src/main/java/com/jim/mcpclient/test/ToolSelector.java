@@ -0,0 +1,61 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.ToolExposureProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 按编排阶段选择要暴露给模型的工具
+ *
+ * 工具来自 {@link McpToolRegistry} 的当前快照（已经过 {@link CustomMcpToolFilter} 过滤），
+ * RANKED 阶段使用快照中的 {@link Bm25ToolIndex} 按提示词选出最相关的工具。
+ * 暴露了 MCP 工具的阶段同时暴露 {@link BlobStore#readTool()}，供模型读取被转存的大结果。
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class ToolSelector {
+
+    @Autowired
+    private McpToolRegistry mcpToolRegistry;
+    @Autowired
+    private ToolExposureProperties properties;
+    @Autowired
+    private BlobStore blobStore;
+
+    /**
+     * 返回指定阶段应暴露的工具
+     *
+     * @param stage 编排阶段
+     * @param query 用于相关度排序的文本(用户输入或任务指令)
+     */
+    public List<ToolCallback> select(ToolStage stage, String query) {
+        ToolExposureProperties.StageProfile profile = properties.profile(stage);
+        if (profile.getMode() == ToolExposureProperties.Mode.NONE) {
+            // 不使用工具的阶段不等待工具注册表加载
+            return List.of();
+        }
+        Bm25ToolIndex index = mcpToolRegistry.snapshot().index();
+        List<ToolCallback> selected = switch (profile.getMode()) {
+            case NONE -> List.of();
+            case ALL -> index.all();
+            case RANKED -> {
+                List<ToolCallback> ranked = index.topK(query, profile.getTopK());
+                // 没有任何工具命中时退回全部工具,避免执行阶段无工具可用
+                yield ranked.isEmpty() ? index.all() : ranked;
+            }
+        };
+        if (!selected.isEmpty() && blobStore.isEnabled()) {
+            selected = Stream.concat(selected.stream(), Stream.of(blobStore.readTool())).toList();
+        }
+        log.debug("Stage {} exposes {} tools: {}", stage, selected.size(),
+                selected.stream().map(t -> t.getToolDefinition().name()).toList());
+        return selected;
+    }
+}
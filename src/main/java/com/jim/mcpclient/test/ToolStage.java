@@ -0,0 +1,33 @@
+package com.jim.mcpclient.test;
+
+/**
+ * 编排阶段，用于决定每个阶段向模型暴露哪些工具以及使用的模型配置
+ *
+ * @author James Smith
+ */
+public enum ToolStage {
+
+    /** 任务分析 */
+    ANALYSIS,
+
+    /** 任务拆解(生成任务指令) */
+    PLANNING,
+
+    /** 任务执行 */
+    WORKER,
+
+    /** 执行结果格式化 */
+    FORMAT,
+
+    /** 执行结果验证 */
+    VALIDATION,
+
+    /** 结果整合 */
+    SYNTHESIS,
+
+    /** 简单对话(/app/chat 和快速通道的直接回答) */
+    CHAT,
+
+    /** 快速通道的消息分类 */
+    CLASSIFY
+}
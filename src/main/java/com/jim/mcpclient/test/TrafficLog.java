@@ -0,0 +1,178 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.JsonUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 录制日志
+ *
+ * 每行一条 JSON 记录，只保存请求摘要和响应内容，不保存完整请求。
+ * 回放时同一摘要的多条记录按录制顺序依次返回，用完后重复返回最后一条。
+ *
+ * @author James Smith
+ */
+@Slf4j
+public class TrafficLog implements AutoCloseable {
+
+    public enum Kind {
+        CHAT,       // 模型调用(同步或流式)
+        TOOL_LIST,  // 某个 MCP 连接的工具定义
+        TOOL_CALL   // MCP 工具调用
+    }
+
+    /**
+     * 响应片段
+     *
+     * @param at   相对请求开始的毫秒数
+     * @param text 片段内容
+     */
+    public record Chunk(long at, String text) {
+    }
+
+    /**
+     * 一次交互
+     *
+     * @param kind        交互类型
+     * @param key         请求摘要，回放时优先按它匹配
+     * @param fallbackKey 宽松摘要，请求有细微变化(例如提示词调整)时按它匹配
+     * @param chunks      响应片段，同步调用只有一个片段
+     */
+    public record Entry(Kind kind, String key, String fallbackKey, List<Chunk> chunks) {
+
+        public String text() {
+            StringBuilder text = new StringBuilder();
+            chunks.forEach(chunk -> text.append(chunk.text()));
+            return text.toString();
+        }
+    }
+
+    private final BufferedWriter writer;
+    private final List<Entry> replayEntries = new ArrayList<>();
+    private final Map<String, Replay> byKey = new ConcurrentHashMap<>();
+    private final Map<String, Replay> byFallbackKey = new ConcurrentHashMap<>();
+
+    private TrafficLog(BufferedWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * 以追加方式打开日志用于录制
+     */
+    public static TrafficLog record(Path file) {
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            return new TrafficLog(Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open traffic log " + file, e);
+        }
+    }
+
+    /**
+     * 读取日志用于回放
+     */
+    public static TrafficLog replay(Path file) {
+        TrafficLog trafficLog = new TrafficLog(null);
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    trafficLog.index(JsonUtils.getObjectMapper().readValue(line, Entry.class));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read traffic log " + file, e);
+        }
+        log.info("Loaded {} recorded exchanges from {}", trafficLog.replayEntries.size(), file);
+        return trafficLog;
+    }
+
+    public synchronized void append(Entry entry) {
+        try {
+            writer.write(JsonUtils.getObjectMapper().writeValueAsString(entry));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            log.error("Failed to record {} exchange {}", entry.kind(), entry.key(), e);
+        }
+    }
+
+    /**
+     * 按摘要取下一条录制记录，精确摘要没有命中时使用宽松摘要
+     */
+    public Optional<Entry> next(Kind kind, String key, String fallbackKey) {
+        Replay replay = byKey.get(kind + key);
+        if (replay == null && fallbackKey != null) {
+            replay = byFallbackKey.get(kind + fallbackKey);
+        }
+        return replay == null ? Optional.empty() : Optional.of(replay.next());
+    }
+
+    /**
+     * 指定类型的全部记录，按录制顺序
+     */
+    public List<Entry> entries(Kind kind) {
+        return replayEntries.stream()
+                .filter(entry -> entry.kind() == kind)
+                .toList();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    /**
+     * 请求摘要
+     */
+    public static String digest(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void index(Entry entry) {
+        replayEntries.add(entry);
+        byKey.computeIfAbsent(entry.kind() + entry.key(), _ -> new Replay()).add(entry);
+        if (entry.fallbackKey() != null) {
+            byFallbackKey.computeIfAbsent(entry.kind() + entry.fallbackKey(), _ -> new Replay()).add(entry);
+        }
+    }
+
+    private static class Replay {
+
+        private final List<Entry> entries = new ArrayList<>();
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        void add(Entry entry) {
+            entries.add(entry);
+        }
+
+        Entry next() {
+            return entries.get(Math.min(cursor.getAndIncrement(), entries.size() - 1));
+        }
+    }
+}
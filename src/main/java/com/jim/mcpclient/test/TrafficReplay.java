@@ -0,0 +1,109 @@
+package com.jim.mcpclient.test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.jim.mcpclient.config.JsonUtils;
+import com.jim.mcpclient.config.TrafficReplayProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模型与 MCP 交互的录制/回放入口
+ *
+ * 按 agent.traffic.mode 包装模型和 MCP 工具回调；关闭时原样返回，不引入任何开销。
+ * 回放模式下工具列表也来自录制日志，可以同时关闭 MCP 客户端(spring.ai.mcp.client.enabled=false)完全离线运行。
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class TrafficReplay {
+
+    @Autowired
+    private TrafficReplayProperties properties;
+
+    private TrafficLog trafficLog;
+
+    @PostConstruct
+    public void open() {
+        trafficLog = switch (properties.getMode()) {
+            case OFF -> null;
+            case RECORD -> TrafficLog.record(properties.getFile());
+            case REPLAY -> TrafficLog.replay(properties.getFile());
+        };
+        if (trafficLog != null) {
+            log.info("Traffic {} enabled with log {}", properties.getMode(), properties.getFile());
+        }
+    }
+
+    public boolean isReplay() {
+        return properties.getMode() == TrafficReplayProperties.Mode.REPLAY;
+    }
+
+    public ChatModel wrap(ChatModel chatModel) {
+        if (trafficLog == null) {
+            return chatModel;
+        }
+        return new RecordReplayChatModel(chatModel, trafficLog, isReplay(), properties.getTimeScale());
+    }
+
+    /**
+     * 录制模式下包装工具回调，其他模式原样返回
+     */
+    public ToolCallback wrap(ToolCallback toolCallback) {
+        if (properties.getMode() != TrafficReplayProperties.Mode.RECORD) {
+            return toolCallback;
+        }
+        return new RecordReplayToolCallback(toolCallback, trafficLog);
+    }
+
+    /**
+     * 录制某个连接的工具定义
+     */
+    public void recordTools(String connectionName, List<ToolCallback> toolCallbacks) {
+        if (properties.getMode() != TrafficReplayProperties.Mode.RECORD) {
+            return;
+        }
+        List<ToolDefinition> definitions = toolCallbacks.stream().map(ToolCallback::getToolDefinition).toList();
+        trafficLog.append(new TrafficLog.Entry(TrafficLog.Kind.TOOL_LIST, connectionName, null,
+                List.of(new TrafficLog.Chunk(0, JsonUtils.toJsonString(definitions)))));
+    }
+
+    /**
+     * 回放模式下按连接名返回录制的工具，同一连接录制多次时以最后一次为准
+     */
+    public Map<String, List<ToolCallback>> replayTools() {
+        Map<String, List<ToolCallback>> toolsByConnection = new LinkedHashMap<>();
+        for (TrafficLog.Entry entry : trafficLog.entries(TrafficLog.Kind.TOOL_LIST)) {
+            try {
+                List<DefaultToolDefinition> definitions = JsonUtils.getObjectMapper()
+                        .readValue(entry.text(), new TypeReference<List<DefaultToolDefinition>>() {
+                        });
+                toolsByConnection.put(entry.key(), definitions.stream()
+                        .<ToolCallback>map(definition -> new RecordReplayToolCallback(definition, trafficLog, properties.getTimeScale()))
+                        .toList());
+            } catch (IOException e) {
+                log.error("Skip malformed recorded tool list of connection {}", entry.key(), e);
+            }
+        }
+        return toolsByConnection;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (trafficLog != null) {
+            trafficLog.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.jim.mcpclient.test;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按模板版本管理缓存句柄的基础实现
+ *
+ * - 同一版本只创建一次缓存，并发请求等待同一次创建并共享句柄；创建(远程调用)不持有 map 的锁，
+ *   不会阻塞其他版本的请求
+ * - 句柄在过期前 {@link #REFRESH_MARGIN} 重新创建，避免请求使用即将失效的缓存
+ * - 创建失败时在 {@link #FAILURE_BACKOFF} 内不再重试，直接退回到不使用缓存
+ *
+ * @author James Smith
+ */
+@Slf4j
+public abstract class VersionedPromptCacheProvider implements PromptCacheProvider {
+
+    static final Duration REFRESH_MARGIN = Duration.ofMinutes(1);
+    static final Duration FAILURE_BACKOFF = Duration.ofMinutes(5);
+
+    private final ConcurrentMap<String, CompletableFuture<CacheEntry>> entries = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final Clock clock;
+
+    protected VersionedPromptCacheProvider(Duration ttl, Clock clock) {
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    @Override
+    public Optional<String> cachedContent(PromptTemplate template) {
+        String version = template.version();
+        while (true) {
+            CompletableFuture<CacheEntry> existing = entries.get(version);
+            // 创建中的句柄等待创建完成
+            if (existing != null && (!existing.isDone() || existing.join().validAt(clock.instant()))) {
+                return Optional.ofNullable(existing.join().name());
+            }
+            // 只有放入新 future 成功的请求创建缓存，其余请求等待它
+            CompletableFuture<CacheEntry> created = new CompletableFuture<>();
+            boolean owner = existing == null
+                    ? entries.putIfAbsent(version, created) == null
+                    : entries.replace(version, existing, created);
+            if (owner) {
+                created.complete(create(template));
+                return Optional.ofNullable(created.join().name());
+            }
+        }
+    }
+
+    /**
+     * 为模板静态部分创建缓存，返回缓存句柄名称
+     */
+    protected abstract String createCache(PromptTemplate template, Duration ttl);
+
+    private CacheEntry create(PromptTemplate template) {
+        Instant now = clock.instant();
+        try {
+            String name = createCache(template, ttl);
+            log.info("Created prompt cache {} for template {}", name, template.version());
+            return new CacheEntry(name, now.plus(ttl).minus(REFRESH_MARGIN));
+        } catch (Exception e) {
+            log.warn("Failed to create prompt cache for template {}, fall back to uncached prompt", template.version(), e);
+            return new CacheEntry(null, now.plus(FAILURE_BACKOFF));
+        }
+    }
+
+    /**
+     * @param name     缓存句柄, 创建失败时为 null
+     * @param validTo 在此时间之前可以使用
+     */
+    private record CacheEntry(String name, Instant validTo) {
+
+        boolean validAt(Instant now) {
+            return now.isBefore(validTo);
+        }
+    }
+}
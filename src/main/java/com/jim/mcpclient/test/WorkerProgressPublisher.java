@@ -0,0 +1,79 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.WorkerProgressProperties;
+import com.jim.mcpclient.model.ChatResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * 任务执行过程推送器
+ *
+ * 将工作模型的输出片段和工具调用事件以 WORKER 消息推送到 /queue/messages/{userId}，
+ * 与最终答案的 CHUNK 消息分开，前端可以单独展示或折叠。
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Component
+public class WorkerProgressPublisher {
+
+    @Autowired
+    private SingleFlight singleFlight;
+    @Autowired
+    private WorkerProgressProperties properties;
+
+    /**
+     * 在工作模型的输出流上挂载节流推送，返回的 Flux 仍然发出原始片段
+     */
+    public Flux<String> streamTokens(String userId, String messageId, Flux<String> tokens) {
+        if (!properties.isEnabled()) {
+            return tokens;
+        }
+        return tokens.publish(shared -> Flux.merge(
+                shared,
+                shared.bufferTimeout(properties.getMaxBatchSize(), properties.getFlushInterval())
+                        .doOnNext(batch -> send(userId, ChatResponse.builder()
+                                .messageId(messageId)
+                                .content(String.join("", batch))
+                                .event(ChatResponse.WorkerEvent.TOKEN)))
+                        .thenMany(Flux.<String>empty())));
+    }
+
+    /**
+     * 创建绑定到当前用户消息的工具调用监听器
+     */
+    public ToolCallListener toolCallListener(String userId, String messageId) {
+        return new ToolCallListener() {
+            @Override
+            public void onToolStart(String toolName) {
+                if (properties.isEnabled()) {
+                    send(userId, ChatResponse.builder()
+                            .messageId(messageId)
+                            .event(ChatResponse.WorkerEvent.TOOL_START)
+                            .toolName(toolName));
+                }
+            }
+
+            @Override
+            public void onToolEnd(String toolName, long elapsedMillis, boolean success) {
+                if (properties.isEnabled()) {
+                    send(userId, ChatResponse.builder()
+                            .messageId(messageId)
+                            .event(success ? ChatResponse.WorkerEvent.TOOL_END : ChatResponse.WorkerEvent.TOOL_ERROR)
+                            .toolName(toolName)
+                            .elapsedMillis(elapsedMillis));
+                }
+            }
+        };
+    }
+
+    private void send(String userId, ChatResponse.ChatResponseBuilder builder) {
+        singleFlight.send(userId, builder
+                .type(ChatResponse.MessageType.WORKER)
+                .isFinal(false)
+                .timestamp(System.currentTimeMillis())
+                .build());
+    }
+}
@@ -5,16 +5,25 @@ import com.jim.mcpclient.model.ChatRequest;
 import com.jim.mcpclient.model.ChatResponse;
 import com.jim.mcpclient.test.AIWorkerResponse;
 import com.jim.mcpclient.test.AgentOrchestrator;
+import com.jim.mcpclient.test.ExecutionLane;
+import com.jim.mcpclient.test.ExecutionLanes;
+import com.jim.mcpclient.test.ModelRouter;
+import com.jim.mcpclient.test.ModelScheduler;
+import com.jim.mcpclient.test.SingleFlight;
+import com.jim.mcpclient.test.ToolSelector;
+import com.jim.mcpclient.test.ToolStage;
 import jakarta.annotation.Resource;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
@@ -33,11 +42,24 @@ public class ChatWebSocketController {
     @Resource
     private AgentOrchestrator agentOrchestrator;
 
+    @Resource
+    private ToolSelector toolSelector;
+
+    @Resource
+    private SingleFlight singleFlight;
+
+    @Resource
+    private ModelRouter modelRouter;
+
+    @Resource
+    private ExecutionLanes executionLanes;
+
 
     /**
      * 处理聊天消息
      * 客户端发送消息到 /app/chat
      * 服务器响应到 /queue/messages/{userId}
+     * 在 {@link ExecutionLane#INTERACTIVE} 通道中执行，不与多阶段编排争用线程和模型调用名额
      */
     @MessageMapping("/chat")
     public void chat(@Payload ChatRequest request) {
@@ -45,21 +67,38 @@ public class ChatWebSocketController {
         String messageId = request.getMessageId() != null ?
                 request.getMessageId() : UUID.randomUUID().toString();
 
-        try {
-            // 发送开始消息
-            sendMessage(userId, ChatResponse.builder()
-                    .messageId(messageId)
-                    .type(ChatResponse.MessageType.START)
-                    .isFinal(false)
-                    .timestamp(System.currentTimeMillis())
-                    .build());
+        // 发送开始消息
+        sendMessage(userId, ChatResponse.builder()
+                .messageId(messageId)
+                .type(ChatResponse.MessageType.START)
+                .isFinal(false)
+                .timestamp(System.currentTimeMillis())
+                .build());
+
+        executionLanes.submit(ExecutionLane.INTERACTIVE, () -> answer(userId, messageId, request),
+                () -> sendMessage(userId, ChatResponse.builder()
+                        .messageId(messageId)
+                        .type(ChatResponse.MessageType.ERROR)
+                        .error(ExecutionLanes.OVERLOADED)
+                        .isFinal(true)
+                        .timestamp(System.currentTimeMillis())
+                        .build()));
+    }
 
+    private void answer(String userId, String messageId, ChatRequest request) {
+        try {
             // 使用ChatClient处理消息，带会话记忆
-            String response = chatClient.prompt()
+            Optional<ModelRouter.Route> route = modelRouter.route(ToolStage.CHAT);
+            ChatClient.ChatClientRequestSpec spec = chatClient.prompt()
                     .user(request.getMessage())
-                    .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, userId))
-                    .call()
-                    .content();
+                    .toolCallbacks(toolSelector.select(ToolStage.CHAT, request.getMessage()))
+                    .advisors(a -> {
+                        a.param(ChatMemory.CONVERSATION_ID, userId);
+                        a.param(ModelScheduler.LANE_KEY, ExecutionLane.INTERACTIVE);
+                        route.ifPresent(r -> r.params(a));
+                    });
+            route.ifPresent(r -> spec.options(r.options().build()));
+            String response = spec.call().content();
 
             // 模拟流式传输 - 将响应分块发送
             sendStreamResponse(userId, messageId, response);
@@ -89,10 +128,12 @@ public class ChatWebSocketController {
      * 客户端发送消息到 /app/chat/stream
      */
     @MessageMapping("/chat/stream")
-    public void chatStream(@Payload ChatRequest request) {
+    public void chatStream(@Payload ChatRequest request, SimpMessageHeaderAccessor headerAccessor) {
         String userId = request.getUserId();
         String messageId = request.getMessageId() != null ?
                 request.getMessageId() : UUID.randomUUID().toString();
+        // 编排和取消都使用同一个 messageId
+        request.setMessageId(messageId);
 
         try {
             // 发送开始消息
@@ -132,7 +173,10 @@ public class ChatWebSocketController {
 */
 
 
-            agentOrchestrator.processUserInput(userId, request);
+            // 重复请求挂到正在执行的编排上，不再重复执行
+            if (singleFlight.join(userId, request, headerAccessor.getSessionId())) {
+                agentOrchestrator.submit(ExecutionLane.ORCHESTRATION, userId, request);
+            }
 
 
             // 使用ChatClient的stream功能进行真正的流式传输
@@ -178,8 +222,8 @@ public class ChatWebSocketController {
                     .subscribe();
 */
         } catch (Exception e) {
-            // 发送错误消息
-            sendMessage(userId, ChatResponse.builder()
+            // 发送错误消息(同时推送给挂载在该编排上的重复请求)
+            singleFlight.send(userId, ChatResponse.builder()
                     .messageId(messageId)
                     .type(ChatResponse.MessageType.ERROR)
                     .error(e.getMessage())
@@ -193,6 +237,16 @@ public class ChatWebSocketController {
     }
 
 
+    /**
+     * 取消进行中的流式聊天
+     * 客户端发送 {userId, messageId} 到 /app/chat/cancel，编排停止后返回 CANCELLED 消息
+     * 会话断开(DISCONNECT)时该会话发起的编排也会被取消
+     */
+    @MessageMapping("/chat/cancel")
+    public void cancel(@Payload ChatRequest request) {
+        singleFlight.cancel(request.getUserId(), request.getMessageId());
+    }
+
     /**
      * 模拟流式发送响应（将完整响应分块发送）
      */
@@ -0,0 +1,50 @@
+package com.jim.mcpclient.config;
+
+import com.jim.mcpclient.test.AIOrchestratorTask;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IncrementalJsonArrayParserTests {
+
+    @Test
+    void emitsEachElementAsSoonAsItCloses() {
+        IncrementalJsonArrayParser<AIOrchestratorTask.TaskInstruction> parser =
+                new IncrementalJsonArrayParser<>(AIOrchestratorTask.TaskInstruction.class);
+
+        assertThat(parser.feed("```json\n{\"taskInstructions\": [{\"instruction\": \"查询{账本}\",")).isEmpty();
+        List<AIOrchestratorTask.TaskInstruction> first = parser.feed(" \"needValidation\": false}, {\"instruction\": \"记录 \\\"午餐\\\"");
+        assertThat(first).extracting(AIOrchestratorTask.TaskInstruction::instruction).containsExactly("查询{账本}");
+
+        List<AIOrchestratorTask.TaskInstruction> second = parser.feed("\", \"needValidation\": true, \"validation\": \"金额为 50\"}]}\n```");
+        assertThat(second).singleElement().satisfies(instruction -> {
+            assertThat(instruction.instruction()).isEqualTo("记录 \"午餐\"");
+            assertThat(instruction.needValidation()).isTrue();
+            assertThat(instruction.validation()).isEqualTo("金额为 50");
+        });
+    }
+
+    @Test
+    void parsesTopLevelArrayFromFlux() {
+        Flux<String> chunks = Flux.just("[{\"instruction\":", "\"a\", \"needValidation\": false},", "{\"instruction\":\"b\", \"needValidation\": false}", "]");
+
+        List<AIOrchestratorTask.TaskInstruction> instructions =
+                IncrementalJsonArrayParser.parse(chunks, AIOrchestratorTask.TaskInstruction.class).collectList().block();
+
+        assertThat(instructions).extracting(AIOrchestratorTask.TaskInstruction::instruction).containsExactly("a", "b");
+    }
+
+    @Test
+    void skipsMalformedElements() {
+        IncrementalJsonArrayParser<AIOrchestratorTask.TaskInstruction> parser =
+                new IncrementalJsonArrayParser<>(AIOrchestratorTask.TaskInstruction.class);
+
+        List<AIOrchestratorTask.TaskInstruction> instructions = parser.feed("[{\"instruction\": }, {\"instruction\": \"ok\", \"needValidation\": false}]");
+
+        assertThat(instructions).extracting(AIOrchestratorTask.TaskInstruction::instruction).containsExactly("ok");
+        assertThat(parser.text()).startsWith("[{");
+    }
+}
@@ -0,0 +1,110 @@
+package com.jim.mcpclient.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StompCompressionTests {
+
+    private final StompCompression stompCompression = new StompCompression();
+    private final WebSocketCompressionProperties properties = new WebSocketCompressionProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        properties.setThreshold(100);
+        ReflectionTestUtils.setField(stompCompression, "properties", properties);
+        ReflectionTestUtils.setField(stompCompression, "meterRegistry", meterRegistry);
+        stompCompression.init();
+    }
+
+    @Test
+    void compressesLargeMessagesOfOptedInSessions() throws Exception {
+        connect("s1", true);
+        connect("s2", false);
+        byte[] large = "{\"content\":\"本月账目明细汇总\"}".repeat(20).getBytes(StandardCharsets.UTF_8);
+
+        Message<?> compressed = stompCompression.preSend(message("s1", large), null);
+        assertThat(compressed.getPayload()).isInstanceOf(byte[].class);
+        assertThat(inflate((byte[]) compressed.getPayload())).isEqualTo(large);
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(compressed);
+        assertThat(accessor.getFirstNativeHeader(StompCompression.CONTENT_ENCODING_HEADER)).isEqualTo("deflate");
+        assertThat(accessor.getContentType()).isEqualTo(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+
+        // 小消息和未启用压缩的会话原样发送
+        byte[] small = "{\"content\":\"好\"}".getBytes(StandardCharsets.UTF_8);
+        assertThat(stompCompression.preSend(message("s1", small), null).getPayload()).isSameAs(small);
+        assertThat(stompCompression.preSend(message("s2", large), null).getPayload()).isSameAs(large);
+
+        assertThat(meterRegistry.get("agent.websocket.compression.bytes").tag("type", "raw").counter().count())
+                .isEqualTo(large.length);
+        assertThat(meterRegistry.get("agent.websocket.compression.skipped").counter().count()).isEqualTo(1);
+
+        stompCompression.onDisconnect(new SessionDisconnectEvent(this, message("s1", new byte[0]), "s1", CloseStatus.NORMAL));
+        assertThat(stompCompression.preSend(message("s1", large), null).getPayload()).isSameAs(large);
+    }
+
+    @Test
+    void negotiatesByQueryParameter() {
+        MockHttpServletRequest request = new MockHttpServletRequest(HttpMethod.GET.name(), "/ws");
+        request.setQueryString("compression=deflate");
+        assertThat(stompCompression.requested(new ServletServerHttpRequest(request))).isTrue();
+
+        properties.setEnabled(false);
+        assertThat(stompCompression.requested(new ServletServerHttpRequest(request))).isFalse();
+        assertThat(stompCompression.requested(new ServletServerHttpRequest(new MockHttpServletRequest("GET", "/ws")))).isFalse();
+    }
+
+    private void connect(String sessionId, boolean optedIn) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        accessor.setSessionId(sessionId);
+        Map<String, Object> attributes = new HashMap<>();
+        if (optedIn) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws");
+            request.setQueryString("compression=deflate");
+            stompCompression.beforeHandshake(new ServletServerHttpRequest(request), null, null, attributes);
+        }
+        accessor.setSessionAttributes(attributes);
+        stompCompression.onConnect(new SessionConnectEvent(this, MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders())));
+    }
+
+    private static Message<byte[]> message(String sessionId, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    private static byte[] inflate(byte[] data) throws Exception {
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        while (!inflater.finished()) {
+            out.write(buffer, 0, inflater.inflate(buffer));
+        }
+        inflater.end();
+        return out.toByteArray();
+    }
+}
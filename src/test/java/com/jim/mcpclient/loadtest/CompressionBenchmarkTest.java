@@ -0,0 +1,116 @@
+package com.jim.mcpclient.loadtest;
+
+import com.jim.mcpclient.config.JsonUtils;
+import com.jim.mcpclient.config.StompCompression;
+import com.jim.mcpclient.model.ChatResponse;
+import com.jim.mcpclient.test.TrafficLog;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * STOMP 消息体压缩的级别和阈值取舍
+ *
+ * 把录制的模型调用还原成发往客户端的消息(每个流式片段一条 CHUNK，完整输出一条 END)，
+ * 按不同的压缩级别和阈值压缩，输出发送字节数、压缩的消息数和压缩消耗的 CPU 时间。
+ *
+ * 需要先以 agent.traffic.mode=RECORD 录制流量，默认构建不执行：
+ * <pre>
+ * mvn test -Ploadtest -Dtest=CompressionBenchmarkTest -Dloadtest.traffic=traffic/traffic.jsonl
+ * </pre>
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Tag("load")
+class CompressionBenchmarkTest {
+
+    private static final int[] LEVELS = {1, 3, 6, 9};
+    private static final int[] THRESHOLDS = {0, 256, 1024, 4096};
+
+    /**
+     * 每种组合重复压缩的次数，减小计时误差
+     */
+    private static final int ROUNDS = 5;
+
+    @Test
+    void compareLevelsAndThresholds() {
+        Path file = Path.of(System.getProperty("loadtest.traffic", "traffic/traffic.jsonl"));
+        assumeTrue(Files.exists(file), "No recorded traffic at " + file);
+
+        List<byte[]> frames = frames(TrafficLog.replay(file));
+        assumeTrue(!frames.isEmpty(), "No recorded model calls in " + file);
+        long raw = frames.stream().mapToLong(frame -> frame.length).sum();
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        StringBuilder report = new StringBuilder(String.format(
+                "Compression benchmark: %d frames, %d bytes%n%-6s %-10s %-12s %-8s %-11s %s%n",
+                frames.size(), raw, "level", "threshold", "sent bytes", "ratio", "compressed", "cpu"));
+        for (int level : LEVELS) {
+            for (int threshold : THRESHOLDS) {
+                long sent = 0;
+                int compressed = 0;
+                long start = threads.getCurrentThreadCpuTime();
+                for (int round = 0; round < ROUNDS; round++) {
+                    sent = 0;
+                    compressed = 0;
+                    for (byte[] frame : frames) {
+                        if (frame.length < threshold) {
+                            sent += frame.length;
+                        } else {
+                            sent += StompCompression.deflate(frame, level).length;
+                            compressed++;
+                        }
+                    }
+                }
+                double cpuMillis = (threads.getCurrentThreadCpuTime() - start) / 1e6 / ROUNDS;
+                report.append(String.format("%-6d %-10d %-12d %-8.3f %-11d %.2fms%n",
+                        level, threshold, sent, (double) sent / raw, compressed, cpuMillis));
+            }
+        }
+        log.info("Compression benchmark report\n{}", report);
+        assertThat(raw).isPositive();
+    }
+
+    /**
+     * 还原发往客户端的消息
+     */
+    private static List<byte[]> frames(TrafficLog trafficLog) {
+        List<byte[]> frames = new ArrayList<>();
+        for (TrafficLog.Entry entry : trafficLog.entries(TrafficLog.Kind.CHAT)) {
+            String messageId = UUID.randomUUID().toString();
+            for (TrafficLog.Chunk chunk : entry.chunks()) {
+                frames.add(frame(ChatResponse.builder()
+                        .messageId(messageId)
+                        .type(ChatResponse.MessageType.CHUNK)
+                        .content(chunk.text())
+                        .timestamp(System.currentTimeMillis())
+                        .build()));
+            }
+            frames.add(frame(ChatResponse.builder()
+                    .messageId(messageId)
+                    .type(ChatResponse.MessageType.END)
+                    .content(entry.text())
+                    .isFinal(true)
+                    .timestamp(System.currentTimeMillis())
+                    .build()));
+        }
+        return frames;
+    }
+
+    private static byte[] frame(ChatResponse response) {
+        return JsonUtils.toJsonString(response).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,189 @@
+package com.jim.mcpclient.loadtest;
+
+import com.jim.mcpclient.config.JsonUtils;
+import com.jim.mcpclient.test.AIOrchestratorTask;
+import com.jim.mcpclient.test.AIWorkerResponse;
+import com.jim.mcpclient.test.PromptTemplate;
+import com.jim.mcpclient.test.PromptTemplates;
+import com.jim.mcpclient.test.ValidationResp;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * 压测用的模拟模型
+ *
+ * 按系统提示词识别编排阶段，返回各阶段可解析的输出（任务计划、结构化结果、验证结果），
+ * 并按 {@link Profile} 模拟首 token 延迟和输出速率；任务执行阶段会真实调用暴露给它的工具。
+ *
+ * @author James Smith
+ */
+public class FakeChatModel implements ChatModel {
+
+    /**
+     * 模拟参数
+     *
+     * @param firstTokenLatency 首 token 延迟
+     * @param tokensPerSecond   输出速率
+     * @param charsPerToken     每个 token 的字符数
+     * @param answerTokens      普通文本回复的 token 数
+     * @param planSize          每个任务计划包含的指令数
+     * @param toolCalls         任务执行阶段每次调用的工具数
+     * @param jitter            延迟的随机抖动比例，0 表示无抖动
+     */
+    public record Profile(Duration firstTokenLatency, double tokensPerSecond, int charsPerToken,
+                          int answerTokens, int planSize, int toolCalls, double jitter) {
+
+        /**
+         * 接近云端大模型的默认参数
+         */
+        public static Profile standard() {
+            return new Profile(Duration.ofMillis(400), 60, 2, 120, 2, 1, 0.2);
+        }
+    }
+
+    private static final Map<String, PromptTemplate> TEMPLATES_BY_SYSTEM = Map.of(
+            PromptTemplates.ANALYSIS.staticText(), PromptTemplates.ANALYSIS,
+            PromptTemplates.PLANNING.staticText(), PromptTemplates.PLANNING,
+            PromptTemplates.WORKER.staticText(), PromptTemplates.WORKER,
+            PromptTemplates.FORMAT.staticText(), PromptTemplates.FORMAT,
+            PromptTemplates.VALIDATION.staticText(), PromptTemplates.VALIDATION,
+            PromptTemplates.SYNTHESIS.staticText(), PromptTemplates.SYNTHESIS);
+
+    private final Profile profile;
+
+    public FakeChatModel(Profile profile) {
+        this.profile = profile;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        String text = respond(prompt);
+        sleep(latency(text));
+        return response(text);
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Mono.fromCallable(() -> respond(prompt))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(text -> Flux.fromIterable(tokens(text))
+                        .delayElements(tokenInterval())
+                        .delaySubscription(jittered(profile.firstTokenLatency())))
+                .map(this::response);
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return ToolCallingChatOptions.builder().build();
+    }
+
+    private String respond(Prompt prompt) {
+        SystemMessage system = prompt.getSystemMessage();
+        return respond(system == null ? null : TEMPLATES_BY_SYSTEM.get(system.getText()), prompt);
+    }
+
+    /**
+     * 生成与阶段对应的完整输出，任务执行阶段先调用工具；用例可以覆盖以模拟特定阶段的输出
+     *
+     * @param template 按系统提示词识别的编排阶段模板，无法识别时为 null
+     */
+    protected String respond(PromptTemplate template, Prompt prompt) {
+        if (template == PromptTemplates.PLANNING) {
+            return plan();
+        }
+        if (template == PromptTemplates.FORMAT) {
+            return JsonUtils.toJsonString(new AIWorkerResponse(true, text(profile.answerTokens() / 2)));
+        }
+        if (template == PromptTemplates.VALIDATION) {
+            return JsonUtils.toJsonString(new ValidationResp(true, null));
+        }
+        if (template == PromptTemplates.WORKER) {
+            return callTools(prompt) + text(profile.answerTokens());
+        }
+        return text(profile.answerTokens());
+    }
+
+    private String plan() {
+        List<AIOrchestratorTask.TaskInstruction> instructions = IntStream.range(0, profile.planSize())
+                .mapToObj(i -> new AIOrchestratorTask.TaskInstruction(
+                        "查询第 " + (i + 1) + " 部分的账目数据，优先使用 MCP 工具",
+                        i % 2 == 1,
+                        i % 2 == 1 ? "返回结果包含账目明细" : null))
+                .toList();
+        return JsonUtils.toJsonString(new AIOrchestratorTask(instructions));
+    }
+
+    private String callTools(Prompt prompt) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)
+                || options.getToolCallbacks() == null || options.getToolCallbacks().isEmpty()) {
+            return "";
+        }
+        List<ToolCallback> toolCallbacks = options.getToolCallbacks();
+        ToolContext toolContext = new ToolContext(options.getToolContext() != null ? options.getToolContext() : Map.of());
+        StringBuilder results = new StringBuilder();
+        for (int i = 0; i < profile.toolCalls(); i++) {
+            ToolCallback toolCallback = toolCallbacks.get(i % toolCallbacks.size());
+            results.append(toolCallback.call("{}", toolContext)).append('\n');
+        }
+        return results.toString();
+    }
+
+    private String text(int tokens) {
+        return "模拟".repeat(Math.max(1, tokens * profile.charsPerToken() / 2));
+    }
+
+    private List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += profile.charsPerToken()) {
+            tokens.add(text.substring(i, Math.min(text.length(), i + profile.charsPerToken())));
+        }
+        return tokens;
+    }
+
+    private Duration latency(String text) {
+        long tokens = (text.length() + profile.charsPerToken() - 1) / profile.charsPerToken();
+        return jittered(profile.firstTokenLatency()).plus(tokenInterval().multipliedBy(tokens));
+    }
+
+    private Duration tokenInterval() {
+        return Duration.ofNanos((long) (1_000_000_000L / profile.tokensPerSecond()));
+    }
+
+    private Duration jittered(Duration duration) {
+        if (profile.jitter() <= 0) {
+            return duration;
+        }
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-profile.jitter(), profile.jitter());
+        return Duration.ofNanos((long) (duration.toNanos() * factor));
+    }
+
+    private ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
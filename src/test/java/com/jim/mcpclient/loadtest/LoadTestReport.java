@@ -0,0 +1,66 @@
+package com.jim.mcpclient.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 压测结果
+ *
+ * @param sent             发送的请求数
+ * @param completed        收到 END 的请求数
+ * @param errors           收到 ERROR 的请求数
+ * @param timedOut         压测结束时仍未完成的请求数
+ * @param elapsed          从第一条请求发出到最后一条请求结束的耗时
+ * @param timeToFirstChunk 首个 CHUNK 到达耗时
+ * @param endToEnd         端到端耗时(END 或 ERROR 到达)
+ *
+ * @author James Smith
+ */
+public record LoadTestReport(int sent, int completed, int errors, int timedOut, Duration elapsed,
+                             Percentiles timeToFirstChunk, Percentiles endToEnd) {
+
+    /**
+     * 每秒完成的请求数
+     */
+    public double throughput() {
+        return elapsed.isZero() ? 0 : completed * 1000.0 / elapsed.toMillis();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("""
+                        sent=%d completed=%d errors=%d timedOut=%d elapsed=%dms throughput=%.2f/s
+                        time-to-first-chunk %s
+                        end-to-end          %s""",
+                sent, completed, errors, timedOut, elapsed.toMillis(), throughput(), timeToFirstChunk, endToEnd);
+    }
+
+    /**
+     * 延迟分位数，单位毫秒
+     */
+    public record Percentiles(int count, long p50, long p90, long p99, long max) {
+
+        /**
+         * 按最近秩(nearest-rank)计算分位数
+         */
+        public static Percentiles of(Collection<Long> samples) {
+            long[] sorted = samples.stream().mapToLong(Long::longValue).toArray();
+            if (sorted.length == 0) {
+                return new Percentiles(0, 0, 0, 0, 0);
+            }
+            Arrays.sort(sorted);
+            return new Percentiles(sorted.length, rank(sorted, 50), rank(sorted, 90), rank(sorted, 99), sorted[sorted.length - 1]);
+        }
+
+        private static long rank(long[] sorted, int percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, index)];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d p50=%dms p90=%dms p99=%dms max=%dms", count, p50, p90, p99, max);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.jim.mcpclient.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 端到端压测
+ *
+ * 启动完整应用，模型替换为 {@link FakeChatModel}，MCP 连接指向本地 {@link StubMcpServer}，
+ * 由 {@link StompLoadGenerator} 通过 /ws 发起请求并输出吞吐量、首个 CHUNK 延迟和端到端延迟分位数。
+ *
+ * 默认构建不执行，使用 {@code mvn test -Ploadtest} 运行，参数通过系统属性调整，例如：
+ * <pre>
+ * mvn test -Ploadtest -Dloadtest.sessions=200 -Dloadtest.rate=50 -Dloadtest.duration=PT2M
+ * </pre>
+ *
+ * @author James Smith
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.ai.google.genai.api-key=load-test",
+        "logging.level.org.springframework.web.socket=INFO",
+        "logging.level.org.springframework.messaging.simp.stomp=INFO",
+        "logging.level.com.jim.mcpclient=WARN",
+        "logging.level.com.jim.mcpclient.loadtest=INFO"
+})
+class OrchestratorLoadTest {
+
+    private static final StubMcpServer MCP_SERVER = startMcpServer();
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void mcpServer(DynamicPropertyRegistry registry) {
+        registry.add("spring.ai.mcp.client.streamable-http.connections.db-server.url", MCP_SERVER::baseUrl);
+        registry.add("spring.ai.mcp.client.streamable-http.connections.db-server.endpoint", () -> StubMcpServer.ENDPOINT);
+    }
+
+    @AfterAll
+    static void stopMcpServer() {
+        MCP_SERVER.close();
+    }
+
+    @Test
+    void streamChat() throws Exception {
+        StompLoadGenerator generator = new StompLoadGenerator(
+                "ws://localhost:" + port + "/ws",
+                Integer.getInteger("loadtest.sessions", 20),
+                Double.parseDouble(System.getProperty("loadtest.rate", "5")),
+                Duration.parse(System.getProperty("loadtest.duration", "PT30S")),
+                Duration.parse(System.getProperty("loadtest.drain-timeout", "PT2M")));
+
+        LoadTestReport report = generator.run(i -> "查询本月第 " + (i % 30 + 1) + " 天的账目明细并汇总");
+
+        log.info("Load test report (tool calls: {})\n{}", MCP_SERVER.toolCalls(), report);
+        assertThat(report.completed()).isPositive();
+    }
+
+    private static StubMcpServer startMcpServer() {
+        try {
+            return new StubMcpServer(StubMcpServer.defaultTools(),
+                    Duration.parse(System.getProperty("loadtest.tool-latency", "PT0.05S"))).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @TestConfiguration
+    static class FakeModelConfig {
+
+        @Bean
+        @Primary
+        FakeChatModel fakeChatModel() {
+            FakeChatModel.Profile standard = FakeChatModel.Profile.standard();
+            return new FakeChatModel(new FakeChatModel.Profile(
+                    Duration.parse(System.getProperty("loadtest.model.first-token-latency", standard.firstTokenLatency().toString())),
+                    Double.parseDouble(System.getProperty("loadtest.model.tokens-per-second", String.valueOf(standard.tokensPerSecond()))),
+                    standard.charsPerToken(),
+                    Integer.getInteger("loadtest.model.answer-tokens", standard.answerTokens()),
+                    Integer.getInteger("loadtest.model.plan-size", standard.planSize()),
+                    Integer.getInteger("loadtest.model.tool-calls", standard.toolCalls()),
+                    standard.jitter()));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.jim.mcpclient.loadtest;
+
+import com.jim.mcpclient.model.ChatRequest;
+import com.jim.mcpclient.model.ChatResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * STOMP 压测客户端
+ *
+ * 建立 N 个 STOMP 会话，每个会话使用独立的 userId 订阅 /queue/messages/{userId}，
+ * 然后按目标速率轮流通过各会话向 /app/chat/stream 发送请求，
+ * 根据 messageId 统计首个 CHUNK 到达时间和 END/ERROR 到达时间。
+ *
+ * @author James Smith
+ */
+@Slf4j
+public class StompLoadGenerator {
+
+    private final String url;
+    private final int sessions;
+    private final double requestsPerSecond;
+    private final Duration duration;
+    private final Duration drainTimeout;
+
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> timeToFirstChunk = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> endToEnd = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicLong lastFinishedNanos = new AtomicLong();
+
+    /**
+     * @param url               STOMP 端点，例如 ws://localhost:8080/ws
+     * @param sessions          并发会话数
+     * @param requestsPerSecond 所有会话合计的目标发送速率
+     * @param duration          发送持续时间
+     * @param drainTimeout      发送结束后等待未完成请求的最长时间
+     */
+    public StompLoadGenerator(String url, int sessions, double requestsPerSecond, Duration duration, Duration drainTimeout) {
+        this.url = url;
+        this.sessions = sessions;
+        this.requestsPerSecond = requestsPerSecond;
+        this.duration = duration;
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * 执行压测
+     *
+     * @param messages 按请求序号生成消息内容
+     */
+    public LoadTestReport run(IntFunction<String> messages) throws Exception {
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+
+        List<Session> connected = new ArrayList<>();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            for (int i = 0; i < sessions; i++) {
+                connected.add(connect(stompClient, "load-user-" + i));
+            }
+            log.info("Opened {} STOMP sessions to {}", connected.size(), url);
+
+            AtomicInteger sent = new AtomicInteger();
+            long total = Math.max(1, (long) (requestsPerSecond * duration.toMillis() / 1000));
+            long periodNanos = (long) (1_000_000_000L / requestsPerSecond);
+            long startNanos = System.nanoTime();
+
+            scheduler.scheduleAtFixedRate(() -> {
+                int sequence = sent.getAndIncrement();
+                if (sequence >= total) {
+                    return;
+                }
+                send(connected.get(sequence % connected.size()), messages.apply(sequence));
+            }, 0, periodNanos, TimeUnit.NANOSECONDS);
+
+            // 等待全部请求发出，再等待在途请求结束
+            long deadline = startNanos + duration.toNanos() + drainTimeout.toNanos();
+            while (System.nanoTime() < deadline && (sent.get() < total || !inFlight.isEmpty())) {
+                Thread.sleep(50);
+            }
+            scheduler.shutdownNow();
+
+            long endNanos = inFlight.isEmpty() ? lastFinishedNanos.get() : System.nanoTime();
+            return new LoadTestReport(
+                    (int) Math.min(sent.get(), total),
+                    completed.get(),
+                    errors.get(),
+                    inFlight.size(),
+                    Duration.ofNanos(Math.max(0, endNanos - startNanos)),
+                    LoadTestReport.Percentiles.of(timeToFirstChunk),
+                    LoadTestReport.Percentiles.of(endToEnd));
+        } finally {
+            scheduler.shutdownNow();
+            connected.forEach(session -> session.stompSession().disconnect());
+            stompClient.stop();
+        }
+    }
+
+    private Session connect(WebSocketStompClient stompClient, String userId) throws Exception {
+        StompSession stompSession = stompClient.connectAsync(url, new StompSessionHandlerAdapter() {
+            @Override
+            public void handleTransportError(StompSession session, Throwable exception) {
+                log.warn("Transport error on session of {}", userId, exception);
+            }
+        }).get(10, TimeUnit.SECONDS);
+
+        stompSession.subscribe("/queue/messages/" + userId, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return ChatResponse.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                onMessage((ChatResponse) payload);
+            }
+        });
+        return new Session(userId, stompSession);
+    }
+
+    private void send(Session session, String message) {
+        ChatRequest request = new ChatRequest();
+        request.setUserId(session.userId());
+        request.setMessageId(UUID.randomUUID().toString());
+        request.setMessage(message);
+        request.setToken("load-test");
+
+        inFlight.put(request.getMessageId(), new InFlight(System.nanoTime()));
+        try {
+            session.stompSession().send("/app/chat/stream", request);
+        } catch (Exception e) {
+            log.warn("Failed to send request {}", request.getMessageId(), e);
+            inFlight.remove(request.getMessageId());
+            errors.incrementAndGet();
+        }
+    }
+
+    private void onMessage(ChatResponse response) {
+        InFlight request = inFlight.get(response.getMessageId());
+        if (request == null || response.getType() == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        switch (response.getType()) {
+            case CHUNK -> {
+                if (request.firstChunkNanos().compareAndSet(0, now)) {
+                    timeToFirstChunk.add(TimeUnit.NANOSECONDS.toMillis(now - request.startNanos()));
+                }
+            }
+            case END, ERROR -> {
+                if (inFlight.remove(response.getMessageId()) == null) {
+                    return;
+                }
+                endToEnd.add(TimeUnit.NANOSECONDS.toMillis(now - request.startNanos()));
+                lastFinishedNanos.accumulateAndGet(now, Math::max);
+                if (response.getType() == ChatResponse.MessageType.END) {
+                    completed.incrementAndGet();
+                } else {
+                    errors.incrementAndGet();
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private record Session(String userId, StompSession stompSession) {
+    }
+
+    private record InFlight(long startNanos, AtomicLong firstChunkNanos) {
+
+        InFlight(long startNanos) {
+            this(startNanos, new AtomicLong());
+        }
+    }
+}
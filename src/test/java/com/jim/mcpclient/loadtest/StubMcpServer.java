@@ -0,0 +1,160 @@
+package com.jim.mcpclient.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jim.mcpclient.config.JsonUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 压测用的本地 streamable-HTTP MCP 服务
+ *
+ * 只实现客户端用到的最小协议子集：initialize、ping、tools/list、tools/call，
+ * 所有请求直接以 application/json 响应，不提供服务端推送的 SSE 流(GET 返回 405)。
+ * 工具调用按固定延迟返回模拟数据。
+ *
+ * @author James Smith
+ */
+@Slf4j
+public class StubMcpServer implements AutoCloseable {
+
+    public static final String ENDPOINT = "/mcp";
+
+    /**
+     * 模拟工具
+     */
+    public record StubTool(String name, String description) {
+    }
+
+    private final List<StubTool> tools;
+    private final Duration toolLatency;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong toolCalls = new AtomicLong();
+
+    public StubMcpServer(List<StubTool> tools, Duration toolLatency) throws IOException {
+        this.tools = List.copyOf(tools);
+        this.toolLatency = toolLatency;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext(ENDPOINT, this::handle);
+        this.server.setExecutor(executor);
+    }
+
+    /**
+     * 账务场景的默认工具集
+     */
+    public static List<StubTool> defaultTools() {
+        return List.of(
+                new StubTool("query_ledger", "查询账目明细，支持按日期和科目过滤"),
+                new StubTool("list_accounts", "列出所有会计科目"),
+                new StubTool("sum_transactions", "按科目汇总交易金额"),
+                new StubTool("get_balance", "查询科目余额"),
+                new StubTool("search_vouchers", "按关键字搜索记账凭证"));
+    }
+
+    public StubMcpServer start() {
+        server.start();
+        log.info("Stub MCP server started at {}", baseUrl());
+        return this;
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * 已处理的工具调用次数
+     */
+    public long toolCalls() {
+        return toolCalls.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            switch (exchange.getRequestMethod()) {
+                case "POST" -> handlePost(exchange);
+                case "DELETE" -> exchange.sendResponseHeaders(200, -1);
+                default -> exchange.sendResponseHeaders(405, -1);
+            }
+        } catch (Exception e) {
+            log.error("Stub MCP server failed to handle request", e);
+        }
+    }
+
+    private void handlePost(HttpExchange exchange) throws IOException {
+        JsonNode request = JsonUtils.getObjectMapper().readTree(exchange.getRequestBody());
+        JsonNode id = request.get("id");
+        String method = request.path("method").asText();
+
+        // 通知和响应不需要回复
+        if (id == null || id.isNull()) {
+            exchange.sendResponseHeaders(202, -1);
+            return;
+        }
+
+        ObjectNode response = JsonUtils.getObjectMapper().createObjectNode()
+                .put("jsonrpc", "2.0")
+                .set("id", id);
+        switch (method) {
+            case "initialize" -> {
+                exchange.getResponseHeaders().set("Mcp-Session-Id", UUID.randomUUID().toString());
+                response.set("result", JsonUtils.getObjectMapper().valueToTree(Map.of(
+                        "protocolVersion", request.path("params").path("protocolVersion").asText(),
+                        "capabilities", Map.of("tools", Map.of("listChanged", true)),
+                        "serverInfo", Map.of("name", "stub-mcp-server", "version", "1.0.0"))));
+            }
+            case "ping" -> response.putObject("result");
+            case "tools/list" -> response.set("result", JsonUtils.getObjectMapper().valueToTree(Map.of(
+                    "tools", tools.stream()
+                            .map(tool -> Map.of(
+                                    "name", tool.name(),
+                                    "description", tool.description(),
+                                    "inputSchema", Map.of("type", "object", "properties", Map.of())))
+                            .toList())));
+            case "tools/call" -> {
+                toolCalls.incrementAndGet();
+                sleep(toolLatency);
+                String name = request.path("params").path("name").asText();
+                response.set("result", JsonUtils.getObjectMapper().valueToTree(Map.of(
+                        "content", List.of(Map.of("type", "text", "text", name + " 模拟结果：共 3 条记录")),
+                        "isError", false)));
+            }
+            default -> response.putObject("error")
+                    .put("code", -32601)
+                    .put("message", "Method not found: " + method);
+        }
+
+        byte[] body = JsonUtils.getObjectMapper().writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.JsonUtils;
+import com.jim.mcpclient.loadtest.FakeChatModel;
+import com.jim.mcpclient.loadtest.StubMcpServer;
+import com.jim.mcpclient.model.ChatRequest;
+import com.jim.mcpclient.model.ChatResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 推测执行的完整流程：验证通过时提交下一条指令的执行结果，未通过时回滚并按顺序重新执行
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.ai.google.genai.api-key=test",
+        "agent.mcp-startup.background=false",
+        "agent.speculation.enabled=true",
+        "agent.speculation.min-pass-rate=0",
+        "logging.level.org.springframework.web.socket=INFO",
+        "logging.level.org.springframework.messaging.simp.stomp=INFO"
+})
+class AgentOrchestratorSpeculationTests {
+
+    private static final StubMcpServer MCP_SERVER = startMcpServer();
+    private static final String RETRY_MESSAGE = "任务验证未通过，正在调整后重试...";
+
+    private final AIOrchestratorTask.TaskInstruction validated =
+            new AIOrchestratorTask.TaskInstruction("查询账目 #1", true, "返回结果包含账目明细");
+    private final AIOrchestratorTask.TaskInstruction unvalidated =
+            new AIOrchestratorTask.TaskInstruction("汇总金额 #2", false, null);
+
+    @Autowired
+    private AgentOrchestrator agentOrchestrator;
+    @Autowired
+    private SingleFlight singleFlight;
+    @Autowired
+    private ChatMemory chatMemory;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ScriptedChatModel model;
+
+    @DynamicPropertySource
+    static void environment(DynamicPropertyRegistry registry) throws IOException {
+        registry.add("spring.ai.mcp.client.streamable-http.connections.db-server.url", MCP_SERVER::baseUrl);
+        registry.add("spring.ai.mcp.client.streamable-http.connections.db-server.endpoint", () -> StubMcpServer.ENDPOINT);
+        Path directory = Files.createTempDirectory("speculation-tests");
+        registry.add("agent.journal.directory", () -> directory.resolve("journal").toString());
+        registry.add("agent.blob-store.directory", () -> directory.resolve("blobs").toString());
+        registry.add("agent.session.offload-directory", () -> directory.resolve("sessions").toString());
+        registry.add("agent.batch.directory", () -> directory.resolve("batches").toString());
+    }
+
+    @AfterAll
+    static void stopMcpServer() {
+        MCP_SERVER.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        model.reset();
+    }
+
+    @Test
+    void commitsTheSpeculativeResultWhenValidationPasses() throws Exception {
+        model.plan = List.of(validated, unvalidated);
+        double committed = meterRegistry.counter("agent.speculation.committed").count();
+        ChatRequest request = request("u-commit");
+
+        List<ChatResponse> responses = run(request);
+
+        assertThat(results(responses)).containsExactly("结果 #1", "结果 #2");
+        assertThat(meterRegistry.counter("agent.speculation.committed").count()).isEqualTo(committed + 1);
+        // 推测执行的会话记忆并入用户会话，独立会话已清理
+        assertThat(texts(chatMemory.get("u-commit"))).contains("结果 #2");
+        assertThat(chatMemory.get(request.getMessageId() + "#speculation")).isEmpty();
+        assertThat(chatMemory.get(request.getMessageId() + "#validation")).isEmpty();
+    }
+
+    @Test
+    void rollsBackAndReExecutesInOrderWhenValidationFails() throws Exception {
+        model.plan = List.of(validated, unvalidated);
+        model.validationFailures.set(1);
+        // 第一次验证等到下一条指令开始推测执行，期间同一用户的其他对话写入会话记忆
+        model.duringValidation.set(() -> {
+            await(model.secondWorker);
+            chatMemory.add("u-rollback", new UserMessage("同一用户同时进行的对话"));
+        });
+        double rollbacks = meterRegistry.counter("agent.speculation.rollbacks").count();
+
+        List<ChatResponse> responses = run(request("u-rollback"));
+
+        // 先重试上一条指令，再重新执行被回滚的指令
+        assertThat(results(responses)).containsExactly(RETRY_MESSAGE, "结果 #1", "结果 #2");
+        assertThat(meterRegistry.counter("agent.speculation.rollbacks").count()).isEqualTo(rollbacks + 1);
+        List<String> memory = texts(chatMemory.get("u-rollback"));
+        assertThat(memory).contains("同一用户同时进行的对话");
+        // 被回滚的执行结果不留在会话记忆中，只有重新执行的一份
+        assertThat(memory.stream().filter("结果 #2"::equals)).hasSize(1);
+    }
+
+    @Test
+    void settlesPendingValidationBeforeSynthesis() throws Exception {
+        model.plan = List.of(validated);
+        model.validationFailures.set(1);
+
+        List<ChatResponse> responses = run(request("u-settle"));
+
+        assertThat(results(responses)).containsExactly(RETRY_MESSAGE, "结果 #1");
+        List<String> chunks = responses.stream()
+                .filter(response -> response.getType() == ChatResponse.MessageType.CHUNK)
+                .map(ChatResponse::getContent)
+                .toList();
+        // 最后一条指令的结果在最终整合的输出之前
+        List<String> synthesis = chunks.stream().filter(chunk -> chunk.startsWith("模拟")).toList();
+        assertThat(synthesis).isNotEmpty();
+        assertThat(chunks.indexOf("结果 #1")).isLessThan(chunks.indexOf(synthesis.getFirst()));
+        assertThat(responses).extracting(ChatResponse::getType).endsWith(ChatResponse.MessageType.END);
+    }
+
+    /**
+     * 以独立的流会话执行一次编排，返回收到的全部消息
+     */
+    private List<ChatResponse> run(ChatRequest request) throws Exception {
+        List<ChatResponse> responses = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        String sessionId = "test-" + UUID.randomUUID();
+        singleFlight.openStream(sessionId, response -> {
+            responses.add(response);
+            if (response.isFinal()) {
+                finished.complete(null);
+            }
+        });
+        try {
+            assertThat(singleFlight.join(request.getUserId(), request, sessionId)).isTrue();
+            agentOrchestrator.processUserInput(request.getUserId(), request);
+            finished.get(10, TimeUnit.SECONDS);
+            assertThat(responses).extracting(ChatResponse::getType).doesNotContain(ChatResponse.MessageType.ERROR);
+            return responses;
+        } finally {
+            singleFlight.closeStream(sessionId);
+        }
+    }
+
+    /**
+     * 指令结果消息和重试提示，不含最终整合的输出
+     */
+    private static List<String> results(List<ChatResponse> responses) {
+        return responses.stream()
+                .filter(response -> response.getType() == ChatResponse.MessageType.CHUNK)
+                .map(ChatResponse::getContent)
+                .filter(content -> content.startsWith("结果") || content.equals(RETRY_MESSAGE))
+                .toList();
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+
+    private static ChatRequest request(String userId) {
+        ChatRequest request = new ChatRequest();
+        request.setUserId(userId);
+        request.setMessageId(UUID.randomUUID().toString());
+        request.setMessage("查询本月的账目明细并汇总");
+        return request;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static StubMcpServer startMcpServer() {
+        try {
+            return new StubMcpServer(StubMcpServer.defaultTools(), Duration.ZERO).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 按用例设定的计划和验证结果输出；执行和格式化阶段返回指令中的编号，便于检查结果顺序
+     */
+    static class ScriptedChatModel extends FakeChatModel {
+
+        private static final Pattern MARKER = Pattern.compile("#(\\d+)");
+
+        private volatile List<AIOrchestratorTask.TaskInstruction> plan = List.of();
+        private final AtomicInteger validationFailures = new AtomicInteger();
+        private final AtomicReference<Runnable> duringValidation = new AtomicReference<>();
+        private volatile CountDownLatch secondWorker = new CountDownLatch(1);
+
+        ScriptedChatModel() {
+            super(new Profile(Duration.ZERO, 100_000, 2, 8, 1, 0, 0));
+        }
+
+        void reset() {
+            plan = List.of();
+            validationFailures.set(0);
+            duringValidation.set(null);
+            secondWorker = new CountDownLatch(1);
+        }
+
+        @Override
+        protected String respond(PromptTemplate template, Prompt prompt) {
+            String marker = marker(prompt);
+            if (template == PromptTemplates.PLANNING) {
+                return JsonUtils.toJsonString(new AIOrchestratorTask(plan));
+            }
+            if (template == PromptTemplates.WORKER) {
+                if ("2".equals(marker)) {
+                    secondWorker.countDown();
+                }
+                return "结果 #" + marker;
+            }
+            if (template == PromptTemplates.FORMAT) {
+                return JsonUtils.toJsonString(new AIWorkerResponse(true, "结果 #" + marker));
+            }
+            if (template == PromptTemplates.VALIDATION) {
+                Runnable hook = duringValidation.getAndSet(null);
+                if (hook != null) {
+                    hook.run();
+                }
+                boolean passed = validationFailures.getAndUpdate(n -> Math.max(0, n - 1)) == 0;
+                return JsonUtils.toJsonString(new ValidationResp(passed, passed ? null : "缺少账目明细"));
+            }
+            return super.respond(template, prompt);
+        }
+
+        private static String marker(Prompt prompt) {
+            UserMessage userMessage = prompt.getUserMessage();
+            Matcher matcher = MARKER.matcher(userMessage == null ? "" : String.valueOf(userMessage.getText()));
+            return matcher.find() ? matcher.group(1) : "?";
+        }
+    }
+
+    @TestConfiguration
+    static class ScriptedModelConfig {
+
+        @Bean
+        @Primary
+        ScriptedChatModel scriptedChatModel() {
+            return new ScriptedChatModel();
+        }
+    }
+}
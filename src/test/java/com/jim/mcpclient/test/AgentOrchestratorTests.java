@@ -0,0 +1,135 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.loadtest.FakeChatModel;
+import com.jim.mcpclient.loadtest.StubMcpServer;
+import com.jim.mcpclient.model.ChatRequest;
+import com.jim.mcpclient.model.ChatResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 编排的完整流程：启动应用，模型替换为 {@link FakeChatModel}，MCP 连接指向本地 {@link StubMcpServer}
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.ai.google.genai.api-key=test",
+        "agent.mcp-startup.background=false",
+        "logging.level.org.springframework.web.socket=INFO",
+        "logging.level.org.springframework.messaging.simp.stomp=INFO"
+})
+class AgentOrchestratorTests {
+
+    private static final StubMcpServer MCP_SERVER = startMcpServer();
+
+    @Autowired
+    private AgentOrchestrator agentOrchestrator;
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @DynamicPropertySource
+    static void environment(DynamicPropertyRegistry registry) throws IOException {
+        registry.add("spring.ai.mcp.client.streamable-http.connections.db-server.url", MCP_SERVER::baseUrl);
+        registry.add("spring.ai.mcp.client.streamable-http.connections.db-server.endpoint", () -> StubMcpServer.ENDPOINT);
+        Path directory = Files.createTempDirectory("orchestrator-tests");
+        registry.add("agent.journal.directory", () -> directory.resolve("journal").toString());
+        registry.add("agent.blob-store.directory", () -> directory.resolve("blobs").toString());
+        registry.add("agent.session.offload-directory", () -> directory.resolve("sessions").toString());
+        registry.add("agent.batch.directory", () -> directory.resolve("batches").toString());
+    }
+
+    @AfterAll
+    static void stopMcpServer() {
+        MCP_SERVER.close();
+    }
+
+    @Test
+    void orchestratesRequestsWithoutToken() throws Exception {
+        long toolCalls = MCP_SERVER.toolCalls();
+
+        List<ChatResponse> responses = run(request("u-no-token", "查询本月第 3 天的账目明细并汇总", null));
+
+        assertThat(responses).extracting(ChatResponse::getType)
+                .doesNotContain(ChatResponse.MessageType.ERROR)
+                .contains(ChatResponse.MessageType.CHUNK)
+                .endsWith(ChatResponse.MessageType.END);
+        assertThat(MCP_SERVER.toolCalls()).isGreaterThan(toolCalls);
+    }
+
+    @Test
+    void answersDirectlyWithoutToken() throws Exception {
+        List<ChatResponse> responses = run(request("u-no-token", "你好", null));
+
+        assertThat(responses).extracting(ChatResponse::getType)
+                .doesNotContain(ChatResponse.MessageType.ERROR)
+                .endsWith(ChatResponse.MessageType.END);
+    }
+
+    /**
+     * 以独立的流会话执行一次编排，返回收到的全部消息
+     */
+    private List<ChatResponse> run(ChatRequest request) throws Exception {
+        List<ChatResponse> responses = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        String sessionId = "test-" + UUID.randomUUID();
+        singleFlight.openStream(sessionId, response -> {
+            responses.add(response);
+            if (response.isFinal()) {
+                finished.complete(null);
+            }
+        });
+        try {
+            assertThat(singleFlight.join(request.getUserId(), request, sessionId)).isTrue();
+            agentOrchestrator.processUserInput(request.getUserId(), request);
+            finished.get(10, TimeUnit.SECONDS);
+            return responses;
+        } finally {
+            singleFlight.closeStream(sessionId);
+        }
+    }
+
+    private static ChatRequest request(String userId, String message, String token) {
+        ChatRequest request = new ChatRequest();
+        request.setUserId(userId);
+        request.setMessageId(UUID.randomUUID().toString());
+        request.setMessage(message);
+        request.setToken(token);
+        return request;
+    }
+
+    private static StubMcpServer startMcpServer() {
+        try {
+            return new StubMcpServer(StubMcpServer.defaultTools(), Duration.ZERO).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @TestConfiguration
+    static class FakeModelConfig {
+
+        @Bean
+        @Primary
+        FakeChatModel fakeChatModel() {
+            return new FakeChatModel(new FakeChatModel.Profile(Duration.ZERO, 100_000, 2, 8, 2, 1, 0));
+        }
+    }
+}
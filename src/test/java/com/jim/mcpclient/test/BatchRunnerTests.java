@@ -0,0 +1,160 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.BatchProperties;
+import com.jim.mcpclient.config.ExecutionLaneProperties;
+import com.jim.mcpclient.config.JsonUtils;
+import com.jim.mcpclient.config.SingleFlightProperties;
+import com.jim.mcpclient.model.ChatRequest;
+import com.jim.mcpclient.model.ChatResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchRunnerTests {
+
+    @TempDir
+    Path directory;
+
+    private final List<Object> queued = new CopyOnWriteArrayList<>();
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final BatchProperties properties = new BatchProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FakeOrchestrator orchestrator = new FakeOrchestrator();
+    private final BatchRunner runner = new BatchRunner();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(singleFlight, "messagingTemplate", new SimpMessagingTemplate((message, timeout) -> {
+            queued.add(message.getPayload());
+            return true;
+        }));
+        ReflectionTestUtils.setField(singleFlight, "cancellationRegistry", new CancellationRegistry());
+        ReflectionTestUtils.setField(singleFlight, "properties", new SingleFlightProperties());
+        ExecutionLanes executionLanes = new ExecutionLanes();
+        ReflectionTestUtils.setField(executionLanes, "properties", new ExecutionLaneProperties());
+        ReflectionTestUtils.setField(executionLanes, "meterRegistry", meterRegistry);
+        executionLanes.init();
+        ReflectionTestUtils.setField(orchestrator, "executionLanes", executionLanes);
+        ReflectionTestUtils.setField(orchestrator, "singleFlight", singleFlight);
+
+        properties.setDirectory(directory);
+        properties.setRatePerSecond(0);
+        ReflectionTestUtils.setField(runner, "agentOrchestrator", orchestrator);
+        ReflectionTestUtils.setField(runner, "singleFlight", singleFlight);
+        ReflectionTestUtils.setField(runner, "chatMemory", MessageWindowChatMemory.builder().build());
+        ReflectionTestUtils.setField(runner, "properties", properties);
+        ReflectionTestUtils.setField(runner, "meterRegistry", meterRegistry);
+        runner.init();
+    }
+
+    @Test
+    void writesResultsIncrementallyAndSkipsCompletedRequestsOnResubmit() throws Exception {
+        Files.writeString(directory.resolve("nightly.jsonl"), """
+                {"id":"a","message":"查询余额"}
+                {"id":"b","userId":"u1","message":"查询账单"}
+                {"message":"查询积分"}
+                """, StandardCharsets.UTF_8);
+        // 上次执行在写入第二条结果时中断
+        Files.writeString(directory.resolve("nightly.output.jsonl"),
+                "{\"id\":\"a\",\"status\":\"END\",\"content\":\"done\"}\n{\"id\":\"b\",\"sta", StandardCharsets.UTF_8);
+
+        BatchJob job = runner.submitFile("nightly.jsonl", null, 2, null);
+        awaitFinished(job);
+
+        assertThat(job.status()).extracting(BatchJob.Status::state, BatchJob.Status::total, BatchJob.Status::skipped,
+                BatchJob.Status::succeeded, BatchJob.Status::failed)
+                .containsExactly(BatchJob.State.COMPLETED, 3, 1, 2, 0);
+        assertThat(orchestrator.runs).containsOnlyKeys("查询账单", "查询积分");
+        assertThat(results(job)).containsEntry("a", "done")
+                .containsEntry("b", "answer:查询账单")
+                .containsEntry("3", "answer:查询积分");
+        assertThat(queued).isEmpty();
+
+        // 重新提交同一文件：任务 id 不变(编排的 messageId 不变)，全部跳过
+        BatchJob again = runner.submitFile("nightly.jsonl", null, 2, null);
+        awaitFinished(again);
+        assertThat(again.getId()).isEqualTo(job.getId());
+        assertThat(again.status().skipped()).isEqualTo(3);
+        assertThat(orchestrator.messageIds).containsOnly("batch-" + job.getId() + "-b", "batch-" + job.getId() + "-3");
+    }
+
+    @Test
+    void identicalPromptsInOneJobRunOnce() throws Exception {
+        BatchJob job = runner.submit(List.of(
+                new BatchJob.Item(null, null, "今天的汇率", null),
+                new BatchJob.Item(null, null, "今天的汇率", null),
+                new BatchJob.Item(null, "u1", "今天的汇率", null)), 1, null);
+        awaitFinished(job);
+
+        assertThat(job.status().succeeded()).isEqualTo(3);
+        assertThat(job.status().deduplicated()).isEqualTo(1);
+        // 指定了会话的请求单独执行
+        assertThat(orchestrator.runs).containsEntry("今天的汇率", 2);
+        assertThat(results(job)).containsOnlyKeys("1", "2", "3").containsValue("answer:今天的汇率");
+        assertThat(meterRegistry.get("agent.batch.items").tag("outcome", "end").counter().count()).isEqualTo(3);
+    }
+
+    private static void awaitFinished(BatchJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (job.getState() == BatchJob.State.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(job.getState()).isNotEqualTo(BatchJob.State.RUNNING);
+    }
+
+    /**
+     * 输出文件中的结果：请求 id 到回答内容
+     */
+    private static Map<String, String> results(BatchJob job) throws Exception {
+        Map<String, String> results = new ConcurrentHashMap<>();
+        for (String line : Files.readAllLines(job.getOutput(), StandardCharsets.UTF_8)) {
+            if (line.endsWith("}")) {
+                BatchJob.Result result = JsonUtils.getObjectMapper().readValue(line, BatchJob.Result.class);
+                results.put(result.id(), result.content());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 回答 "answer:" + 消息内容，记录每条消息的执行次数
+     */
+    private class FakeOrchestrator extends AgentOrchestrator {
+
+        private final Map<String, Integer> runs = new ConcurrentHashMap<>();
+        private final List<String> messageIds = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void processUserInput(String userId, ChatRequest request, ExecutionLane lane) {
+            assertThat(lane).isEqualTo(ExecutionLane.BATCH);
+            runs.merge(request.getMessage(), 1, Integer::sum);
+            messageIds.add(request.getMessageId());
+            singleFlight.send(userId, ChatResponse.builder()
+                    .messageId(request.getMessageId())
+                    .type(ChatResponse.MessageType.CHUNK)
+                    .content("answer:" + request.getMessage())
+                    .timestamp(System.currentTimeMillis())
+                    .build());
+            singleFlight.send(userId, ChatResponse.builder()
+                    .messageId(request.getMessageId())
+                    .type(ChatResponse.MessageType.END)
+                    .isFinal(true)
+                    .timestamp(System.currentTimeMillis())
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.BlobStoreProperties;
+import com.jim.mcpclient.config.TokenBudgetProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlobStoreTests {
+
+    @TempDir
+    Path directory;
+
+    private final BlobStore blobStore = new BlobStore();
+    private final BlobStoreProperties properties = new BlobStoreProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        properties.setDirectory(directory);
+        properties.setThreshold(1000);
+        properties.setPageChars(500);
+        ReflectionTestUtils.setField(blobStore, "properties", properties);
+        ReflectionTestUtils.setField(blobStore, "meterRegistry", meterRegistry);
+        blobStore.init();
+    }
+
+    @Test
+    void readsPagesAndDeletesWhenScopeCloses() throws Exception {
+        String content = IntStream.range(0, 300).mapToObj(i -> "第" + i + "行").collect(Collectors.joining("\n"));
+        BlobStore.Scope scope = blobStore.newScope();
+        String handle = blobStore.put(content, scope);
+
+        StringBuilder read = new StringBuilder();
+        Long offset = 0L;
+        while (offset != null) {
+            BlobStore.Page page = blobStore.read(handle, offset, 1000).orElseThrow();
+            assertThat(page.text().length()).isLessThanOrEqualTo(500);
+            read.append(page.text());
+            offset = page.nextOffset();
+        }
+        assertThat(read.toString()).isEqualTo(content);
+        assertThat(meterRegistry.get("agent.blob-store.blobs").gauge().value()).isEqualTo(1);
+
+        // 其他持有者的引用释放前不删除
+        assertThat(blobStore.retain(handle)).isTrue();
+        scope.close();
+        assertThat(blobStore.read(handle, 0, 10)).isPresent();
+        blobStore.release(handle);
+        assertThat(blobStore.read(handle, 0, 10)).isEmpty();
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+        assertThat(meterRegistry.get("agent.blob-store.bytes").gauge().value()).isZero();
+    }
+
+    @Test
+    void keepsBlobsStillReferencedByMemoryOrJournalUntilTtl() {
+        BlobStore.Scope scope = blobStore.newScope();
+        String remembered = blobStore.put("x".repeat(2000), scope);
+        String forgotten = blobStore.put("y".repeat(2000), scope);
+
+        scope.close(List.of("用户的问题", "[结果已转存，handle=" + remembered + "]"));
+        scope.close(List.of());
+
+        // 会话记忆中的 handle 在下一轮对话仍可读取，其他内容引用归零即删除
+        assertThat(blobStore.read(remembered, 0, 10)).isPresent();
+        assertThat(blobStore.read(forgotten, 0, 10)).isEmpty();
+        assertThat(meterRegistry.get("agent.blob-store.blobs").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void expiresAfterTtl() {
+        properties.setTtl(Duration.ZERO);
+        String handle = blobStore.put("x".repeat(2000), null);
+
+        assertThat(blobStore.read(handle, 0, 10)).isEmpty();
+    }
+
+    @Test
+    void spillsOversizedToolResults() {
+        TokenBudgetProperties budget = new TokenBudgetProperties();
+        ResultShaper resultShaper = new ResultShaper();
+        ReflectionTestUtils.setField(resultShaper, "properties", budget);
+        ReflectionTestUtils.setField(resultShaper, "meterRegistry", meterRegistry);
+        String content = "账目明细".repeat(1000);
+        ObservableToolCallback toolCallback = new ObservableToolCallback(new FixedToolCallback(content), resultShaper, blobStore);
+        BlobStore.Scope scope = blobStore.newScope();
+
+        String result = toolCallback.call("{}", new ToolContext(Map.of(BlobStore.CONTEXT_KEY, scope)));
+
+        Matcher matcher = Pattern.compile("handle=(blob-[0-9a-f-]+)").matcher(result);
+        assertThat(matcher.find()).isTrue();
+        assertThat(scope.handles()).containsExactly(matcher.group(1));
+        assertThat(result.length()).isLessThan(content.length());
+        String page = blobStore.readTool().call("{\"handle\":\"" + matcher.group(1) + "\",\"offset\":3996}");
+        assertThat(page).contains("明细").contains("\"nextOffset\":null");
+
+        // 未超过阈值的结果原样返回
+        assertThat(new ObservableToolCallback(new FixedToolCallback("短结果"), resultShaper, blobStore).call("{}"))
+                .isEqualTo("短结果");
+    }
+
+    private record FixedToolCallback(String result) implements ToolCallback {
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return DefaultToolDefinition.builder().name("query").description("query").inputSchema("{}").build();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.jim.mcpclient.test;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Bm25ToolIndexTests {
+
+    private final Bm25ToolIndex index = new Bm25ToolIndex(List.of(
+            tool("createTransaction", "创建一笔记账交易记录，包含金额、分类和备注"),
+            tool("queryTransactions", "按时间范围查询交易记录列表"),
+            tool("login", "用户登录，返回认证 token"),
+            tool("listLedgers", "查询当前用户的账本列表")));
+
+    @Test
+    void ranksToolsByRelevanceToInstruction() {
+        List<ToolCallback> ranked = index.topK("帮我记一笔午餐支出 50 元，调用 createTransaction", 2);
+
+        assertThat(ranked).extracting(t -> t.getToolDefinition().name()).first().isEqualTo("createTransaction");
+        assertThat(ranked).hasSizeLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void matchesChineseDescriptions() {
+        List<ToolCallback> ranked = index.topK("查看我的账本", 1);
+
+        assertThat(ranked).extracting(t -> t.getToolDefinition().name()).containsExactly("listLedgers");
+    }
+
+    @Test
+    void returnsNothingWhenNoTermMatches() {
+        assertThat(index.topK("weather forecast", 3)).isEmpty();
+        assertThat(Bm25ToolIndex.tokenize("queryTransactions_v2")).containsExactly("query", "transactions", "v2");
+    }
+
+    private static ToolCallback tool(String name, String description) {
+        ToolDefinition definition = ToolDefinition.builder().name(name).description(description).inputSchema("{}").build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return "";
+            }
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package com.jim.mcpclient.test;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CancellationTests {
+
+    @Test
+    void cancelInterruptsBlockingCall() throws Exception {
+        Cancellation cancellation = new Cancellation("m1", "u1");
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        try (var executor = Executors.newSingleThreadScheduledExecutor()) {
+            executor.schedule(() -> {
+                started.await();
+                return cancellation.cancel();
+            }, 0, TimeUnit.MILLISECONDS);
+
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> cancellation.call(() -> {
+                started.countDown();
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                }
+                return "result";
+            })).isInstanceOf(OrchestrationCancelledException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        }
+        Thread.sleep(100);
+        assertThat(interrupted).isTrue();
+    }
+
+    @Test
+    void cancelTruncatesStream() {
+        Cancellation cancellation = new Cancellation("m1", "u1");
+        var tokens = Flux.interval(Duration.ofMillis(10))
+                .doOnNext(i -> {
+                    if (i == 2) {
+                        cancellation.cancel();
+                    }
+                })
+                .takeUntilOther(cancellation.whenCancelled())
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(tokens).hasSizeLessThanOrEqualTo(3);
+        assertThat(cancellation.cancel()).isFalse();
+        assertThatThrownBy(cancellation::throwIfCancelled).isInstanceOf(OrchestrationCancelledException.class);
+    }
+}
@@ -0,0 +1,168 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.ChatStreamProperties;
+import com.jim.mcpclient.config.ExecutionLaneProperties;
+import com.jim.mcpclient.config.SessionProperties;
+import com.jim.mcpclient.config.SingleFlightProperties;
+import com.jim.mcpclient.model.ChatRequest;
+import com.jim.mcpclient.model.ChatResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatStreamControllerTests {
+
+    private final List<Object> queued = new CopyOnWriteArrayList<>();
+    private final CancellationRegistry cancellationRegistry = new CancellationRegistry();
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final SingleFlightProperties singleFlightProperties = new SingleFlightProperties();
+    private final ChatStreamProperties properties = new ChatStreamProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SessionRegistry sessionRegistry = new SessionRegistry();
+    private final FakeOrchestrator orchestrator = new FakeOrchestrator();
+    private final ChatStreamController controller = new ChatStreamController();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(singleFlight, "messagingTemplate", new SimpMessagingTemplate((message, timeout) -> {
+            queued.add(message.getPayload());
+            return true;
+        }));
+        ReflectionTestUtils.setField(singleFlight, "cancellationRegistry", cancellationRegistry);
+        ReflectionTestUtils.setField(singleFlight, "properties", singleFlightProperties);
+        properties.setKeepAlive(Duration.ZERO);
+        ConversationEviction conversationEviction = new ConversationEviction();
+        ReflectionTestUtils.setField(conversationEviction, "properties", new SessionProperties());
+        ReflectionTestUtils.setField(sessionRegistry, "conversationEviction", conversationEviction);
+        ExecutionLanes executionLanes = new ExecutionLanes();
+        ReflectionTestUtils.setField(executionLanes, "properties", new ExecutionLaneProperties());
+        ReflectionTestUtils.setField(executionLanes, "meterRegistry", meterRegistry);
+        executionLanes.init();
+        ReflectionTestUtils.setField(orchestrator, "executionLanes", executionLanes);
+        ReflectionTestUtils.setField(orchestrator, "singleFlight", singleFlight);
+        ReflectionTestUtils.setField(controller, "agentOrchestrator", orchestrator);
+        ReflectionTestUtils.setField(controller, "singleFlight", singleFlight);
+        ReflectionTestUtils.setField(controller, "sessionRegistry", sessionRegistry);
+        ReflectionTestUtils.setField(controller, "properties", properties);
+        ReflectionTestUtils.setField(controller, "meterRegistry", meterRegistry);
+        controller.init();
+    }
+
+    @Test
+    void streamsTheOrchestrationAndLetsDuplicateRequestsJoin() throws Exception {
+        CompletableFuture<List<ServerSentEvent<ChatResponse>>> first = controller.stream(request("m1")).collectList().toFuture();
+        assertThat(orchestrator.started.await(2, TimeUnit.SECONDS)).isTrue();
+
+        // 相同内容的重试请求挂到正在执行的编排上
+        CompletableFuture<List<ServerSentEvent<ChatResponse>>> retry = controller.stream(request("m2")).collectList().toFuture();
+        orchestrator.release.countDown();
+
+        List<ServerSentEvent<ChatResponse>> events = first.get(2, TimeUnit.SECONDS);
+        assertThat(events).extracting(ServerSentEvent::event).containsExactly("START", "CHUNK", "CHUNK", "END");
+        assertThat(events).extracting(ServerSentEvent::id).containsExactly(null, "0", "1", "2");
+        assertThat(retry.get(2, TimeUnit.SECONDS)).extracting(event -> event.data().getMessageId() + ":" + event.data().getContent())
+                .containsExactly("m2:null", "m2:a", "m2:b", "m2:null");
+        assertThat(orchestrator.runs).hasValue(1);
+        assertThat(queued).isEmpty();
+    }
+
+    @Test
+    void slowClientIsDisconnectedAndAbandonedOrchestrationCancelled() throws Exception {
+        properties.setBufferSize(4);
+        singleFlightProperties.setDuplicateWindow(Duration.ofMillis(100));
+        orchestrator.chunks = 20;
+        orchestrator.release.countDown();
+
+        // 只读取一条消息的客户端
+        List<ChatResponse> received = new CopyOnWriteArrayList<>();
+        controller.stream(request("m1")).subscribe(new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(ServerSentEvent<ChatResponse> event) {
+                received.add(event.data());
+            }
+        });
+
+        assertThat(orchestrator.cancelled.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(received).hasSize(1);
+        assertThat(meterRegistry.get("agent.chat-stream.overflows").counter().count()).isEqualTo(1);
+        assertThat(queued).isEmpty();
+    }
+
+    private static ChatRequest request(String messageId) {
+        ChatRequest request = new ChatRequest();
+        request.setUserId("u1");
+        request.setMessageId(messageId);
+        request.setMessage("查询余额");
+        return request;
+    }
+
+    /**
+     * 发送若干 CHUNK 后结束，release 之前停在第一条之后；消息较多时等待被取消
+     */
+    private class FakeOrchestrator extends AgentOrchestrator {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+        private final AtomicInteger runs = new AtomicInteger();
+        private volatile int chunks = 2;
+
+        @Override
+        public void processUserInput(String userId, ChatRequest request, ExecutionLane lane) {
+            runs.incrementAndGet();
+            Cancellation cancellation = cancellationRegistry.register(request.getMessageId(), userId);
+            try {
+                for (int i = 0; i < chunks; i++) {
+                    singleFlight.send(userId, response(request, ChatResponse.MessageType.CHUNK, String.valueOf((char) ('a' + i))));
+                    if (i == 0) {
+                        started.countDown();
+                        release.await(2, TimeUnit.SECONDS);
+                    }
+                }
+                long deadline = System.currentTimeMillis() + 2000;
+                while (chunks > 2 && !cancellation.isCancelled() && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                if (cancellation.isCancelled()) {
+                    cancelled.countDown();
+                    return;
+                }
+                singleFlight.send(userId, response(request, ChatResponse.MessageType.END, null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                cancellationRegistry.remove(cancellation);
+            }
+        }
+
+        private static ChatResponse response(ChatRequest request, ChatResponse.MessageType type, String content) {
+            return ChatResponse.builder()
+                    .messageId(request.getMessageId())
+                    .type(type)
+                    .content(content)
+                    .isFinal(type == ChatResponse.MessageType.END)
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+        }
+    }
+}
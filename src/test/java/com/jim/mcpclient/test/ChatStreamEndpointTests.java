@@ -0,0 +1,121 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.loadtest.FakeChatModel;
+import com.jim.mcpclient.loadtest.StubMcpServer;
+import com.jim.mcpclient.model.ChatRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 通过 HTTP 调用 POST /api/chat/stream：启动应用，模型替换为 {@link FakeChatModel}，MCP 连接指向本地 {@link StubMcpServer}
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.ai.google.genai.api-key=test",
+        "agent.mcp-startup.background=false",
+        "logging.level.org.springframework.web.socket=INFO",
+        "logging.level.org.springframework.messaging.simp.stomp=INFO"
+})
+class ChatStreamEndpointTests {
+
+    private static final StubMcpServer MCP_SERVER = startMcpServer();
+    private static final Pattern EVENT = Pattern.compile("(?m)^event:(\\w+)$");
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private SessionRegistry sessionRegistry;
+    @Autowired
+    private WebMvcProperties webMvcProperties;
+
+    @DynamicPropertySource
+    static void environment(DynamicPropertyRegistry registry) throws IOException {
+        registry.add("spring.ai.mcp.client.streamable-http.connections.db-server.url", MCP_SERVER::baseUrl);
+        registry.add("spring.ai.mcp.client.streamable-http.connections.db-server.endpoint", () -> StubMcpServer.ENDPOINT);
+        Path directory = Files.createTempDirectory("chat-stream-tests");
+        registry.add("agent.journal.directory", () -> directory.resolve("journal").toString());
+        registry.add("agent.blob-store.directory", () -> directory.resolve("blobs").toString());
+        registry.add("agent.session.offload-directory", () -> directory.resolve("sessions").toString());
+        registry.add("agent.batch.directory", () -> directory.resolve("batches").toString());
+    }
+
+    @AfterAll
+    static void stopMcpServer() {
+        MCP_SERVER.close();
+    }
+
+    @Test
+    void streamsTheOrchestrationOverHttp() throws Exception {
+        ChatRequest request = new ChatRequest();
+        request.setUserId("sse-user");
+        request.setMessageId(UUID.randomUUID().toString());
+        request.setMessage("查询本月第 3 天的账目明细并汇总");
+
+        ResponseEntity<String> response = restTemplate.postForEntity("/api/chat/stream", request, String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(events(response.getBody()))
+                .startsWith("START")
+                .contains("CHUNK")
+                .doesNotContain("ERROR")
+                .endsWith("END");
+        // 连接关闭后按离开处理，会话记忆按 memory-retention 释放
+        Map<?, ?> departedUsers = (Map<?, ?>) ReflectionTestUtils.getField(sessionRegistry, "departedUsers");
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!departedUsers.containsKey("sse-user") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(departedUsers.containsKey("sse-user")).isTrue();
+    }
+
+    @Test
+    void streamsOutliveTheContainerDefaultAsyncTimeout() {
+        // Tomcat 默认的异步超时为 30s，多条指令的编排常常超过它
+        assertThat(webMvcProperties.getAsync().getRequestTimeout()).isGreaterThan(Duration.ofSeconds(30));
+    }
+
+    private static List<String> events(String body) {
+        return EVENT.matcher(String.valueOf(body)).results().map(result -> result.group(1)).toList();
+    }
+
+    private static StubMcpServer startMcpServer() {
+        try {
+            return new StubMcpServer(StubMcpServer.defaultTools(), Duration.ZERO).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @TestConfiguration
+    static class FakeModelConfig {
+
+        @Bean
+        @Primary
+        FakeChatModel fakeChatModel() {
+            return new FakeChatModel(new FakeChatModel.Profile(Duration.ZERO, 100_000, 2, 8, 2, 1, 0));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.jim.mcpclient.test;
+
+import com.google.genai.errors.ApiException;
+import com.jim.mcpclient.config.RetryProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DefaultRetryPolicyTests {
+
+    private final DefaultRetryPolicy policy = new DefaultRetryPolicy();
+    private final RetryProperties properties = new RetryProperties();
+
+    @BeforeEach
+    void setUp() {
+        properties.setInitialBackoff(Duration.ofMillis(100));
+        properties.setMaxBackoff(Duration.ofMillis(300));
+        properties.setTransportAttempts(4);
+        properties.setJitter(0.5);
+        properties.setBudget(2);
+        ReflectionTestUtils.setField(policy, "properties", properties);
+    }
+
+    @Test
+    void classifiesTransportFailuresThroughCauseChain() {
+        assertThat(policy.isTransient(new RuntimeException(new ApiException(429, "RESOURCE_EXHAUSTED", "quota")))).isTrue();
+        assertThat(policy.isTransient(new ApiException(503, "UNAVAILABLE", "overloaded"))).isTrue();
+        assertThat(policy.isTransient(new UncheckedIOException(new SocketTimeoutException("read timed out")))).isTrue();
+
+        assertThat(policy.isTransient(new ApiException(400, "INVALID_ARGUMENT", "bad request"))).isFalse();
+        assertThat(policy.isTransient(new IllegalStateException("parse error"))).isFalse();
+        assertThat(policy.isTransient(new OrchestrationCancelledException("m1"))).isFalse();
+    }
+
+    @Test
+    void backsOffExponentiallyWithJitterAndCap() {
+        for (int i = 0; i < 20; i++) {
+            assertThat(policy.transportBackoff(1)).isBetween(Duration.ofMillis(50), Duration.ofMillis(100));
+            assertThat(policy.transportBackoff(2)).isBetween(Duration.ofMillis(100), Duration.ofMillis(200));
+            assertThat(policy.transportBackoff(3)).isBetween(Duration.ofMillis(150), Duration.ofMillis(300));
+        }
+        assertThat(policy.transportBackoff(4)).isNull();
+    }
+
+    @Test
+    void budgetIsSharedAndExhausts() {
+        RetryBudget budget = policy.newBudget();
+
+        assertThat(budget.tryAcquire()).isTrue();
+        assertThat(budget.tryAcquire()).isTrue();
+        assertThat(budget.tryAcquire()).isFalse();
+        assertThat(budget.remaining()).isZero();
+    }
+}
@@ -0,0 +1,85 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.ExecutionLaneProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExecutionLanesTests {
+
+    private final ExecutionLaneProperties properties = new ExecutionLaneProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutionLanes lanes = new ExecutionLanes();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> completed = new CopyOnWriteArrayList<>();
+    private final List<String> rejected = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        properties.setInteractive(new ExecutionLaneProperties.Lane(1, 2, 0.5, ExecutionLaneProperties.Overload.SHED_OLDEST, false));
+        properties.setOrchestration(new ExecutionLaneProperties.Lane(1, 1, 0.5, ExecutionLaneProperties.Overload.REJECT, false));
+        ReflectionTestUtils.setField(lanes, "properties", properties);
+        ReflectionTestUtils.setField(lanes, "meterRegistry", meterRegistry);
+        lanes.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        lanes.shutdown();
+    }
+
+    @Test
+    void busyOrchestrationLaneRejectsNewRequestsWithoutAffectingInteractiveLane() throws Exception {
+        submit(ExecutionLane.ORCHESTRATION, "o1", true);
+        submit(ExecutionLane.ORCHESTRATION, "o2", true);
+        submit(ExecutionLane.ORCHESTRATION, "o3", true);
+
+        // 编排通道执行 o1、排队 o2，o3 被拒绝；简单对话通道不受影响
+        assertThat(rejected).containsExactly("o3");
+        CountDownLatch interactive = new CountDownLatch(1);
+        lanes.submit(ExecutionLane.INTERACTIVE, interactive::countDown, () -> rejected.add("i1"));
+        assertThat(interactive.await(2, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(meterRegistry.get("agent.lanes.queued").tag("lane", "orchestration").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("agent.lanes.rejected").tags("lane", "orchestration", "reason", "full").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void interactiveLaneShedsItsOldestQueuedRequest() throws Exception {
+        submit(ExecutionLane.INTERACTIVE, "i1", true);
+        submit(ExecutionLane.INTERACTIVE, "i2", false);
+        submit(ExecutionLane.INTERACTIVE, "i3", false);
+        submit(ExecutionLane.INTERACTIVE, "i4", false);
+
+        assertThat(rejected).containsExactly("i2");
+        release.countDown();
+        Thread.sleep(200);
+        assertThat(completed).containsExactly("i1", "i3", "i4");
+        assertThat(meterRegistry.get("agent.lanes.wait").tag("lane", "interactive").timer().count()).isEqualTo(3);
+    }
+
+    private void submit(ExecutionLane lane, String name, boolean blocking) {
+        lanes.submit(lane, () -> {
+            if (blocking) {
+                try {
+                    release.await(2, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            completed.add(name);
+        }, () -> rejected.add(name));
+    }
+}
@@ -0,0 +1,45 @@
+package com.jim.mcpclient.test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地模拟的提示词缓存，记录每次创建缓存的模板版本，不访问任何模型服务
+ */
+class FakePromptCacheProvider extends VersionedPromptCacheProvider {
+
+    final List<String> createdVersions = new CopyOnWriteArrayList<>();
+    boolean failing;
+
+    /**
+     * 设置后创建该版本的缓存时等待 release(模拟较慢的远程调用)，开始等待时 creating 计数减一
+     */
+    volatile String slowVersion;
+    final CountDownLatch creating = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    FakePromptCacheProvider(Duration ttl, Clock clock) {
+        super(ttl, clock);
+    }
+
+    @Override
+    protected String createCache(PromptTemplate template, Duration ttl) {
+        if (failing) {
+            throw new IllegalStateException("cached content too small");
+        }
+        if (template.version().equals(slowVersion)) {
+            creating.countDown();
+            try {
+                release.await(2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        createdVersions.add(template.version());
+        return "cachedContents/fake-" + createdVersions.size();
+    }
+}
@@ -0,0 +1,42 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.FastPathProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FastPathClassifierTests {
+
+    private final FastPathClassifier classifier = new FastPathClassifier();
+    private final FastPathProperties properties = new FastPathProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        properties.setModelClassification(false);
+        ReflectionTestUtils.setField(classifier, "properties", properties);
+        ReflectionTestUtils.setField(classifier, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    void answersGreetingsAndShortMessagesDirectly() {
+        assertThat(classifier.classify("你好！")).isEqualTo(FastPathClassifier.Route.DIRECT);
+        assertThat(classifier.classify("Hello!")).isEqualTo(FastPathClassifier.Route.DIRECT);
+        assertThat(classifier.classify("在么?")).isEqualTo(FastPathClassifier.Route.DIRECT);
+
+        assertThat(meterRegistry.counter("agent.fast-path.decisions", "route", "direct", "reason", "greeting").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("agent.fast-path.decisions", "route", "direct", "reason", "short").count()).isEqualTo(1);
+    }
+
+    @Test
+    void sendsMultiStepRequestsToOrchestrator() {
+        assertThat(classifier.classify("你好，帮我查询本月的账目明细并汇总")).isEqualTo(FastPathClassifier.Route.ORCHESTRATE);
+        assertThat(classifier.classify("什么是复式簿记法，它和单式簿记有什么区别")).isEqualTo(FastPathClassifier.Route.ORCHESTRATE);
+
+        assertThat(meterRegistry.counter("agent.fast-path.decisions", "route", "orchestrate", "reason", "keyword").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("agent.fast-path.decisions", "route", "orchestrate", "reason", "default").count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,214 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.McpStartupProperties;
+import com.jim.mcpclient.config.TrafficReplayProperties;
+import com.jim.mcpclient.loadtest.StubMcpServer;
+import io.modelcontextprotocol.client.McpClient;
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.client.transport.HttpClientStreamableHttpTransport;
+import io.modelcontextprotocol.json.TypeRef;
+import io.modelcontextprotocol.spec.McpClientTransport;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.mcp.McpToolFilter;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class McpToolRegistryTests {
+
+    private final TrafficReplayProperties replayProperties = new TrafficReplayProperties();
+    private final McpStartupProperties startupProperties = new McpStartupProperties();
+    private final McpToolRegistry registry = new McpToolRegistry();
+
+    @BeforeEach
+    void setUp() {
+        TrafficReplay trafficReplay = new TrafficReplay();
+        ReflectionTestUtils.setField(trafficReplay, "properties", replayProperties);
+        ReflectionTestUtils.setField(registry, "mcpSyncClients", List.of(client("db-server"), client("report-server")));
+        ReflectionTestUtils.setField(registry, "toolFilter", new DefaultListableBeanFactory().getBeanProvider(McpToolFilter.class));
+        ReflectionTestUtils.setField(registry, "trafficReplay", trafficReplay);
+        ReflectionTestUtils.setField(registry, "resultShaper", new ResultShaper());
+        ReflectionTestUtils.setField(registry, "blobStore", new BlobStore());
+        ReflectionTestUtils.setField(registry, "startupProperties", startupProperties);
+        // 跳过启动时的 listTools：从两个连接都没有工具的第一个版本开始
+        current().set(McpToolRegistry.Snapshot.of(1, Map.of()));
+    }
+
+    @Test
+    void everyChangeBumpsTheVersion() {
+        McpToolRegistry.Snapshot first = registry.snapshot();
+
+        registry.refreshTools("db-server", tools("query_ledger"));
+        McpToolRegistry.Snapshot second = registry.snapshot();
+        registry.refreshTools("db-server", tools("query_ledger", "query_balance"));
+
+        assertThat(first.version()).isEqualTo(1);
+        assertThat(second.version()).isEqualTo(2);
+        assertThat(registry.snapshot().version()).isEqualTo(3);
+        // 旧快照不可变，持有它的请求不受影响
+        assertThat(first.toolCallbacks()).isEmpty();
+        assertThat(names(second.toolCallbacks())).containsExactly("query_ledger");
+        assertThat(names(registry.snapshot().toolCallbacks())).containsExactlyInAnyOrder("query_ledger", "query_balance");
+    }
+
+    @Test
+    void replacesOnlyTheNotifyingConnectionsTools() {
+        registry.refreshTools("db-server", tools("query_ledger", "query_balance"));
+        registry.refreshTools("report-server", tools("monthly_report"));
+        List<ToolCallback> reportTools = registry.snapshot().toolsByConnection().get("report-server");
+
+        registry.refreshTools("db-server", tools("query_ledger_v2"));
+
+        McpToolRegistry.Snapshot snapshot = registry.snapshot();
+        assertThat(snapshot.version()).isEqualTo(4);
+        assertThat(names(snapshot.toolsByConnection().get("db-server"))).containsExactly("query_ledger_v2");
+        assertThat(snapshot.toolsByConnection().get("report-server")).isSameAs(reportTools);
+        assertThat(names(snapshot.toolCallbacks())).containsExactlyInAnyOrder("query_ledger_v2", "monthly_report");
+    }
+
+    @Test
+    void ignoresUnknownConnectionsAndReplayMode() {
+        registry.refreshTools("unknown-server", tools("query_ledger"));
+        assertThat(registry.snapshot().version()).isEqualTo(1);
+
+        replayProperties.setMode(TrafficReplayProperties.Mode.REPLAY);
+        registry.refreshTools("db-server", tools("query_ledger"));
+        assertThat(registry.snapshot().version()).isEqualTo(1);
+    }
+
+    @Test
+    void unreachableConnectionsLoadEmptyAndAreRetriedInTheBackground() throws Exception {
+        try (StubMcpServer dbServer = new StubMcpServer(StubMcpServer.defaultTools(), Duration.ZERO).start();
+             StubMcpServer reportServer = new StubMcpServer(
+                     List.of(new StubMcpServer.StubTool("monthly_report", "月度报表")), Duration.ZERO).start()) {
+            FlakyTransport reportTransport = new FlakyTransport(transport(reportServer));
+            reportTransport.down.set(true);
+            ReflectionTestUtils.setField(registry, "mcpSyncClients",
+                    List.of(client("db-server", transport(dbServer)), client("report-server", reportTransport)));
+            startupProperties.setToolRetryInterval(Duration.ZERO);
+            current().set(McpToolRegistry.Snapshot.EMPTY);
+
+            // 不可达的连接不影响其他连接的工具
+            McpToolRegistry.Snapshot first = registry.snapshot();
+            assertThat(first.version()).isEqualTo(1);
+            assertThat(first.toolsByConnection().get("db-server")).hasSize(StubMcpServer.defaultTools().size());
+            assertThat(first.toolsByConnection().get("report-server")).isEmpty();
+
+            // 恢复后，下一次使用注册表时在后台重新加载，调用方直接拿到当前快照
+            reportTransport.down.set(false);
+            assertThat(registry.snapshot().version()).isEqualTo(1);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (registry.snapshot().version() == 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            McpToolRegistry.Snapshot second = registry.snapshot();
+            assertThat(second.version()).isEqualTo(2);
+            assertThat(names(second.toolsByConnection().get("report-server"))).containsExactly("monthly_report");
+            assertThat(second.toolsByConnection().get("db-server")).isSameAs(first.toolsByConnection().get("db-server"));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private AtomicReference<McpToolRegistry.Snapshot> current() {
+        return (AtomicReference<McpToolRegistry.Snapshot>) ReflectionTestUtils.getField(registry, "current");
+    }
+
+    private static List<McpSchema.Tool> tools(String... names) {
+        return Arrays.stream(names)
+                .map(name -> McpSchema.Tool.builder().name(name).description(name).inputSchema(
+                        new McpSchema.JsonSchema("object", Map.of(), List.of(), false, null, null)).build())
+                .toList();
+    }
+
+    private static List<String> names(List<ToolCallback> toolCallbacks) {
+        return toolCallbacks.stream().map(toolCallback -> toolCallback.getToolDefinition().name()).toList();
+    }
+
+    /**
+     * 名称与自动配置创建的客户端一致，从不连接 MCP server
+     */
+    private static McpSyncClient client(String connectionName) {
+        return client(connectionName, new IdleTransport());
+    }
+
+    private static McpSyncClient client(String connectionName, McpClientTransport transport) {
+        return McpClient.sync(transport)
+                .clientInfo(new McpSchema.Implementation("ledger-mcp-client - " + connectionName, "1.0.0"))
+                .requestTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    private static McpClientTransport transport(StubMcpServer server) {
+        return HttpClientStreamableHttpTransport.builder(server.baseUrl()).endpoint(StubMcpServer.ENDPOINT).build();
+    }
+
+    private static class IdleTransport implements McpClientTransport {
+
+        @Override
+        public Mono<Void> connect(Function<Mono<McpSchema.JSONRPCMessage>, Mono<McpSchema.JSONRPCMessage>> handler) {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<Void> sendMessage(McpSchema.JSONRPCMessage message) {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<Void> closeGracefully() {
+            return Mono.empty();
+        }
+
+        @Override
+        public <T> T unmarshalFrom(Object data, TypeRef<T> typeRef) {
+            return null;
+        }
+    }
+
+    /**
+     * down 为 true 时发送失败，模拟暂时不可达的 MCP server
+     */
+    private static class FlakyTransport implements McpClientTransport {
+
+        private final McpClientTransport delegate;
+        private final AtomicBoolean down = new AtomicBoolean();
+
+        FlakyTransport(McpClientTransport delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Mono<Void> connect(Function<Mono<McpSchema.JSONRPCMessage>, Mono<McpSchema.JSONRPCMessage>> handler) {
+            return delegate.connect(handler);
+        }
+
+        @Override
+        public Mono<Void> sendMessage(McpSchema.JSONRPCMessage message) {
+            return down.get() ? Mono.error(new IOException("Connection refused")) : delegate.sendMessage(message);
+        }
+
+        @Override
+        public Mono<Void> closeGracefully() {
+            return delegate.closeGracefully();
+        }
+
+        @Override
+        public <T> T unmarshalFrom(Object data, TypeRef<T> typeRef) {
+            return delegate.unmarshalFrom(data, typeRef);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.ModelRoutingProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModelRouterTests {
+
+    private final ModelRouter router = new ModelRouter();
+    private final ModelRoutingProperties properties = new ModelRoutingProperties();
+
+    @BeforeEach
+    void setUp() {
+        properties.getProfiles().put("flagship", profile("gemini-2.5-pro"));
+        properties.getProfiles().put("fast", profile("gemini-2.5-flash-lite"));
+        properties.getStages().put(ToolStage.VALIDATION, List.of("flagship", "fast"));
+        properties.getRouter().setMinSamples(3);
+        properties.getRouter().setExplore(0);
+        ReflectionTestUtils.setField(router, "properties", properties);
+    }
+
+    @Test
+    void usesPreferredProfileWhenRouterDisabled() {
+        assertThat(router.route(ToolStage.VALIDATION)).get()
+                .extracting(ModelRouter.Route::name).isEqualTo("flagship");
+        assertThat(router.route(ToolStage.VALIDATION).orElseThrow().options().build().getModel()).isEqualTo("gemini-2.5-pro");
+        assertThat(router.route(ToolStage.WORKER)).isEmpty();
+    }
+
+    @Test
+    void prefersFasterHealthyProfile() {
+        properties.getRouter().setEnabled(true);
+        for (int i = 0; i < 3; i++) {
+            router.record(ToolStage.VALIDATION, "flagship", 2000, true);
+        }
+        // 样本不足的候选先被选中
+        assertThat(router.route(ToolStage.VALIDATION).orElseThrow().name()).isEqualTo("fast");
+
+        for (int i = 0; i < 3; i++) {
+            router.record(ToolStage.VALIDATION, "fast", 300, true);
+        }
+        assertThat(router.route(ToolStage.VALIDATION).orElseThrow().name()).isEqualTo("fast");
+
+        // 错误率超过上限后退回较慢但健康的候选
+        for (int i = 0; i < 6; i++) {
+            router.record(ToolStage.VALIDATION, "fast", 300, false);
+        }
+        assertThat(router.route(ToolStage.VALIDATION).orElseThrow().name()).isEqualTo("flagship");
+    }
+
+    private static ModelRoutingProperties.Profile profile(String model) {
+        ModelRoutingProperties.Profile profile = new ModelRoutingProperties.Profile();
+        profile.setModel(model);
+        return profile;
+    }
+}
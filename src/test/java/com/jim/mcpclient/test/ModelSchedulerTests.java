@@ -0,0 +1,125 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.ExecutionLaneProperties;
+import com.jim.mcpclient.config.ModelSchedulingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModelSchedulerTests {
+
+    private final ModelSchedulingProperties properties = new ModelSchedulingProperties();
+    private final ExecutionLaneProperties laneProperties = new ExecutionLaneProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ModelScheduler scheduler = new ModelScheduler();
+
+    @BeforeEach
+    void setUp() {
+        properties.setMaxConcurrency(1);
+        properties.setQuantum(100);
+        ReflectionTestUtils.setField(scheduler, "properties", properties);
+        ReflectionTestUtils.setField(scheduler, "laneProperties", laneProperties);
+        ReflectionTestUtils.setField(scheduler, "meterRegistry", meterRegistry);
+        scheduler.init();
+    }
+
+    @Test
+    void heavyUserDoesNotDelayOtherUsers() {
+        ModelScheduler.Ticket running = scheduler.enqueue("alice", null, 100);
+        Map<String, ModelScheduler.Ticket> tickets = new LinkedHashMap<>();
+        for (int i = 1; i <= 5; i++) {
+            tickets.put("alice-" + i, scheduler.enqueue("alice", null, 100));
+        }
+        tickets.put("bob-1", scheduler.enqueue("bob", null, 100));
+
+        assertThat(running.granted()).isDone();
+        // alice 排在前面的 5 个调用之后，bob 只等 alice 的一个调用
+        assertThat(grantOrder(running, tickets)).startsWith("alice-1", "bob-1");
+        assertThat(meterRegistry.get("agent.model-scheduling.queued").gauge().value()).isZero();
+    }
+
+    @Test
+    void servesUsersInProportionToTheirTenantWeights() {
+        ModelSchedulingProperties.Tenant vip = new ModelSchedulingProperties.Tenant();
+        vip.setWeight(3);
+        vip.setUsers(List.of("vip-*"));
+        properties.getTenants().put("vip", vip);
+
+        ModelScheduler.Ticket running = scheduler.enqueue("blocker", null, 100);
+        Map<String, ModelScheduler.Ticket> tickets = new LinkedHashMap<>();
+        for (int i = 1; i <= 6; i++) {
+            tickets.put("vip-" + i, scheduler.enqueue("vip-alice", null, 100));
+        }
+        for (int i = 1; i <= 6; i++) {
+            tickets.put("bob-" + i, scheduler.enqueue("bob", null, 100));
+        }
+
+        assertThat(grantOrder(running, tickets)).containsExactly(
+                "vip-1", "vip-2", "vip-3", "bob-1", "vip-4", "vip-5", "vip-6", "bob-2", "bob-3", "bob-4", "bob-5", "bob-6");
+        assertThat(meterRegistry.get("agent.model-scheduling.wait").tag("tenant", "vip").timer().count()).isEqualTo(6);
+        assertThat(meterRegistry.get("agent.model-scheduling.wait").tag("tenant", ModelScheduler.DEFAULT_TENANT).timer().count())
+                .isEqualTo(7);
+    }
+
+    @Test
+    void eachLaneIsLimitedToItsShareOfModelCalls() {
+        properties.setMaxConcurrency(4);
+        laneProperties.getOrchestration().setModelShare(0.5);
+
+        List<ModelScheduler.Ticket> orchestration = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            orchestration.add(scheduler.enqueue("user-" + i, ExecutionLane.ORCHESTRATION, 100));
+        }
+        ModelScheduler.Ticket interactive = scheduler.enqueue("user-0", ExecutionLane.INTERACTIVE, 100);
+
+        // 编排通道最多占用 2 个名额，简单对话不用等编排结束
+        assertThat(orchestration).extracting(ticket -> ticket.granted().isDone()).containsExactly(true, true, false, false);
+        assertThat(interactive.granted()).isDone();
+
+        orchestration.getFirst().release();
+        assertThat(orchestration.get(2).granted()).isDone();
+        assertThat(orchestration.get(3).granted()).isNotDone();
+    }
+
+    @Test
+    void abandonedCallsLeaveTheQueue() {
+        ModelScheduler.Ticket running = scheduler.enqueue("alice", null, 100);
+        ModelScheduler.Ticket abandoned = scheduler.enqueue("alice", null, 100);
+        ModelScheduler.Ticket next = scheduler.enqueue("bob", null, 100);
+
+        abandoned.release();
+        running.release();
+
+        assertThat(abandoned.granted()).isCancelled();
+        assertThat(next.granted()).isDone();
+        assertThat(meterRegistry.get("agent.model-scheduling.active").gauge().value()).isEqualTo(1);
+    }
+
+    /**
+     * 每次释放进行中的调用，记录放行顺序
+     */
+    private static List<String> grantOrder(ModelScheduler.Ticket running, Map<String, ModelScheduler.Ticket> tickets) {
+        List<String> order = new ArrayList<>();
+        ModelScheduler.Ticket current = running;
+        while (order.size() < tickets.size()) {
+            current.release();
+            current = null;
+            for (Map.Entry<String, ModelScheduler.Ticket> entry : tickets.entrySet()) {
+                if (entry.getValue().granted().isDone() && !order.contains(entry.getKey())) {
+                    order.add(entry.getKey());
+                    current = entry.getValue();
+                }
+            }
+            assertThat(current).isNotNull();
+        }
+        return order;
+    }
+}
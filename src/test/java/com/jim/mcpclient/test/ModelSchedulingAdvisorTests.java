@@ -0,0 +1,102 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.ExecutionLaneProperties;
+import com.jim.mcpclient.config.ModelSchedulingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModelSchedulingAdvisorTests {
+
+    private final ModelSchedulingProperties properties = new ModelSchedulingProperties();
+    private final ModelScheduler scheduler = new ModelScheduler();
+    private final ModelSchedulingAdvisor advisor = new ModelSchedulingAdvisor(scheduler);
+
+    @BeforeEach
+    void setUp() {
+        properties.setMaxConcurrency(1);
+        ReflectionTestUtils.setField(scheduler, "properties", properties);
+        ReflectionTestUtils.setField(scheduler, "laneProperties", new ExecutionLaneProperties());
+        ReflectionTestUtils.setField(scheduler, "meterRegistry", new SimpleMeterRegistry());
+        scheduler.init();
+    }
+
+    @Test
+    void queuedStreamDoesNotRunOnTheReleasingThread() throws Exception {
+        ModelScheduler.Ticket running = scheduler.enqueue("alice", null, 100);
+        BlockingChain chain = new BlockingChain();
+        CompletableFuture<List<ChatClientResponse>> stream = advisor.adviseStream(request("bob"), chain)
+                .collectList().toFuture();
+        assertThat(chain.started.getCount()).isEqualTo(1);
+
+        // 释放容量立即返回，不在当前线程上执行 bob 的模型调用
+        running.release();
+        assertThat(chain.started.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(chain.thread).isNotSameAs(Thread.currentThread());
+        assertThat(stream).isNotDone();
+
+        chain.finish.countDown();
+        assertThat(stream.get(2, TimeUnit.SECONDS)).hasSize(1);
+    }
+
+    @Test
+    void streamGrantedImmediatelyReleasesCapacityWhenDone() {
+        BlockingChain chain = new BlockingChain();
+        chain.finish.countDown();
+
+        assertThat(advisor.adviseStream(request("bob"), chain).collectList().block()).hasSize(1);
+        assertThat(chain.thread).isSameAs(Thread.currentThread());
+        assertThat(scheduler.enqueue("alice", null, 100).granted()).isDone();
+    }
+
+    private static ChatClientRequest request(String userId) {
+        return ChatClientRequest.builder()
+                .prompt(new Prompt("查询余额"))
+                .context(Map.of(ModelScheduler.USER_KEY, userId))
+                .build();
+    }
+
+    /**
+     * 在订阅线程上同步输出(与 Gemini 的流式调用相同)，finish 之前阻塞
+     */
+    private static class BlockingChain implements StreamAdvisorChain {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch finish = new CountDownLatch(1);
+        private volatile Thread thread;
+
+        @Override
+        public Flux<ChatClientResponse> nextStream(ChatClientRequest request) {
+            return Flux.defer(() -> {
+                thread = Thread.currentThread();
+                started.countDown();
+                try {
+                    finish.await(2, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Flux.just(ChatClientResponse.builder().build());
+            });
+        }
+
+        @Override
+        public List<StreamAdvisor> getStreamAdvisors() {
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.OrchestrationJournalProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrchestrationJournalTests {
+
+    @TempDir
+    Path directory;
+
+    private final OrchestrationJournal journal = new OrchestrationJournal();
+    private final OrchestrationJournalProperties properties = new OrchestrationJournalProperties();
+    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+    private final AIOrchestratorTask.TaskInstruction first = new AIOrchestratorTask.TaskInstruction("查询订单", false, null);
+    private final AIOrchestratorTask.TaskInstruction second = new AIOrchestratorTask.TaskInstruction("统计金额", true, "金额为数字");
+
+    @BeforeEach
+    void setUp() {
+        properties.setDirectory(directory);
+        ReflectionTestUtils.setField(journal, "properties", properties);
+        taskScheduler.initialize();
+        ReflectionTestUtils.setField(journal, "taskScheduler", taskScheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskScheduler.shutdown();
+    }
+
+    @Test
+    void resumesFromLastCompletedInstruction() throws Exception {
+        journal.analysis("u1", "m1", "分析结果");
+        journal.instruction("u1", "m1", 0, first);
+        journal.instruction("u1", "m1", 1, second);
+        journal.planComplete("u1", "m1");
+        journal.result("u1", "m1", 0, first, new AIWorkerResponse(true, "3 条订单"), null, "3 条订单");
+        // 写入时进程退出留下的半行
+        try (var files = Files.list(directory)) {
+            Files.writeString(files.findFirst().orElseThrow(), "{\"type\":\"RESU", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+
+        OrchestrationJournal.Checkpoint checkpoint = journal.load("u1", "m1");
+
+        assertThat(checkpoint.analysis()).isEqualTo("分析结果");
+        assertThat(checkpoint.planComplete()).isTrue();
+        assertThat(checkpoint.instructions()).containsExactly(first, second);
+        assertThat(checkpoint.result(0, first).message()).isEqualTo("3 条订单");
+        assertThat(checkpoint.result(1, second)).isNull();
+        // 重新生成的计划中同一序号的指令不同，不能复用结果
+        assertThat(checkpoint.result(0, second)).isNull();
+        assertThat(journal.load("u1", "other").isEmpty()).isTrue();
+
+        // 恢复后的编排追加的记录不能接在残缺的行后面
+        journal.result("u1", "m1", 1, second, new AIWorkerResponse(true, "合计 120 元"), null, "合计 120 元");
+        OrchestrationJournal.Checkpoint resumed = journal.load("u1", "m1");
+        assertThat(resumed.result(0, first).message()).isEqualTo("3 条订单");
+        assertThat(resumed.result(1, second).message()).isEqualTo("合计 120 元");
+    }
+
+    @Test
+    void completeDeletesJournal() throws Exception {
+        journal.analysis("u1", "m1", "分析结果");
+        journal.complete("u1", "m1");
+
+        assertThat(journal.load("u1", "m1").isEmpty()).isTrue();
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void sweepDeletesAbandonedJournalsWhileRunning() throws Exception {
+        properties.setRetention(Duration.ofHours(1));
+        properties.setSweepInterval(Duration.ofMillis(50));
+        journal.analysis("u1", "cancelled", "分析结果");
+        try (var files = Files.list(directory)) {
+            Files.setLastModifiedTime(files.findFirst().orElseThrow(), FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        }
+        journal.init();
+        journal.analysis("u1", "running", "分析结果");
+
+        // 启动后被取消的编排留下的日志也会在下一次清理时删除
+        journal.analysis("u2", "cancelled", "分析结果");
+        Path abandoned = directory.resolve(TrafficLog.digest("u2\ncancelled") + ".jsonl");
+        Files.setLastModifiedTime(abandoned, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (Files.exists(abandoned) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(abandoned).doesNotExist();
+        assertThat(journal.load("u1", "cancelled").isEmpty()).isTrue();
+        assertThat(journal.load("u1", "running").isEmpty()).isFalse();
+    }
+}
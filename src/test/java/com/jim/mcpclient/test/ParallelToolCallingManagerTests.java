@@ -0,0 +1,125 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.ToolExecutionProperties;
+import com.jim.mcpclient.config.UserTokenHolder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelToolCallingManagerTests {
+
+    private final ToolExecutionProperties properties = new ToolExecutionProperties();
+    private final ParallelToolCallingManager manager = new ParallelToolCallingManager(
+            ToolCallingManager.builder().build(), properties, new SimpleMeterRegistry());
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final Set<String> tokens = ConcurrentHashMap.newKeySet();
+
+    @AfterEach
+    void tearDown() {
+        UserTokenHolder.clear();
+    }
+
+    @Test
+    void runsToolCallsConcurrentlyAndKeepsTheirOrder() {
+        UserTokenHolder.setToken("token-1");
+        Prompt prompt = prompt(new Semaphore(2), tool("query_income", 400), tool("query_expense", 100), tool("query_budget", 300));
+
+        long start = System.currentTimeMillis();
+        ToolExecutionResult result = manager.executeToolCalls(prompt, toolCalls("query_income", "query_expense", "query_budget"));
+        long elapsed = System.currentTimeMillis() - start;
+
+        // 串行需要 800ms，两个并发许可下约 400ms
+        assertThat(elapsed).isLessThan(750);
+        assertThat(maxRunning.get()).isEqualTo(2);
+        assertThat(tokens).containsExactly("token-1");
+
+        assertThat(result.conversationHistory()).hasSize(3);
+        assertThat(result.conversationHistory().get(1)).isInstanceOf(AssistantMessage.class);
+        ToolResponseMessage responses = (ToolResponseMessage) result.conversationHistory().getLast();
+        assertThat(responses.getResponses()).extracting(ToolResponseMessage.ToolResponse::id)
+                .containsExactly("call-0", "call-1", "call-2");
+        assertThat(responses.getResponses()).extracting(ToolResponseMessage.ToolResponse::responseData)
+                .containsExactly("\"query_income done\"", "\"query_expense done\"", "\"query_budget done\"");
+    }
+
+    @Test
+    void runsSequentiallyWhenDisabled() {
+        properties.setParallel(false);
+        Prompt prompt = prompt(null, tool("query_income", 50), tool("query_expense", 50));
+
+        ToolExecutionResult result = manager.executeToolCalls(prompt, toolCalls("query_income", "query_expense"));
+
+        assertThat(maxRunning.get()).isEqualTo(1);
+        assertThat(((ToolResponseMessage) result.conversationHistory().getLast()).getResponses()).hasSize(2);
+    }
+
+    private Prompt prompt(Semaphore permits, ToolCallback... toolCallbacks) {
+        return new Prompt("查询本月收支和预算", ToolCallingChatOptions.builder()
+                .toolCallbacks(toolCallbacks)
+                .toolContext(permits == null ? Map.of("token", "token-1")
+                        : Map.of("token", "token-1", ParallelToolCallingManager.CONTEXT_KEY, permits))
+                .build());
+    }
+
+    private static ChatResponse toolCalls(String... names) {
+        List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            toolCalls.add(new AssistantMessage.ToolCall("call-" + i, "function", names[i], "{}"));
+        }
+        return new ChatResponse(List.of(new Generation(AssistantMessage.builder().content("").toolCalls(toolCalls).build())));
+    }
+
+    private ToolCallback tool(String name, long millis) {
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return ToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                }
+                String token = UserTokenHolder.getToken();
+                if (token != null) {
+                    tokens.add(token);
+                }
+                return "\"" + name + " done\"";
+            }
+
+            @Override
+            public String call(String toolInput, ToolContext toolContext) {
+                return call(toolInput);
+            }
+        };
+    }
+}
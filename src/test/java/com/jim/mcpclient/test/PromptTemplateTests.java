@@ -0,0 +1,123 @@
+package com.jim.mcpclient.test;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class PromptTemplateTests {
+
+    private static final PromptTemplate TEMPLATE = PromptTemplate.compile("check", """
+            任务结果验证
+            
+            严格验证{{result|任务执行结果}}是否符合{{validation|验收标准}}。
+            
+            {{extra}}
+            """);
+
+    @Test
+    void movesVariablesBehindStableStaticPrefix() {
+        PromptTemplate.RenderedPrompt first = TEMPLATE.render(Map.of("result", "已记账 50 元", "validation", "金额为 50", "extra", "无"));
+        PromptTemplate.RenderedPrompt second = TEMPLATE.render(Map.of("result", "失败", "validation", "金额为 80", "extra", "重试"));
+
+        assertThat(first.system()).isEqualTo("任务结果验证\n\n严格验证「任务执行结果」是否符合「验收标准」。");
+        assertThat(second.system()).isEqualTo(first.system());
+        assertThat(first.user()).isEqualTo("任务执行结果：\n已记账 50 元\n\n验收标准：\n金额为 50\n\n无");
+        assertThat(TEMPLATE.variables()).containsExactly("result", "validation", "extra");
+    }
+
+    @Test
+    void versionFollowsStaticContent() {
+        PromptTemplate same = PromptTemplate.compile("check", TEMPLATE.staticText());
+        PromptTemplate changed = PromptTemplate.compile("check", TEMPLATE.staticText() + "\n注意事项");
+
+        assertThat(same.version()).isEqualTo(TEMPLATE.version()).startsWith("check@");
+        assertThat(changed.version()).isNotEqualTo(TEMPLATE.version());
+    }
+
+    @Test
+    void rejectsMissingVariables() {
+        assertThatIllegalArgumentException().isThrownBy(() -> TEMPLATE.render(Map.of("result", "ok")));
+    }
+
+    @Test
+    void createsOneCachePerTemplateVersionUntilExpiry() {
+        MutableClock clock = new MutableClock();
+        FakePromptCacheProvider provider = new FakePromptCacheProvider(Duration.ofMinutes(10), clock);
+
+        assertThat(provider.cachedContent(TEMPLATE)).contains("cachedContents/fake-1");
+        assertThat(provider.cachedContent(TEMPLATE)).contains("cachedContents/fake-1");
+        assertThat(provider.cachedContent(PromptTemplates.FORMAT)).contains("cachedContents/fake-2");
+
+        clock.advance(Duration.ofMinutes(9).plusSeconds(1));
+        assertThat(provider.cachedContent(TEMPLATE)).contains("cachedContents/fake-3");
+        assertThat(provider.createdVersions).containsExactly(TEMPLATE.version(), PromptTemplates.FORMAT.version(), TEMPLATE.version());
+    }
+
+    @Test
+    void fallsBackToUncachedPromptWhenCreationFails() {
+        MutableClock clock = new MutableClock();
+        FakePromptCacheProvider provider = new FakePromptCacheProvider(Duration.ofMinutes(10), clock);
+        provider.failing = true;
+
+        assertThat(provider.cachedContent(TEMPLATE)).isEmpty();
+
+        provider.failing = false;
+        assertThat(provider.cachedContent(TEMPLATE)).isEmpty();
+        clock.advance(VersionedPromptCacheProvider.FAILURE_BACKOFF);
+        assertThat(provider.cachedContent(TEMPLATE)).isPresent();
+    }
+
+    @Test
+    void slowCacheCreationIsSharedAndDoesNotBlockOtherTemplates() throws Exception {
+        FakePromptCacheProvider provider = new FakePromptCacheProvider(Duration.ofMinutes(10), new MutableClock());
+        provider.slowVersion = TEMPLATE.version();
+
+        CompletableFuture<Optional<String>> first = CompletableFuture.supplyAsync(() -> provider.cachedContent(TEMPLATE));
+        assertThat(provider.creating.await(2, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Optional<String>> second = CompletableFuture.supplyAsync(() -> provider.cachedContent(TEMPLATE));
+
+        // 创建中的版本不影响其他模板
+        assertThat(provider.cachedContent(PromptTemplates.FORMAT)).contains("cachedContents/fake-1");
+        assertThat(second).isNotDone();
+
+        provider.release.countDown();
+        assertThat(first.get(2, TimeUnit.SECONDS)).contains("cachedContents/fake-2");
+        assertThat(second.get(2, TimeUnit.SECONDS)).contains("cachedContents/fake-2");
+        assertThat(provider.createdVersions).containsExactly(PromptTemplates.FORMAT.version(), TEMPLATE.version());
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
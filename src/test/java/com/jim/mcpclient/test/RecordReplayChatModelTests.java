@@ -0,0 +1,67 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.loadtest.FakeChatModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecordReplayChatModelTests {
+
+    private final FakeChatModel model = new FakeChatModel(new FakeChatModel.Profile(Duration.ZERO, 10_000, 2, 20, 2, 0, 0));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysRecordedCallsAndStreams() throws Exception {
+        Path file = dir.resolve("traffic.jsonl");
+        Prompt plan = prompt(PromptTemplates.PLANNING.staticText(), "分析结果");
+        Prompt answer = prompt("你是助手", "你好");
+
+        String recordedPlan;
+        List<String> recordedChunks;
+        try (TrafficLog trafficLog = TrafficLog.record(file)) {
+            RecordReplayChatModel recorder = new RecordReplayChatModel(model, trafficLog, false, 1.0);
+            recordedPlan = recorder.call(plan).getResult().getOutput().getText();
+            recordedChunks = texts(recorder.stream(answer).collectList().block());
+        }
+
+        RecordReplayChatModel replayer = new RecordReplayChatModel(null, TrafficLog.replay(file), true, 0);
+        assertThat(replayer.call(plan).getResult().getOutput().getText()).isEqualTo(recordedPlan);
+        assertThat(texts(replayer.stream(answer).collectList().block())).isEqualTo(recordedChunks);
+    }
+
+    @Test
+    void fallsBackToSystemAndLastUserMessage() throws Exception {
+        Path file = dir.resolve("traffic.jsonl");
+        try (TrafficLog trafficLog = TrafficLog.record(file)) {
+            new RecordReplayChatModel(model, trafficLog, false, 1.0).call(prompt("系统", "问题"));
+        }
+
+        RecordReplayChatModel replayer = new RecordReplayChatModel(null, TrafficLog.replay(file), true, 0);
+        // 会话记忆不同，但系统提示词和最后一条用户消息相同
+        Prompt withHistory = new Prompt(List.of(new SystemMessage("系统"), new UserMessage("更早的问题"), new UserMessage("问题")));
+        assertThat(replayer.call(withHistory).getResult().getOutput().getText()).isNotEmpty();
+
+        assertThatThrownBy(() -> replayer.call(prompt("系统", "没有录制过的问题")))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static Prompt prompt(String system, String user) {
+        return new Prompt(List.of(new SystemMessage(system), new UserMessage(user)));
+    }
+
+    private static List<String> texts(List<ChatResponse> responses) {
+        return responses.stream().map(response -> response.getResult().getOutput().getText()).toList();
+    }
+}
@@ -0,0 +1,102 @@
+package com.jim.mcpclient.test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jim.mcpclient.config.JsonUtils;
+import com.jim.mcpclient.config.TokenBudgetProperties;
+import com.jim.mcpclient.config.TokenEstimator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResultShaperTests {
+
+    private final ResultShaper resultShaper = new ResultShaper();
+    private final TokenBudgetProperties properties = new TokenBudgetProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        properties.setToolResult(300);
+        properties.getStages().put(ToolStage.FORMAT, 200);
+        ReflectionTestUtils.setField(resultShaper, "properties", properties);
+        ReflectionTestUtils.setField(resultShaper, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    void estimatesCjkAsOneTokenPerCharacter() {
+        assertThat(TokenEstimator.estimate("查询本月账目")).isEqualTo(6);
+        assertThat(TokenEstimator.estimate("abcdefgh")).isEqualTo(2);
+        assertThat(TokenEstimator.estimate("")).isZero();
+        assertThat(TokenEstimator.prefixLength("账目abcd", 2)).isEqualTo(2);
+        assertThat(TokenEstimator.suffixLength("账目abcd", 2)).isEqualTo(5);
+    }
+
+    @Test
+    void keepsResultsWithinBudget() {
+        String text = "共 3 条记录";
+
+        assertThat(resultShaper.shape(ToolStage.FORMAT, text)).isSameAs(text);
+        assertThat(resultShaper.shape(ToolStage.SYNTHESIS, "很长".repeat(1000))).hasSize(2000);
+        assertThat(meterRegistry.find("agent.token-budget.trimmed").counter()).isNull();
+    }
+
+    @Test
+    void samplesRowsOfJsonArrays() throws Exception {
+        String rows = JsonUtils.toJsonString(IntStream.range(0, 200)
+                .mapToObj(i -> Map.of("id", i, "name", "账目" + i))
+                .toList());
+
+        ResultShaper.Shaped shaped = resultShaper.shape(rows, 200);
+
+        assertThat(shaped.strategy()).isEqualTo(ResultShaper.Strategy.ROWS);
+        assertThat(shaped.tokens()).isLessThanOrEqualTo(200);
+        JsonNode array = JsonUtils.getObjectMapper().readTree(shaped.text());
+        assertThat(array.get(0).get("id").asInt()).isZero();
+        assertThat(array.get(array.size() - 1).get("id").asInt()).isEqualTo(199);
+        assertThat(shaped.text()).contains("共 200 行");
+    }
+
+    @Test
+    void shapesTextContentOfToolResults() throws Exception {
+        String table = IntStream.range(0, 300)
+                .mapToObj(i -> i + "|2024-01-" + (i % 28 + 1) + "|餐饮|" + i * 10)
+                .collect(Collectors.joining("\n", "id|date|category|amount\n", ""));
+        String toolResult = JsonUtils.toJsonString(List.of(Map.of("type", "text", "text", table)));
+
+        String shaped = resultShaper.shapeToolResult("query", toolResult);
+
+        assertThat(TokenEstimator.estimate(shaped)).isLessThanOrEqualTo(300);
+        String text = JsonUtils.getObjectMapper().readTree(shaped).get(0).get("text").asText();
+        assertThat(text).startsWith("id|date|category|amount\n0|").endsWith("299|2024-01-20|餐饮|2990");
+        assertThat(meterRegistry.get("agent.token-budget.trimmed").tags("stage", "tool", "strategy", "lines").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void truncatesPlainText() {
+        String text = "开头" + "无法按行裁剪的长文本".repeat(100) + "结尾";
+
+        ResultShaper.Shaped shaped = resultShaper.shape(text, 100);
+
+        assertThat(shaped.strategy()).isEqualTo(ResultShaper.Strategy.TRUNCATE);
+        assertThat(shaped.tokens()).isLessThanOrEqualTo(100);
+        assertThat(shaped.originalTokens()).isEqualTo(TokenEstimator.estimate(text));
+        assertThat(shaped.text()).startsWith("开头").endsWith("结尾").contains("已截断");
+    }
+
+    @Test
+    void disabledKeepsOriginal() {
+        properties.setEnabled(false);
+        String text = "很长".repeat(1000);
+
+        assertThat(resultShaper.shape(text, 10).trimmed()).isFalse();
+    }
+}
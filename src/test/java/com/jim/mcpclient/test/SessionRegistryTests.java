@@ -0,0 +1,241 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.SessionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionRegistryTests {
+
+    @TempDir
+    Path directory;
+
+    private final SessionRegistry sessionRegistry = new SessionRegistry();
+    private final ConversationEviction conversationEviction = new ConversationEviction();
+    private final CancellationRegistry cancellationRegistry = new CancellationRegistry();
+    private final SessionProperties properties = new SessionProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InMemoryChatMemoryRepository repository = new InMemoryChatMemoryRepository();
+    private final ChatMemory chatMemory = MessageWindowChatMemory.builder().chatMemoryRepository(repository).build();
+
+    private WebSocketHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        properties.setReapInterval(Duration.ZERO);
+        properties.setOffloadDirectory(directory);
+        ReflectionTestUtils.setField(conversationEviction, "properties", properties);
+        ReflectionTestUtils.setField(conversationEviction, "chatMemory", chatMemory);
+        ReflectionTestUtils.setField(conversationEviction, "chatMemoryRepository", repository);
+        ReflectionTestUtils.setField(conversationEviction, "meterRegistry", meterRegistry);
+        conversationEviction.init();
+        ReflectionTestUtils.setField(sessionRegistry, "properties", properties);
+        ReflectionTestUtils.setField(sessionRegistry, "conversationEviction", conversationEviction);
+        ReflectionTestUtils.setField(sessionRegistry, "cancellationRegistry", cancellationRegistry);
+        ReflectionTestUtils.setField(sessionRegistry, "meterRegistry", meterRegistry);
+        sessionRegistry.init();
+        handler = sessionRegistry.decorate(new AbstractWebSocketHandler() {
+        });
+    }
+
+    @Test
+    void closesIdleSessions() throws Exception {
+        properties.setIdleTimeout(Duration.ofMillis(50));
+        FakeSession active = connect("s1", "alice");
+        FakeSession idle = connect("s2", "bob");
+        assertThat(meterRegistry.get("agent.sessions.live").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("agent.sessions.users").gauge().value()).isEqualTo(2);
+
+        Thread.sleep(100);
+        sessionRegistry.touch(active.getId());
+        sessionRegistry.reap();
+
+        assertThat(active.isOpen()).isTrue();
+        assertThat(idle.closeStatus).isEqualTo(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(meterRegistry.get("agent.sessions.live").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("agent.sessions.reaped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void offloadsMemoryOfDepartedUsersAndRestoresOnReturn() throws Exception {
+        properties.setMemoryRetention(Duration.ZERO);
+        chatMemory.add("alice", List.of(new UserMessage("本月餐饮花了多少"), new AssistantMessage("共 1200 元")));
+        FakeSession session = connect("s1", "alice");
+        FakeSession other = connect("s2", "alice");
+
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        Thread.sleep(5);
+        sessionRegistry.reap();
+        // 仍有其他会话在线
+        assertThat(chatMemory.get("alice")).hasSize(2);
+
+        handler.afterConnectionClosed(other, CloseStatus.NORMAL);
+        Thread.sleep(5);
+        cancellationRegistry.register("m1", "alice");
+        sessionRegistry.reap();
+        // 编排仍在执行
+        assertThat(chatMemory.get("alice")).hasSize(2);
+
+        cancellationRegistry.remove(cancellationRegistry.register("m1", "alice"));
+        sessionRegistry.reap();
+        assertThat(chatMemory.get("alice")).isEmpty();
+        assertThat(meterRegistry.get("agent.memory.messages").gauge().value()).isZero();
+
+        connect("s3", "alice");
+        assertThat(chatMemory.get("alice")).extracting(m -> m.getText()).containsExactly("本月餐饮花了多少", "共 1200 元");
+    }
+
+    @Test
+    void sseStreamsKeepUsersOnlineUntilTheLastOneCloses() throws Exception {
+        properties.setMemoryRetention(Duration.ZERO);
+        chatMemory.add("alice", List.of(new UserMessage("本月餐饮花了多少"), new AssistantMessage("共 1200 元")));
+        sessionRegistry.streamOpened("alice");
+        FakeSession session = connect("s1", "alice");
+
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        Thread.sleep(5);
+        sessionRegistry.reap();
+        // SSE 连接仍然打开
+        assertThat(chatMemory.get("alice")).hasSize(2);
+
+        sessionRegistry.streamClosed("alice");
+        Thread.sleep(5);
+        sessionRegistry.reap();
+        assertThat(chatMemory.get("alice")).isEmpty();
+
+        sessionRegistry.streamOpened("alice");
+        assertThat(chatMemory.get("alice")).extracting(m -> m.getText()).containsExactly("本月餐饮花了多少", "共 1200 元");
+    }
+
+    private FakeSession connect(String sessionId, String userId) throws Exception {
+        FakeSession session = new FakeSession(sessionId);
+        handler.afterConnectionEstablished(session);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/queue/messages/" + userId);
+        sessionRegistry.onSubscribe(new SessionSubscribeEvent(this, MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders())));
+        return session;
+    }
+
+    private static class FakeSession implements WebSocketSession {
+
+        private final String id;
+        private final Map<String, Object> attributes = new HashMap<>();
+        private CloseStatus closeStatus;
+
+        FakeSession(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public URI getUri() {
+            return URI.create("ws://localhost/ws");
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return "v12.stomp";
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return List.of();
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return closeStatus == null;
+        }
+
+        @Override
+        public void close() {
+            close(CloseStatus.NORMAL);
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+            closeStatus = status;
+        }
+    }
+}
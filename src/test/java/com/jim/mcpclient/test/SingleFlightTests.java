@@ -0,0 +1,113 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.SingleFlightProperties;
+import com.jim.mcpclient.model.ChatRequest;
+import com.jim.mcpclient.model.ChatResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTests {
+
+    private final List<ChatResponse> delivered = new ArrayList<>();
+    private final CancellationRegistry cancellationRegistry = new CancellationRegistry();
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final SingleFlightProperties properties = new SingleFlightProperties();
+
+    @BeforeEach
+    void setUp() {
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate((message, timeout) -> {
+            delivered.add((ChatResponse) message.getPayload());
+            return true;
+        });
+        ReflectionTestUtils.setField(singleFlight, "messagingTemplate", messagingTemplate);
+        ReflectionTestUtils.setField(singleFlight, "cancellationRegistry", cancellationRegistry);
+        ReflectionTestUtils.setField(singleFlight, "properties", properties);
+    }
+
+    @Test
+    void duplicateRequestReplaysAndFollowsTheRunningOrchestration() {
+        assertThat(singleFlight.join("u1", request("m1", "查询余额"), "s1")).isTrue();
+        singleFlight.send("u1", chunk("m1", "a"));
+        singleFlight.send("u1", chunk("m1", "b"));
+
+        // 相同内容、不同 messageId 的重试请求
+        assertThat(singleFlight.join("u1", request("m2", " 查询余额 "), "s2")).isFalse();
+        singleFlight.send("u1", chunk("m1", "c"));
+
+        assertThat(contents("m1")).containsExactly("a", "b", "c");
+        assertThat(contents("m2")).containsExactly("a", "b", "c");
+        assertThat(delivered.stream().filter(r -> r.getMessageId().equals("m2")).map(ChatResponse::getSequence))
+                .containsExactly(0L, 1L, 2L);
+
+        // 其他内容的请求单独执行
+        assertThat(singleFlight.join("u1", request("m3", "查询明细"), "s1")).isTrue();
+    }
+
+    @Test
+    void completedOrchestrationIsReleasedAfterTheWindowWithoutFurtherRequests() throws Exception {
+        properties.setDuplicateWindow(Duration.ofMillis(50));
+        singleFlight.join("u1", request("m1", "查询余额"), "s1");
+        singleFlight.send("u1", chunk("m1", "a"));
+        singleFlight.send("u1", ChatResponse.builder()
+                .messageId("m1")
+                .type(ChatResponse.MessageType.END)
+                .isFinal(true)
+                .build());
+
+        Map<?, ?> flightsByMessage = (Map<?, ?>) ReflectionTestUtils.getField(singleFlight, "flightsByMessage");
+        Map<?, ?> flightsByContent = (Map<?, ?>) ReflectionTestUtils.getField(singleFlight, "flightsByContent");
+        assertThat(flightsByMessage).hasSize(1);
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!(flightsByMessage.isEmpty() && flightsByContent.isEmpty()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(flightsByMessage).isEmpty();
+        assertThat(flightsByContent).isEmpty();
+    }
+
+    @Test
+    void orchestrationIsCancelledOnlyWhenAllRequestsLeave() {
+        Cancellation cancellation = cancellationRegistry.register("m1", "u1");
+        singleFlight.join("u1", request("m1", "查询余额"), "s1");
+        singleFlight.join("u1", request("m2", "查询余额"), "s2");
+
+        assertThat(singleFlight.cancel("u1", "m2")).isTrue();
+        assertThat(cancellation.isCancelled()).isFalse();
+        assertThat(delivered).last().extracting(ChatResponse::getType).isEqualTo(ChatResponse.MessageType.CANCELLED);
+
+        singleFlight.cancel("u1", "m1");
+        assertThat(cancellation.isCancelled()).isTrue();
+    }
+
+    private static ChatRequest request(String messageId, String message) {
+        ChatRequest request = new ChatRequest();
+        request.setUserId("u1");
+        request.setMessageId(messageId);
+        request.setMessage(message);
+        return request;
+    }
+
+    private static ChatResponse chunk(String messageId, String content) {
+        return ChatResponse.builder()
+                .messageId(messageId)
+                .content(content)
+                .type(ChatResponse.MessageType.CHUNK)
+                .build();
+    }
+
+    private List<String> contents(String messageId) {
+        return delivered.stream()
+                .filter(response -> response.getMessageId().equals(messageId))
+                .map(ChatResponse::getContent)
+                .toList();
+    }
+}
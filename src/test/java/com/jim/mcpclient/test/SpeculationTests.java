@@ -0,0 +1,61 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.SpeculationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpeculationTests {
+
+    private final Speculation speculation = new Speculation();
+    private final SpeculationProperties properties = new SpeculationProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        properties.setEnabled(true);
+        properties.setWindow(4);
+        properties.setMinPassRate(0.75);
+        ReflectionTestUtils.setField(speculation, "properties", properties);
+        ReflectionTestUtils.setField(speculation, "meterRegistry", meterRegistry);
+        speculation.init();
+    }
+
+    @Test
+    void pausesWhenPassRateDropsOrRollbacksExhausted() {
+        assertThat(speculation.allowed(0)).isTrue();
+        assertThat(speculation.allowed(1)).isFalse();
+
+        speculation.validated(true);
+        speculation.validated(true);
+        speculation.validated(false);
+        speculation.validated(false);
+        assertThat(speculation.allowed(0)).isFalse();
+
+        // 窗口滑动后恢复
+        speculation.validated(true);
+        speculation.validated(true);
+        assertThat(speculation.passRate()).isEqualTo(0.5);
+        speculation.validated(true);
+        assertThat(speculation.allowed(0)).isTrue();
+    }
+
+    @Test
+    void recordsSavedAndWastedWork() {
+        speculation.started();
+        speculation.committed(Duration.ofMillis(300));
+        speculation.started();
+        speculation.rolledBack(Duration.ofMillis(800));
+
+        assertThat(meterRegistry.counter("agent.speculation.started").count()).isEqualTo(2);
+        assertThat(meterRegistry.timer("agent.speculation.saved").totalTime(TimeUnit.MILLISECONDS)).isEqualTo(300);
+        assertThat(meterRegistry.timer("agent.speculation.wasted").totalTime(TimeUnit.MILLISECONDS)).isEqualTo(800);
+        assertThat(meterRegistry.counter("agent.speculation.rollbacks").count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,95 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.SingleFlightProperties;
+import com.jim.mcpclient.config.ToolProgressProperties;
+import com.jim.mcpclient.model.ChatResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ToolProgressRouterTests {
+
+    private final List<ChatResponse> delivered = new CopyOnWriteArrayList<>();
+    private final ToolProgressRouter router = new ToolProgressRouter();
+    private final ToolProgressProperties properties = new ToolProgressProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+    @BeforeEach
+    void setUp() {
+        SingleFlight singleFlight = new SingleFlight();
+        ReflectionTestUtils.setField(singleFlight, "messagingTemplate", new SimpMessagingTemplate((message, timeout) -> {
+            delivered.add((ChatResponse) message.getPayload());
+            return true;
+        }));
+        ReflectionTestUtils.setField(singleFlight, "cancellationRegistry", new CancellationRegistry());
+        ReflectionTestUtils.setField(singleFlight, "properties", new SingleFlightProperties());
+        taskScheduler.initialize();
+        properties.setInterval(Duration.ofMillis(200));
+        ReflectionTestUtils.setField(router, "singleFlight", singleFlight);
+        ReflectionTestUtils.setField(router, "properties", properties);
+        ReflectionTestUtils.setField(router, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(router, "taskScheduler", taskScheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskScheduler.shutdown();
+    }
+
+    @Test
+    void routesProgressToTheCallingUserCoalescedToTheLatestValue() throws Exception {
+        ToolProgressRouter.Tracker alice = router.tracker("alice", "m1");
+        ToolProgressRouter.Tracker bob = router.tracker("bob", "m2");
+        String token = alice.open("export_ledger");
+        String other = bob.open("query_balance");
+
+        router.onProgress(new McpSchema.ProgressNotification(token, 1.0, 10.0, "第 1 页"));
+        router.onProgress(new McpSchema.ProgressNotification(other, 0.5, null, "统计中"));
+        for (int page = 2; page <= 5; page++) {
+            router.onProgress(new McpSchema.ProgressNotification(token, page, 10.0, "第 " + page + " 页"));
+        }
+
+        // 第一条立即推送，间隔内的后续进度合并为最新一条
+        assertThat(delivered).extracting(ChatResponse::getContent).containsExactly("第 1 页", "统计中");
+        Thread.sleep(400);
+        assertThat(delivered).extracting(ChatResponse::getContent).containsExactly("第 1 页", "统计中", "第 5 页");
+        ChatResponse latest = delivered.get(2);
+        assertThat(latest.getType()).isEqualTo(ChatResponse.MessageType.PROGRESS);
+        assertThat(latest.getMessageId()).isEqualTo("m1");
+        assertThat(latest.getToolName()).isEqualTo("export_ledger");
+        assertThat(latest.getProgress()).isEqualTo(5.0);
+        assertThat(latest.getTotal()).isEqualTo(10.0);
+        assertThat(meterRegistry.get("agent.tool-progress.notifications").tag("outcome", "coalesced").counter().count())
+                .isEqualTo(3);
+    }
+
+    @Test
+    void ignoresProgressAfterTheToolCallEnds() throws Exception {
+        ToolProgressRouter.Tracker tracker = router.tracker("alice", "m1");
+        String token = tracker.open("export_ledger");
+        router.onProgress(new McpSchema.ProgressNotification(token, 1.0, 10.0, "第 1 页"));
+        router.onProgress(new McpSchema.ProgressNotification(token, 2.0, 10.0, "第 2 页"));
+        tracker.close(token);
+        router.onProgress(new McpSchema.ProgressNotification(token, 3.0, 10.0, "第 3 页"));
+
+        Thread.sleep(400);
+        assertThat(delivered).extracting(ChatResponse::getContent).containsExactly("第 1 页");
+        assertThat(meterRegistry.get("agent.tool-progress.notifications").tag("outcome", "unmatched").counter().count())
+                .isEqualTo(1);
+
+        properties.setEnabled(false);
+        assertThat(tracker.open("export_ledger")).isNull();
+    }
+}
@@ -0,0 +1,108 @@
+package com.jim.mcpclient.test;
+
+import com.jim.mcpclient.config.SingleFlightProperties;
+import com.jim.mcpclient.config.WorkerProgressProperties;
+import com.jim.mcpclient.model.ChatResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class WorkerProgressPublisherTests {
+
+    private final List<ChatResponse> delivered = new CopyOnWriteArrayList<>();
+    private final WorkerProgressProperties properties = new WorkerProgressProperties();
+    private final WorkerProgressPublisher publisher = new WorkerProgressPublisher();
+
+    @BeforeEach
+    void setUp() {
+        SingleFlight singleFlight = new SingleFlight();
+        ReflectionTestUtils.setField(singleFlight, "messagingTemplate", new SimpMessagingTemplate((message, timeout) -> {
+            delivered.add((ChatResponse) message.getPayload());
+            return true;
+        }));
+        ReflectionTestUtils.setField(singleFlight, "cancellationRegistry", new CancellationRegistry());
+        ReflectionTestUtils.setField(singleFlight, "properties", new SingleFlightProperties());
+        ReflectionTestUtils.setField(publisher, "singleFlight", singleFlight);
+        ReflectionTestUtils.setField(publisher, "properties", properties);
+    }
+
+    @Test
+    void batchesTokensBySizeWhilePassingThemThrough() {
+        properties.setMaxBatchSize(3);
+        properties.setFlushInterval(Duration.ofSeconds(10));
+
+        List<String> tokens = publisher.streamTokens("u1", "m1", Flux.just("查", "询", "本", "月", "账", "目", "。"))
+                .collectList()
+                .block(Duration.ofSeconds(2));
+
+        assertThat(tokens).containsExactly("查", "询", "本", "月", "账", "目", "。");
+        // 满 3 个片段立即推送，流结束时推送剩余片段
+        assertThat(delivered).allSatisfy(response -> {
+            assertThat(response.getType()).isEqualTo(ChatResponse.MessageType.WORKER);
+            assertThat(response.getEvent()).isEqualTo(ChatResponse.WorkerEvent.TOKEN);
+            assertThat(response.getMessageId()).isEqualTo("m1");
+        });
+        assertThat(delivered).extracting(ChatResponse::getContent).containsExactly("查询本", "月账目", "。");
+    }
+
+    @Test
+    void flushesPartialBatchesAfterTheInterval() throws Exception {
+        properties.setMaxBatchSize(64);
+        properties.setFlushInterval(Duration.ofMillis(50));
+        Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
+        List<String> tokens = new CopyOnWriteArrayList<>();
+        publisher.streamTokens("u1", "m1", sink.asFlux()).subscribe(tokens::add);
+
+        sink.tryEmitNext("查询");
+        sink.tryEmitNext("余额");
+        // 原始片段不等待批次，立即发出
+        assertThat(tokens).containsExactly("查询", "余额");
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (delivered.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(delivered).extracting(ChatResponse::getContent).containsExactly("查询余额");
+
+        sink.tryEmitNext("。");
+        sink.tryEmitComplete();
+        assertThat(tokens).containsExactly("查询", "余额", "。");
+        assertThat(delivered).extracting(ChatResponse::getContent).containsExactly("查询余额", "。");
+    }
+
+    @Test
+    void sendsNothingWhenDisabled() {
+        properties.setEnabled(false);
+        Flux<String> source = Flux.just("查询", "余额");
+
+        assertThat(publisher.streamTokens("u1", "m1", source)).isSameAs(source);
+        ToolCallListener listener = publisher.toolCallListener("u1", "m1");
+        listener.onToolStart("query_ledger");
+        listener.onToolEnd("query_ledger", 12, true);
+
+        assertThat(delivered).isEmpty();
+    }
+
+    @Test
+    void publishesToolCallEvents() {
+        ToolCallListener listener = publisher.toolCallListener("u1", "m1");
+        listener.onToolStart("query_ledger");
+        listener.onToolEnd("query_ledger", 12, false);
+
+        assertThat(delivered).extracting(ChatResponse::getEvent, ChatResponse::getToolName)
+                .containsExactly(
+                        tuple(ChatResponse.WorkerEvent.TOOL_START, "query_ledger"),
+                        tuple(ChatResponse.WorkerEvent.TOOL_ERROR, "query_ledger"));
+        assertThat(delivered.get(1).getElapsedMillis()).isEqualTo(12L);
+    }
+}